@@ -0,0 +1,13 @@
+package com.salvacode.orientlink.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * Enables @Async background work (e.g. conversation summary refresh).
+ * Runs on Spring Boot's application task executor, sized via spring.task.execution.*.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
@@ -0,0 +1,92 @@
+package com.salvacode.orientlink.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversation history sharded by user across several Postgres servers: shard 0 is the
+ * regular database (spring.datasource, with read replicas if enabled), the others come from
+ * orientlink.datasource.conversation-shards.shards. Only active with
+ * orientlink.datasource.conversation-shards.enabled=true; see ConversationShards for routing.
+ */
+@Configuration
+@EnableConfigurationProperties(ConversationShardProperties.class)
+@ConditionalOnProperty(prefix = "orientlink.datasource.conversation-shards", name = "enabled", havingValue = "true")
+public class ConversationShardDataSourceConfig {
+
+    /**
+     * Primary (read/write) pool of shard 0 when read replicas are off; with them on,
+     * ReadReplicaDataSourceConfig defines it.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "orientlink.datasource.read-replicas", name = "enabled",
+            havingValue = "false", matchIfMissing = true)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ConversationShardRoutingDataSource conversationShardRoutingDataSource(
+            @Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+            ObjectProvider<ReadReplicaRoutingDataSource> readReplicaRoutingDataSource,
+            DataSourceProperties primaryProperties,
+            ConversationShardProperties shardProperties) {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(readReplicaRoutingDataSource.getIfAvailable(() -> primaryDataSource));
+        for (ConversationShardProperties.Shard shard : shardProperties.getShards()) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("conversation-shard-" + shards.size());
+            dataSource.setJdbcUrl(shard.getUrl());
+            dataSource.setUsername(shard.getUsername() != null
+                    ? shard.getUsername() : primaryProperties.determineUsername());
+            dataSource.setPassword(shard.getPassword() != null
+                    ? shard.getPassword() : primaryProperties.determinePassword());
+            dataSource.setDriverClassName(primaryProperties.determineDriverClassName());
+            dataSource.setMaximumPoolSize(shardProperties.getMaximumPoolSize());
+            shards.add(dataSource);
+        }
+        return new ConversationShardRoutingDataSource(shards);
+    }
+
+    /**
+     * The DataSource everything else (JPA, JdbcTemplate, sql init) uses.
+     * The lazy proxy defers choosing a shard (and replica) until the first statement.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ConversationShardRoutingDataSource conversationShardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(conversationShardRoutingDataSource);
+    }
+
+    /**
+     * Runs once shard 0's schema exists (the EntityManagerFactory is only a dependency for that).
+     */
+    @Bean
+    public ConversationShardInitializer conversationShardInitializer(
+            ConversationShardRoutingDataSource conversationShardRoutingDataSource,
+            EntityManagerFactory entityManagerFactory,
+            JpaProperties jpaProperties,
+            HibernateProperties hibernateProperties) {
+        return new ConversationShardInitializer(conversationShardRoutingDataSource, jpaProperties,
+                hibernateProperties);
+    }
+}
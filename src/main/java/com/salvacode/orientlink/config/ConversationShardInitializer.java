@@ -0,0 +1,126 @@
+package com.salvacode.orientlink.config;
+
+import com.salvacode.orientlink.entity.ConversationHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Prepares the conversation shards at startup:
+ *
+ * - Shards 1..n get the same schema as shard 0: Hibernate's schema management (as
+ *   configured by spring.jpa) followed by db/schema-upgrade.sql.
+ * - Conversation IDs stay unique across shards, so rows can move between them: shard k only
+ *   hands out IDs congruent to k modulo {@link #MAX_SHARDS}, above every ID issued so far.
+ * - When sharding is first enabled, every user with conversations in the regular database is
+ *   assigned to shard 0; only new users are placed by hash. Enable it on all nodes at once.
+ *
+ * Each step is done once per shard; nodes starting together serialize on an advisory lock.
+ */
+@Slf4j
+public class ConversationShardInitializer implements InitializingBean {
+
+    public static final int MAX_SHARDS = 1024;
+
+    private final ConversationShardRoutingDataSource shards;
+    private final JpaProperties jpaProperties;
+    private final HibernateProperties hibernateProperties;
+
+    public ConversationShardInitializer(ConversationShardRoutingDataSource shards, JpaProperties jpaProperties,
+                                        HibernateProperties hibernateProperties) {
+        this.shards = shards;
+        this.jpaProperties = jpaProperties;
+        this.hibernateProperties = hibernateProperties;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (shards.size() > MAX_SHARDS) {
+            throw new IllegalStateException("At most " + MAX_SHARDS + " conversation shards are supported");
+        }
+        for (int shard = 1; shard < shards.size(); shard++) {
+            createSchema(shards.shard(shard));
+        }
+
+        long highestId = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            JdbcTemplate jdbc = new JdbcTemplate(shards.shard(shard));
+            highestId = Math.max(highestId, highestId(jdbc, idSequence(jdbc)));
+        }
+        for (int shard = 0; shard < shards.size(); shard++) {
+            spaceIds(shard, highestId);
+        }
+        log.info("Conversation history sharded across {} databases", shards.size());
+    }
+
+    private void createSchema(DataSource dataSource) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan(ConversationHistory.class.getPackageName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(hibernateProperties.determineHibernateProperties(
+                jpaProperties.getProperties(), new HibernateSettings().ddlAuto(() -> "none")));
+        factory.afterPropertiesSet();
+        factory.destroy();
+
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("db/schema-upgrade.sql"));
+        populator.setSeparator("@@");
+        populator.execute(dataSource);
+    }
+
+    /**
+     * Switch the shard's conversation IDs to its own residue class, unless already done.
+     */
+    private void spaceIds(int shard, long highestId) {
+        DataSource dataSource = shards.shard(shard);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> {
+            jdbc.execute("SELECT pg_advisory_xact_lock(4902, 0)");
+            String sequence = idSequence(jdbc);
+            Long increment = jdbc.queryForObject(
+                    "SELECT seqincrement FROM pg_sequence WHERE seqrelid = CAST(? AS regclass)", Long.class, sequence);
+            if (increment != null && increment == MAX_SHARDS) {
+                return;
+            }
+
+            long start = (Math.max(highestId, highestId(jdbc, sequence)) / MAX_SHARDS + 1) * MAX_SHARDS + shard;
+            Boolean identity = jdbc.queryForObject("SELECT attidentity <> '' FROM pg_attribute "
+                    + "WHERE attrelid = CAST('conversation_history' AS regclass) AND attname = 'id'", Boolean.class);
+            jdbc.execute(Boolean.TRUE.equals(identity)
+                    ? "ALTER TABLE conversation_history ALTER COLUMN id SET INCREMENT BY " + MAX_SHARDS
+                            + " RESTART WITH " + start
+                    : "ALTER SEQUENCE " + sequence + " INCREMENT BY " + MAX_SHARDS + " RESTART WITH " + start);
+
+            int pinned = 0;
+            if (shard == ConversationShardRoutingDataSource.HOME) {
+                pinned = jdbc.update("INSERT INTO conversation_shard_assignment (user_id, shard, moving, updated_at) "
+                        + "SELECT DISTINCT user_id, 0, false, localtimestamp FROM conversation_history "
+                        + "ON CONFLICT (user_id) DO NOTHING");
+            }
+            log.info("Conversation shard {} now issues IDs from {} in steps of {}; {} existing users assigned to it",
+                    shard, start, MAX_SHARDS, pinned);
+        });
+    }
+
+    private static String idSequence(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT pg_get_serial_sequence('conversation_history', 'id')", String.class);
+    }
+
+    private static long highestId(JdbcTemplate jdbc, String sequence) {
+        Long highest = jdbc.queryForObject("SELECT greatest((SELECT COALESCE(max(id), 0) FROM conversation_history), "
+                + "COALESCE(pg_sequence_last_value(CAST(? AS regclass)), 0))", Long.class, sequence);
+        return highest != null ? highest : 0;
+    }
+}
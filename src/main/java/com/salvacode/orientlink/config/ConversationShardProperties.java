@@ -0,0 +1,38 @@
+package com.salvacode.orientlink.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversation history shard settings (orientlink.datasource.conversation-shards.*).
+ * Shard 0 is the regular database (spring.datasource); the listed ones are shards 1..n.
+ * Username/password default to the primary's when not set per shard.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "orientlink.datasource.conversation-shards")
+public class ConversationShardProperties {
+
+    private boolean enabled = false;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    private int maximumPoolSize = 10;
+
+    private Duration assignmentCacheTtl = Duration.ofSeconds(5); // How long a node routes reads on a cached assignment
+
+    private Duration moveWait = Duration.ofSeconds(60); // How long a write waits for the user's move to finish
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
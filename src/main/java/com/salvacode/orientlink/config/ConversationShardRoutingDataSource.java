@@ -0,0 +1,90 @@
+package com.salvacode.orientlink.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Routes work wrapped in {@link #onShard} to that conversation history shard and everything
+ * else to shard 0, the regular database (with its read replicas, if enabled).
+ *
+ * A transaction uses a single shard: the shard must be chosen before the transaction's
+ * first statement and cannot change until it ends. There are no cross-shard transactions.
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the shard is known when the
+ * physical connection is chosen.
+ */
+public class ConversationShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final int HOME = 0;
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    public ConversationShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(HOME));
+    }
+
+    /**
+     * Run work, including any transaction it starts, against the given shard.
+     *
+     * @throws IllegalStateException If called inside a transaction already bound to another shard
+     */
+    public static <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = CURRENT_SHARD.get();
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !Objects.equals(previous != null ? previous : HOME, shard)) {
+            throw new IllegalStateException("Shard " + shard + " requested inside a transaction on shard "
+                    + (previous != null ? previous : HOME));
+        }
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * The shard's own DataSource, bypassing routing (for tooling that copies between shards).
+     */
+    public DataSource shard(int shard) {
+        return shards.get(shard);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard != null ? shard : HOME;
+    }
+
+    @Override
+    public void destroy() {
+        // Shard 0 is a separately managed bean; only the extra pools belong to this router
+        shards.subList(1, shards.size()).forEach(shard -> ((HikariDataSource) shard).close());
+    }
+}
@@ -0,0 +1,20 @@
+package com.salvacode.orientlink.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Conversion rates to USD (orientlink.currency.usd-rates), used to compare prices
+ * quoted in different currencies.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "orientlink.currency")
+public class CurrencyProperties {
+    
+    private Map<String, Double> usdRates = new HashMap<>(Map.of("USD", 1.0));
+}
@@ -0,0 +1,23 @@
+package com.salvacode.orientlink.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request deadlines (orientlink.deadline): the default, per-endpoint defaults keyed by
+ * request path, and the upper bound on what a client may ask for.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "orientlink.deadline")
+public class DeadlineProperties {
+    
+    private Duration defaultTimeout = Duration.ofSeconds(60);
+    private Duration maxTimeout = Duration.ofSeconds(120);
+    private Map<String, Duration> endpoints = new HashMap<>();
+}
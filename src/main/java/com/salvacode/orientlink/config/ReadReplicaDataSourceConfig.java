@@ -0,0 +1,78 @@
+package com.salvacode.orientlink.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read/write splitting across the primary (spring.datasource) and read replicas.
+ * Only active with orientlink.datasource.read-replicas.enabled=true; otherwise Spring Boot's
+ * single auto-configured DataSource is used unchanged.
+ */
+@Configuration
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+@ConditionalOnProperty(prefix = "orientlink.datasource.read-replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaDataSourceConfig {
+    
+    /**
+     * Primary (read/write) pool, configured exactly like the auto-configured one.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+    
+    @Bean
+    public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                                     DataSourceProperties primaryProperties,
+                                                                     ReadReplicaProperties replicaProperties) {
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaProperties.getReplicas().size(); i++) {
+            ReadReplicaProperties.Replica replica = replicaProperties.getReplicas().get(i);
+            
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername() != null
+                    ? replica.getUsername() : primaryProperties.determineUsername());
+            dataSource.setPassword(replica.getPassword() != null
+                    ? replica.getPassword() : primaryProperties.determinePassword());
+            dataSource.setDriverClassName(primaryProperties.determineDriverClassName());
+            dataSource.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.put("replica-" + i, dataSource);
+        }
+        
+        return new ReadReplicaRoutingDataSource(primaryDataSource, replicas,
+                replicaProperties.getMaxLag(),
+                replicaProperties.getStickiness(),
+                replicaProperties.getLagCheckInterval());
+    }
+    
+    /**
+     * The DataSource everything else (JPA, JdbcTemplate, sql init) uses.
+     * The lazy proxy defers choosing a pool until the first statement, when the
+     * transaction's read-only flag is already set. With conversation shards, their router
+     * wraps this one instead (see ConversationShardDataSourceConfig).
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "orientlink.datasource.conversation-shards", name = "enabled",
+            havingValue = "false", matchIfMissing = true)
+    public DataSource dataSource(ReadReplicaRoutingDataSource readReplicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readReplicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,39 @@
+package com.salvacode.orientlink.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica settings (orientlink.datasource.read-replicas.*).
+ * Username/password default to the primary's when not set per replica.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "orientlink.datasource.read-replicas")
+public class ReadReplicaProperties {
+    
+    private boolean enabled = false;
+    
+    private List<Replica> replicas = new ArrayList<>();
+    
+    private Duration maxLag = Duration.ofSeconds(5); // Replicas further behind are skipped
+    
+    private Duration stickiness = Duration.ofSeconds(10); // Reads go to primary this long after a user's write
+    
+    private Duration lagCheckInterval = Duration.ofSeconds(2);
+    
+    private int maximumPoolSize = 10;
+    
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,189 @@
+package com.salvacode.orientlink.config;
+
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.jfr.PipelineStageEvent;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Routes read-only transactions to replica pools and everything else to the primary.
+ *
+ * - A replica is used only while its measured replay lag is within max-lag.
+ * - After a user's write commits, that user's reads stay on the primary for the
+ *   stickiness window (read-your-writes). Stickiness is tracked per node.
+ * - With no healthy replica, reads fall back to the primary.
+ * - Reads wrapped in {@link #readFromPrimary} use the primary without making the user sticky.
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the read-only flag of the
+ * transaction is known when the physical connection is chosen.
+ */
+@Slf4j
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    
+    static final String PRIMARY = "primary";
+    
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+    
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END
+            """;
+    
+    private final Map<String, HikariDataSource> replicas;
+    private final long maxLagMillis;
+    private final long stickinessMillis;
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+    
+    private volatile List<String> healthyReplicas = List.of();
+    
+    public ReadReplicaRoutingDataSource(DataSource primary, Map<String, HikariDataSource> replicas,
+                                        Duration maxLag, Duration stickiness, Duration lagCheckInterval) {
+        this.replicas = replicas;
+        this.maxLagMillis = maxLag.toMillis();
+        this.stickinessMillis = stickiness.toMillis();
+        
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkReplicaLag, 0,
+                lagCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Run read-only work against the primary, for reads that must not see replica lag
+     * (cache fills, sync cursors). Unlike a read-write transaction, this does not keep the
+     * user's later reads on the primary. A no-op without read replicas.
+     */
+    public static <T> T readFromPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_READS.get();
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_READS.remove();
+            } else {
+                PRIMARY_READS.set(previous);
+            }
+        }
+    }
+    
+    /**
+     * Time spent waiting for a pooled connection shows up as the "db-connection" stage.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        PipelineStageEvent event = PipelineStageEvent.start("db-connection");
+        Connection connection = super.getConnection();
+        event.finish();
+        return connection;
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String userId = RequestContext.getUserId();
+        
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            markStickyOnCommit(userId);
+            return PRIMARY;
+        }
+        if (PRIMARY_READS.get() != null || (userId != null && isSticky(userId))) {
+            return PRIMARY;
+        }
+        
+        List<String> healthy = healthyReplicas;
+        if (healthy.isEmpty()) {
+            return PRIMARY;
+        }
+        return healthy.get(Math.floorMod(roundRobin.getAndIncrement(), healthy.size()));
+    }
+    
+    /**
+     * Keep the user's reads on the primary for a while once the write is committed.
+     */
+    private void markStickyOnCommit(String userId) {
+        if (userId == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stickyUntil.put(userId, System.currentTimeMillis() + stickinessMillis);
+            }
+        });
+    }
+    
+    private boolean isSticky(String userId) {
+        Long until = stickyUntil.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            stickyUntil.remove(userId, until);
+            return false;
+        }
+        return true;
+    }
+    
+    private void checkReplicaLag() {
+        List<String> healthy = new ArrayList<>();
+        replicas.forEach((key, dataSource) -> {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                rs.next();
+                long lagMillis = (long) (rs.getDouble(1) * 1000);
+                if (lagMillis <= maxLagMillis) {
+                    healthy.add(key);
+                } else {
+                    log.warn("Replica {} lags {} ms behind primary, excluding it from reads", key, lagMillis);
+                }
+            } catch (Exception e) {
+                log.warn("Replica {} unavailable, excluding it from reads: {}", key, e.getMessage());
+            }
+        });
+        healthyReplicas = List.copyOf(healthy);
+        
+        // Drop expired stickiness entries so the map stays bounded
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(until -> until < now);
+    }
+    
+    @Override
+    public void destroy() {
+        lagChecker.shutdownNow();
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,13 @@
+package com.salvacode.orientlink.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (e.g. provider refresh).
+ * Runs on Spring Boot's task scheduler, sized via spring.task.scheduling.*.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,7 +1,9 @@
 package com.salvacode.orientlink.config;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -35,9 +37,12 @@ public class SecurityConfig {
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)) // Stateless sessions
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/v1/**").permitAll() // Allow all API requests (for now)
+                .requestMatchers(EndpointRequest.to("jfr")).authenticated() // Recordings expose request internals
+                .requestMatchers(EndpointRequest.to("conversationshards")).authenticated() // Moves user data
                 .requestMatchers("/actuator/**").permitAll() // Allow actuator endpoints
                 .anyRequest().authenticated() // Require auth for everything else
-            );
+            )
+            .httpBasic(Customizer.withDefaults()); // Ops user from spring.security.user
         
         return http.build();
     }
@@ -1,24 +1,38 @@
 package com.salvacode.orientlink.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.salvacode.orientlink.util.ObjectMappers;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 /**
  * Web MVC configuration for the application.
  * Configures JSON serialization, CORS, and other web-related settings.
+ * 
+ * Besides JSON, every endpoint reads and writes CBOR and Smile, chosen by the Accept and
+ * Content-Type headers; clients that send neither keep getting JSON.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
     @Bean
     public ObjectMapper objectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        return mapper;
+        return ObjectMappers.json();
+    }
+    
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Replace the defaults registered when the dataformat jars are present, which
+        // would not share the JSON mapper's settings; appended, so JSON stays first
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(ObjectMappers.cbor()));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(ObjectMappers.smile()));
     }
 }
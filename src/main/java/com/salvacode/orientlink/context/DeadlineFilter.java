@@ -0,0 +1,85 @@
+package com.salvacode.orientlink.context;
+
+import com.salvacode.orientlink.config.DeadlineProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Binds the request's deadline to {@link RequestContext}.
+ *
+ * Clients set it with X-Request-Timeout (milliseconds from now) or, behind a proxy that
+ * already spent part of the budget, X-Request-Deadline (absolute, epoch milliseconds);
+ * otherwise the endpoint's default applies. Requests arriving past their deadline are
+ * answered with 504 without doing any work.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+@EnableConfigurationProperties(DeadlineProperties.class)
+public class DeadlineFilter extends OncePerRequestFilter {
+    
+    static final String TIMEOUT_HEADER = "X-Request-Timeout";
+    static final String DEADLINE_HEADER = "X-Request-Deadline";
+    
+    private final DeadlineProperties properties;
+    
+    public DeadlineFilter(DeadlineProperties properties) {
+        this.properties = properties;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Duration timeout;
+        try {
+            timeout = timeoutOf(request);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + TIMEOUT_HEADER + " or " + DEADLINE_HEADER);
+            return;
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Request deadline already passed");
+            return;
+        }
+        RequestContext.setDeadline(timeout);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestContext.clear();
+        }
+    }
+    
+    private Duration timeoutOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Duration endpointDefault = properties.getEndpoints().getOrDefault(path, properties.getDefaultTimeout());
+        // Clients may shorten an endpoint's default, but only extend it up to max-timeout
+        Duration max = max(properties.getMaxTimeout(), endpointDefault);
+        String deadline = request.getHeader(DEADLINE_HEADER);
+        if (deadline != null) {
+            return min(Duration.ofMillis(Long.parseLong(deadline.trim()) - System.currentTimeMillis()), max);
+        }
+        String timeout = request.getHeader(TIMEOUT_HEADER);
+        if (timeout != null) {
+            return min(Duration.ofMillis(Long.parseLong(timeout.trim())), max);
+        }
+        return endpointDefault;
+    }
+    
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+    
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,117 @@
+package com.salvacode.orientlink.context;
+
+import com.salvacode.orientlink.exception.DeadlineExceededException;
+
+import java.time.Duration;
+
+/**
+ * Per-thread context of the request being served.
+ * Populated by {@link UserContextFilter} and {@link DeadlineFilter} for HTTP requests and
+ * explicitly by services whose user ID only arrives in the request body, and by background workers.
+ */
+public final class RequestContext {
+    
+    private static final ThreadLocal<String> USER_ID = new ThreadLocal<>();
+    private static final ThreadLocal<String> REQUEST_ID = new ThreadLocal<>();
+    private static final ThreadLocal<RequestPriority> PRIORITY = new ThreadLocal<>();
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+    
+    private RequestContext() {
+    }
+    
+    /**
+     * User the current work is done for, or null if unknown.
+     */
+    public static String getUserId() {
+        return USER_ID.get();
+    }
+    
+    public static void setUserId(String userId) {
+        USER_ID.set(userId);
+    }
+    
+    /**
+     * ID correlating the work with its request (or job), or null outside of one.
+     */
+    public static String getRequestId() {
+        return REQUEST_ID.get();
+    }
+    
+    public static void setRequestId(String requestId) {
+        REQUEST_ID.set(requestId);
+    }
+    
+    /**
+     * Scheduling class of the current work; INTERACTIVE unless a worker said otherwise.
+     */
+    public static RequestPriority getPriority() {
+        RequestPriority priority = PRIORITY.get();
+        return priority != null ? priority : RequestPriority.INTERACTIVE;
+    }
+    
+    public static void setPriority(RequestPriority priority) {
+        PRIORITY.set(priority);
+    }
+    
+    /**
+     * Give the current work until the timeout from now.
+     */
+    public static void setDeadline(Duration timeout) {
+        DEADLINE_NANOS.set(System.nanoTime() + timeout.toNanos());
+    }
+    
+    /**
+     * Time left until the deadline (negative once passed), or null if the work has none.
+     */
+    public static Duration getRemaining() {
+        Long deadline = DEADLINE_NANOS.get();
+        return deadline != null ? Duration.ofNanos(deadline - System.nanoTime()) : null;
+    }
+    
+    /**
+     * Fail fast when the deadline has passed, so no further work is spent on an answer nobody waits for.
+     *
+     * @param stage What was about to be done, for the error message
+     */
+    public static void checkDeadline(String stage) {
+        Duration remaining = getRemaining();
+        if (remaining != null && (remaining.isNegative() || remaining.isZero())) {
+            throw new DeadlineExceededException("Request deadline exceeded before " + stage);
+        }
+    }
+    
+    /**
+     * Copy of the current context, to carry the request's user, ID, priority and deadline to other threads.
+     */
+    public static Snapshot capture() {
+        return new Snapshot(USER_ID.get(), REQUEST_ID.get(), PRIORITY.get(), DEADLINE_NANOS.get());
+    }
+    
+    public record Snapshot(String userId, String requestId, RequestPriority priority, Long deadlineNanos) {
+        
+        /**
+         * Bind this context to the current thread; the caller must {@link RequestContext#clear()} it afterwards.
+         */
+        public void restore() {
+            set(USER_ID, userId);
+            set(REQUEST_ID, requestId);
+            set(PRIORITY, priority);
+            set(DEADLINE_NANOS, deadlineNanos);
+        }
+        
+        private static <T> void set(ThreadLocal<T> threadLocal, T value) {
+            if (value != null) {
+                threadLocal.set(value);
+            } else {
+                threadLocal.remove();
+            }
+        }
+    }
+    
+    public static void clear() {
+        USER_ID.remove();
+        REQUEST_ID.remove();
+        PRIORITY.remove();
+        DEADLINE_NANOS.remove();
+    }
+}
@@ -0,0 +1,11 @@
+package com.salvacode.orientlink.context;
+
+/**
+ * Scheduling class of the current work when it competes for OpenAI capacity.
+ */
+public enum RequestPriority {
+    
+    INTERACTIVE, // A user is waiting on the HTTP response
+    JOB, // Queued analysis jobs: a user waits, but asynchronously
+    BACKGROUND // Provider refresh, summaries: nobody is waiting
+}
@@ -0,0 +1,45 @@
+package com.salvacode.orientlink.context;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Binds the "userId" query parameter (when present) and a request ID to {@link RequestContext}
+ * for the duration of the request. The request ID is taken from X-Request-Id when a proxy
+ * set one, otherwise generated, and echoed in the response.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class UserContextFilter extends OncePerRequestFilter {
+    
+    static final String REQUEST_ID_HEADER = "X-Request-Id";
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String userId = request.getParameter("userId");
+        if (userId != null && !userId.isBlank()) {
+            RequestContext.setUserId(userId);
+        }
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || requestId.isBlank() || requestId.length() > 100) {
+            requestId = UUID.randomUUID().toString();
+        }
+        RequestContext.setRequestId(requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestContext.clear();
+        }
+    }
+}
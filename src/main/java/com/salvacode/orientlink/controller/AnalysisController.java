@@ -1,26 +1,55 @@
 package com.salvacode.orientlink.controller;
 
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.dto.AnalysisJobDTO;
 import com.salvacode.orientlink.dto.AnalyzeRequestDTO;
 import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
+import com.salvacode.orientlink.dto.DocumentAnalyzeRequestDTO;
 import com.salvacode.orientlink.dto.RespondRequestDTO;
 import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.service.AnalysisJobService;
 import com.salvacode.orientlink.service.AnalysisService;
+import com.salvacode.orientlink.service.ConversationExportService;
+import com.salvacode.orientlink.service.DocumentAnalysisService;
+import com.salvacode.orientlink.service.IdempotencyService;
 import com.salvacode.orientlink.service.ResponseGenerationService;
 import jakarta.validation.Valid;
+import com.salvacode.orientlink.util.HttpCaching;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * REST Controller for message analysis and response generation.
  * 
  * Endpoints:
- * - POST /api/v1/analyze: Analyze user message (translate, interpret, alert)
+ * - POST /api/v1/analyze: Analyze user message (translate, interpret, alert); with targetLanguages,
+ *   one shared analysis is translated into each language and saved as linked conversations
+ * - POST /api/v1/analyze/jobs: Queue an analysis, returns a job ID immediately (202)
+ * - GET /api/v1/analyze/jobs/{id}: Poll a queued analysis
+ * - GET /api/v1/analyze/jobs/{id}/events: Server-sent events until the analysis finishes
+ * - POST /api/v1/analyze/document: Analyze a long document in chunks, streamed as NDJSON
  * - POST /api/v1/respond: Generate suggested Chinese responses
- * - GET /api/v1/conversations: Get conversation history
+ * Both POSTs accept an optional Idempotency-Key header; retries with the same key
+ * return the original response (marked Idempotent-Replayed: true) instead of re-running it.
+ * - GET /api/v1/conversations: Get conversation history (strong ETag, 304 on If-None-Match)
+ * - GET /api/v1/conversations/export: Stream conversation history as NDJSON or CSV
  */
 @RestController
 @RequestMapping("/api/v1")
@@ -29,19 +58,90 @@ import java.util.List;
 @CrossOrigin(origins = "*") // Configure properly in production
 public class AnalysisController {
     
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    
     private final AnalysisService analysisService;
     private final ResponseGenerationService responseGenerationService;
+    private final ConversationExportService exportService;
+    private final IdempotencyService idempotencyService;
+    private final AnalysisJobService jobService;
+    private final DocumentAnalysisService documentAnalysisService;
+    
+    @Value("${orientlink.http.cache.conversations-max-age:0s}")
+    private Duration conversationsMaxAge;
     
     /**
      * Analyze a message from user or provider.
      */
     @PostMapping("/analyze")
-    public ResponseEntity<AnalyzeResponseDTO> analyzeMessage(@Valid @RequestBody AnalyzeRequestDTO request) {
+    public ResponseEntity<AnalyzeResponseDTO> analyzeMessage(
+            @Valid @RequestBody AnalyzeRequestDTO request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Received analyze request from user: {}", request.getUserId());
         
-        AnalyzeResponseDTO response = analysisService.analyzeMessage(request);
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(analysisService.analyzeMessage(request));
+        }
+        IdempotencyService.Outcome<AnalyzeResponseDTO> outcome = idempotencyService.execute(
+                "analyze", request.getUserId(), idempotencyKey, request, AnalyzeResponseDTO.class,
+                () -> analysisService.analyzeMessage(request));
+        
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+                .body(outcome.value());
+    }
+    
+    /**
+     * Queue a message analysis and return at once; the result is fetched by polling or SSE.
+     */
+    @PostMapping("/analyze/jobs")
+    public ResponseEntity<AnalysisJobDTO> submitAnalysisJob(@Valid @RequestBody AnalyzeRequestDTO request) {
+        log.info("Received analysis job from user: {}", request.getUserId());
+        
+        AnalysisJobDTO job = jobService.submit(request);
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/analyze/jobs/" + job.getJobId()))
+                .body(job);
+    }
+    
+    /**
+     * Get the state (and result, once done) of an analysis job.
+     */
+    @GetMapping("/analyze/jobs/{jobId}")
+    public ResponseEntity<AnalysisJobDTO> getAnalysisJob(@PathVariable UUID jobId) {
+        return jobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Subscribe to "status" events of an analysis job; the stream ends when it finishes.
+     */
+    @GetMapping(value = "/analyze/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAnalysisJob(@PathVariable UUID jobId) {
+        return jobService.subscribe(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Analyze a long document (contract, pro-forma invoice) passage by passage.
+     * Each line is a chunk result as soon as it is ready; the last line merges alerts and risk.
+     */
+    @PostMapping(value = "/analyze/document", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> analyzeDocument(@Valid @RequestBody DocumentAnalyzeRequestDTO request) {
+        log.info("Received document analysis request from user: {}", request.getUserId());
+        documentAnalysisService.admit(request);
+        
+        // The body is written on another thread; carry the request's deadline and ID along
+        RequestContext.Snapshot context = RequestContext.capture();
+        StreamingResponseBody body = out -> documentAnalysisService.analyze(request, context, out);
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"))
+                .body(body);
     }
     
     /**
@@ -49,12 +149,20 @@ public class AnalysisController {
      */
     @PostMapping("/respond")
     public ResponseEntity<AnalyzeResponseDTO.SuggestedResponses> generateResponses(
-            @Valid @RequestBody RespondRequestDTO request) {
+            @Valid @RequestBody RespondRequestDTO request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Received response generation request from user: {}", request.getUserId());
         
-        AnalyzeResponseDTO.SuggestedResponses responses = responseGenerationService.generateResponses(request);
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(responseGenerationService.generateResponses(request));
+        }
+        IdempotencyService.Outcome<AnalyzeResponseDTO.SuggestedResponses> outcome = idempotencyService.execute(
+                "respond", request.getUserId(), idempotencyKey, request, AnalyzeResponseDTO.SuggestedResponses.class,
+                () -> responseGenerationService.generateResponses(request));
         
-        return ResponseEntity.ok(responses);
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+                .body(outcome.value());
     }
     
     /**
@@ -63,11 +171,56 @@ public class AnalysisController {
     @GetMapping("/conversations")
     public ResponseEntity<List<ConversationHistory>> getConversationHistory(
             @RequestParam String userId,
-            @RequestParam(required = false) Long providerId) {
+            @RequestParam(required = false) Long providerId,
+            @RequestParam(required = false) String riskLevel,
+            @RequestParam(required = false) String sentiment,
+            @RequestParam(required = false) String alert,
+            WebRequest webRequest) {
         log.info("Retrieving conversation history for user: {}", userId);
         
-        List<ConversationHistory> history = analysisService.getConversationHistory(userId, providerId);
+        // Unchanged since the client's copy: 304 after an aggregate query, no entities loaded
+        String eTag = HttpCaching.representationETag(
+                analysisService.getConversationHistoryETag(userId, providerId, riskLevel, sentiment, alert),
+                webRequest);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        
+        List<ConversationHistory> history = analysisService.getConversationHistory(
+                userId, providerId, riskLevel, sentiment, alert);
+        
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(HttpCaching.cacheControl(conversationsMaxAge))
+                .body(history);
+    }
+    
+    /**
+     * Stream conversation history for audits/compliance, without buffering it in memory.
+     */
+    @GetMapping("/conversations/export")
+    public ResponseEntity<StreamingResponseBody> exportConversations(
+            @RequestParam String userId,
+            @RequestParam(required = false) Long providerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        log.info("Exporting conversation history for user: {} as {}", userId, format);
+        
+        ConversationExportService.ExportFormat exportFormat =
+                ConversationExportService.ExportFormat.fromParameter(format);
+        String filename = "conversations-" + userId + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        
+        StreamingResponseBody body = out ->
+                exportService.export(userId, providerId, from, to, exportFormat, gzip, out);
         
-        return ResponseEntity.ok(history);
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
     }
 }
@@ -0,0 +1,44 @@
+package com.salvacode.orientlink.controller;
+
+import com.salvacode.orientlink.dto.ChangeFeedDTO;
+import com.salvacode.orientlink.service.ChangeFeedService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST Controller for incremental client sync.
+ * 
+ * Endpoints:
+ * - GET /api/v1/changes: Conversations and providers created, updated or deleted after a change token
+ * 
+ * Clients start with since=0 (a full sync, paged) and then pass the returned nextToken,
+ * so each launch only transfers what changed in the meantime.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*") // Configure properly in production
+public class ChangeFeedController {
+    
+    private static final int MAX_PAGE_SIZE = 1000;
+    
+    private final ChangeFeedService changeFeedService;
+    
+    /**
+     * Get a user's changes after the token.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ChangeFeedDTO> getChanges(
+            @RequestParam String userId,
+            @RequestParam(defaultValue = "0") String since,
+            @RequestParam(defaultValue = "500") int limit) {
+        log.info("Retrieving changes for user: {} since {}", userId, since);
+        
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        
+        return ResponseEntity.ok(changeFeedService.getChanges(userId, since, pageSize));
+    }
+}
@@ -0,0 +1,64 @@
+package com.salvacode.orientlink.controller;
+
+import com.salvacode.orientlink.dto.GlossaryEntryDTO;
+import com.salvacode.orientlink.dto.GlossaryUpdateRequestDTO;
+import com.salvacode.orientlink.service.GlossaryService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST Controller for per-user terminology glossaries.
+ * 
+ * Endpoints:
+ * - GET /api/v1/glossary: Get a user's glossary entries
+ * - PUT /api/v1/glossary: Add entries or update existing terms in bulk
+ * - DELETE /api/v1/glossary/{id}: Delete an entry
+ * 
+ * Entries whose term occurs in an analyzed message are passed to the model as required translations.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*") // Configure properly in production
+public class GlossaryController {
+    
+    private final GlossaryService glossaryService;
+    
+    /**
+     * Get all glossary entries of a user.
+     */
+    @GetMapping("/glossary")
+    public ResponseEntity<List<GlossaryEntryDTO>> getGlossary(@RequestParam String userId) {
+        log.info("Retrieving glossary for user: {}", userId);
+        
+        return ResponseEntity.ok(glossaryService.getEntries(userId));
+    }
+    
+    /**
+     * Add or update glossary entries.
+     */
+    @PutMapping("/glossary")
+    public ResponseEntity<List<GlossaryEntryDTO>> updateGlossary(@Valid @RequestBody GlossaryUpdateRequestDTO request) {
+        log.info("Updating {} glossary entries for user: {}", request.getEntries().size(), request.getUserId());
+        
+        return ResponseEntity.ok(glossaryService.upsert(request));
+    }
+    
+    /**
+     * Delete a glossary entry.
+     */
+    @DeleteMapping("/glossary/{id}")
+    public ResponseEntity<Void> deleteGlossaryEntry(@PathVariable Long id, @RequestParam String userId) {
+        log.info("Deleting glossary entry {} for user: {}", id, userId);
+        
+        return glossaryService.delete(userId, id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
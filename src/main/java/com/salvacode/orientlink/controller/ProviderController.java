@@ -1,14 +1,22 @@
 package com.salvacode.orientlink.controller;
 
-import com.salvacode.orientlink.dto.ProviderResponseDTO;
+import com.salvacode.orientlink.dto.ProviderCompareRequestDTO;
+import com.salvacode.orientlink.dto.ProviderComparisonDTO;
 import com.salvacode.orientlink.dto.ProviderResponseDTO;
 import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.service.ProviderComparisonService;
 import com.salvacode.orientlink.service.ProviderService;
+import com.salvacode.orientlink.util.HttpCaching;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -18,7 +26,10 @@ import java.util.List;
  * - GET /api/v1/provider: Analyze Alibaba URL and extract provider info
  * - GET /api/v1/providers: Get all providers for a user
  * - GET /api/v1/provider/{id}: Get specific provider by ID
- * - GET /api/v1/providers/search: Search providers by name
+ * - GET /api/v1/providers/search: Search providers by name (ranked, paginated)
+ * - GET /api/v1/providers/compare: Rank providers by price, MOQ, delivery, certifications and risk
+ * 
+ * GET /providers and /provider/{id} send strong ETags and answer If-None-Match with 304.
  */
 @RestController
 @RequestMapping("/api/v1")
@@ -27,7 +38,16 @@ import java.util.List;
 @CrossOrigin(origins = "*") // Configure properly in production
 public class ProviderController {
     
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    
     private final ProviderService providerService;
+    private final ProviderComparisonService comparisonService;
+    
+    @Value("${orientlink.http.cache.providers-max-age:0s}")
+    private Duration providersMaxAge;
+    
+    @Value("${orientlink.http.cache.provider-max-age:30s}")
+    private Duration providerMaxAge;
     
     /**
      * Analyze Alibaba provider URL and extract business information.
@@ -48,35 +68,78 @@ public class ProviderController {
      * Get all providers for a specific user.
      */
     @GetMapping("/providers")
-    public ResponseEntity<List<ProviderProfile>> getUserProviders(@RequestParam String userId) {
+    public ResponseEntity<List<ProviderProfile>> getUserProviders(
+            @RequestParam String userId,
+            @RequestParam(required = false) String overallRisk,
+            WebRequest webRequest) {
         log.info("Retrieving all providers for user: {}", userId);
         
-        List<ProviderProfile> providers = providerService.getUserProviders(userId);
+        // Unchanged since the client's copy: 304 after an aggregate query, no entities loaded
+        String eTag = HttpCaching.representationETag(
+                providerService.getUserProvidersETag(userId, overallRisk), webRequest);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+        }
         
-        return ResponseEntity.ok(providers);
+        List<ProviderProfile> providers = providerService.getUserProviders(userId, overallRisk);
+        
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(HttpCaching.cacheControl(providersMaxAge))
+                .body(providers);
     }
     
     /**
      * Get specific provider by ID.
      */
     @GetMapping("/provider/{id}")
-    public ResponseEntity<ProviderProfile> getProviderById(@PathVariable Long id) {
+    public ResponseEntity<ProviderProfile> getProviderById(@PathVariable Long id, WebRequest webRequest) {
         log.info("Retrieving provider by ID: {}", id);
         
         return providerService.getProviderById(id)
-                .map(ResponseEntity::ok)
+                .map(provider -> {
+                    String eTag = HttpCaching.representationETag(
+                            providerService.getProviderETag(provider), webRequest);
+                    if (webRequest.checkNotModified(eTag)) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT)
+                                .<ProviderProfile>build();
+                    }
+                    return ResponseEntity.ok()
+                            .eTag(eTag)
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .cacheControl(HttpCaching.cacheControl(providerMaxAge))
+                            .body(provider);
+                })
                 .orElse(ResponseEntity.notFound().build());
     }
     
     /**
-     * Search providers by name (partial match, case-insensitive).
-    */
+     * Search providers by name (fuzzy, CJK-aware, ranked by relevance).
+     */
     @GetMapping("/providers/search")
-    public ResponseEntity<List<ProviderProfile>> searchProviders(@RequestParam String name) {
+    public ResponseEntity<List<ProviderProfile>> searchProviders(
+            @RequestParam String name,
+            @RequestParam(required = false) String userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
         log.info("Searching providers by name: {}", name);
         
-        List<ProviderProfile> providers = providerService.searchProvidersByName(name);
+        int pageSize = Math.min(Math.max(size, 1), MAX_SEARCH_PAGE_SIZE);
+        List<ProviderProfile> providers = providerService.searchProvidersByName(
+                name, userId, Math.max(page, 0), pageSize);
         
         return ResponseEntity.ok(providers);
     }
+    
+    /**
+     * Compare providers: filter, weight-score and return the top matches (prices in USD).
+     */
+    @GetMapping("/providers/compare")
+    public ResponseEntity<List<ProviderComparisonDTO>> compareProviders(
+            @ModelAttribute ProviderCompareRequestDTO request) {
+        log.info("Comparing providers for product: {}", request.getProduct());
+        
+        return ResponseEntity.ok(comparisonService.compare(request));
+    }
 }
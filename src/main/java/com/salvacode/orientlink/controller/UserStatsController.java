@@ -0,0 +1,40 @@
+package com.salvacode.orientlink.controller;
+
+import com.salvacode.orientlink.dto.UserStatsDTO;
+import com.salvacode.orientlink.service.UserStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST Controller for per-user analytics.
+ * 
+ * Endpoints:
+ * - GET /api/v1/users/{id}/stats: Counts by risk level and sentiment, alerts per provider, activity per day
+ * 
+ * Served from incrementally maintained counters, so the cost does not grow with the history.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*") // Configure properly in production
+public class UserStatsController {
+    
+    private static final int MAX_DAYS = 366;
+    
+    private final UserStatsService statsService;
+    
+    /**
+     * Get a user's dashboard counters.
+     */
+    @GetMapping("/users/{id}/stats")
+    public ResponseEntity<UserStatsDTO> getUserStats(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "30") int days) {
+        log.info("Retrieving stats for user: {}", id);
+        
+        return ResponseEntity.ok(statsService.getStats(id, Math.min(Math.max(days, 1), MAX_DAYS)));
+    }
+}
@@ -0,0 +1,31 @@
+package com.salvacode.orientlink.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * State of an asynchronous analysis job; result is set once it succeeded.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class AnalysisJobDTO {
+    
+    private UUID jobId;
+    
+    private String status; // "QUEUED", "RUNNING", "SUCCEEDED", "FAILED"
+    
+    private int attempts;
+    
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime completedAt;
+    
+    private AnalyzeResponseDTO result;
+    
+    private String error;
+}
@@ -2,6 +2,7 @@ package com.salvacode.orientlink.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +10,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.util.List;
+
 /**
  * Immutable request DTO for analyzing user messages about provider conversations.
  * Contains the message text and optional context about the provider.
@@ -28,6 +31,11 @@ public class AnalyzeRequestDTO{
     
     private String targetLanguage; // "es" or "zh", default opposite of source if null
     
+    // Optional: translate into several languages with one shared analysis (overrides targetLanguage)
+    @Size(max = 5, message = "At most 5 target languages are supported")
+    private List<@NotBlank @Pattern(regexp = "[A-Za-z]{2,3}(-[A-Za-z0-9]{2,8})?",
+            message = "Target languages must be language codes such as \"es\" or \"pt-BR\"") String> targetLanguages;
+    
     private Long providerId; // Optional: link to existing provider profile
     
     @NotNull(message = "User ID is required")
@@ -12,6 +12,7 @@ import lombok.Setter;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Immutable response DTO for message analysis containing translation, interpretation,
@@ -54,6 +55,12 @@ public class AnalyzeResponseDTO {
     
     private Long conversationId; // ID of saved conversation in DB
     
+    private Map<String, String> translations; // Multi-language analysis: translation per target language
+    
+    private Map<String, Long> conversationIds; // Multi-language analysis: saved conversation per target language
+    
+    private String analysisGroupId; // Multi-language analysis: shared by the linked conversation rows
+    
     @Getter
     @Builder
     @NoArgsConstructor
@@ -0,0 +1,40 @@
+package com.salvacode.orientlink.dto;
+
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a user's change feed. Apply it, then ask again with nextToken; while
+ * hasMore is set there are further pages right away.
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class ChangeFeedDTO {
+    
+    private String nextToken; // Opaque: a transaction ID, or one per database with conversation shards
+    
+    private boolean hasMore;
+    
+    private boolean resyncRequired; // The token predates purged deletes: drop local data and sync from 0
+    
+    private List<ConversationHistory> conversations; // Created or updated, current state
+    
+    private List<ProviderProfile> providers; // Created or updated, current state
+    
+    private List<Deletion> deleted;
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Deletion {
+        
+        private String type; // "conversation" or "provider"
+        
+        private Long id;
+    }
+}
@@ -0,0 +1,46 @@
+package com.salvacode.orientlink.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat, read-only row of a conversation history export.
+ * Built directly by a JPQL constructor expression, so rows are never managed entities
+ * and the persistence context does not grow while streaming.
+ */
+@Getter
+@AllArgsConstructor
+public class ConversationExportDTO {
+    
+    private Long id;
+    
+    private String userId;
+    
+    private Long providerId;
+    
+    private LocalDateTime timestamp;
+    
+    private String messageType;
+    
+    private String sourceLanguage;
+    
+    private String targetLanguage;
+    
+    private String originalMessage;
+    
+    private String translatedMessage;
+    
+    private String aiInterpretation;
+    
+    private String riskLevel;
+    
+    private String sentiment;
+    
+    private List<String> alerts;
+    
+    private Map<String, String> suggestedResponses;
+}
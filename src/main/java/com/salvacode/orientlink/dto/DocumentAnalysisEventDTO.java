@@ -0,0 +1,54 @@
+package com.salvacode.orientlink.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * One line of a streamed document analysis: a "chunk" result, in completion order,
+ * or the final "summary" merging all chunks.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentAnalysisEventDTO {
+    
+    public static final String TYPE_CHUNK = "chunk";
+    public static final String TYPE_SUMMARY = "summary";
+    
+    private String type; // "chunk" or "summary"
+    
+    // Chunk results
+    
+    private Integer chunkIndex; // Position of the chunk in the document, from 0
+    
+    private Integer startOffset; // Character offsets of the chunk in the document text
+    
+    private Integer endOffset;
+    
+    private String translatedText;
+    
+    private String summary; // Chunk: what the passage says; summary: overall verdict
+    
+    private String error; // Set instead of the results when the chunk could not be analyzed
+    
+    // Chunk and summary results
+    
+    private List<String> keyTerms;
+    
+    private List<String> alerts; // Summary: alerts of all chunks, de-duplicated
+    
+    private String riskLevel; // "low", "medium", "high"; summary: highest of all chunks
+    
+    // Summary only
+    
+    private Integer chunkCount;
+    
+    private Integer failedChunks;
+}
@@ -0,0 +1,36 @@
+package com.salvacode.orientlink.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Request DTO for analyzing a long document (contract, pro-forma invoice) chunk by chunk.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentAnalyzeRequestDTO {
+    
+    @NotBlank(message = "Document text cannot be empty")
+    @Size(max = 200000, message = "Document text cannot exceed 200000 characters")
+    private String documentText;
+    
+    private String sourceLanguage; // "es" or "zh", default "zh"
+    
+    private String targetLanguage; // "es" or "zh", default "es"
+    
+    @Size(max = 50, message = "Document type cannot exceed 50 characters")
+    private String documentType; // Optional: "contract", "proforma_invoice", ...
+    
+    @NotNull(message = "User ID is required")
+    @NotBlank(message = "User ID cannot be empty")
+    private String userId; // User identifier
+}
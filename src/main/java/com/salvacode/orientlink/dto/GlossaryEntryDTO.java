@@ -0,0 +1,37 @@
+package com.salvacode.orientlink.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A glossary entry: a term and the translation to always use for it.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GlossaryEntryDTO {
+    
+    private Long id; // Set in responses
+    
+    @NotBlank(message = "Term cannot be empty")
+    @Size(max = 200, message = "Term cannot exceed 200 characters")
+    private String term;
+    
+    @NotBlank(message = "Translation cannot be empty")
+    @Size(max = 200, message = "Translation cannot exceed 200 characters")
+    private String translation;
+    
+    @Size(max = 500, message = "Note cannot exceed 500 characters")
+    private String note;
+    
+    private LocalDateTime updatedAt; // Set in responses
+}
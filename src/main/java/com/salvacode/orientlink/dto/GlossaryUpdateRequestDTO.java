@@ -0,0 +1,33 @@
+package com.salvacode.orientlink.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Request DTO for adding or updating glossary entries in bulk, matched by term (case-insensitive).
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GlossaryUpdateRequestDTO {
+    
+    @NotNull(message = "User ID is required")
+    @NotBlank(message = "User ID cannot be empty")
+    private String userId; // User identifier
+    
+    @NotEmpty(message = "Entries cannot be empty")
+    @Size(max = 1000, message = "At most 1000 entries per request")
+    private List<@Valid GlossaryEntryDTO> entries;
+}
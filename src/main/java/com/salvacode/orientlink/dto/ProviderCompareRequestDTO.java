@@ -0,0 +1,39 @@
+package com.salvacode.orientlink.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Query parameters for GET /api/v1/providers/compare.
+ * All filters are optional; weights default to equal importance with certifications at half weight.
+ */
+@Getter
+@Setter
+public class ProviderCompareRequestDTO {
+    
+    private String userId; // Only this user's providers, or all when null
+    
+    private String product; // Substring of the product name
+    
+    private Double maxPrice; // Upper bound on the unit price in USD
+    
+    private Integer maxMoq;
+    
+    private Integer maxDeliveryDays;
+    
+    private String maxRisk; // "low", "medium" or "high"
+    
+    private String certification; // Required certification, e.g. "ISO 9001"
+    
+    private double priceWeight = 1.0;
+    
+    private double moqWeight = 1.0;
+    
+    private double deliveryWeight = 1.0;
+    
+    private double certificationWeight = 0.5;
+    
+    private double riskWeight = 1.0;
+    
+    private int limit = 20;
+}
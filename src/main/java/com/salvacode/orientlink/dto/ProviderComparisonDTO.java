@@ -0,0 +1,32 @@
+package com.salvacode.orientlink.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * One ranked provider in a comparison. Score is in [0, 1], higher is better.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class ProviderComparisonDTO {
+    
+    private Long providerId;
+    
+    private String providerName;
+    
+    private String productName;
+    
+    private double score;
+    
+    private Double priceUsd; // Null when price or currency is unknown
+    
+    private Integer moq;
+    
+    private Integer deliveryTimeDays;
+    
+    private int certificationCount;
+    
+    private String overallRisk;
+}
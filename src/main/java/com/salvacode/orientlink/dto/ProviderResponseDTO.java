@@ -72,5 +72,13 @@ public class ProviderResponseDTO {
         
         @Size(max = 1000, message = "Recommendation cannot exceed 1000 characters")
         private String recommendation; // OpenAI's recommendation
+        
+        private Double pricePercentile; // Share of the product's providers that are cheaper (0..1)
+        
+        private Double moqPercentile; // Share of the product's providers with a lower MOQ (0..1)
+        
+        private Long marketSampleSize; // Providers the percentiles are computed over
+        
+        private List<String> outlierFlags; // e.g. "price_far_below_market", computed locally
     }
 }
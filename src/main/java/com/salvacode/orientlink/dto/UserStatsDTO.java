@@ -0,0 +1,33 @@
+package com.salvacode.orientlink.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Dashboard counters of a user; "unknown" collects conversations or providers without a value.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class UserStatsDTO {
+    
+    private String userId;
+    
+    private long conversations;
+    
+    private long providers;
+    
+    private Map<String, Long> conversationsByRiskLevel;
+    
+    private Map<String, Long> conversationsBySentiment;
+    
+    private Map<Long, Long> alertsByProvider; // Provider ID -> alerts raised in its conversations
+    
+    private Map<String, Long> providersByOverallRisk;
+    
+    private Map<LocalDate, Long> activityByDay; // Conversations per day, days without any omitted
+}
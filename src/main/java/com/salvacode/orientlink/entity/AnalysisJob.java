@@ -0,0 +1,86 @@
+package com.salvacode.orientlink.entity;
+
+import com.salvacode.orientlink.dto.AnalyzeRequestDTO;
+import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Analysis request queued for asynchronous processing by any node's worker pool.
+ *
+ * A job is claimable while QUEUED, or while RUNNING with visibleAt in the past
+ * (the worker that claimed it died or stalled: visibility timeout).
+ */
+@Entity
+@Table(name = "analysis_job", indexes = {
+        @Index(name = "idx_analysis_job_claimable", columnList = "status, visible_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisJob {
+    
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED;
+        
+        public boolean isTerminal() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+    
+    @Id
+    private UUID id; // Random, so job IDs cannot be enumerated
+    
+    @Column(nullable = false)
+    private String userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb", nullable = false)
+    private AnalyzeRequestDTO request;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private AnalyzeResponseDTO result;
+    
+    @Column(length = 1000)
+    private String error; // Last failure
+    
+    @Column(nullable = false)
+    private Integer attempts;
+    
+    @Column(nullable = false)
+    private Integer maxAttempts;
+    
+    @Column(name = "visible_at", nullable = false)
+    private LocalDateTime visibleAt; // Claimable from then on (retry backoff / lease expiry)
+    
+    @Column(length = 100)
+    private String lockedBy; // Node currently running the job
+    
+    @Version
+    private Long version; // Bumped by every claim, so a worker whose lease was taken over cannot complete the job
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column
+    private LocalDateTime completedAt;
+}
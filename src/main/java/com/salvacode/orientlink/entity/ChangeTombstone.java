@@ -0,0 +1,49 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Record of a deleted conversation or provider, or of one handed to another owner, so the
+ * change feed can tell clients to drop their copy. Written by a database trigger (see
+ * db/schema-upgrade.sql), which also catches bulk deletes that bypass JPA, together with
+ * the change_xid column the feed is ordered by (native queries only, not mapped here).
+ */
+@Entity
+@Table(name = "change_tombstone", indexes = {
+        @Index(name = "idx_change_tombstone_user_seq", columnList = "user_id, seq"),
+        @Index(name = "idx_change_tombstone_changed_at", columnList = "changed_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeTombstone {
+    
+    /**
+     * Entity type of the row that records how far tombstones have been purged.
+     */
+    public static final String PURGED_MARKER = "*";
+    
+    @Id
+    private Long seq; // From change_feed_seq, shared with the change_seq columns of the tracked tables
+    
+    @Column(nullable = false, length = 20)
+    private String entityType; // "conversation", "provider" or PURGED_MARKER
+    
+    @Column
+    private Long entityId;
+    
+    @Column(name = "user_id")
+    private String userId;
+    
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
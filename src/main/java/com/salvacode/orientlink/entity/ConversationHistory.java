@@ -1,5 +1,6 @@
 package com.salvacode.orientlink.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -8,15 +9,27 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Entity to store the conversation history between users and Chinese providers.
  * Tracks all messages, translations, and AI interpretations for audit and context.
+ * The table can be hash-partitioned by user_id (see db/partition-conversation-history.sql),
+ * so queries should filter by user wherever they can. With conversation shards enabled a user's
+ * rows live on their own shard (see ConversationShards), apart from the providers, which stay in
+ * the regular database; hence the plain provider ID instead of an association.
  */
 @Entity
-@Table(name = "conversation_history")
+@Table(name = "conversation_history", indexes = {
+        @Index(name = "idx_conversation_history_user_risk", columnList = "user_id, risk_level"),
+        @Index(name = "idx_conversation_history_user_sentiment", columnList = "user_id, sentiment"),
+        @Index(name = "idx_conversation_history_analysis_group", columnList = "analysis_group_id")
+})
 @Getter
 @Setter
 @Builder
@@ -32,9 +45,8 @@ public class ConversationHistory {
     @Column(nullable = false)
     private String userId;
     
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "provider_id")
-    private ProviderProfile provider;
+    @Column(name = "provider_id")
+    private Long providerId; // ProviderProfile ID; no foreign key, the provider may be on another server
     
     @Column(nullable = false, length = 5000)
     private String originalMessage;
@@ -51,11 +63,23 @@ public class ConversationHistory {
     @Column(length = 3000)
     private String aiInterpretation; // OpenAI's business context analysis
     
-    @Column(length = 2000)
-    private String alerts; // Warnings about MOQ, pricing, suspicious terms, etc.
+    @Column(length = 20)
+    private String riskLevel; // "low", "medium", "high"
     
-    @Column(length = 3000)
-    private String suggestedResponses; // JSON array of formal, negotiator, direct responses
+    @Column(length = 20)
+    private String sentiment; // "positive", "neutral", "negative", "urgent"
+    
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(columnDefinition = "text[]")
+    private List<String> alerts; // Warnings about MOQ, pricing, suspicious terms, etc.
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private Map<String, String> suggestedResponses; // formal, negotiator, direct responses
+    
+    @JsonIgnore
+    @Column(columnDefinition = "text")
+    private String rawCompletion; // Full OpenAI JSON, lz4-compressed by Postgres (see schema-upgrade.sql)
     
     @Column(nullable = false)
     private LocalDateTime timestamp;
@@ -63,6 +87,9 @@ public class ConversationHistory {
     @Column(length = 100)
     private String messageType; // "user_to_provider", "provider_to_user", "analysis"
     
+    @Column(length = 36)
+    private String analysisGroupId; // Shared by the rows of one multi-language analysis, one per target language
+    
     @PrePersist
     protected void onCreate() {
         timestamp = LocalDateTime.now();
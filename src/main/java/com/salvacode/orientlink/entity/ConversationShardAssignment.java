@@ -0,0 +1,40 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * The conversation history shard a user's conversations live on, recorded on first write
+ * (placed by hash of the user ID) and changed only by a move between shards.
+ * Kept in the regular database (shard 0) and read there over plain JDBC, so a lookup never
+ * joins a shard's transaction (see ConversationShards).
+ */
+@Entity
+@Table(name = "conversation_shard_assignment", indexes = {
+        @Index(name = "idx_conversation_shard_assignment_shard", columnList = "shard")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationShardAssignment {
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(nullable = false)
+    private boolean moving; // Being copied to another shard: writes wait, reads still go to this shard
+
+    private LocalDateTime updatedAt;
+}
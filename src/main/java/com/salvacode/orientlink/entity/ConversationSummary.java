@@ -0,0 +1,57 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rolling summary of the negotiation between a user and a provider.
+ * Maintained by the server so clients do not have to resend the whole thread as context.
+ */
+@Entity
+@Table(name = "conversation_summary", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_conversation_summary_user_provider", columnNames = {"user_id", "provider_id"})
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String userId;
+    
+    @Column(name = "provider_id", nullable = false)
+    private Long providerId;
+    
+    @Column(columnDefinition = "text")
+    private String summary;
+    
+    @Column(nullable = false)
+    private Long lastConversationId; // Newest conversation folded into the summary
+    
+    @Column(nullable = false)
+    private Integer messageCount;
+    
+    @Version
+    private Long version; // Concurrent refreshes for the same pair retry instead of overwriting
+    
+    @Column
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
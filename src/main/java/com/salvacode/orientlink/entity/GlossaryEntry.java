@@ -0,0 +1,58 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's preferred translation of a product term (SKU name, material, Incoterm),
+ * injected into analysis prompts when the term occurs in the message.
+ *
+ * Deleted entries are kept as tombstones so nodes syncing changes by updated_at see the removal.
+ */
+@Entity
+@Table(name = "glossary_entry", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_glossary_entry_user_term", columnNames = {"user_id", "term"})
+}, indexes = {
+        @Index(name = "idx_glossary_entry_user_updated", columnList = "user_id, updated_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GlossaryEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+    
+    @Column(nullable = false, length = 200)
+    private String term; // As written in messages, e.g. "不锈钢" or "FOB"
+    
+    @Column(nullable = false, length = 200)
+    private String translation;
+    
+    @Column(length = 500)
+    private String note; // Optional usage hint passed to the model
+    
+    @Column(nullable = false)
+    private boolean deleted;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,54 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of a request sent with an Idempotency-Key header, kept until it expires so
+ * retries get the stored response instead of triggering the work again.
+ */
+@Entity
+@Table(name = "idempotency_record", indexes = {
+        @Index(name = "idx_idempotency_record_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+    
+    @Id
+    @Column(length = 64)
+    private String recordKey; // SHA-256 of endpoint, user ID and Idempotency-Key (see IdempotencyService)
+    
+    @Column(nullable = false, length = 64)
+    private String requestHash; // SHA-256 of the request body; a reused key with another body is rejected
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+    
+    @Column(columnDefinition = "text")
+    private String responseBody; // JSON, set once completed
+    
+    @Column
+    private LocalDateTime lockedUntil; // Lease of the node computing the response; another node takes over after it
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
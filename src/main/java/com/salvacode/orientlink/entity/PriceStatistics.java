@@ -0,0 +1,51 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Market distribution of unit price (USD) and MOQ for one product, shared by all nodes.
+ * Histograms are serialized {@link com.salvacode.orientlink.util.LogHistogram}s.
+ */
+@Entity
+@Table(name = "price_statistics", indexes = {
+        @Index(name = "idx_price_statistics_updated_at", columnList = "updated_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceStatistics {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true, length = 200)
+    private String productKey; // Normalized product name
+    
+    @Column(columnDefinition = "bytea")
+    private byte[] priceHistogram;
+    
+    @Column(columnDefinition = "bytea")
+    private byte[] moqHistogram;
+    
+    @Version
+    private Long version; // Nodes flushing deltas for the same product retry instead of overwriting
+    
+    @Column
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -1,5 +1,6 @@
 package com.salvacode.orientlink.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -8,9 +9,10 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,7 +20,11 @@ import java.util.List;
  * Contains business information like MOQ, pricing, certifications, and delivery time.
  */
 @Entity
-@Table(name = "provider_profile")
+@Table(name = "provider_profile", indexes = {
+        @Index(name = "idx_provider_profile_updated_at", columnList = "updated_at")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_provider_profile_canonical_key", columnNames = "canonical_key")
+})
 @Getter
 @Setter
 @Builder
@@ -40,6 +46,9 @@ public class ProviderProfile {
     @Column(length = 1000)
     private String alibabaUrl;
     
+    @Column(name = "canonical_key", length = 300)
+    private String canonicalKey; // See AlibabaUrlCanonicalizer; null only on rows not yet deduplicated
+    
     @Column(length = 500)
     private String productName;
     
@@ -52,8 +61,9 @@ public class ProviderProfile {
     @Column(length = 50)
     private String currency; // "USD", "CNY", etc.
     
-    @Column(length = 1000)
-    private String certifications; // JSON array or comma-separated
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(columnDefinition = "text[]")
+    private List<String> certifications;
     
     @Column
     private Integer deliveryTimeDays;
@@ -61,8 +71,9 @@ public class ProviderProfile {
     @Column(length = 3000)
     private String additionalInfo; // Any extra info extracted by OpenAI
     
-    @Column(length = 1000)
-    private String riskAssessment; // OpenAI's risk analysis
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private ProviderRiskAssessment riskAssessment; // OpenAI's risk analysis
     
     @Column(nullable = false)
     private LocalDateTime createdAt;
@@ -70,9 +81,9 @@ public class ProviderProfile {
     @Column
     private LocalDateTime updatedAt;
     
-    @OneToMany(mappedBy = "provider", cascade = CascadeType.ALL, orphanRemoval = true)
-    @Builder.Default
-    private List<ConversationHistory> conversations = new ArrayList<>();
+    @JsonIgnore
+    @Column
+    private LocalDateTime refreshClaimedUntil; // Set while a node re-extracts the profile in the background
     
     @PrePersist
     protected void onCreate() {
@@ -0,0 +1,30 @@
+package com.salvacode.orientlink.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Risk assessment extracted by OpenAI, stored as jsonb on {@link ProviderProfile}.
+ * Equality is value-based so Hibernate only updates the column when it really changed.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ProviderRiskAssessment implements Serializable {
+    
+    private String overallRisk; // "low", "medium", "high"
+    
+    private List<String> warnings;
+    
+    private String recommendation;
+}
@@ -0,0 +1,41 @@
+package com.salvacode.orientlink.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One counter of a user's analytics, e.g. conversations with risk level "high" or alerts
+ * raised about a provider. Maintained by database triggers on every conversation and
+ * provider change (see db/schema-upgrade.sql), in the same transaction as the change.
+ */
+@Entity
+@Table(name = "user_stat", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_stat_bucket", columnNames = {"user_id", "dimension", "bucket"})
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStat {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+    
+    @Column(nullable = false, length = 30)
+    private String dimension; // "conversations", "risk_level", "sentiment", "day", "provider_alerts", "providers", "provider_risk"; "backfill" marks a completed backfill (user "")
+    
+    @Column(nullable = false, length = 100)
+    private String bucket; // Risk level, sentiment, "yyyy-MM-dd", provider ID; "" for plain totals
+    
+    @Column(nullable = false)
+    private long total;
+}
@@ -0,0 +1,10 @@
+package com.salvacode.orientlink.event;
+
+import com.salvacode.orientlink.entity.ConversationHistory;
+
+/**
+ * Published whenever a conversation history row is saved, once its shard transaction has
+ * committed (see ConversationShards), so listeners run against the regular database.
+ */
+public record ConversationSavedEvent(ConversationHistory conversation, Long providerId) {
+}
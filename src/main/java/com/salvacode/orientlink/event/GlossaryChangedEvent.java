@@ -0,0 +1,7 @@
+package com.salvacode.orientlink.event;
+
+/**
+ * Published when a user's glossary entries are added, updated or deleted.
+ */
+public record GlossaryChangedEvent(String userId) {
+}
@@ -0,0 +1,9 @@
+package com.salvacode.orientlink.event;
+
+/**
+ * Published when another application node reports a provider change through
+ * Postgres NOTIFY. A null providerId means changes may have been missed and all
+ * derived provider state should be reloaded.
+ */
+public record ProviderProfileInvalidatedEvent(Long providerId) {
+}
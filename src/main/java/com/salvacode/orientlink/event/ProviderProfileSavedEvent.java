@@ -0,0 +1,10 @@
+package com.salvacode.orientlink.event;
+
+import com.salvacode.orientlink.entity.ProviderProfile;
+
+/**
+ * Published whenever a provider profile is created or updated.
+ * Listeners that keep derived in-memory state (indexes, caches) react after commit.
+ */
+public record ProviderProfileSavedEvent(ProviderProfile provider) {
+}
@@ -0,0 +1,13 @@
+package com.salvacode.orientlink.exception;
+
+/**
+ * A request parameter or body value was rejected; answered with 400.
+ * Thrown explicitly where input is validated, so internal IllegalArgumentExceptions
+ * still surface as server errors.
+ */
+public class BadRequestException extends RuntimeException {
+    
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
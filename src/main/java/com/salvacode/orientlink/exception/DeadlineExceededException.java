@@ -0,0 +1,11 @@
+package com.salvacode.orientlink.exception;
+
+/**
+ * The request's deadline passed before (or while) its work was done; answered with 504.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
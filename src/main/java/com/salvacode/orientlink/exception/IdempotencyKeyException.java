@@ -0,0 +1,19 @@
+package com.salvacode.orientlink.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * An Idempotency-Key cannot be honoured (409): reused with a different request body,
+ * or the original request is still running elsewhere (retry later). The message tells which.
+ */
+@Getter
+public class IdempotencyKeyException extends RuntimeException {
+    
+    private final HttpStatus status;
+    
+    public IdempotencyKeyException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
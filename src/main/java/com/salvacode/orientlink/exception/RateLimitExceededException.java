@@ -0,0 +1,17 @@
+package com.salvacode.orientlink.exception;
+
+import lombok.Getter;
+
+/**
+ * A user exceeded their OpenAI request rate or queue share; answered with 429.
+ */
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,142 @@
+package com.salvacode.orientlink.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Actuator endpoint (/actuator/jfr) managing Java Flight Recorder recordings of this node.
+ *
+ * - GET /actuator/jfr: list recordings
+ * - POST /actuator/jfr/{name}: start a recording (settings "default" or "profile", maxAge, maxSize in bytes)
+ * - GET /actuator/jfr/{name}: download what the recording holds so far (.jfr, open with JDK Mission Control)
+ * - DELETE /actuator/jfr/{name}: stop and discard it
+ *
+ * Recordings are bounded by maxAge/maxSize, so one can run continuously against live traffic.
+ * With orientlink.jfr.continuous enabled, a "continuous" recording starts with the application.
+ */
+@Component
+@Endpoint(id = "jfr")
+@Slf4j
+public class JfrEndpoint {
+
+    private static final String CONTINUOUS = "continuous";
+
+    private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+
+    @Value("${orientlink.jfr.continuous:false}")
+    private boolean continuous;
+
+    @Value("${orientlink.jfr.settings:default}")
+    private String defaultSettings;
+
+    @Value("${orientlink.jfr.max-age:1h}")
+    private Duration defaultMaxAge;
+
+    @Value("${orientlink.jfr.max-size:268435456}")
+    private long defaultMaxSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startContinuous() {
+        if (continuous) {
+            start(CONTINUOUS, null, null, null);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        recordings.values().forEach(Recording::close);
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> list() {
+        return recordings.entrySet().stream()
+                .map(entry -> describe(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Selector String name, @Nullable String settings,
+                                                  @Nullable Duration maxAge, @Nullable Long maxSize) {
+        Recording running = recordings.get(name);
+        if (running != null && running.getState() == RecordingState.RUNNING) {
+            String message = "Recording " + name + " is already running";
+            throw new InvalidEndpointRequestException(message, message);
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings != null ? settings : defaultSettings);
+        } catch (IOException | ParseException e) {
+            throw new InvalidEndpointRequestException("Unknown JFR settings: " + settings, e.getMessage());
+        }
+        Recording recording = new Recording(configuration);
+        recording.setName("orientlink-" + name);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge != null ? maxAge : defaultMaxAge);
+        recording.setMaxSize(maxSize != null ? maxSize : defaultMaxSize);
+        recording.start();
+        if (running != null) {
+            running.close();
+        }
+        recordings.put(name, recording);
+        log.info("Started JFR recording {} with settings {}", name, configuration.getName());
+        return describe(name, recording);
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public Resource dump(@Selector String name) throws IOException {
+        Recording recording = recordings.get(name);
+        if (recording == null) {
+            return null; // 404
+        }
+        InputStream data = recording.getStream(null, null);
+        return data != null ? new InputStreamResource(data) : null; // Nothing recorded yet
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop(@Selector String name) {
+        Recording recording = recordings.remove(name);
+        if (recording == null) {
+            return null; // 404
+        }
+        Map<String, Object> description = describe(name, recording);
+        recording.close();
+        log.info("Stopped JFR recording {}", name);
+        return description;
+    }
+
+    private static Map<String, Object> describe(String name, Recording recording) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("name", name);
+        description.put("state", recording.getState().name());
+        description.put("startTime", recording.getStartTime());
+        description.put("size", recording.getSize());
+        description.put("maxAge", recording.getMaxAge());
+        description.put("maxSize", recording.getMaxSize());
+        return description;
+    }
+}
@@ -0,0 +1,93 @@
+package com.salvacode.orientlink.jfr;
+
+import com.salvacode.orientlink.context.RequestContext;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one OpenAI completion, from entering the fair-share queue
+ * until the response (or failure) arrives.
+ */
+@Name("orientlink.OpenAiCall")
+@Label("OpenAI Call")
+@Category({"OrientLink", "Request Pipeline"})
+@Description("An OpenAI chat completion including the wait for a scheduler slot")
+@StackTrace(false)
+public class OpenAiCallEvent extends Event {
+    
+    @Label("Request ID")
+    String requestId;
+    
+    @Label("User Hash")
+    String userHash;
+    
+    @Label("Operation")
+    String operation;
+    
+    @Label("Priority")
+    String priority;
+    
+    @Label("Model")
+    String model;
+    
+    @Label("Prompt Characters")
+    long promptChars;
+    
+    @Label("Estimated Tokens")
+    @Description("Prompt plus completion budget, as charged by the scheduler")
+    long estimatedTokens;
+    
+    @Label("Prompt Tokens")
+    long promptTokens;
+    
+    @Label("Completion Tokens")
+    long completionTokens;
+    
+    @Label("Queue Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueTime;
+    
+    @Label("Succeeded")
+    boolean succeeded;
+    
+    public static OpenAiCallEvent start(String operation, String model, long promptChars, long estimatedTokens) {
+        OpenAiCallEvent event = new OpenAiCallEvent();
+        event.operation = operation;
+        event.model = model;
+        event.promptChars = promptChars;
+        event.estimatedTokens = estimatedTokens;
+        event.begin();
+        return event;
+    }
+    
+    /**
+     * Mark the end of the wait for a scheduler slot.
+     */
+    public void dispatched(long queueTime) {
+        this.queueTime = queueTime;
+    }
+    
+    /**
+     * Mark the call successful, with the token usage reported by OpenAI.
+     */
+    public void completed(long promptTokens, long completionTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.succeeded = true;
+    }
+    
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            this.requestId = RequestContext.getRequestId();
+            this.userHash = UserHash.of(RequestContext.getUserId());
+            this.priority = RequestContext.getPriority().name();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.salvacode.orientlink.jfr;
+
+import com.salvacode.orientlink.context.RequestContext;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one stage of serving a request (provider lookup, prompt
+ * context, JSON parsing, persisting, waiting for a pooled connection...).
+ *
+ * Events are only timed and committed while a recording that enables them is running,
+ * so instrumented code costs next to nothing otherwise.
+ */
+@Name("orientlink.PipelineStage")
+@Label("Pipeline Stage")
+@Category({"OrientLink", "Request Pipeline"})
+@Description("Time spent in one stage of handling a request")
+@StackTrace(false)
+public class PipelineStageEvent extends Event {
+    
+    @Label("Request ID")
+    String requestId;
+    
+    @Label("User Hash")
+    String userHash;
+    
+    @Label("Stage")
+    String stage;
+    
+    @Label("Input Size")
+    @Description("Size of the stage's input, e.g. characters of the message or raw completion")
+    long inputSize;
+    
+    @Label("Output Size")
+    @Description("Size of the stage's output, e.g. rows or characters produced")
+    long outputSize;
+    
+    /**
+     * Begin timing a stage; call {@link #finish} when it is done.
+     */
+    public static PipelineStageEvent start(String stage) {
+        PipelineStageEvent event = new PipelineStageEvent();
+        event.stage = stage;
+        event.begin();
+        return event;
+    }
+    
+    public void finish() {
+        finish(0, 0);
+    }
+    
+    public void finish(long inputSize, long outputSize) {
+        end();
+        if (shouldCommit()) {
+            this.requestId = RequestContext.getRequestId();
+            this.userHash = UserHash.of(RequestContext.getUserId());
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.salvacode.orientlink.jfr;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Short, stable pseudonym of a user ID, so recordings can group requests by user
+ * without carrying the ID itself.
+ */
+final class UserHash {
+    
+    private UserHash() {
+    }
+    
+    static String of(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(userId.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
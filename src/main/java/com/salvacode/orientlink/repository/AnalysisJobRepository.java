@@ -0,0 +1,62 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.AnalysisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for the Postgres-backed analysis job queue.
+ */
+@Repository
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, UUID> {
+    
+    /**
+     * Atomically claim up to {@code limit} claimable jobs for this node, oldest first.
+     * SKIP LOCKED lets workers on every node claim concurrently without blocking or
+     * double-claiming; the claimed jobs stay invisible to others until the lease runs out.
+     * 
+     * @return IDs of the claimed jobs
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE analysis_job SET status = 'RUNNING', attempts = attempts + 1, locked_by = :node,
+                   visible_at = :leaseUntil, version = version + 1
+            WHERE id IN (
+                SELECT id FROM analysis_job
+                WHERE status IN ('QUEUED', 'RUNNING') AND visible_at <= :now AND attempts < max_attempts
+                ORDER BY visible_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING id
+            """, nativeQuery = true)
+    List<UUID> claim(@Param("node") String node, @Param("now") LocalDateTime now,
+                     @Param("leaseUntil") LocalDateTime leaseUntil, @Param("limit") int limit);
+    
+    /**
+     * Fail jobs whose last attempt's lease ran out without completing.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE analysis_job SET status = 'FAILED', completed_at = :now, locked_by = NULL,
+                   error = COALESCE(error, 'Attempts exhausted'), version = version + 1
+            WHERE status = 'RUNNING' AND visible_at <= :now AND attempts >= max_attempts
+            """, nativeQuery = true)
+    int failAbandoned(@Param("now") LocalDateTime now);
+    
+    /**
+     * Remove finished jobs older than the retention period.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from AnalysisJob j where j.completedAt < :before")
+    int deleteCompletedBefore(@Param("before") LocalDateTime before);
+}
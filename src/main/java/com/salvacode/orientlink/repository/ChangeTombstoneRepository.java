@@ -0,0 +1,124 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.ChangeTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for delete tombstones, and for reading the change feed across the tracked tables.
+ */
+@Repository
+public interface ChangeTombstoneRepository extends JpaRepository<ChangeTombstone, Long> {
+    
+    /**
+     * A user's changes in transactions after {@code since}, in transaction order:
+     * conversations and providers created or updated, and tombstones of deleted ones. Each
+     * branch is a range scan of its (user_id, change_xid) index, merged by the planner.
+     * Only transactions older than the oldest one still running are returned: every
+     * transaction below that bound has ended, so no change can appear behind a token later,
+     * however long a writer ran. A long-running transaction holds the feed back meanwhile.
+     * The conversation and provider changes can be asked for separately, for a user whose
+     * conversations live on a shard of their own (see ConversationShards).
+     */
+    @Query(value = """
+            SELECT kind, entityId, deleted, CAST(CAST(xid AS text) AS bigint) AS xid FROM (
+                SELECT 'conversation' AS kind, id AS entityId, false AS deleted, change_xid AS xid,
+                    change_seq AS seq
+                FROM conversation_history WHERE CAST(:conversations AS boolean)
+                    AND user_id = :userId AND change_xid > CAST(CAST(:since AS text) AS xid8)
+                UNION ALL
+                SELECT 'provider', id, false, change_xid, change_seq
+                FROM provider_profile WHERE CAST(:providers AS boolean)
+                    AND user_id = :userId AND change_xid > CAST(CAST(:since AS text) AS xid8)
+                UNION ALL
+                SELECT entity_type, entity_id, true, change_xid, seq
+                FROM change_tombstone WHERE user_id = :userId AND change_xid > CAST(CAST(:since AS text) AS xid8)
+                    AND CASE entity_type WHEN 'conversation' THEN CAST(:conversations AS boolean)
+                                         ELSE CAST(:providers AS boolean) END
+            ) changes
+            WHERE xid < pg_snapshot_xmin(pg_current_snapshot())
+            ORDER BY changes.xid, seq
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ChangeView> findChanges(@Param("userId") String userId, @Param("since") long since,
+                                 @Param("conversations") boolean conversations,
+                                 @Param("providers") boolean providers,
+                                 @Param("limit") int limit);
+    
+    /**
+     * All of a user's changes made by one transaction, for a transaction too large for a page.
+     */
+    @Query(value = """
+            SELECT kind, entityId, deleted, CAST(CAST(xid AS text) AS bigint) AS xid FROM (
+                SELECT 'conversation' AS kind, id AS entityId, false AS deleted, change_xid AS xid,
+                    change_seq AS seq
+                FROM conversation_history WHERE CAST(:conversations AS boolean)
+                    AND user_id = :userId AND change_xid = CAST(CAST(:xid AS text) AS xid8)
+                UNION ALL
+                SELECT 'provider', id, false, change_xid, change_seq
+                FROM provider_profile WHERE CAST(:providers AS boolean)
+                    AND user_id = :userId AND change_xid = CAST(CAST(:xid AS text) AS xid8)
+                UNION ALL
+                SELECT entity_type, entity_id, true, change_xid, seq
+                FROM change_tombstone WHERE user_id = :userId AND change_xid = CAST(CAST(:xid AS text) AS xid8)
+                    AND CASE entity_type WHEN 'conversation' THEN CAST(:conversations AS boolean)
+                                         ELSE CAST(:providers AS boolean) END
+            ) changes
+            ORDER BY seq
+            """, nativeQuery = true)
+    List<ChangeView> findTransactionChanges(@Param("userId") String userId, @Param("xid") long xid,
+                                            @Param("conversations") boolean conversations,
+                                            @Param("providers") boolean providers);
+    
+    /**
+     * Highest tombstone number older than {@code before}, or null if none.
+     */
+    @Query("select max(t.seq) from ChangeTombstone t where t.changedAt < :before and t.entityType <> '*'")
+    Long findMaxSeqBefore(@Param("before") LocalDateTime before);
+    
+    /**
+     * Transaction ID up to which tombstones have been purged, from the purge marker
+     * (see {@link ChangeTombstone#PURGED_MARKER}); null if none were purged yet.
+     */
+    @Query(value = "SELECT CAST(CAST(change_xid AS text) AS bigint) FROM change_tombstone "
+            + "WHERE entity_type = '*' ORDER BY seq LIMIT 1", nativeQuery = true)
+    Long findPurgedUpToXid();
+    
+    /**
+     * Highest transaction ID among tombstones numbered up to {@code seq}, or null if none.
+     */
+    @Query(value = "SELECT CAST(CAST(max(change_xid) AS text) AS bigint) FROM change_tombstone WHERE seq <= :seq",
+            nativeQuery = true)
+    Long findMaxXidUpTo(@Param("seq") long seq);
+    
+    @Modifying
+    @Query("delete from ChangeTombstone t where t.seq <= :seq")
+    int deleteUpTo(@Param("seq") long seq);
+    
+    /**
+     * Record that tombstones up to {@code seq}, of transactions up to {@code xid}, were
+     * purged; a no-op if another node just did.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO change_tombstone (seq, entity_type, changed_at, change_xid) "
+            + "VALUES (:seq, '*', :changedAt, CAST(CAST(:xid AS text) AS xid8)) "
+            + "ON CONFLICT (seq) DO NOTHING", nativeQuery = true)
+    int insertPurgedMarker(@Param("seq") long seq, @Param("changedAt") LocalDateTime changedAt,
+                           @Param("xid") long xid);
+    
+    /**
+     * Row of the change feed: what changed and the transaction that changed it.
+     */
+    interface ChangeView {
+        String getKind();
+        Long getEntityId();
+        boolean getDeleted();
+        Long getXid();
+    }
+}
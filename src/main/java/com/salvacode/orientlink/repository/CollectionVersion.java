@@ -0,0 +1,14 @@
+package com.salvacode.orientlink.repository;
+
+/**
+ * Cheap aggregate that changes whenever a collection query's result would:
+ * row count, newest modification (epoch millis) and a checksum over foreign keys.
+ */
+public interface CollectionVersion {
+    
+    long getTotal();
+    
+    Long getLastModified();
+    
+    Long getChecksum();
+}
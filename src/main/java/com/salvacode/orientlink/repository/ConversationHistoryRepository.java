@@ -1,10 +1,19 @@
 package com.salvacode.orientlink.repository;
 
+import com.salvacode.orientlink.dto.ConversationExportDTO;
 import com.salvacode.orientlink.entity.ConversationHistory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for ConversationHistory entity.
@@ -23,6 +32,12 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
      */
     List<ConversationHistory> findByUserIdAndProviderIdOrderByTimestampDesc(String userId, Long providerId);
     
+    /**
+     * Conversations between a user and a provider newer than a given ID, oldest first.
+     */
+    List<ConversationHistory> findByUserIdAndProviderIdAndIdGreaterThanOrderByIdAsc(
+            String userId, Long providerId, Long afterId, Pageable pageable);
+    
     /**
      * Find recent conversations for a user (last N days).
      */
@@ -33,4 +48,130 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
      * Find all conversations by message type (e.g., "analysis", "user_to_provider").
      */
     List<ConversationHistory> findByMessageTypeOrderByTimestampDesc(String messageType);
+    
+    /**
+     * Filter a user's conversations by risk level, sentiment and alert text in the database.
+     * Every filter is optional; the alert filter is a case-insensitive substring match on any alert,
+     * evaluated on the newline-joined alerts so the trigram index in db/schema-upgrade.sql applies.
+     */
+    @Query(value = """
+            SELECT * FROM conversation_history c
+            WHERE c.user_id = :userId
+              AND (CAST(:providerId AS bigint) IS NULL OR c.provider_id = :providerId)
+              AND (CAST(:riskLevel AS text) IS NULL OR c.risk_level = :riskLevel)
+              AND (CAST(:sentiment AS text) IS NULL OR c.sentiment = :sentiment)
+              AND (CAST(:alert AS text) IS NULL
+                   OR orientlink_alerts_text(c.alerts) ILIKE '%' || :alert || '%')
+            ORDER BY c.timestamp DESC
+            """, nativeQuery = true)
+    List<ConversationHistory> findFiltered(@Param("userId") String userId,
+                                           @Param("providerId") Long providerId,
+                                           @Param("riskLevel") String riskLevel,
+                                           @Param("sentiment") String sentiment,
+                                           @Param("alert") String alert);
+    
+    /**
+     * Version of the result of {@link #findFiltered} (all filters optional), for ETags.
+     * Rows carry only their provider's ID, so the providers' own updates do not change it.
+     */
+    @Query(value = """
+            SELECT count(*) AS total,
+                   CAST(COALESCE(EXTRACT(EPOCH FROM max(c.timestamp)) * 1000, 0) AS bigint) AS lastModified,
+                   COALESCE(sum(c.provider_id), 0) AS checksum
+            FROM conversation_history c
+            WHERE c.user_id = :userId
+              AND (CAST(:providerId AS bigint) IS NULL OR c.provider_id = :providerId)
+              AND (CAST(:riskLevel AS text) IS NULL OR c.risk_level = :riskLevel)
+              AND (CAST(:sentiment AS text) IS NULL OR c.sentiment = :sentiment)
+              AND (CAST(:alert AS text) IS NULL
+                   OR orientlink_alerts_text(c.alerts) ILIKE '%' || :alert || '%')
+            """, nativeQuery = true)
+    CollectionVersion findFilteredVersion(@Param("userId") String userId,
+                                          @Param("providerId") Long providerId,
+                                          @Param("riskLevel") String riskLevel,
+                                          @Param("sentiment") String sentiment,
+                                          @Param("alert") String alert);
+    
+    /**
+     * Forward-only cursor over a user's conversations for export.
+     * Must be consumed inside a read-only transaction; Postgres only honours the fetch size
+     * with auto-commit off, so rows arrive in batches instead of all at once.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.salvacode.orientlink.dto.ConversationExportDTO(
+                c.id, c.userId, c.providerId, c.timestamp, c.messageType,
+                c.sourceLanguage, c.targetLanguage, c.originalMessage, c.translatedMessage,
+                c.aiInterpretation, c.riskLevel, c.sentiment, c.alerts, c.suggestedResponses)
+            from ConversationHistory c
+            where c.userId = :userId
+              and (:providerId is null or c.providerId = :providerId)
+              and c.timestamp >= :from and c.timestamp < :to
+            order by c.timestamp
+            """)
+    Stream<ConversationExportDTO> streamForExport(@Param("userId") String userId,
+                                                  @Param("providerId") Long providerId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to);
+    
+    /**
+     * Move conversations of merged duplicate providers onto the surviving provider.
+     */
+    @Modifying
+    @Query(value = "UPDATE conversation_history SET provider_id = :targetId WHERE provider_id IN (:sourceIds)",
+            nativeQuery = true)
+    int reassignProvider(@Param("sourceIds") List<Long> sourceIds, @Param("targetId") Long targetId);
+    
+    /**
+     * Count a user's conversations per risk level without loading rows.
+     */
+    @Query("select c.riskLevel as bucket, count(c) as total from ConversationHistory c "
+            + "where c.userId = :userId group by c.riskLevel")
+    List<BucketCount> countByRiskLevel(@Param("userId") String userId);
+    
+    /**
+     * Count a user's conversations per sentiment without loading rows.
+     */
+    @Query("select c.sentiment as bucket, count(c) as total from ConversationHistory c "
+            + "where c.userId = :userId group by c.sentiment")
+    List<BucketCount> countBySentiment(@Param("userId") String userId);
+    
+    /**
+     * Keyset-paginated scan of the text indexed for retrieval, for conversations saved since
+     * the given time. Of a multi-language analysis only the first row is returned.
+     * Product names are looked up separately, providers may live in another database.
+     */
+    @Query("select c.id as id, c.userId as userId, c.providerId as providerId, "
+            + "c.originalMessage as originalMessage, c.translatedMessage as translatedMessage, "
+            + "c.aiInterpretation as aiInterpretation "
+            + "from ConversationHistory c "
+            + "where c.id > :afterId and c.timestamp >= :since and (c.analysisGroupId is null or c.id = "
+            + "(select min(g.id) from ConversationHistory g where g.analysisGroupId = c.analysisGroupId)) "
+            + "order by c.id")
+    List<RetrievalView> findRetrievalViewsAfter(@Param("afterId") Long afterId,
+                                                @Param("since") LocalDateTime since,
+                                                Pageable pageable);
+    
+    /**
+     * Projection with just the fields indexed for retrieval.
+     */
+    interface RetrievalView {
+        Long getId();
+        String getUserId();
+        Long getProviderId();
+        String getOriginalMessage();
+        String getTranslatedMessage();
+        String getAiInterpretation();
+    }
+    
+    /**
+     * Result row of a grouped count.
+     */
+    interface BucketCount {
+        String getBucket();
+        long getTotal();
+    }
 }
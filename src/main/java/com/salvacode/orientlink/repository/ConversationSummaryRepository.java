@@ -0,0 +1,31 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for ConversationSummary entity.
+ */
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+    
+    /**
+     * Find the rolling summary for a user/provider pair.
+     */
+    Optional<ConversationSummary> findByUserIdAndProviderId(String userId, Long providerId);
+    
+    /**
+     * Drop summaries of merged duplicate providers; reassigned, they would collide with the
+     * surviving provider's summary on (user_id, provider_id).
+     */
+    @Modifying
+    @Query("delete from ConversationSummary s where s.providerId in :providerIds")
+    int deleteByProviderIdIn(@Param("providerIds") List<Long> providerIds);
+}
@@ -0,0 +1,33 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.GlossaryEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for GlossaryEntry entity.
+ */
+@Repository
+public interface GlossaryEntryRepository extends JpaRepository<GlossaryEntry, Long> {
+    
+    /**
+     * Live entries of a user, ordered by term.
+     */
+    List<GlossaryEntry> findByUserIdAndDeletedFalseOrderByTerm(String userId);
+    
+    /**
+     * Entries (tombstones included) changed since the given time, for incremental recompilation.
+     */
+    List<GlossaryEntry> findByUserIdAndUpdatedAtGreaterThanEqual(String userId, LocalDateTime since);
+    
+    /**
+     * Entry for a term, whatever its case and whether deleted or not.
+     */
+    Optional<GlossaryEntry> findFirstByUserIdAndTermIgnoreCase(String userId, String term);
+    
+    long countByUserIdAndDeletedFalse(String userId);
+}
@@ -0,0 +1,76 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository for idempotency records. Every state change is a single conditional
+ * statement, so concurrent requests on any node agree on who does the work.
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    
+    /**
+     * Claim a new key.
+     * 
+     * @return 1 if this caller inserted the record and must do the work, 0 if it already exists
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_record "
+            + "(record_key, request_hash, status, locked_until, created_at, expires_at) "
+            + "VALUES (:recordKey, :requestHash, 'IN_PROGRESS', :lockedUntil, :now, :expiresAt) "
+            + "ON CONFLICT (record_key) DO NOTHING", nativeQuery = true)
+    int tryInsert(@Param("recordKey") String recordKey, @Param("requestHash") String requestHash,
+                  @Param("lockedUntil") LocalDateTime lockedUntil, @Param("now") LocalDateTime now,
+                  @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * Take over a record whose owner's lease ran out, or which expired.
+     * 
+     * @return 1 if this caller took it over and must do the work
+     */
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.status = :inProgress, r.requestHash = :requestHash, "
+            + "r.responseBody = null, r.lockedUntil = :lockedUntil, r.createdAt = :now, r.expiresAt = :expiresAt "
+            + "where r.recordKey = :recordKey and (r.expiresAt < :now "
+            + "or (r.status = :inProgress and r.lockedUntil < :now))")
+    int tryTakeOver(@Param("recordKey") String recordKey, @Param("requestHash") String requestHash,
+                    @Param("inProgress") IdempotencyRecord.Status inProgress,
+                    @Param("lockedUntil") LocalDateTime lockedUntil, @Param("now") LocalDateTime now,
+                    @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * Store the response of a finished request.
+     */
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.status = :completed, r.responseBody = :responseBody, "
+            + "r.lockedUntil = null where r.recordKey = :recordKey")
+    int complete(@Param("recordKey") String recordKey, @Param("responseBody") String responseBody,
+                 @Param("completed") IdempotencyRecord.Status completed);
+    
+    /**
+     * Release a key whose request failed, so the next retry runs it again.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.recordKey = :recordKey and r.status = :inProgress")
+    int release(@Param("recordKey") String recordKey, @Param("inProgress") IdempotencyRecord.Status inProgress);
+    
+    /**
+     * Remove expired records.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
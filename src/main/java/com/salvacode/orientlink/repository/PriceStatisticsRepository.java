@@ -0,0 +1,23 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.PriceStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for per-product price and MOQ distributions.
+ */
+@Repository
+public interface PriceStatisticsRepository extends JpaRepository<PriceStatistics, Long> {
+    
+    Optional<PriceStatistics> findByProductKey(String productKey);
+    
+    /**
+     * Statistics changed since the given time (including by other nodes).
+     */
+    List<PriceStatistics> findByUpdatedAtAfter(LocalDateTime since);
+}
@@ -1,8 +1,15 @@
 package com.salvacode.orientlink.repository;
 
 import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.entity.ProviderRiskAssessment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,18 +26,138 @@ public interface ProviderProfileRepository extends JpaRepository<ProviderProfile
     List<ProviderProfile> findByUserIdOrderByCreatedAtDesc(String userId);
     
     /**
-     * Find a provider by Alibaba URL (for duplicate detection).
+     * Find a provider by Alibaba URL (fallback for rows without a canonical key yet).
      */
-    Optional<ProviderProfile> findByAlibabaUrl(String alibabaUrl);
+    Optional<ProviderProfile> findFirstByAlibabaUrlOrderByUpdatedAtDesc(String alibabaUrl);
     
     /**
-     * Find providers by name (partial match, case-insensitive).
+     * Find a provider by canonical URL key (for duplicate detection).
      */
-    List<ProviderProfile> findByProviderNameContainingIgnoreCaseOrderByCreatedAtDesc(String name);
+    Optional<ProviderProfile> findByCanonicalKey(String canonicalKey);
     
     /**
      * Find all providers for a user with a specific product name.
      */
     List<ProviderProfile> findByUserIdAndProductNameContainingIgnoreCaseOrderByCreatedAtDesc(
             String userId, String productName);
+    
+    /**
+     * Find a user's providers by the overall risk stored in the jsonb risk assessment.
+     */
+    @Query(value = "SELECT * FROM provider_profile p WHERE p.user_id = :userId "
+            + "AND p.risk_assessment ->> 'overallRisk' = :overallRisk ORDER BY p.created_at DESC",
+            nativeQuery = true)
+    List<ProviderProfile> findByUserIdAndOverallRisk(@Param("userId") String userId,
+                                                     @Param("overallRisk") String overallRisk);
+    
+    /**
+     * Version of a user's provider list (optionally by overall risk), for ETags.
+     */
+    @Query(value = "SELECT count(*) AS total, "
+            + "CAST(COALESCE(EXTRACT(EPOCH FROM max(p.updated_at)) * 1000, 0) AS bigint) AS lastModified, "
+            + "COALESCE(sum(p.id), 0) AS checksum "
+            + "FROM provider_profile p WHERE p.user_id = :userId "
+            + "AND (CAST(:overallRisk AS text) IS NULL OR p.risk_assessment ->> 'overallRisk' = :overallRisk)",
+            nativeQuery = true)
+    CollectionVersion findUserProvidersVersion(@Param("userId") String userId,
+                                               @Param("overallRisk") String overallRisk);
+    
+    /**
+     * IDs of profiles last updated before the cutoff and not currently claimed for refresh,
+     * stalest first.
+     */
+    @Query("select p.id from ProviderProfile p where p.updatedAt < :cutoff and p.alibabaUrl is not null "
+            + "and (p.refreshClaimedUntil is null or p.refreshClaimedUntil < :now) order by p.updatedAt")
+    List<Long> findStaleIds(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now,
+                            Pageable pageable);
+    
+    /**
+     * Claim a profile for background refresh so only one node re-extracts it.
+     * Bulk update on purpose: it must not bump updatedAt.
+     * 
+     * @return 1 if this caller won the claim, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("update ProviderProfile p set p.refreshClaimedUntil = :until where p.id = :id "
+            + "and (p.refreshClaimedUntil is null or p.refreshClaimedUntil < :now)")
+    int claimForRefresh(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+    
+    /**
+     * Keyset-paginated scan of provider names, used to build the in-memory search index
+     * without loading full entities.
+     */
+    @Query("select p.id as id, p.userId as userId, p.providerName as providerName "
+            + "from ProviderProfile p where p.id > :afterId order by p.id")
+    List<ProviderNameView> findNameViewsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Projection with just the fields needed for name search.
+     */
+    interface ProviderNameView {
+        Long getId();
+        String getUserId();
+        String getProviderName();
+    }
+    
+    /**
+     * Keyset-paginated scan of the comparable metrics, used to build the columnar
+     * comparison snapshot without loading full entities.
+     */
+    @Query("select p.id as id, p.userId as userId, p.providerName as providerName, "
+            + "p.productName as productName, p.moq as moq, p.pricePerUnit as pricePerUnit, "
+            + "p.currency as currency, p.deliveryTimeDays as deliveryTimeDays, "
+            + "p.certifications as certifications, p.riskAssessment as riskAssessment "
+            + "from ProviderProfile p where p.id > :afterId order by p.id")
+    List<ProviderMetricsView> findMetricsViewsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Projection with just the fields needed for provider comparison.
+     */
+    interface ProviderMetricsView {
+        Long getId();
+        String getUserId();
+        String getProviderName();
+        String getProductName();
+        Integer getMoq();
+        Double getPricePerUnit();
+        String getCurrency();
+        Integer getDeliveryTimeDays();
+        List<String> getCertifications();
+        ProviderRiskAssessment getRiskAssessment();
+    }
+    
+    /**
+     * Keyset-paginated scan of URLs and canonical keys, used by the deduplication job.
+     */
+    @Query("select p.id as id, p.userId as userId, p.alibabaUrl as alibabaUrl, p.canonicalKey as canonicalKey, "
+            + "p.updatedAt as updatedAt from ProviderProfile p where p.id > :afterId order by p.id")
+    List<ProviderUrlView> findUrlViewsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Set the canonical key. Bumps updatedAt like any other change to the profile, so ETags
+     * and conditional GETs of the user's providers see it.
+     */
+    @Modifying
+    @Query("update ProviderProfile p set p.canonicalKey = :canonicalKey, p.updatedAt = CURRENT_TIMESTAMP "
+            + "where p.id = :id")
+    int updateCanonicalKey(@Param("id") Long id, @Param("canonicalKey") String canonicalKey);
+    
+    /**
+     * Bulk delete providers merged into another one. Their conversations must be reassigned first.
+     */
+    @Modifying
+    @Query("delete from ProviderProfile p where p.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+    
+    /**
+     * Projection with just the fields needed for deduplication.
+     */
+    interface ProviderUrlView {
+        Long getId();
+        String getUserId();
+        String getAlibabaUrl();
+        String getCanonicalKey();
+        LocalDateTime getUpdatedAt();
+    }
 }
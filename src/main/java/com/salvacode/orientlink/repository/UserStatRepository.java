@@ -0,0 +1,63 @@
+package com.salvacode.orientlink.repository;
+
+import com.salvacode.orientlink.entity.UserStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository for the trigger-maintained per-user analytics counters.
+ */
+@Repository
+public interface UserStatRepository extends JpaRepository<UserStat, Long> {
+    
+    /**
+     * All counters of a user except the per-day ones.
+     */
+    @Query("select s from UserStat s where s.userId = :userId and s.dimension <> 'day'")
+    List<UserStat> findTotals(@Param("userId") String userId);
+    
+    /**
+     * Per-day activity counters from the given day ("yyyy-MM-dd") on.
+     */
+    @Query("select s from UserStat s where s.userId = :userId and s.dimension = 'day' and s.bucket >= :fromDay "
+            + "order by s.bucket")
+    List<UserStat> findDays(@Param("userId") String userId, @Param("fromDay") String fromDay);
+    
+    /**
+     * Recompute a user's counters from their conversations and providers. Waits for the
+     * user's in-flight writes and holds new ones back meanwhile (advisory lock), so no
+     * change is lost or counted twice.
+     * 
+     * @return Number of counters written
+     */
+    @Transactional
+    @Query(value = "SELECT orientlink_rebuild_user_stats(:userId)", nativeQuery = true)
+    int rebuild(@Param("userId") String userId);
+    
+    @Query(value = "SELECT user_id FROM conversation_history UNION SELECT user_id FROM provider_profile",
+            nativeQuery = true)
+    List<String> findAllUserIds();
+    
+    /**
+     * Whether a complete backfill has been recorded (see {@link #markBackfilled}).
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM user_stat WHERE user_id = '' AND dimension = 'backfill')",
+            nativeQuery = true)
+    boolean isBackfilled();
+    
+    /**
+     * Record that every user's counters have been rebuilt under the current counting rules;
+     * a no-op if another node already did.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO user_stat (user_id, dimension, bucket, total) VALUES ('', 'backfill', '', 1) "
+            + "ON CONFLICT (user_id, dimension, bucket) DO NOTHING", nativeQuery = true)
+    int markBackfilled();
+}
@@ -0,0 +1,166 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.dto.AnalysisJobDTO;
+import com.salvacode.orientlink.dto.AnalyzeRequestDTO;
+import com.salvacode.orientlink.entity.AnalysisJob;
+import com.salvacode.orientlink.repository.AnalysisJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Submission and status of asynchronous analysis jobs (see {@link AnalysisJobWorker}).
+ *
+ * Clients either poll the job or subscribe to server-sent events. Job state lives in
+ * Postgres, so the events work whichever node runs the job: subscribed jobs are
+ * re-read together once per push interval and an event is sent when their state changes.
+ * A job may have several subscribers (e.g. two tabs); each gets every event.
+ */
+@Service
+@Slf4j
+public class AnalysisJobService {
+
+    private final AnalysisJobRepository jobRepository;
+    private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    @Value("${orientlink.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${orientlink.jobs.sse-timeout:10m}")
+    private Duration sseTimeout;
+
+    public AnalysisJobService(AnalysisJobRepository jobRepository) {
+        this.jobRepository = jobRepository;
+    }
+
+    /**
+     * Queue an analysis; it is picked up by the first node with a free worker.
+     */
+    public AnalysisJobDTO submit(AnalyzeRequestDTO request) {
+        AnalysisJob job = jobRepository.save(AnalysisJob.builder()
+                .id(UUID.randomUUID())
+                .userId(request.getUserId())
+                .status(AnalysisJob.Status.QUEUED)
+                .request(request)
+                .attempts(0)
+                .maxAttempts(maxAttempts)
+                .visibleAt(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.info("Queued analysis job {} for user {}", job.getId(), job.getUserId());
+        return toDTO(job);
+    }
+
+    /**
+     * Current state of a job. Read from the primary, so a job is visible right after submit.
+     */
+    public Optional<AnalysisJobDTO> getJob(UUID jobId) {
+        return jobRepository.findById(jobId).map(this::toDTO);
+    }
+
+    /**
+     * Stream "status" events for a job until it succeeds or fails.
+     */
+    public Optional<SseEmitter> subscribe(UUID jobId) {
+        Optional<AnalysisJob> job = jobRepository.findById(jobId);
+        if (job.isEmpty()) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        Subscription subscription = new Subscription(emitter);
+        subscriptions.compute(jobId, (id, subscribers) -> {
+            Set<Subscription> updated = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            updated.add(subscription);
+            return updated;
+        });
+        emitter.onCompletion(() -> unsubscribe(jobId, subscription));
+        emitter.onTimeout(() -> unsubscribe(jobId, subscription));
+        emitter.onError(e -> unsubscribe(jobId, subscription));
+
+        push(job.get(), subscription);
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Send an event to subscribers whose job changed since the last push.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.jobs.sse-push-interval:PT1S}")
+    public void pushUpdates() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        List<AnalysisJob> jobs = jobRepository.findAllById(List.copyOf(subscriptions.keySet()));
+        for (AnalysisJob job : jobs) {
+            Set<Subscription> subscribers = subscriptions.get(job.getId());
+            if (subscribers != null) {
+                subscribers.forEach(subscription -> push(job, subscription));
+            }
+        }
+    }
+
+    /**
+     * Number of open event streams for the job on this node.
+     */
+    int subscriberCount(UUID jobId) {
+        Set<Subscription> subscribers = subscriptions.get(jobId);
+        return subscribers != null ? subscribers.size() : 0;
+    }
+
+    private void unsubscribe(UUID jobId, Subscription subscription) {
+        // Drops the job's entry with its last subscriber, atomically with concurrent subscribes
+        subscriptions.computeIfPresent(jobId, (id, subscribers) -> {
+            subscribers.remove(subscription);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private void push(AnalysisJob job, Subscription subscription) {
+        String state = job.getStatus() + ":" + job.getAttempts();
+        if (state.equals(subscription.lastState)) {
+            return;
+        }
+        subscription.lastState = state;
+        try {
+            subscription.emitter.send(SseEmitter.event().name("status").data(toDTO(job)));
+            if (job.getStatus().isTerminal()) {
+                subscription.emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client disconnected; the completion callback removes the subscription
+            subscription.emitter.completeWithError(e);
+        }
+    }
+
+    AnalysisJobDTO toDTO(AnalysisJob job) {
+        return AnalysisJobDTO.builder()
+                .jobId(job.getId())
+                .status(job.getStatus().name())
+                .attempts(job.getAttempts())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .result(job.getResult())
+                .error(job.getError())
+                .build();
+    }
+
+    private static final class Subscription {
+        private final SseEmitter emitter;
+        private volatile String lastState;
+
+        Subscription(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
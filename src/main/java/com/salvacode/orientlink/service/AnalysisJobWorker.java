@@ -0,0 +1,168 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.context.RequestPriority;
+import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
+import com.salvacode.orientlink.entity.AnalysisJob;
+import com.salvacode.orientlink.exception.RateLimitExceededException;
+import com.salvacode.orientlink.repository.AnalysisJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Claims queued analysis jobs from Postgres and runs them on a bounded worker pool.
+ *
+ * Every node runs a worker, so load spreads across the cluster without a broker. A
+ * claimed job is invisible to other workers for the lease; if this node dies, the lease
+ * runs out and another node retries the job (at-least-once). Failures are retried with
+ * exponential backoff until max-attempts, then the job is marked FAILED. A throttled job
+ * is requeued for after the retry-after time without counting the attempt.
+ */
+@Component
+@Slf4j
+public class AnalysisJobWorker {
+
+    private final AnalysisJobRepository jobRepository;
+    private final AnalysisService analysisService;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicInteger active = new AtomicInteger();
+
+    @Value("${orientlink.jobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orientlink.jobs.parallelism:4}")
+    private int parallelism;
+
+    @Value("${orientlink.jobs.lease:5m}")
+    private Duration lease;
+
+    @Value("${orientlink.jobs.retry-backoff:10s}")
+    private Duration retryBackoff;
+
+    @Value("${orientlink.jobs.retention:7d}")
+    private Duration retention;
+
+    private ExecutorService workers;
+
+    public AnalysisJobWorker(AnalysisJobRepository jobRepository, AnalysisService analysisService) {
+        this.jobRepository = jobRepository;
+        this.analysisService = analysisService;
+    }
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "analysis-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Jobs still running are retried elsewhere once their lease runs out
+        workers.shutdownNow();
+    }
+
+    /**
+     * Claim as many jobs as there are idle workers.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.jobs.poll-interval:PT1S}")
+    public void poll() {
+        int idle = parallelism - active.get();
+        if (!enabled || idle <= 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> claimed = jobRepository.claim(nodeId, now, now.plus(lease), idle);
+        for (UUID jobId : claimed) {
+            active.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    RequestContext.setRequestId(jobId.toString());
+                    RequestContext.setPriority(RequestPriority.JOB);
+                    // Past its lease the job belongs to another worker; stop spending tokens on it
+                    RequestContext.setDeadline(lease);
+                    process(jobId);
+                } finally {
+                    RequestContext.clear(); // Set by analyzeMessage; pool threads are reused
+                    active.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Fail jobs that exhausted their attempts and purge old finished ones.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.jobs.cleanup-interval:PT1M}")
+    public void cleanup() {
+        LocalDateTime now = LocalDateTime.now();
+        int failed = jobRepository.failAbandoned(now);
+        int deleted = jobRepository.deleteCompletedBefore(now.minus(retention));
+        if (failed > 0 || deleted > 0) {
+            log.info("Analysis job cleanup: {} abandoned jobs failed, {} old jobs deleted", failed, deleted);
+        }
+    }
+
+    private void process(UUID jobId) {
+        AnalysisJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !nodeId.equals(job.getLockedBy())) {
+            return;
+        }
+        try {
+            AnalyzeResponseDTO result = analysisService.analyzeMessage(job.getRequest());
+            job.setStatus(AnalysisJob.Status.SUCCEEDED);
+            job.setResult(result);
+            job.setError(null);
+            job.setCompletedAt(LocalDateTime.now());
+            job.setLockedBy(null);
+            log.info("Analysis job {} succeeded on attempt {}", jobId, job.getAttempts());
+        } catch (RateLimitExceededException e) {
+            // Throttled, not failed: try again once allowed, without using up an attempt
+            job.setStatus(AnalysisJob.Status.QUEUED);
+            job.setAttempts(job.getAttempts() - 1);
+            job.setLockedBy(null);
+            job.setVisibleAt(LocalDateTime.now().plusSeconds(Math.max(e.getRetryAfterSeconds(), 1)));
+            log.info("Analysis job {} throttled, retrying in {} s", jobId, e.getRetryAfterSeconds());
+        } catch (Exception e) {
+            job.setError(truncate(e.getMessage()));
+            job.setLockedBy(null);
+            if (job.getAttempts() >= job.getMaxAttempts()) {
+                job.setStatus(AnalysisJob.Status.FAILED);
+                job.setCompletedAt(LocalDateTime.now());
+                log.warn("Analysis job {} failed after {} attempts", jobId, job.getAttempts(), e);
+            } else {
+                job.setStatus(AnalysisJob.Status.QUEUED);
+                job.setVisibleAt(LocalDateTime.now().plus(retryBackoff.multipliedBy(1L << (job.getAttempts() - 1))));
+                log.info("Analysis job {} attempt {} failed, will retry: {}", jobId, job.getAttempts(), e.getMessage());
+            }
+        }
+        try {
+            jobRepository.save(job);
+        } catch (OptimisticLockingFailureException e) {
+            // Our lease ran out and another worker re-claimed the job; its outcome wins
+            log.warn("Analysis job {} was re-claimed by another worker; discarding this outcome", jobId);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
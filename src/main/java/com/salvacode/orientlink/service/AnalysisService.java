@@ -1,20 +1,28 @@
 package com.salvacode.orientlink.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.salvacode.orientlink.context.RequestContext;
 import com.salvacode.orientlink.dto.AnalyzeRequestDTO;
 import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
 import com.salvacode.orientlink.entity.ConversationHistory;
-import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.event.ConversationSavedEvent;
+import com.salvacode.orientlink.jfr.PipelineStageEvent;
+import com.salvacode.orientlink.repository.CollectionVersion;
 import com.salvacode.orientlink.repository.ConversationHistoryRepository;
-import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import com.salvacode.orientlink.util.HttpCaching;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Service for analyzing user messages about provider conversations.
@@ -27,56 +35,137 @@ public class AnalysisService {
     
     private final OpenAiIntegrationService openAiService;
     private final ConversationHistoryRepository conversationRepository;
-    private final ProviderProfileRepository providerRepository;
+    private final ProviderProfileCache providerCache;
+    private final ConversationSummaryService summaryService;
+    private final ConversationRetrievalIndex retrievalIndex;
+    private final GlossaryService glossaryService;
+    private final SemanticAnalysisCache semanticCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConversationShards conversationShards;
+    private final TransactionTemplate transactionTemplate;
     
     /**
      * Analyze a message: translate, interpret, alert, and suggest responses.
      * Saves the conversation to database.
+     * The lookups run in their own short transactions and the LLM call outside any, so a slow
+     * completion never holds a pooled connection; only the save is one transaction, on the
+     * user's conversation shard.
      */
-    @Transactional
     public AnalyzeResponseDTO analyzeMessage(AnalyzeRequestDTO request) {
         log.info("Analyzing message for user: {}", request.getUserId());
+        RequestContext.setUserId(request.getUserId());
+        RequestContext.checkDeadline("analysis");
         
         // Auto-detect or default languages
         String sourceLang = request.getSourceLanguage() != null ? request.getSourceLanguage() : "es";
         String targetLang = request.getTargetLanguage() != null ? request.getTargetLanguage() : "zh";
+        List<String> targetLangs = request.getTargetLanguages() != null && !request.getTargetLanguages().isEmpty()
+                ? request.getTargetLanguages().stream().distinct().toList()
+                : List.of(targetLang);
         
-        // Get provider context if provided
-        ProviderProfile provider = null;
-        if (request.getProviderId() != null) {
-            provider = providerRepository.findById(request.getProviderId()).orElse(null);
-        }
+        // Get provider context if provided (cache hit avoids a DB round trip)
+        PipelineStageEvent lookup = PipelineStageEvent.start("provider-lookup");
+        Long providerId = request.getProviderId() != null && providerCache.get(request.getProviderId()).isPresent()
+                ? request.getProviderId()
+                : null;
+        lookup.finish(0, providerId != null ? 1 : 0);
         
-        // Call OpenAI for analysis
-        String aiResponse = openAiService.analyzeMessage(
-                request.getMessageText(),
-                sourceLang,
-                targetLang,
-                request.getConversationContext()
-        );
+        PipelineStageEvent promptContext = PipelineStageEvent.start("prompt-context");
+        String summary = providerId != null
+                ? summaryService.getSummary(request.getUserId(), request.getProviderId()).orElse(null)
+                : null;
+        String related = retrievalIndex.relatedExchanges(request.getUserId(),
+                providerId, request.getMessageText());
+        String conversationContext = buildConversationContext(summary, related, request.getConversationContext());
+        promptContext.finish(request.getMessageText().length(),
+                conversationContext != null ? conversationContext.length() : 0);
         
-        // Parse JSON response
-        JsonNode jsonResponse = openAiService.parseJsonResponse(aiResponse);
+        // Only the glossary terms that occur in the message go into the prompt
+        PipelineStageEvent glossaryLookup = PipelineStageEvent.start("glossary");
+        String glossary = glossaryService.promptSection(request.getUserId(), request.getMessageText());
+        glossaryLookup.finish(request.getMessageText().length(), glossary != null ? glossary.length() : 0);
+        
+        // Call OpenAI for analysis, with the server-maintained summary as context.
+        // Several target languages share one completion: the analysis is paid for once.
+        // A message the user sent before, or nearly so, reuses its earlier analysis through the
+        // semantic cache. The cache is keyed on the client's context only: the summary and the
+        // retrieved exchanges change with every saved message.
+        String aiResponse = targetLangs.size() == 1
+                ? semanticCache.analyze(request.getUserId(), request.getMessageText(), sourceLang, targetLangs.get(0),
+                        request.getConversationContext(), glossary,
+                        () -> openAiService.analyzeMessage(request.getMessageText(), sourceLang, targetLangs.get(0),
+                                conversationContext, glossary),
+                        cached -> withTranslation(cached, request.getMessageText(), sourceLang, targetLangs.get(0),
+                                glossary))
+                : openAiService.analyzeMessage(request.getMessageText(), sourceLang, targetLangs,
+                        conversationContext, glossary);
         
-        // Build response DTO
+        // Parse JSON response and build response DTO
+        PipelineStageEvent parse = PipelineStageEvent.start("json-parse");
+        JsonNode jsonResponse = openAiService.parseJsonResponse(aiResponse);
         AnalyzeResponseDTO response = buildAnalyzeResponse(jsonResponse, request.getMessageText(), 
-                sourceLang, targetLang);
+                sourceLang, targetLangs);
+        parse.finish(aiResponse.length(), response.getAlerts() != null ? response.getAlerts().size() : 0);
         
-        // Save conversation to database
-        ConversationHistory conversation = saveConversation(
-                request, provider, response, aiResponse
-        );
-        response.setConversationId(conversation.getId());
+        // Save conversation to database, unless the client has given up on it meanwhile
+        RequestContext.checkDeadline("saving the analysis");
+        PipelineStageEvent persist = PipelineStageEvent.start("persist");
+        ConversationHistory saved = conversationShards.writeForUser(request.getUserId(), () -> targetLangs.size() == 1
+                ? saveConversation(request, providerId, response, aiResponse)
+                : saveLinkedConversations(request, providerId, response, aiResponse));
+        persist.finish(aiResponse.length(), targetLangs.size());
+        
+        // Published once committed and off the shard, so listeners read providers from the regular database.
+        // One message for the negotiation summary, however many languages it was translated into
+        eventPublisher.publishEvent(new ConversationSavedEvent(saved, providerId));
         
-        log.info("Analysis completed and saved with ID: {}", conversation.getId());
+        log.info("Analysis completed and saved with ID: {}", response.getConversationId());
         return response;
     }
     
+    /**
+     * The cached analysis of a near-identical message with this message's own translation,
+     * or null if the translation did not come back in the expected shape.
+     */
+    private String withTranslation(String cachedResponse, String messageText, String sourceLang,
+                                   String targetLang, String glossary) {
+        JsonNode translation = openAiService.parseJsonResponse(
+                openAiService.translateMessage(messageText, sourceLang, targetLang, glossary));
+        JsonNode cached = openAiService.parseJsonResponse(cachedResponse);
+        if (!(cached instanceof ObjectNode analysis) || !translation.hasNonNull("translatedMessage")) {
+            return null;
+        }
+        analysis.set("translatedMessage", translation.get("translatedMessage"));
+        return analysis.toString();
+    }
+    
+    /**
+     * Combine the stored negotiation summary (when a known provider is given), the most
+     * relevant past exchanges with the same provider or about the same product, and any
+     * context the client sent itself.
+     */
+    private String buildConversationContext(String summary, String related, String clientContext) {
+        List<String> parts = new ArrayList<>();
+        if (summary != null) {
+            parts.add("Negotiation summary so far: " + summary);
+        }
+        if (related != null) {
+            parts.add("Related past exchanges:\n" + related);
+        }
+        if (parts.isEmpty()) {
+            return clientContext;
+        }
+        if (clientContext != null && !clientContext.isBlank()) {
+            parts.add("Additional context: " + clientContext);
+        }
+        return String.join("\n", parts);
+    }
+    
     /**
      * Build AnalyzeResponse from OpenAI JSON response.
      */
     private AnalyzeResponseDTO buildAnalyzeResponse(JsonNode json, String originalMessage,
-                                                  String sourceLang, String targetLang) {
+                                                  String sourceLang, List<String> targetLangs) {
         // Extract interpretation
         JsonNode interpretation = json.get("interpretation");
         AnalyzeResponseDTO.InterpretationData interpretationData = AnalyzeResponseDTO.InterpretationData.builder()
@@ -97,11 +186,27 @@ public class AnalysisService {
                 .direct(responses.get("direct").asText())
                 .build();
         
+        // Single target: "translatedMessage"; several: a "translations" object keyed by language
+        Map<String, String> translations = null;
+        String translatedMessage;
+        if (targetLangs.size() == 1) {
+            translatedMessage = json.get("translatedMessage").asText();
+        } else {
+            JsonNode translationsNode = json.get("translations");
+            translations = new LinkedHashMap<>();
+            for (String lang : targetLangs) {
+                JsonNode translation = translationsNode != null ? translationsNode.get(lang) : null;
+                translations.put(lang, translation != null && !translation.isNull() ? translation.asText() : null);
+            }
+            translatedMessage = translations.get(targetLangs.get(0));
+        }
+        
         return AnalyzeResponseDTO.builder()
                 .originalMessage(originalMessage)
-                .translatedMessage(json.get("translatedMessage").asText())
+                .translatedMessage(translatedMessage)
+                .translations(translations)
                 .sourceLanguage(sourceLang)
-                .targetLanguage(targetLang)
+                .targetLanguage(targetLangs.get(0))
                 .interpretation(interpretationData)
                 .alerts(alerts)
                 .suggestedResponses(suggestedResponses)
@@ -112,22 +217,74 @@ public class AnalysisService {
     /**
      * Save conversation to database.
      */
-    private ConversationHistory saveConversation(AnalyzeRequestDTO request, ProviderProfile provider,
+    private ConversationHistory saveConversation(AnalyzeRequestDTO request, Long providerId,
                                                   AnalyzeResponseDTO response, String rawAiResponse) {
-        ConversationHistory conversation = ConversationHistory.builder()
+        ConversationHistory conversation = conversationRepository.save(buildConversation(
+                request, providerId, response, response.getTargetLanguage(), response.getTranslatedMessage(),
+                rawAiResponse, null));
+        response.setConversationId(conversation.getId());
+        return conversation;
+    }
+    
+    /**
+     * Save one conversation row per target language, linked by a shared analysis group ID.
+     * The raw completion is stored once, on the first row, which is returned.
+     */
+    private ConversationHistory saveLinkedConversations(AnalyzeRequestDTO request, Long providerId,
+                                                        AnalyzeResponseDTO response, String rawAiResponse) {
+        String groupId = UUID.randomUUID().toString();
+        List<ConversationHistory> rows = new ArrayList<>();
+        // The raw completion is kept once, on the first row; user stats count only that row
+        for (Map.Entry<String, String> translation : response.getTranslations().entrySet()) {
+            rows.add(buildConversation(request, providerId, response, translation.getKey(), translation.getValue(),
+                    rows.isEmpty() ? rawAiResponse : null, groupId));
+        }
+        rows = conversationRepository.saveAll(rows);
+        
+        Map<String, Long> conversationIds = new LinkedHashMap<>();
+        rows.forEach(row -> conversationIds.put(row.getTargetLanguage(), row.getId()));
+        response.setConversationIds(conversationIds);
+        response.setConversationId(rows.get(0).getId());
+        response.setAnalysisGroupId(groupId);
+        return rows.get(0);
+    }
+    
+    private ConversationHistory buildConversation(AnalyzeRequestDTO request, Long providerId,
+                                                  AnalyzeResponseDTO response, String targetLang,
+                                                  String translatedMessage, String rawAiResponse, String groupId) {
+        return ConversationHistory.builder()
                 .userId(request.getUserId())
-                .provider(provider)
+                .providerId(providerId)
                 .originalMessage(request.getMessageText())
-                .translatedMessage(response.getTranslatedMessage())
+                .translatedMessage(translatedMessage)
                 .sourceLanguage(response.getSourceLanguage())
-                .targetLanguage(response.getTargetLanguage())
+                .targetLanguage(targetLang)
                 .aiInterpretation(response.getInterpretation().getBusinessContext())
-                .alerts(String.join("; ", response.getAlerts()))
-                .suggestedResponses(rawAiResponse) // Store full JSON for reference
+                .riskLevel(response.getInterpretation().getRiskLevel())
+                .sentiment(response.getInterpretation().getSentiment())
+                .alerts(response.getAlerts())
+                .suggestedResponses(toResponseMap(response.getSuggestedResponses()))
+                .rawCompletion(rawAiResponse) // Store full JSON for reference
                 .messageType("analysis")
+                .analysisGroupId(groupId)
                 .build();
-        
-        return conversationRepository.save(conversation);
+    }
+    
+    /**
+     * Flatten suggested responses into the jsonb map stored on the conversation.
+     */
+    private Map<String, String> toResponseMap(AnalyzeResponseDTO.SuggestedResponses responses) {
+        Map<String, String> map = new LinkedHashMap<>();
+        if (responses.getFormal() != null) {
+            map.put("formal", responses.getFormal());
+        }
+        if (responses.getNegotiator() != null) {
+            map.put("negotiator", responses.getNegotiator());
+        }
+        if (responses.getDirect() != null) {
+            map.put("direct", responses.getDirect());
+        }
+        return map;
     }
     
     /**
@@ -142,12 +299,36 @@ public class AnalysisService {
     }
     
     /**
-     * Get conversation history for a user.
+     * Get conversation history for a user, from their conversation shard.
+     * Risk level, sentiment and alert filters are evaluated by Postgres on the typed columns.
      */
-    public List<ConversationHistory> getConversationHistory(String userId, Long providerId) {
-        if (providerId != null) {
-            return conversationRepository.findByUserIdAndProviderIdOrderByTimestampDesc(userId, providerId);
-        }
-        return conversationRepository.findByUserIdOrderByTimestampDesc(userId);
+    public List<ConversationHistory> getConversationHistory(String userId, Long providerId,
+                                                            String riskLevel, String sentiment, String alert) {
+        return conversationShards.onUserShard(userId, () -> readOnly().execute(status -> {
+            if (riskLevel != null || sentiment != null || alert != null) {
+                return conversationRepository.findFiltered(userId, providerId, riskLevel, sentiment, alert);
+            }
+            if (providerId != null) {
+                return conversationRepository.findByUserIdAndProviderIdOrderByTimestampDesc(userId, providerId);
+            }
+            return conversationRepository.findByUserIdOrderByTimestampDesc(userId);
+        }));
+    }
+    
+    /**
+     * ETag of getConversationHistory's result, from a count/max aggregate instead of the rows.
+     */
+    public String getConversationHistoryETag(String userId, Long providerId,
+                                             String riskLevel, String sentiment, String alert) {
+        CollectionVersion version = conversationShards.onUserShard(userId, () -> readOnly().execute(status ->
+                conversationRepository.findFilteredVersion(userId, providerId, riskLevel, sentiment, alert)));
+        return HttpCaching.strongETag("conversations", userId, providerId, riskLevel, sentiment, alert,
+                version.getTotal(), version.getLastModified(), version.getChecksum());
+    }
+    
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        template.setReadOnly(true);
+        return template;
     }
 }
@@ -0,0 +1,241 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.ConversationShardRoutingDataSource;
+import com.salvacode.orientlink.config.ReadReplicaRoutingDataSource;
+import com.salvacode.orientlink.dto.ChangeFeedDTO;
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.exception.BadRequestException;
+import com.salvacode.orientlink.repository.ChangeTombstoneRepository;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Incremental sync of a user's conversations and providers.
+ *
+ * Every insert or update of a tracked row records the ID of the writing transaction in its
+ * change_xid column, and every delete leaves a tombstone with one (database triggers, see
+ * db/schema-upgrade.sql). A client keeps the last transaction it has seen as its token and
+ * only receives what later transactions changed, in transaction order. Transactions still
+ * running, and any that started after them, are left for a later call; a page never ends
+ * inside a transaction.
+ *
+ * Tombstones are purged after the retention period; a client whose token is older than
+ * the purged ones is told to resync from scratch.
+ *
+ * With conversation shards, a user's conversations and their providers are in different
+ * databases, whose transaction IDs do not compare. The token then holds a position in each:
+ * "<providers xid>.<shard>.<conversations xid>". A token of another shard (the user has
+ * been moved since) or a plain one from before sharding asks for a resync.
+ */
+@Service
+@Slf4j
+public class ChangeFeedService {
+
+    private static final String CONVERSATION = "conversation";
+
+    private final ChangeTombstoneRepository tombstoneRepository;
+    private final ConversationHistoryRepository conversationRepository;
+    private final ProviderProfileRepository providerRepository;
+    private final ConversationShards conversationShards;
+    private final TransactionTemplate primaryReadTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${orientlink.changes.tombstone-retention:30d}")
+    private Duration tombstoneRetention;
+
+    public ChangeFeedService(ChangeTombstoneRepository tombstoneRepository,
+                             ConversationHistoryRepository conversationRepository,
+                             ProviderProfileRepository providerRepository,
+                             ConversationShards conversationShards,
+                             PlatformTransactionManager transactionManager) {
+        this.tombstoneRepository = tombstoneRepository;
+        this.conversationRepository = conversationRepository;
+        this.providerRepository = providerRepository;
+        this.conversationShards = conversationShards;
+        // Tokens come from the primary's transactions: a lagging replica could skip past a change
+        this.primaryReadTemplate = new TransactionTemplate(transactionManager);
+        this.primaryReadTemplate.setReadOnly(true);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Changes read from one database: a page of them, and the transaction it ends with.
+     */
+    private record Part(List<ConversationHistory> conversations, List<ProviderProfile> providers,
+                        List<ChangeFeedDTO.Deletion> deleted, long nextXid, boolean hasMore, boolean resyncRequired) {
+
+        static Part empty(long since) {
+            return new Part(List.of(), List.of(), List.of(), since, false, false);
+        }
+
+        int size() {
+            return conversations.size() + providers.size() + deleted.size();
+        }
+    }
+
+    /**
+     * The user's changes after the token, at most limit of them unless a single
+     * transaction changed more.
+     *
+     * @throws BadRequestException If the token is not one this service handed out
+     */
+    public ChangeFeedDTO getChanges(String userId, String since, int limit) {
+        if (!conversationShards.isSharded()) {
+            long xid = Math.max(parseXid(since), 0);
+            Part part = readPart(userId, xid, limit, true, true);
+            return part.resyncRequired() ? resync() : toFeed(String.valueOf(part.nextXid()), part, part);
+        }
+
+        int shard = conversationShards.shardOf(userId);
+        long providerXid = 0;
+        long conversationXid = 0;
+        String[] position = since.split("\\.", -1);
+        if (position.length == 3) {
+            providerXid = Math.max(parseXid(position[0]), 0);
+            conversationXid = Math.max(parseXid(position[2]), 0);
+            if (parseXid(position[1]) != shard) {
+                return resync(); // Moved to another shard since; its transaction IDs are unrelated
+            }
+        } else if (position.length != 1 || parseXid(position[0]) != 0) {
+            return resync(); // A token from before sharding was enabled
+        }
+
+        // Providers first; conversations fill the rest of the page
+        long providerSince = providerXid;
+        long conversationSince = conversationXid;
+        Part providers = conversationShards.onShard(ConversationShardRoutingDataSource.HOME,
+                () -> readPart(userId, providerSince, limit, false, true));
+        Part conversations = providers.size() < limit
+                ? conversationShards.onShard(shard,
+                        () -> readPart(userId, conversationSince, limit - providers.size(), true, false))
+                : Part.empty(conversationSince);
+        if (providers.resyncRequired() || conversations.resyncRequired()) {
+            return resync();
+        }
+        String nextToken = providers.nextXid() + "." + shard + "." + conversations.nextXid();
+        ChangeFeedDTO feed = toFeed(nextToken, conversations, providers);
+        if (providers.size() >= limit) {
+            feed = feed.toBuilder().hasMore(true).build(); // Conversations not looked at yet
+        }
+        return feed;
+    }
+
+    private Part readPart(String userId, long since, int limit, boolean conversations, boolean providers) {
+        return ReadReplicaRoutingDataSource.readFromPrimary(() -> primaryReadTemplate.execute(
+                status -> readChanges(userId, since, limit, conversations, providers)));
+    }
+
+    private Part readChanges(String userId, long since, int limit, boolean includeConversations,
+                             boolean includeProviders) {
+        Long purgedUpTo = tombstoneRepository.findPurgedUpToXid();
+        if (since > 0 && purgedUpTo != null && since < purgedUpTo) {
+            return new Part(List.of(), List.of(), List.of(), 0, false, true);
+        }
+
+        // One extra row tells whether another page follows. The last transaction on a full
+        // page may continue past it, so it is left for the next page; a transaction larger
+        // than a page is returned whole.
+        List<ChangeTombstoneRepository.ChangeView> changes = tombstoneRepository.findChanges(
+                userId, since, includeConversations, includeProviders, limit + 1);
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            long lastXid = changes.get(limit).getXid();
+            int end = limit;
+            while (end > 0 && changes.get(end - 1).getXid() == lastXid) {
+                end--;
+            }
+            changes = end > 0
+                    ? changes.subList(0, end)
+                    : tombstoneRepository.findTransactionChanges(userId, lastXid,
+                            includeConversations, includeProviders);
+        }
+
+        List<Long> conversationIds = new ArrayList<>();
+        List<Long> providerIds = new ArrayList<>();
+        List<ChangeFeedDTO.Deletion> deleted = new ArrayList<>();
+        long nextXid = since;
+        for (ChangeTombstoneRepository.ChangeView change : changes) {
+            if (change.getDeleted()) {
+                deleted.add(new ChangeFeedDTO.Deletion(change.getKind(), change.getEntityId()));
+            } else if (CONVERSATION.equals(change.getKind())) {
+                conversationIds.add(change.getEntityId());
+            } else {
+                providerIds.add(change.getEntityId());
+            }
+            nextXid = change.getXid();
+        }
+
+        List<ConversationHistory> conversations = new ArrayList<>(conversationRepository.findAllById(conversationIds));
+        conversations.sort(Comparator.comparing(ConversationHistory::getId));
+        List<ProviderProfile> providers = new ArrayList<>(providerRepository.findAllById(providerIds));
+        providers.sort(Comparator.comparing(ProviderProfile::getId));
+        return new Part(conversations, providers, deleted, nextXid, hasMore, false);
+    }
+
+    private static ChangeFeedDTO toFeed(String nextToken, Part conversations, Part providers) {
+        List<ChangeFeedDTO.Deletion> deleted = new ArrayList<>(providers.deleted());
+        if (conversations != providers) {
+            deleted.addAll(conversations.deleted());
+        }
+        return ChangeFeedDTO.builder()
+                .nextToken(nextToken)
+                .hasMore(conversations.hasMore() || providers.hasMore())
+                .conversations(conversations.conversations())
+                .providers(providers.providers())
+                .deleted(deleted)
+                .build();
+    }
+
+    private static ChangeFeedDTO resync() {
+        return ChangeFeedDTO.builder()
+                .nextToken("0")
+                .resyncRequired(true)
+                .conversations(List.of())
+                .providers(List.of())
+                .deleted(List.of())
+                .build();
+    }
+
+    private static long parseXid(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("since must be a token returned as nextToken");
+        }
+    }
+
+    /**
+     * Drop tombstones older than the retention period, remembering how far they went;
+     * on every conversation shard.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.changes.cleanup-interval:PT1H}")
+    public void purgeTombstones() {
+        LocalDateTime before = LocalDateTime.now().minus(tombstoneRetention);
+        conversationShards.onEveryShard(() -> transactionTemplate.execute(status -> purgeTombstones(before)));
+    }
+
+    private int purgeTombstones(LocalDateTime before) {
+        Long upTo = tombstoneRepository.findMaxSeqBefore(before);
+        if (upTo == null) {
+            return 0;
+        }
+        Long upToXid = tombstoneRepository.findMaxXidUpTo(upTo); // Including the previous marker's
+        int purged = tombstoneRepository.deleteUpTo(upTo);
+        tombstoneRepository.insertPurgedMarker(upTo, before, upToXid != null ? upToXid : 0L);
+        log.debug("Purged {} change tombstones up to {}", purged, upTo);
+        return purged;
+    }
+}
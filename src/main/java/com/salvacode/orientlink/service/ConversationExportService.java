@@ -0,0 +1,212 @@
+package com.salvacode.orientlink.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.salvacode.orientlink.dto.ConversationExportDTO;
+import com.salvacode.orientlink.exception.BadRequestException;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a user's conversation history as NDJSON or CSV.
+ *
+ * Rows are read through a forward-only JDBC cursor and written one at a time, so heap
+ * usage is flat regardless of history size, and the pooled connection is held only for
+ * the duration of the transfer. The rows are read from the user's conversation shard.
+ */
+@Service
+@Slf4j
+public class ConversationExportService {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final String[] CSV_HEADER = {
+            "id", "userId", "providerId", "timestamp", "messageType", "sourceLanguage", "targetLanguage",
+            "originalMessage", "translatedMessage", "aiInterpretation", "riskLevel", "sentiment", "alerts",
+            "formalResponse", "negotiatorResponse", "directResponse"
+    };
+
+    private final ConversationHistoryRepository conversationRepository;
+    private final ObjectMapper objectMapper;
+    private final ConversationShards conversationShards;
+    private final TransactionTemplate readOnlyTemplate;
+
+    public ConversationExportService(ConversationHistoryRepository conversationRepository,
+                                     ObjectMapper objectMapper,
+                                     ConversationShards conversationShards,
+                                     PlatformTransactionManager transactionManager) {
+        this.conversationRepository = conversationRepository;
+        this.objectMapper = objectMapper;
+        this.conversationShards = conversationShards;
+        // The cursor needs a transaction: Postgres only honours the fetch size with auto-commit off
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Supported export formats.
+     */
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * The format named by a request parameter, case-insensitively.
+         */
+        public static ExportFormat fromParameter(String name) {
+            for (ExportFormat format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new BadRequestException("format must be one of: ndjson, csv");
+        }
+    }
+
+    /**
+     * Write the export to the given stream.
+     *
+     * @param userId User whose history is exported
+     * @param providerId Optional: only conversations with this provider
+     * @param from Optional: inclusive lower bound on timestamp
+     * @param to Optional: exclusive upper bound on timestamp
+     * @param format NDJSON or CSV
+     * @param gzip Whether to gzip the output
+     * @param out Target stream (not closed)
+     */
+    public void export(String userId, Long providerId, LocalDateTime from, LocalDateTime to,
+                       ExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        try {
+            conversationShards.onUserShard(userId, () -> readOnlyTemplate.execute(status -> {
+                try {
+                    writeExport(userId, providerId, from, to, format, gzip, out);
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            // Client went away mid-transfer; the transaction has closed the cursor
+            throw e.getCause();
+        }
+    }
+
+    private void writeExport(String userId, Long providerId, LocalDateTime from, LocalDateTime to,
+                             ExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long[] rows = {0};
+
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, 8192) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzipStream != null ? gzipStream : out, StandardCharsets.UTF_8), 16 * 1024);
+
+        ObjectWriter rowWriter = objectMapper.writerFor(ConversationExportDTO.class);
+        if (format == ExportFormat.CSV) {
+            writeCsvLine(writer, CSV_HEADER);
+        }
+
+        try (Stream<ConversationExportDTO> stream = conversationRepository.streamForExport(
+                userId, providerId, from != null ? from : EARLIEST, to != null ? to : LocalDateTime.now().plusDays(1))) {
+            stream.forEach(row -> {
+                try {
+                    if (format == ExportFormat.CSV) {
+                        writeCsvRow(writer, row);
+                    } else {
+                        writer.write(rowWriter.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Client went away mid-transfer; nothing left to clean up besides the cursor
+            throw e.getCause();
+        }
+
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        log.info("Exported {} conversations for user {} in {} ms", rows[0], userId, System.currentTimeMillis() - start);
+    }
+
+    private void writeCsvRow(Writer writer, ConversationExportDTO row) throws IOException {
+        Map<String, String> responses = row.getSuggestedResponses() != null ? row.getSuggestedResponses() : Map.of();
+        List<String> alerts = row.getAlerts() != null ? row.getAlerts() : List.of();
+        writeCsvLine(writer, new String[] {
+                String.valueOf(row.getId()),
+                row.getUserId(),
+                row.getProviderId() != null ? String.valueOf(row.getProviderId()) : null,
+                row.getTimestamp() != null ? row.getTimestamp().toString() : null,
+                row.getMessageType(),
+                row.getSourceLanguage(),
+                row.getTargetLanguage(),
+                row.getOriginalMessage(),
+                row.getTranslatedMessage(),
+                row.getAiInterpretation(),
+                row.getRiskLevel(),
+                row.getSentiment(),
+                String.join(" | ", alerts),
+                responses.get("formal"),
+                responses.get("negotiator"),
+                responses.get("direct")
+        });
+    }
+
+    /**
+     * RFC 4180 line: fields with separators, quotes or line breaks are quoted.
+     */
+    private void writeCsvLine(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
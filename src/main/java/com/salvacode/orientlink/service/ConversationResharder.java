@@ -0,0 +1,177 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.ConversationShardInitializer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves a user's conversation history to another shard while the application keeps running
+ * (see ConversationShardEndpoint).
+ *
+ * 1. The user is flagged as moving: their writes wait, their reads stay on the source.
+ * 2. Writes that saw the old assignment are drained by taking the user's exclusive advisory
+ *    lock on the source; every write holds the shared one while it checks the assignment.
+ * 3. The rows are copied in ID order, keeping their IDs (unique across shards). Triggers on
+ *    the target count them into the user's stats and the change feed.
+ * 4. The target's ID sequence is moved past the copied IDs, so newer rows sort after them.
+ * 5. The assignment is switched and writes continue on the target.
+ * 6. Once cached assignments have expired, the rows are deleted from the source, with their
+ *    tombstones, and the source's counters of the user are rebuilt.
+ *
+ * A failed move is undone: the partial copy is deleted and the user stays on the source.
+ * Moving a user to the shard they are on removes leftovers of an interrupted move from the
+ * other shards.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationResharder {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final ConversationShards shards;
+
+    /**
+     * Outcome of a move.
+     */
+    public record MoveResult(String userId, int fromShard, int toShard, long copied, long deleted, long millis) {
+    }
+
+    public MoveResult move(String userId, int targetShard) {
+        if (!shards.isSharded()) {
+            throw new IllegalStateException("Conversation history is not sharded");
+        }
+        if (targetShard < 0 || targetShard >= shards.count()) {
+            throw new IllegalArgumentException("No conversation shard " + targetShard);
+        }
+        long start = System.currentTimeMillis();
+        int sourceShard = shards.markMoving(userId).shard();
+
+        if (sourceShard == targetShard) {
+            shards.completeMove(userId, targetShard);
+            long deleted = 0;
+            for (int shard = 0; shard < shards.count(); shard++) {
+                if (shard != targetShard) {
+                    deleted += deleteUserRows(shard, userId);
+                }
+            }
+            return new MoveResult(userId, sourceShard, targetShard, 0, deleted, System.currentTimeMillis() - start);
+        }
+
+        long copied;
+        try {
+            deleteUserRows(targetShard, userId); // Leftovers of an earlier, interrupted move
+            drainWrites(sourceShard, userId);
+            copied = copy(sourceShard, targetShard, userId);
+        } catch (RuntimeException e) {
+            log.warn("Moving conversations of user {} to shard {} failed, keeping them on shard {}",
+                    userId, targetShard, sourceShard, e);
+            try {
+                deleteUserRows(targetShard, userId);
+            } finally {
+                shards.completeMove(userId, sourceShard);
+            }
+            throw e;
+        }
+        shards.completeMove(userId, targetShard);
+
+        try {
+            Thread.sleep(shards.assignmentCacheTtl().toMillis()); // Reads routed on a cached assignment
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long deleted = deleteUserRows(sourceShard, userId);
+
+        MoveResult result = new MoveResult(userId, sourceShard, targetShard, copied, deleted,
+                System.currentTimeMillis() - start);
+        log.info("Moved {} conversations of user {} from shard {} to shard {} in {} ms",
+                copied, userId, sourceShard, targetShard, result.millis());
+        return result;
+    }
+
+    /**
+     * Wait for the user's in-flight writes on the shard; later ones see the user moving.
+     */
+    private void drainWrites(int shard, String userId) {
+        JdbcTemplate jdbc = new JdbcTemplate(shards.dataSource(shard));
+        transactionTemplate(shard).executeWithoutResult(status ->
+                jdbc.query("SELECT pg_advisory_xact_lock(4901, hashtext(?))", rs -> null, userId));
+    }
+
+    private long copy(int sourceShard, int targetShard, String userId) {
+        JdbcTemplate source = new JdbcTemplate(shards.dataSource(sourceShard));
+        JdbcTemplate target = new JdbcTemplate(shards.dataSource(targetShard));
+        long copied = 0;
+        long lastId = 0;
+        List<Map<String, Object>> batch;
+        do {
+            batch = source.queryForList("SELECT id, CAST(row_to_json(c) AS text) AS row FROM conversation_history c "
+                    + "WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?", userId, lastId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Object[]> rows = batch.stream().map(row -> new Object[] {row.get("row")}).toList();
+            transactionTemplate(targetShard).executeWithoutResult(status -> target.batchUpdate(
+                    "INSERT INTO conversation_history SELECT * FROM "
+                            + "json_populate_record(CAST(NULL AS conversation_history), CAST(? AS json)) "
+                            + "ON CONFLICT DO NOTHING", rows));
+            copied += batch.size();
+            lastId = ((Number) batch.get(batch.size() - 1).get("id")).longValue();
+        } while (batch.size() == BATCH_SIZE);
+
+        if (copied > 0) {
+            long highestCopied = lastId;
+            transactionTemplate(targetShard).executeWithoutResult(status -> {
+                // Inserts on the target wait meanwhile, so no ID is handed out twice
+                target.execute("LOCK TABLE conversation_history IN SHARE ROW EXCLUSIVE MODE");
+                String sequence = target.queryForObject(
+                        "SELECT pg_get_serial_sequence('conversation_history', 'id')", String.class);
+                Long next = target.queryForObject("SELECT CASE WHEN is_called THEN last_value + "
+                        + ConversationShardInitializer.MAX_SHARDS + " ELSE last_value END FROM " + sequence,
+                        Long.class);
+                if (next != null && next <= highestCopied) {
+                    long step = ConversationShardInitializer.MAX_SHARDS;
+                    target.queryForObject("SELECT setval(CAST(? AS regclass), ?, false)", Long.class,
+                            sequence, (highestCopied / step + 1) * step + targetShard);
+                }
+            });
+        }
+        return copied;
+    }
+
+    /**
+     * Delete the user's conversations from the shard in batches, then their tombstones, and
+     * recount the user's stats there.
+     */
+    private long deleteUserRows(int shard, String userId) {
+        JdbcTemplate jdbc = new JdbcTemplate(shards.dataSource(shard));
+        long deleted = 0;
+        int batch;
+        do {
+            batch = transactionTemplate(shard).execute(status -> jdbc.update(
+                    "DELETE FROM conversation_history WHERE id IN "
+                            + "(SELECT id FROM conversation_history WHERE user_id = ? LIMIT ?)", userId, BATCH_SIZE));
+            deleted += batch;
+        } while (batch == BATCH_SIZE);
+        if (deleted > 0) {
+            transactionTemplate(shard).executeWithoutResult(status -> {
+                jdbc.update("DELETE FROM change_tombstone WHERE user_id = ? AND entity_type = 'conversation'", userId);
+                jdbc.queryForObject("SELECT orientlink_rebuild_user_stats(?)", Integer.class, userId);
+            });
+        }
+        return deleted;
+    }
+
+    private TransactionTemplate transactionTemplate(int shard) {
+        DataSource dataSource = shards.dataSource(shard);
+        return new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+}
@@ -0,0 +1,269 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.event.ConversationSavedEvent;
+import com.salvacode.orientlink.jfr.PipelineStageEvent;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import com.salvacode.orientlink.util.Bm25Index;
+import com.salvacode.orientlink.util.NgramTokenizer;
+import com.salvacode.orientlink.util.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory BM25 index over past conversations, for adding the most relevant earlier
+ * exchanges to an analysis prompt.
+ *
+ * Each user's conversations form their own corpus ({@link Bm25Index}), indexed on the
+ * original message, its translation and the interpretation, tokenized into words and CJK
+ * bigrams. A lookup scores only the postings of the message's terms, so it takes a few
+ * milliseconds even over years of history; only the few winning rows are then read from
+ * the database.
+ *
+ * The index is built on startup from conversations younger than max-age, updated from
+ * {@link ConversationSavedEvent} on save, and catches up on conversations saved by
+ * other nodes every sync-interval. With conversation shards it is loaded from each shard
+ * in turn; product names always come from the provider cache.
+ */
+@Component
+@Slf4j
+public class ConversationRetrievalIndex {
+
+    private static final String UNKNOWN_PRODUCT = "unknown"; // What extraction returns for a missing product name
+
+    private final ConversationHistoryRepository conversationRepository;
+    private final ProviderProfileCache providerCache;
+    private final ConversationShards conversationShards;
+    private final TransactionTemplate readOnlyTemplate;
+
+    @Value("${orientlink.retrieval.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orientlink.retrieval.top-k:3}")
+    private int topK;
+
+    @Value("${orientlink.retrieval.max-tokens:400}")
+    private int maxTokens;
+
+    @Value("${orientlink.retrieval.min-score:2.0}")
+    private double minScore;
+
+    @Value("${orientlink.retrieval.max-query-terms:32}")
+    private int maxQueryTerms;
+
+    @Value("${orientlink.retrieval.max-age:1095d}")
+    private Duration maxAge;
+
+    @Value("${orientlink.retrieval.sync-overlap:1m}")
+    private Duration syncOverlap;
+
+    @Value("${orientlink.retrieval.rebuild-batch-size:5000}")
+    private int rebuildBatchSize;
+
+    private volatile Map<String, Corpus> corpora = new ConcurrentHashMap<>();
+    private volatile LocalDateTime syncedUpTo;
+
+    public ConversationRetrievalIndex(ConversationHistoryRepository conversationRepository,
+                                      ProviderProfileCache providerCache,
+                                      ConversationShards conversationShards,
+                                      PlatformTransactionManager transactionManager) {
+        this.conversationRepository = conversationRepository;
+        this.providerCache = providerCache;
+        this.conversationShards = conversationShards;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Build the index from the database once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Corpus> newCorpora = new ConcurrentHashMap<>();
+        int indexed = load(newCorpora, now.minus(maxAge));
+        corpora = newCorpora;
+        syncedUpTo = now;
+        log.info("Conversation retrieval index built: {} conversations of {} users in {} ms",
+                indexed, newCorpora.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Index conversations saved on other nodes (and any missed during the rebuild).
+     */
+    @Scheduled(fixedDelayString = "${orientlink.retrieval.sync-interval:PT30S}")
+    public void catchUp() {
+        LocalDateTime since = syncedUpTo;
+        if (!enabled || since == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // The overlap covers clock skew between nodes and transactions committing late
+        int indexed = load(corpora, since.minus(syncOverlap));
+        syncedUpTo = now;
+        if (indexed > 0) {
+            log.debug("Indexed {} conversations saved elsewhere", indexed);
+        }
+    }
+
+    /**
+     * Index a conversation once its save has been committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationSaved(ConversationSavedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        ConversationHistory conversation = event.conversation();
+        index(corpora, conversation.getId(), conversation.getUserId(), event.providerId(),
+                productName(event.providerId()),
+                conversation.getOriginalMessage(), conversation.getTranslatedMessage(),
+                conversation.getAiInterpretation());
+    }
+
+    /**
+     * Past exchanges of the user most relevant to the message, formatted for the prompt
+     * within the token budget; null if none is relevant enough.
+     *
+     * @param providerId When set, only exchanges with this provider or about the same product count
+     */
+    public String relatedExchanges(String userId, Long providerId, String messageText) {
+        Corpus corpus = enabled ? corpora.get(userId) : null;
+        if (corpus == null) {
+            return null;
+        }
+
+        PipelineStageEvent retrieval = PipelineStageEvent.start("retrieval");
+        String productKey = productKey(productName(providerId));
+        List<Bm25Index.ScoredDocument> found = corpus.index().search(NgramTokenizer.terms(messageText), topK,
+                maxQueryTerms, minScore, id -> {
+                    if (providerId == null) {
+                        return true;
+                    }
+                    Scope scope = corpus.scopes().get(id);
+                    return scope != null && (providerId.equals(scope.providerId())
+                            || (productKey != null && productKey.equals(scope.productKey())));
+                });
+        retrieval.finish(messageText.length(), found.size());
+        if (found.isEmpty()) {
+            return null;
+        }
+
+        Map<Long, ConversationHistory> rows = conversationShards.onUserShard(userId, () -> conversationRepository
+                .findAllById(found.stream().map(Bm25Index.ScoredDocument::id).toList())).stream()
+                .collect(Collectors.toMap(ConversationHistory::getId, Function.identity()));
+        int itemTokens = maxTokens / found.size();
+        List<String> lines = new ArrayList<>();
+        for (Bm25Index.ScoredDocument document : found) {
+            ConversationHistory row = rows.get(document.id());
+            if (row != null) {
+                lines.add(TokenEstimator.truncate(format(row), itemTokens));
+            }
+        }
+        return lines.isEmpty() ? null : String.join("\n", lines);
+    }
+
+    private int load(Map<String, Corpus> target, LocalDateTime since) {
+        int indexed = 0;
+        Map<Long, Optional<String>> productNames = new HashMap<>();
+        for (int shard = 0; shard < conversationShards.count(); shard++) {
+            int source = shard;
+            long lastId = 0L;
+            List<ConversationHistoryRepository.RetrievalView> batch;
+            do {
+                long afterId = lastId;
+                batch = conversationShards.onShard(source, () -> readOnlyTemplate.execute(status ->
+                        conversationRepository.findRetrievalViewsAfter(
+                                afterId, since, PageRequest.of(0, rebuildBatchSize))));
+                for (ConversationHistoryRepository.RetrievalView view : batch) {
+                    Corpus corpus = target.get(view.getUserId());
+                    if (corpus == null || !corpus.index().contains(view.getId())) {
+                        String productName = view.getProviderId() != null
+                                ? productNames.computeIfAbsent(view.getProviderId(),
+                                        id -> Optional.ofNullable(productName(id))).orElse(null)
+                                : null;
+                        index(target, view.getId(), view.getUserId(), view.getProviderId(), productName,
+                                view.getOriginalMessage(), view.getTranslatedMessage(), view.getAiInterpretation());
+                        indexed++;
+                    }
+                    lastId = view.getId();
+                }
+            } while (batch.size() == rebuildBatchSize);
+        }
+        return indexed;
+    }
+
+    private String productName(Long providerId) {
+        return providerId != null
+                ? providerCache.get(providerId).map(ProviderProfile::getProductName).orElse(null)
+                : null;
+    }
+
+    private void index(Map<String, Corpus> target, Long id, String userId, Long providerId, String productName,
+                       String originalMessage, String translatedMessage, String interpretation) {
+        List<String> terms = new ArrayList<>(NgramTokenizer.terms(originalMessage));
+        terms.addAll(NgramTokenizer.terms(translatedMessage));
+        terms.addAll(NgramTokenizer.terms(interpretation));
+        Corpus corpus = target.computeIfAbsent(userId,
+                user -> new Corpus(new Bm25Index(), new ConcurrentHashMap<>()));
+        corpus.scopes().put(id, new Scope(providerId, productKey(productName)));
+        corpus.index().add(id, terms);
+    }
+
+    private static String format(ConversationHistory row) {
+        StringBuilder line = new StringBuilder("- [").append(row.getTimestamp().toLocalDate()).append("] \"")
+                .append(row.getOriginalMessage()).append('"');
+        if (row.getTranslatedMessage() != null) {
+            line.append(" => \"").append(row.getTranslatedMessage()).append('"');
+        }
+        if (row.getAiInterpretation() != null) {
+            line.append(" (").append(row.getAiInterpretation()).append(')');
+        }
+        return line.toString();
+    }
+
+    /**
+     * Normalized product name, or null for a blank or "Unknown" one: providers whose product
+     * was not identified do not share a product.
+     */
+    private static String productKey(String productName) {
+        if (productName == null || productName.isBlank()) {
+            return null;
+        }
+        String key = NgramTokenizer.normalize(productName).strip();
+        return key.equals(UNKNOWN_PRODUCT) ? null : key;
+    }
+
+    /**
+     * Provider and product of an indexed conversation, for scoping lookups.
+     */
+    private record Scope(Long providerId, String productKey) {
+    }
+
+    private record Corpus(Bm25Index index, Map<Long, Scope> scopes) {
+    }
+}
@@ -0,0 +1,66 @@
+package com.salvacode.orientlink.service;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/conversationshards) for the conversation history shards.
+ *
+ * - GET /actuator/conversationshards: per shard, the users assigned to it and the conversations it holds
+ * - POST /actuator/conversationshards/{userId} with {"shard": n}: move the user's conversations to shard n,
+ *   while the application keeps serving them (see ConversationResharder); returns once done
+ */
+@Component
+@Endpoint(id = "conversationshards")
+public class ConversationShardEndpoint {
+
+    private final ConversationShards shards;
+    private final ConversationResharder resharder;
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConversationShardEndpoint(ConversationShards shards, ConversationResharder resharder,
+                                     DataSource dataSource) {
+        this.shards = shards;
+        this.resharder = resharder;
+        this.jdbcTemplate = new JdbcTemplate(dataSource); // Routed to the shard each count runs on
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> shards() {
+        if (!shards.isSharded()) {
+            return List.of();
+        }
+        List<Long> users = shards.assignedUsers();
+        List<Long> conversations = shards.onEveryShard(
+                () -> jdbcTemplate.queryForObject("SELECT count(*) FROM conversation_history", Long.class));
+        List<Map<String, Object>> description = new ArrayList<>();
+        for (int shard = 0; shard < shards.count(); shard++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("shard", shard);
+            entry.put("users", users.get(shard));
+            entry.put("conversations", conversations.get(shard));
+            description.add(entry);
+        }
+        return description;
+    }
+
+    @WriteOperation
+    public ConversationResharder.MoveResult move(@Selector String userId, int shard) {
+        try {
+            return resharder.move(userId, shard);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.ConversationShardProperties;
+import com.salvacode.orientlink.config.ConversationShardRoutingDataSource;
+import com.salvacode.orientlink.exception.DeadlineExceededException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Which conversation history shard a user's conversations live on, and running work there.
+ *
+ * - A user is placed on first write by a hash of the user ID and stays there until moved
+ *   (see ConversationResharder); the assignment is kept in the regular database.
+ * - Reads of one user go to their shard, on an assignment cached for assignment-cache-ttl.
+ * - Writes check the assignment afresh inside the shard transaction, after taking the user's
+ *   shared advisory lock (the one the stats triggers take), so a move that drains the
+ *   source shard under the exclusive lock cannot miss them. While the user is being moved,
+ *   writes wait for the move to finish.
+ * - Work that spans users (index rebuilds, purges, provider merges) runs on every shard in
+ *   parallel and gathers the results in shard order.
+ *
+ * Without orientlink.datasource.conversation-shards.enabled there is a single shard, the
+ * regular database, and every method simply runs the work.
+ */
+@Service
+@Slf4j
+public class ConversationShards {
+
+    private static final Duration MOVE_POLL_INTERVAL = Duration.ofMillis(200);
+    private static final int MAX_CACHED_ASSIGNMENTS = 100_000;
+
+    private final ConversationShardRoutingDataSource router;
+    private final JdbcTemplate directory;
+    private final TransactionTemplate writeTemplate;
+    private final JdbcTemplate transactionJdbc;
+    private final Duration assignmentCacheTtl;
+    private final Duration moveWait;
+    private final ExecutorService scatterPool;
+    private final Map<String, CachedAssignment> cache = new ConcurrentHashMap<>();
+
+    public ConversationShards(ObjectProvider<ConversationShardRoutingDataSource> router,
+                              ObjectProvider<ConversationShardProperties> properties,
+                              DataSource dataSource,
+                              PlatformTransactionManager transactionManager) {
+        this.router = router.getIfAvailable();
+        this.directory = this.router != null
+                ? new JdbcTemplate(this.router.shard(ConversationShardRoutingDataSource.HOME))
+                : null;
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.transactionJdbc = new JdbcTemplate(dataSource);
+        ConversationShardProperties settings = properties.getIfAvailable(ConversationShardProperties::new);
+        this.assignmentCacheTtl = settings.getAssignmentCacheTtl();
+        this.moveWait = settings.getMoveWait();
+        this.scatterPool = this.router != null && this.router.size() > 1
+                ? Executors.newFixedThreadPool(this.router.size(), runnable -> {
+                    Thread thread = new Thread(runnable, "conversation-shard-scatter");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    /**
+     * Where a user's conversations are, and whether they are being moved.
+     */
+    record Assignment(int shard, boolean moving) {
+    }
+
+    private record CachedAssignment(int shard, long expiresAt) {
+    }
+
+    private record Attempt<T>(boolean done, T value) {
+    }
+
+    /**
+     * Whether conversations are spread over several databases.
+     */
+    public boolean isSharded() {
+        return router != null;
+    }
+
+    public int count() {
+        return router != null ? router.size() : 1;
+    }
+
+    /**
+     * The user's shard, from the cached assignment; the hash placement for a user without one.
+     */
+    public int shardOf(String userId) {
+        if (router == null) {
+            return ConversationShardRoutingDataSource.HOME;
+        }
+        long now = System.nanoTime();
+        CachedAssignment cached = cache.get(userId);
+        if (cached != null && cached.expiresAt() - now > 0) {
+            return cached.shard();
+        }
+        Assignment assignment = find(userId);
+        int shard = assignment != null ? assignment.shard() : hashShard(userId);
+        cacheAssignment(userId, shard, now);
+        return shard;
+    }
+
+    /**
+     * Run read work (and any transaction it starts) on the user's shard.
+     */
+    public <T> T onUserShard(String userId, Supplier<T> work) {
+        return onShard(shardOf(userId), work);
+    }
+
+    /**
+     * Run work (and any transaction it starts) on the given shard.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (router == null) {
+            return work.get();
+        }
+        return ConversationShardRoutingDataSource.onShard(shard, work);
+    }
+
+    /**
+     * Run work on every shard in parallel, each in its own call; results in shard order.
+     */
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (scatterPool == null) {
+            return List.of(work.get());
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int shard = 0; shard < router.size(); shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> onShard(target, work), scatterPool));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Run write work in a transaction on the user's shard, assigning the user to a shard first
+     * if needed. Waits up to move-wait while the user is being moved.
+     */
+    public <T> T writeForUser(String userId, Supplier<T> work) {
+        if (router == null) {
+            return writeTemplate.execute(status -> work.get());
+        }
+        long deadline = System.nanoTime() + moveWait.toNanos();
+        while (true) {
+            Assignment assignment = assign(userId);
+            if (!assignment.moving()) {
+                Attempt<T> attempt = onShard(assignment.shard(), () -> writeTemplate.execute(status -> {
+                    transactionJdbc.query("SELECT pg_advisory_xact_lock_shared(4901, hashtext(?))",
+                            rs -> null, userId);
+                    // On shard 0 the directory is read over this transaction's connection:
+                    // a second one from the same pool could deadlock under load
+                    Assignment current = assignment.shard() == ConversationShardRoutingDataSource.HOME
+                            ? find(transactionJdbc, userId)
+                            : find(userId);
+                    if (!assignment.equals(current)) {
+                        status.setRollbackOnly();
+                        return new Attempt<T>(false, null);
+                    }
+                    return new Attempt<>(true, work.get());
+                }));
+                if (attempt.done()) {
+                    cacheAssignment(userId, assignment.shard(), System.nanoTime());
+                    return attempt.value();
+                }
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new DeadlineExceededException("Conversations of user " + userId
+                        + " are still being moved to another shard");
+            }
+            try {
+                Thread.sleep(MOVE_POLL_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DeadlineExceededException("Interrupted while waiting for a shard move");
+            }
+        }
+    }
+
+    /**
+     * The shard's own DataSource, bypassing routing.
+     */
+    DataSource dataSource(int shard) {
+        return router.shard(shard);
+    }
+
+    /**
+     * Fresh assignment of the user, recording the hash placement if there is none yet.
+     */
+    Assignment assign(String userId) {
+        Assignment assignment = find(userId);
+        if (assignment != null) {
+            return assignment;
+        }
+        directory.update("INSERT INTO conversation_shard_assignment (user_id, shard, moving, updated_at) "
+                + "VALUES (?, ?, false, localtimestamp) ON CONFLICT (user_id) DO NOTHING", userId, hashShard(userId));
+        return find(userId);
+    }
+
+    /**
+     * Flag the user as being moved; writes wait from now on, reads stay on the current shard.
+     */
+    Assignment markMoving(String userId) {
+        assign(userId);
+        directory.update("UPDATE conversation_shard_assignment SET moving = true, updated_at = localtimestamp "
+                + "WHERE user_id = ?", userId);
+        return find(userId);
+    }
+
+    /**
+     * Point the user at the shard their conversations now live on and let writes continue.
+     */
+    void completeMove(String userId, int shard) {
+        directory.update("UPDATE conversation_shard_assignment SET shard = ?, moving = false, "
+                + "updated_at = localtimestamp WHERE user_id = ?", shard, userId);
+        cache.remove(userId);
+    }
+
+    /**
+     * Users assigned to each shard.
+     */
+    List<Long> assignedUsers() {
+        List<Long> counts = new ArrayList<>();
+        for (int shard = 0; shard < count(); shard++) {
+            counts.add(directory.queryForObject(
+                    "SELECT count(*) FROM conversation_shard_assignment WHERE shard = ?", Long.class, shard));
+        }
+        return counts;
+    }
+
+    Duration assignmentCacheTtl() {
+        return assignmentCacheTtl;
+    }
+
+    private Assignment find(String userId) {
+        return find(directory, userId);
+    }
+
+    private static Assignment find(JdbcTemplate jdbc, String userId) {
+        List<Assignment> found = jdbc.query(
+                "SELECT shard, moving FROM conversation_shard_assignment WHERE user_id = ?",
+                (rs, row) -> new Assignment(rs.getInt("shard"), rs.getBoolean("moving")), userId);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private void cacheAssignment(String userId, int shard, long now) {
+        if (cache.size() >= MAX_CACHED_ASSIGNMENTS) {
+            cache.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+        }
+        cache.put(userId, new CachedAssignment(shard, now + assignmentCacheTtl.toNanos()));
+    }
+
+    /**
+     * Stable placement of a new user: the first 8 bytes of SHA-256 of the ID, modulo the shard count.
+     */
+    private int hashShard(String userId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(userId.getBytes(StandardCharsets.UTF_8));
+            return (int) Math.floorMod(ByteBuffer.wrap(digest).getLong(), (long) count());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scatterPool != null) {
+            scatterPool.shutdownNow();
+        }
+    }
+}
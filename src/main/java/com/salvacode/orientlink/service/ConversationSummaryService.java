@@ -0,0 +1,195 @@
+package com.salvacode.orientlink.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.context.RequestPriority;
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.entity.ConversationSummary;
+import com.salvacode.orientlink.event.ConversationSavedEvent;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import com.salvacode.orientlink.repository.ConversationSummaryRepository;
+import com.salvacode.orientlink.util.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains a rolling, token-capped summary per (userId, providerId).
+ *
+ * After each saved conversation the summary is refreshed asynchronously by folding in
+ * every conversation newer than the last one summarized, so missed or concurrent events
+ * are caught up on the next refresh. The summary replaces the raw thread as prompt
+ * context, which keeps prompt size constant however long a negotiation runs.
+ *
+ * Refreshes of one pair are coalesced on each node: while one runs, further saves only
+ * mark the pair dirty, and the running refresh goes round once more to fold them in,
+ * instead of each save paying for its own summarization.
+ */
+@Service
+@Slf4j
+public class ConversationSummaryService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OpenAiIntegrationService openAiService;
+    private final ConversationSummaryRepository summaryRepository;
+    private final ConversationHistoryRepository conversationRepository;
+    private final ConversationShards conversationShards;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<PairKey, Boolean> inFlight = new ConcurrentHashMap<>(); // Value: saved again meanwhile
+
+    @Value("${orientlink.summary.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orientlink.summary.max-tokens:300}")
+    private int maxSummaryTokens;
+
+    @Value("${orientlink.summary.max-new-messages:20}")
+    private int maxNewMessages;
+
+    @Value("${orientlink.summary.max-message-tokens:400}")
+    private int maxMessageTokens;
+
+    public ConversationSummaryService(OpenAiIntegrationService openAiService,
+                                      ConversationSummaryRepository summaryRepository,
+                                      ConversationHistoryRepository conversationRepository,
+                                      ConversationShards conversationShards,
+                                      PlatformTransactionManager transactionManager) {
+        this.openAiService = openAiService;
+        this.summaryRepository = summaryRepository;
+        this.conversationRepository = conversationRepository;
+        this.conversationShards = conversationShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private record PairKey(String userId, Long providerId) {
+    }
+
+    /**
+     * Current summary for the pair, if one exists.
+     */
+    public Optional<String> getSummary(String userId, Long providerId) {
+        if (!enabled || providerId == null) {
+            return Optional.empty();
+        }
+        return summaryRepository.findByUserIdAndProviderId(userId, providerId)
+                .map(ConversationSummary::getSummary);
+    }
+
+    /**
+     * Refresh the pair's summary once the conversation is committed.
+     */
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationSaved(ConversationSavedEvent event) {
+        if (!enabled || event.providerId() == null) {
+            return;
+        }
+        String userId = event.conversation().getUserId();
+        PairKey key = new PairKey(userId, event.providerId());
+        boolean[] started = {false};
+        inFlight.compute(key, (pair, dirty) -> {
+            started[0] = dirty == null;
+            return started[0] ? Boolean.FALSE : Boolean.TRUE;
+        });
+        if (!started[0]) {
+            return; // The running refresh picks this conversation up
+        }
+        RequestContext.setUserId(userId);
+        RequestContext.setPriority(RequestPriority.BACKGROUND);
+        try {
+            do {
+                refreshWithRetry(userId, event.providerId());
+            } while (inFlight.compute(key, (pair, dirty) -> dirty ? Boolean.FALSE : null) != null);
+        } catch (RuntimeException e) {
+            inFlight.remove(key);
+            throw e;
+        } finally {
+            RequestContext.clear(); // Async pool threads are reused
+        }
+    }
+
+    private void refreshWithRetry(String userId, Long providerId) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                refresh(userId, providerId);
+                return;
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                // Another node/thread refreshed the same pair; retry folds in what is left
+                log.debug("Concurrent summary refresh for user {} / provider {}, attempt {}",
+                        userId, providerId, attempt);
+            } catch (Exception e) {
+                log.warn("Failed to refresh summary for user {} / provider {}", userId, providerId, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fold all not-yet-summarized conversations into the pair's summary.
+     * The LLM call runs outside any transaction; only the final write is transactional.
+     */
+    void refresh(String userId, Long providerId) {
+        ConversationSummary summary = summaryRepository.findByUserIdAndProviderId(userId, providerId)
+                .orElseGet(() -> ConversationSummary.builder()
+                        .userId(userId)
+                        .providerId(providerId)
+                        .lastConversationId(0L)
+                        .messageCount(0)
+                        .build());
+
+        // Conversations live on the user's shard, summaries in the regular database
+        List<ConversationHistory> newMessages = conversationShards.onUserShard(userId, () -> conversationRepository
+                .findByUserIdAndProviderIdAndIdGreaterThanOrderByIdAsc(
+                        userId, providerId, summary.getLastConversationId(), PageRequest.of(0, maxNewMessages)));
+        if (newMessages.isEmpty()) {
+            return;
+        }
+
+        String aiResponse = openAiService.summarizeConversation(
+                summary.getSummary(), formatMessages(newMessages), maxSummaryTokens);
+        JsonNode json = openAiService.parseJsonResponse(aiResponse);
+        String updatedSummary = TokenEstimator.truncate(json.get("summary").asText(), maxSummaryTokens);
+
+        summary.setSummary(updatedSummary);
+        summary.setLastConversationId(newMessages.get(newMessages.size() - 1).getId());
+        summary.setMessageCount(summary.getMessageCount() + newMessages.size());
+        transactionTemplate.executeWithoutResult(status -> summaryRepository.save(summary));
+
+        log.info("Summary for user {} / provider {} now covers {} messages",
+                userId, providerId, summary.getMessageCount());
+    }
+
+    private String formatMessages(List<ConversationHistory> messages) {
+        StringBuilder text = new StringBuilder();
+        String previousGroupId = null;
+        for (ConversationHistory message : messages) {
+            // Rows of one multi-language analysis are the same message; fold it in once
+            String groupId = message.getAnalysisGroupId();
+            if (groupId != null && groupId.equals(previousGroupId)) {
+                continue;
+            }
+            previousGroupId = groupId;
+            text.append("- [").append(message.getSourceLanguage()).append("] ")
+                    .append(TokenEstimator.truncate(message.getOriginalMessage(), maxMessageTokens));
+            if (message.getAiInterpretation() != null) {
+                text.append("\n  Interpretation: ")
+                        .append(TokenEstimator.truncate(message.getAiInterpretation(), maxMessageTokens / 2));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
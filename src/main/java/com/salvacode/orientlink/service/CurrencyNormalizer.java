@@ -0,0 +1,45 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.CurrencyProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Converts provider prices to USD using the configured rates.
+ * Currency codes are matched case-insensitively; common symbols and "RMB" are accepted.
+ */
+@Component
+@EnableConfigurationProperties(CurrencyProperties.class)
+public class CurrencyNormalizer {
+    
+    private static final Map<String, String> ALIASES = Map.of(
+            "$", "USD",
+            "US$", "USD",
+            "RMB", "CNY",
+            "¥", "CNY",
+            "€", "EUR"
+    );
+    
+    private final Map<String, Double> usdRates = new HashMap<>();
+    
+    public CurrencyNormalizer(CurrencyProperties properties) {
+        properties.getUsdRates().forEach((code, rate) -> usdRates.put(code.toUpperCase(Locale.ROOT), rate));
+    }
+    
+    /**
+     * Price in USD, or NaN when the price or its currency is unknown.
+     */
+    public double toUsd(Double amount, String currency) {
+        // "null" is what a JSON null currency becomes after extraction
+        if (amount == null || currency == null || currency.isBlank() || "null".equalsIgnoreCase(currency)) {
+            return Double.NaN;
+        }
+        String code = currency.trim().toUpperCase(Locale.ROOT);
+        Double rate = usdRates.get(ALIASES.getOrDefault(code, code));
+        return rate != null ? amount * rate : Double.NaN;
+    }
+}
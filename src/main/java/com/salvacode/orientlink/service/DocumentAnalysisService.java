@@ -0,0 +1,255 @@
+package com.salvacode.orientlink.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.context.RequestPriority;
+import com.salvacode.orientlink.dto.DocumentAnalysisEventDTO;
+import com.salvacode.orientlink.dto.DocumentAnalyzeRequestDTO;
+import com.salvacode.orientlink.util.TextChunker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyzes long documents (contracts, pro-forma invoices) chunk by chunk and streams the
+ * results as NDJSON.
+ *
+ * The text is cut into chunks on sentence and clause boundaries ({@link TextChunker}),
+ * and at most parallelism chunks of a document are analyzed at once. Each result is
+ * written as soon as it arrives, in completion order with its chunk index. Only the
+ * merged alerts and key terms are kept until the final summary line, so memory grows with
+ * the chunk size, not the document size. If the client disconnects, the outstanding
+ * chunk calls are cancelled.
+ */
+@Service
+@Slf4j
+public class DocumentAnalysisService {
+
+    private static final List<String> RISK_LEVELS = List.of("low", "medium", "high");
+
+    private final OpenAiIntegrationService openAiService;
+    private final OpenAiScheduler scheduler;
+    private final GlossaryService glossaryService;
+    private final ObjectWriter lineWriter;
+
+    @Value("${orientlink.documents.chunk-tokens:1000}")
+    private int chunkTokens;
+
+    @Value("${orientlink.documents.parallelism:4}")
+    private int parallelism;
+
+    @Value("${orientlink.documents.pool-size:16}")
+    private int poolSize;
+
+    @Value("${orientlink.documents.max-alerts:50}")
+    private int maxAlerts;
+
+    @Value("${orientlink.documents.max-key-terms:30}")
+    private int maxKeyTerms;
+
+    private ExecutorService workers;
+
+    public DocumentAnalysisService(OpenAiIntegrationService openAiService, OpenAiScheduler scheduler,
+                                   GlossaryService glossaryService, ObjectMapper objectMapper) {
+        this.openAiService = openAiService;
+        this.scheduler = scheduler;
+        this.glossaryService = glossaryService;
+        this.lineWriter = objectMapper.writerFor(DocumentAnalysisEventDTO.class);
+    }
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "document-analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Charge the document to the user's request rate, once; call before streaming starts
+     * so a rejection can still be answered with 429.
+     */
+    public void admit(DocumentAnalyzeRequestDTO request) {
+        scheduler.admit(request.getUserId());
+    }
+
+    /**
+     * Analyze the document and write one JSON line per chunk, then a summary line.
+     *
+     * @param request The document
+     * @param context Context of the HTTP request (deadline, request ID), captured on its thread
+     * @param out Target stream (not closed)
+     */
+    public void analyze(DocumentAnalyzeRequestDTO request, RequestContext.Snapshot context, OutputStream out)
+            throws IOException {
+        String sourceLang = request.getSourceLanguage() != null ? request.getSourceLanguage() : "zh";
+        String targetLang = request.getTargetLanguage() != null ? request.getTargetLanguage() : "es";
+        log.info("Analyzing document of {} characters for user {}", request.getDocumentText().length(),
+                request.getUserId());
+
+        TextChunker chunks = new TextChunker(request.getDocumentText(), chunkTokens);
+        CompletionService<DocumentAnalysisEventDTO> completion = new ExecutorCompletionService<>(workers);
+        Set<Future<DocumentAnalysisEventDTO>> running = new HashSet<>();
+        Verdict verdict = new Verdict();
+        try {
+            while (true) {
+                while (running.size() < parallelism && chunks.hasNext()) {
+                    TextChunker.Chunk chunk = chunks.next();
+                    running.add(completion.submit(() -> analyzeChunk(request, context, chunk, sourceLang, targetLang)));
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+                Future<DocumentAnalysisEventDTO> done = completion.take();
+                running.remove(done);
+                DocumentAnalysisEventDTO result = done.get();
+                verdict.add(result);
+                writeLine(out, result);
+            }
+            writeLine(out, verdict.summary());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing document", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // analyzeChunk reports failures as results
+        } finally {
+            // Client gone or failure: stop paying for chunks nobody will read
+            running.forEach(future -> future.cancel(true));
+        }
+        log.info("Document analysis completed: {} chunks, {} failed", verdict.chunkCount, verdict.failedChunks);
+    }
+
+    private DocumentAnalysisEventDTO analyzeChunk(DocumentAnalyzeRequestDTO request, RequestContext.Snapshot context,
+                                                  TextChunker.Chunk chunk, String sourceLang, String targetLang) {
+        context.restore();
+        RequestContext.setUserId(request.getUserId());
+        // The document was admitted as a whole; its chunks wait for capacity instead of being rejected
+        RequestContext.setPriority(RequestPriority.JOB);
+        DocumentAnalysisEventDTO.DocumentAnalysisEventDTOBuilder event = DocumentAnalysisEventDTO.builder()
+                .type(DocumentAnalysisEventDTO.TYPE_CHUNK)
+                .chunkIndex(chunk.index())
+                .startOffset(chunk.start())
+                .endOffset(chunk.end());
+        try {
+            String glossary = glossaryService.promptSection(request.getUserId(), chunk.text());
+            String aiResponse = openAiService.analyzeDocumentChunk(
+                    chunk.text(), chunk.index() + 1, sourceLang, targetLang, request.getDocumentType(), glossary);
+            JsonNode json = openAiService.parseJsonResponse(aiResponse);
+            return event
+                    .translatedText(text(json, "translatedText"))
+                    .summary(text(json, "summary"))
+                    .keyTerms(list(json.get("keyTerms")))
+                    .alerts(list(json.get("alerts")))
+                    .riskLevel(text(json, "riskLevel"))
+                    .build();
+        } catch (Exception e) {
+            log.warn("Failed to analyze chunk {} of document for user {}: {}", chunk.index(), request.getUserId(),
+                    e.getMessage());
+            return event.error(e.getMessage()).build();
+        } finally {
+            RequestContext.clear();
+        }
+    }
+
+    private void writeLine(OutputStream out, DocumentAnalysisEventDTO event) throws IOException {
+        out.write(lineWriter.writeValueAsBytes(event));
+        out.write('\n');
+        out.flush();
+    }
+
+    private static String text(JsonNode json, String field) {
+        JsonNode node = json.get(field);
+        return node != null && !node.isNull() ? node.asText() : null;
+    }
+
+    private static List<String> list(JsonNode arrayNode) {
+        List<String> list = new ArrayList<>();
+        if (arrayNode != null && arrayNode.isArray()) {
+            arrayNode.forEach(node -> list.add(node.asText()));
+        }
+        return list;
+    }
+
+    /**
+     * Merges chunk results into the document verdict: highest risk, de-duplicated alerts and key terms.
+     */
+    private final class Verdict {
+        private final Map<String, String> alerts = new LinkedHashMap<>();
+        private final Map<String, String> keyTerms = new LinkedHashMap<>();
+        private int riskIndex = -1;
+        private int chunkCount;
+        private int failedChunks;
+
+        void add(DocumentAnalysisEventDTO chunk) {
+            chunkCount++;
+            if (chunk.getError() != null) {
+                failedChunks++;
+                return;
+            }
+            riskIndex = Math.max(riskIndex, RISK_LEVELS.indexOf(normalize(chunk.getRiskLevel())));
+            addAll(alerts, chunk.getAlerts(), maxAlerts);
+            addAll(keyTerms, chunk.getKeyTerms(), maxKeyTerms);
+        }
+
+        DocumentAnalysisEventDTO summary() {
+            String riskLevel = riskIndex >= 0 ? RISK_LEVELS.get(riskIndex) : null;
+            String summary = failedChunks == 0
+                    ? "Analyzed " + chunkCount + " passages; overall risk " + riskLevel
+                    : "Analyzed " + (chunkCount - failedChunks) + " of " + chunkCount
+                            + " passages; the verdict does not cover the failed ones";
+            return DocumentAnalysisEventDTO.builder()
+                    .type(DocumentAnalysisEventDTO.TYPE_SUMMARY)
+                    .chunkCount(chunkCount)
+                    .failedChunks(failedChunks)
+                    .riskLevel(riskLevel)
+                    .alerts(new ArrayList<>(alerts.values()))
+                    .keyTerms(new ArrayList<>(keyTerms.values()))
+                    .summary(summary)
+                    .build();
+        }
+
+        private void addAll(Map<String, String> target, List<String> values, int limit) {
+            if (values == null) {
+                return;
+            }
+            for (String value : values) {
+                if (target.size() >= limit) {
+                    return;
+                }
+                if (value != null && !value.isBlank()) {
+                    target.putIfAbsent(normalize(value), value.strip());
+                }
+            }
+        }
+
+        private String normalize(String value) {
+            return value == null ? null : value.strip().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.salvacode.orientlink.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent embedding requests into batched provider calls.
+ *
+ * A single thread takes the first waiting text, collects whatever else arrives within
+ * max-delay (up to batch-size texts), and embeds them in one call. Under load batches
+ * fill up and the per-text cost drops; alone, a text waits at most max-delay.
+ */
+@Component
+@Slf4j
+public class EmbeddingBatcher {
+
+    private final EmbeddingProvider provider;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    @Value("${orientlink.semantic-cache.batch-size:64}")
+    private int batchSize;
+
+    @Value("${orientlink.semantic-cache.batch-max-delay:10ms}")
+    private Duration maxDelay;
+
+    private Thread worker;
+
+    public EmbeddingBatcher(EmbeddingProvider provider) {
+        this.provider = provider;
+    }
+
+    @PostConstruct
+    void start() {
+        worker = new Thread(this::run, "embedding-batcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.interrupt();
+    }
+
+    public String model() {
+        return provider.model();
+    }
+
+    /**
+     * Embed the text in the next batch.
+     */
+    public CompletableFuture<float[]> embed(String text) {
+        Pending pending = new Pending(text, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.result();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < batchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                embedBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.forEach(pending -> pending.result().cancel(false)); // No-op for completed ones
+                batch.clear();
+            }
+        }
+    }
+
+    private void embedBatch(List<Pending> batch) {
+        try {
+            List<float[]> vectors = provider.embed(batch.stream().map(Pending::text).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(vectors.get(i));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to embed a batch of {} texts: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private record Pending(String text, CompletableFuture<float[]> result) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.salvacode.orientlink.service;
+
+import java.util.List;
+
+/**
+ * Turns texts into embedding vectors for similarity search.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Identifies the model; vectors of different models are not comparable.
+     */
+    String model();
+
+    /**
+     * One vector per text, in order.
+     */
+    List<float[]> embed(List<String> texts);
+}
@@ -0,0 +1,367 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.ReadReplicaRoutingDataSource;
+import com.salvacode.orientlink.dto.GlossaryEntryDTO;
+import com.salvacode.orientlink.dto.GlossaryUpdateRequestDTO;
+import com.salvacode.orientlink.entity.GlossaryEntry;
+import com.salvacode.orientlink.event.GlossaryChangedEvent;
+import com.salvacode.orientlink.exception.BadRequestException;
+import com.salvacode.orientlink.repository.GlossaryEntryRepository;
+import com.salvacode.orientlink.util.AhoCorasick;
+import com.salvacode.orientlink.util.TokenEstimator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Per-user terminology glossaries, and selection of the entries relevant to a message.
+ *
+ * Each user's glossary is compiled into an {@link AhoCorasick} automaton and cached, so
+ * finding which of 10k+ terms occur in a message is one pass over the message. Only
+ * those entries are injected into the prompt, within a term and token budget.
+ *
+ * Changes are picked up incrementally: rows updated since the last sync (tombstones
+ * included) are read back, and new terms go into a small delta automaton next to the
+ * base one, while deleted terms are just dropped from the entry map. The base is rebuilt
+ * once the delta grows past max-delta-terms or a tenth of its terms are gone. Local
+ * writes trigger a sync on the next lookup; writes on other nodes are seen within
+ * sync-interval.
+ */
+@Service
+@Slf4j
+public class GlossaryService {
+
+    private final GlossaryEntryRepository glossaryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate primaryReadTemplate;
+    private final Timer fullCompileTimer;
+    private final Timer deltaCompileTimer;
+
+    private final int maxEntries;
+    private final int maxInjectedTerms;
+    private final int maxInjectedTokens;
+    private final int maxDeltaTerms;
+    private final long syncIntervalNanos;
+    private final Duration syncOverlap;
+
+    private final Map<String, Glossary> glossaries;
+
+    public GlossaryService(GlossaryEntryRepository glossaryRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${orientlink.glossary.max-entries:20000}") int maxEntries,
+                           @Value("${orientlink.glossary.max-injected-terms:40}") int maxInjectedTerms,
+                           @Value("${orientlink.glossary.max-injected-tokens:400}") int maxInjectedTokens,
+                           @Value("${orientlink.glossary.max-delta-terms:256}") int maxDeltaTerms,
+                           @Value("${orientlink.glossary.sync-interval:30s}") Duration syncInterval,
+                           @Value("${orientlink.glossary.sync-overlap:10s}") Duration syncOverlap,
+                           @Value("${orientlink.glossary.cache.max-users:2000}") int maxUsers) {
+        this.glossaryRepository = glossaryRepository;
+        this.eventPublisher = eventPublisher;
+        // Syncs read from the primary: a lagging replica could hide a change past the overlap window
+        this.primaryReadTemplate = new TransactionTemplate(transactionManager);
+        this.primaryReadTemplate.setReadOnly(true);
+        this.maxEntries = maxEntries;
+        this.maxInjectedTerms = maxInjectedTerms;
+        this.maxInjectedTokens = maxInjectedTokens;
+        this.maxDeltaTerms = maxDeltaTerms;
+        this.syncIntervalNanos = syncInterval.toNanos();
+        this.syncOverlap = syncOverlap;
+        this.glossaries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Glossary> eldest) {
+                return size() > maxUsers;
+            }
+        };
+
+        this.fullCompileTimer = Timer.builder("orientlink.glossary.compile")
+                .tag("kind", "full")
+                .register(meterRegistry);
+        this.deltaCompileTimer = Timer.builder("orientlink.glossary.compile")
+                .tag("kind", "delta")
+                .register(meterRegistry);
+        Gauge.builder("orientlink.glossary.cache.size", this, GlossaryService::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Live entries of a user, ordered by term.
+     */
+    @Transactional(readOnly = true)
+    public List<GlossaryEntryDTO> getEntries(String userId) {
+        return glossaryRepository.findByUserIdAndDeletedFalseOrderByTerm(userId).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+    /**
+     * Add entries, or update the translation and note of existing terms (matched case-insensitively).
+     */
+    @Transactional
+    public List<GlossaryEntryDTO> upsert(GlossaryUpdateRequestDTO request) {
+        String userId = request.getUserId();
+        long liveEntries = glossaryRepository.countByUserIdAndDeletedFalse(userId);
+
+        List<GlossaryEntry> saved = new ArrayList<>();
+        for (GlossaryEntryDTO dto : request.getEntries()) {
+            String term = dto.getTerm().strip();
+            Optional<GlossaryEntry> existing = glossaryRepository.findFirstByUserIdAndTermIgnoreCase(userId, term);
+            GlossaryEntry entry = existing.orElseGet(() -> GlossaryEntry.builder().userId(userId).build());
+            if ((existing.isEmpty() || entry.isDeleted()) && ++liveEntries > maxEntries) {
+                throw new BadRequestException("A glossary cannot exceed " + maxEntries + " entries");
+            }
+            entry.setTerm(term);
+            entry.setTranslation(dto.getTranslation().strip());
+            entry.setNote(dto.getNote() != null && !dto.getNote().isBlank() ? dto.getNote().strip() : null);
+            entry.setDeleted(false);
+            saved.add(glossaryRepository.save(entry));
+        }
+
+        glossaryRepository.flush(); // Sets updatedAt of updated entries for the response
+        eventPublisher.publishEvent(new GlossaryChangedEvent(userId));
+        log.info("Saved {} glossary entries for user {}", saved.size(), userId);
+        return saved.stream().map(this::toDTO).toList();
+    }
+
+    /**
+     * Delete an entry of the user.
+     *
+     * @return false if there is no such live entry
+     */
+    @Transactional
+    public boolean delete(String userId, Long id) {
+        return glossaryRepository.findById(id)
+                .filter(entry -> entry.getUserId().equals(userId) && !entry.isDeleted())
+                .map(entry -> {
+                    entry.setDeleted(true); // Tombstone, so other nodes' syncs see the removal
+                    eventPublisher.publishEvent(new GlossaryChangedEvent(userId));
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Glossary lines for the entries whose terms occur in the text, in order of first
+     * occurrence, or null if none does.
+     */
+    public String promptSection(String userId, String text) {
+        if (userId == null || text == null || text.isBlank()) {
+            return null;
+        }
+        Glossary glossary = glossary(userId);
+        if (glossary.entries().isEmpty()) {
+            return null;
+        }
+
+        List<Occurrence> occurrences = new ArrayList<>();
+        glossary.match(text, occurrences);
+        occurrences.sort(Comparator.comparingInt(Occurrence::start));
+
+        StringBuilder section = new StringBuilder();
+        Set<String> injected = new HashSet<>();
+        int tokens = 0;
+        for (Occurrence occurrence : occurrences) {
+            if (injected.size() >= maxInjectedTerms) {
+                break;
+            }
+            if (!injected.add(occurrence.key())) {
+                continue;
+            }
+            Term term = occurrence.term();
+            String line = "- " + term.term() + " => " + term.translation()
+                    + (term.note() != null ? " (" + term.note() + ")" : "");
+            tokens += TokenEstimator.estimate(line);
+            if (tokens > maxInjectedTokens) {
+                break;
+            }
+            section.append(section.isEmpty() ? "" : "\n").append(line);
+        }
+        return section.isEmpty() ? null : section.toString();
+    }
+
+    /**
+     * Make the next lookup sync the user's glossary, once the change is committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGlossaryChanged(GlossaryChangedEvent event) {
+        synchronized (glossaries) {
+            Glossary glossary = glossaries.get(event.userId());
+            if (glossary != null) {
+                glossaries.put(event.userId(), glossary.due());
+            }
+        }
+    }
+
+    /**
+     * The user's compiled glossary, loaded or synced if it is missing or due.
+     */
+    private Glossary glossary(String userId) {
+        Glossary current;
+        synchronized (glossaries) {
+            current = glossaries.get(userId);
+        }
+        if (current != null && !current.stale() && System.nanoTime() - current.checkedAt() < syncIntervalNanos) {
+            return current;
+        }
+
+        Glossary refreshed = ReadReplicaRoutingDataSource.readFromPrimary(() -> primaryReadTemplate.execute(
+                status -> current == null ? load(userId) : sync(userId, current)));
+        synchronized (glossaries) {
+            Glossary latest = glossaries.get(userId);
+            if (latest != null && latest != current) {
+                if (!latest.stale()) {
+                    return latest; // Another thread synced meanwhile
+                }
+                // Changed while we read: what we read may predate the change
+                glossaries.put(userId, refreshed.due());
+                return refreshed;
+            }
+            glossaries.put(userId, refreshed);
+        }
+        return refreshed;
+    }
+
+    private Glossary load(String userId) {
+        LocalDateTime syncedUpTo = LocalDateTime.now();
+        Map<String, Term> entries = new HashMap<>();
+        for (GlossaryEntry entry : glossaryRepository.findByUserIdAndDeletedFalseOrderByTerm(userId)) {
+            entries.put(key(entry.getTerm()), toTerm(entry));
+        }
+        return compileFull(entries, syncedUpTo);
+    }
+
+    private Glossary sync(String userId, Glossary current) {
+        LocalDateTime syncedUpTo = LocalDateTime.now();
+        // The overlap covers clock skew between nodes and transactions committing late
+        List<GlossaryEntry> changes = glossaryRepository.findByUserIdAndUpdatedAtGreaterThanEqual(
+                userId, current.syncedUpTo().minus(syncOverlap));
+        if (changes.isEmpty()) {
+            return current.checked(syncedUpTo);
+        }
+
+        Map<String, Term> entries = new HashMap<>(current.entries());
+        for (GlossaryEntry entry : changes) {
+            if (entry.isDeleted()) {
+                entries.remove(key(entry.getTerm()));
+            } else {
+                entries.put(key(entry.getTerm()), toTerm(entry));
+            }
+        }
+
+        List<String> deltaKeys = new ArrayList<>(current.deltaKeys());
+        Set<String> known = new HashSet<>(current.deltaKeys());
+        for (String key : entries.keySet()) {
+            if (!current.baseKeySet().contains(key) && known.add(key)) {
+                deltaKeys.add(key);
+            }
+        }
+        long removedFromBase = current.baseKeys().stream().filter(key -> !entries.containsKey(key)).count();
+        if (deltaKeys.size() > maxDeltaTerms || removedFromBase * 10 > current.baseKeys().size()) {
+            return compileFull(entries, syncedUpTo);
+        }
+        if (deltaKeys.size() == current.deltaKeys().size()) {
+            // Only translations changed or terms were removed: the automata still fit
+            return new Glossary(entries, current.base(), current.baseKeys(), current.baseKeySet(),
+                    current.delta(), current.deltaKeys(), syncedUpTo, System.nanoTime(), false);
+        }
+        AhoCorasick delta = deltaCompileTimer.record(() -> new AhoCorasick(deltaKeys));
+        return new Glossary(entries, current.base(), current.baseKeys(), current.baseKeySet(),
+                delta, deltaKeys, syncedUpTo, System.nanoTime(), false);
+    }
+
+    private Glossary compileFull(Map<String, Term> entries, LocalDateTime syncedUpTo) {
+        List<String> baseKeys = new ArrayList<>(entries.keySet());
+        AhoCorasick base = baseKeys.isEmpty() ? null : fullCompileTimer.record(() -> new AhoCorasick(baseKeys));
+        return new Glossary(entries, base, baseKeys, new HashSet<>(baseKeys), null, List.of(),
+                syncedUpTo, System.nanoTime(), false);
+    }
+
+    private static String key(String term) {
+        return term.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static Term toTerm(GlossaryEntry entry) {
+        return new Term(entry.getTerm(), entry.getTranslation(), entry.getNote());
+    }
+
+    private GlossaryEntryDTO toDTO(GlossaryEntry entry) {
+        return GlossaryEntryDTO.builder()
+                .id(entry.getId())
+                .term(entry.getTerm())
+                .translation(entry.getTranslation())
+                .note(entry.getNote())
+                .updatedAt(entry.getUpdatedAt())
+                .build();
+    }
+
+    private int size() {
+        synchronized (glossaries) {
+            return glossaries.size();
+        }
+    }
+
+    private record Term(String term, String translation, String note) {
+    }
+
+    private record Occurrence(int start, String key, Term term) {
+    }
+
+    /**
+     * Immutable compiled glossary; base and delta automata hold keys into entries, and
+     * matches of keys no longer in entries (deleted terms) are ignored.
+     */
+    private record Glossary(Map<String, Term> entries,
+                            AhoCorasick base, List<String> baseKeys, Set<String> baseKeySet,
+                            AhoCorasick delta, List<String> deltaKeys,
+                            LocalDateTime syncedUpTo, long checkedAt, boolean stale) {
+
+        void match(String text, List<Occurrence> occurrences) {
+            match(base, baseKeys, text, occurrences);
+            match(delta, deltaKeys, text, occurrences);
+        }
+
+        private void match(AhoCorasick automaton, List<String> keys, String text, List<Occurrence> occurrences) {
+            if (automaton == null) {
+                return;
+            }
+            automaton.match(text, (id, start, end) -> {
+                Term term = entries.get(keys.get(id));
+                if (term != null) {
+                    occurrences.add(new Occurrence(start, keys.get(id), term));
+                }
+            });
+        }
+
+        Glossary checked(LocalDateTime syncedUpTo) {
+            return new Glossary(entries, base, baseKeys, baseKeySet, delta, deltaKeys,
+                    syncedUpTo, System.nanoTime(), false);
+        }
+
+        Glossary due() {
+            return new Glossary(entries, base, baseKeys, baseKeySet, delta, deltaKeys,
+                    syncedUpTo, checkedAt, true);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.util.NgramTokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline embedding stand-in: hashes the text's n-grams ({@link NgramTokenizer}) into a
+ * fixed-size signed vector. Texts sharing most n-grams get similar vectors, which is
+ * enough to exercise the semantic cache in tests and local runs without API calls, but
+ * captures no meaning: paraphrases are not recognized.
+ */
+@Component
+@ConditionalOnProperty(prefix = "orientlink.semantic-cache", name = "embedding", havingValue = "hashing")
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private final int dimensions;
+
+    public HashingEmbeddingProvider(@Value("${orientlink.semantic-cache.hashing-dimensions:512}") int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public String model() {
+        return "hashing-" + dimensions;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            float[] vector = new float[dimensions];
+            for (String gram : NgramTokenizer.indexGrams(text)) {
+                int hash = gram.hashCode() * 0x9E3779B1; // Spread similar strings over the buckets
+                vector[Math.floorMod(hash, dimensions)] += (hash & 0x10000) == 0 ? 1 : -1;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
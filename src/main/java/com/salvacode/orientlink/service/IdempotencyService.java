@@ -0,0 +1,236 @@
+package com.salvacode.orientlink.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salvacode.orientlink.entity.IdempotencyRecord;
+import com.salvacode.orientlink.exception.BadRequestException;
+import com.salvacode.orientlink.exception.IdempotencyKeyException;
+import com.salvacode.orientlink.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key.
+ *
+ * The first request with a key records it as in progress (insert-if-absent) and does
+ * the work; its response is stored for the configured TTL. A retry on the same node
+ * attaches to the running computation, a retry on another node polls the record until
+ * the response is stored. If the owner dies mid-request its lease runs out and the next
+ * retry takes over. Failed requests release the key so they can be retried.
+ *
+ * Records are keyed by a SHA-256 of endpoint, user and key, so a long user ID cannot
+ * overflow the column and no combination of parts can collide with another.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${orientlink.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${orientlink.idempotency.lease:3m}")
+    private Duration lease;
+
+    @Value("${orientlink.idempotency.wait-timeout:90s}")
+    private Duration waitTimeout;
+
+    @Value("${orientlink.idempotency.poll-interval:500ms}")
+    private Duration pollInterval;
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository, ObjectMapper objectMapper) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Response of an idempotent call.
+     *
+     * @param value The response
+     * @param replayed Whether it was produced by an earlier request with the same key
+     */
+    public record Outcome<T>(T value, boolean replayed) {
+    }
+
+    /**
+     * Run the work once for the key, or return the response of the request that did.
+     *
+     * @param endpoint Scope of the key, e.g. "analyze"
+     * @param userId Owner of the key; keys of different users never collide
+     * @param idempotencyKey Client-chosen key
+     * @param request Request body; a retry must send the same one
+     * @param responseType Type to read a stored response back as
+     * @param work The actual request handling
+     */
+    public <T> Outcome<T> execute(String endpoint, String userId, String idempotencyKey, Object request,
+                                  Class<T> responseType, Supplier<T> work) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        String recordKey = recordKey(endpoint, userId, idempotencyKey);
+        String requestHash = hash(request);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (true) {
+            // Same node: attach to the running computation
+            InFlight running = inFlight.get(recordKey);
+            if (running != null) {
+                checkSameRequest(running.requestHash(), requestHash);
+                return new Outcome<>(read(awaitLocal(running.response(), deadline), responseType), true);
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            boolean claimed = recordRepository.tryInsert(recordKey, requestHash, now.plus(lease), now, now.plus(ttl)) == 1
+                    || recordRepository.tryTakeOver(recordKey, requestHash, IdempotencyRecord.Status.IN_PROGRESS,
+                    now.plus(lease), now, now.plus(ttl)) == 1;
+            if (claimed) {
+                return new Outcome<>(run(recordKey, requestHash, work), false);
+            }
+
+            Optional<IdempotencyRecord> existing = recordRepository.findById(recordKey);
+            if (existing.isEmpty()) {
+                continue; // Released by a failed owner in between; claim it again
+            }
+            IdempotencyRecord record = existing.get();
+            checkSameRequest(record.getRequestHash(), requestHash);
+            if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                return new Outcome<>(read(record.getResponseBody(), responseType), true);
+            }
+
+            // Another node is working on it: poll until it stores the response
+            if (System.nanoTime() - deadline > 0) {
+                throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+                        "A request with this Idempotency-Key is still being processed; retry later");
+            }
+            sleep(pollInterval);
+        }
+    }
+
+    /**
+     * Remove expired records.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.idempotency.cleanup-interval:PT10M}")
+    public void deleteExpired() {
+        int deleted = recordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("Deleted {} expired idempotency records", deleted);
+        }
+    }
+
+    private <T> T run(String recordKey, String requestHash, Supplier<T> work) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        InFlight running = new InFlight(requestHash, future);
+        inFlight.put(recordKey, running);
+        try {
+            T response = work.get();
+            String body = objectMapper.writeValueAsString(response);
+            recordRepository.complete(recordKey, body, IdempotencyRecord.Status.COMPLETED);
+            future.complete(body);
+            return response;
+        } catch (RuntimeException | JsonProcessingException e) {
+            recordRepository.release(recordKey, IdempotencyRecord.Status.IN_PROGRESS);
+            future.completeExceptionally(e);
+            if (e instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Could not store idempotent response", e);
+        } finally {
+            inFlight.remove(recordKey, running);
+        }
+    }
+
+    /**
+     * Record key of a client's key: hex SHA-256 of the length-prefixed parts.
+     */
+    static String recordKey(String endpoint, String userId, String idempotencyKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {endpoint, userId, idempotencyKey}) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash idempotency key", e);
+        }
+    }
+
+    private static void checkSameRequest(String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+                    "Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private String awaitLocal(CompletableFuture<String> running, long deadline) {
+        try {
+            return running.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            // Surface the original failure, as the first request did
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+                    "A request with this Idempotency-Key is still being processed; retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for idempotent request", e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response is unreadable", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash request", e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for idempotent request", e);
+        }
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<String> response) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.salvacode.orientlink.service;
+
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.embedding.Embedding;
+import com.theokanning.openai.embedding.EmbeddingRequest;
+import com.theokanning.openai.embedding.EmbeddingResult;
+import com.theokanning.openai.service.OpenAiService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Embeddings from the OpenAI embeddings endpoint; a whole batch is one request.
+ */
+@Component
+@ConditionalOnProperty(prefix = "orientlink.semantic-cache", name = "embedding", havingValue = "openai",
+        matchIfMissing = true)
+@Slf4j
+public class OpenAiEmbeddingProvider implements EmbeddingProvider {
+
+    private final OpenAiApi openAiApi;
+    private final String model;
+
+    public OpenAiEmbeddingProvider(@Value("${openai.api-key}") String apiKey,
+                                   @Value("${orientlink.semantic-cache.embedding-timeout:10s}") Duration timeout,
+                                   @Value("${orientlink.semantic-cache.embedding-model:text-embedding-3-small}") String model) {
+        this.openAiApi = OpenAiService.defaultRetrofit(
+                OpenAiService.defaultClient(apiKey, timeout),
+                OpenAiService.defaultObjectMapper()).create(OpenAiApi.class);
+        this.model = model;
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        EmbeddingRequest request = EmbeddingRequest.builder()
+                .model(model)
+                .input(texts)
+                .build();
+        EmbeddingResult result = OpenAiService.execute(openAiApi.createEmbeddings(request));
+        log.debug("Embedded {} texts, {} tokens", texts.size(),
+                result.getUsage() != null ? result.getUsage().getTotalTokens() : 0);
+
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        result.getData().stream()
+                .sorted(Comparator.comparing(Embedding::getIndex))
+                .forEach(embedding -> {
+                    List<Double> values = embedding.getEmbedding();
+                    float[] vector = new float[values.size()];
+                    for (int i = 0; i < vector.length; i++) {
+                        vector[i] = values.get(i).floatValue();
+                    }
+                    vectors.add(vector);
+                });
+        return vectors;
+    }
+}
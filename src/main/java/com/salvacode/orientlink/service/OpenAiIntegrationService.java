@@ -1,20 +1,29 @@
 package com.salvacode.orientlink.service;
 
 
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.exception.DeadlineExceededException;
+import com.salvacode.orientlink.jfr.OpenAiCallEvent;
+import com.salvacode.orientlink.util.TokenEstimator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.theokanning.openai.client.OpenAiApi;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.completion.chat.ChatMessageRole;
 import com.theokanning.openai.service.OpenAiService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Single;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 
@@ -27,8 +36,12 @@ import java.util.List;
 @Slf4j
 public class OpenAiIntegrationService {
     
-    private final OpenAiService openAiService;
+    private static final int MAX_COMPLETION_TOKENS = 2000;
+    private static final int MAX_MULTI_TARGET_COMPLETION_TOKENS = 4000;
+    
+    private final OpenAiApi openAiApi;
     private final ObjectMapper objectMapper;
+    private final OpenAiScheduler scheduler;
     
     @Value("${openai.model:gpt-4}")
     private String model;
@@ -60,9 +73,15 @@ public class OpenAiIntegrationService {
             Be precise, professional, and culturally aware.
             """;
 
-    public OpenAiIntegrationService(@Value("${openai.api-key}") String apiKey) {
-      this.openAiService = new OpenAiService(apiKey, Duration.ofSeconds(60));
+    public OpenAiIntegrationService(@Value("${openai.api-key}") String apiKey,
+                                    @Value("${openai.timeout-seconds:60}") long timeoutSeconds,
+                                    OpenAiScheduler scheduler) {
+      // The API is used directly so that a call can be cancelled, which aborts its HTTP exchange
+      this.openAiApi = OpenAiService.defaultRetrofit(
+              OpenAiService.defaultClient(apiKey, Duration.ofSeconds(timeoutSeconds)),
+              OpenAiService.defaultObjectMapper()).create(OpenAiApi.class);
       this.objectMapper = new ObjectMapper();
+      this.scheduler = scheduler;
     }
 
      /**
@@ -72,10 +91,11 @@ public class OpenAiIntegrationService {
      * @param sourceLang Source language ("es" or "zh")
      * @param targetLang Target language ("es" or "zh")
      * @param conversationContext Optional previous conversation summary
+     * @param glossary Optional user glossary lines for the terms occurring in the message
      * @return JSON string with translation, interpretation, alerts, and suggestions
      */
     public String analyzeMessage(String messageText, String sourceLang, String targetLang, 
-                                  String conversationContext) {
+                                  String conversationContext, String glossary) {
         log.info("Analyzing message from {} to {}", sourceLang, targetLang);
         
         String userPrompt = String.format("""
@@ -85,6 +105,7 @@ public class OpenAiIntegrationService {
                 Source Language: %s
                 Target Language: %s
                 %s
+                %s
                 
                 Respond with this exact JSON structure:
                 {
@@ -113,10 +134,172 @@ public class OpenAiIntegrationService {
                 messageText,
                 sourceLang,
                 targetLang,
-                conversationContext != null ? "Previous context: " + conversationContext : ""
+                conversationContext != null ? "Previous context: " + conversationContext : "",
+                glossarySection(glossary)
+        );
+        
+        return callOpenAi("analyze-message", userPrompt);
+    }
+    
+    /**
+     * Analyze a user message once and translate it into several languages in the same completion.
+     * Interpretation, alerts and suggested responses are shared by all translations.
+     * 
+     * @param messageText The original message from user or provider
+     * @param sourceLang Source language
+     * @param targetLangs Target languages, e.g. ["es", "en", "pt"]
+     * @param conversationContext Optional previous conversation summary
+     * @param glossary Optional user glossary lines for the terms occurring in the message
+     * @return JSON string with one translation per target language plus the shared analysis
+     */
+    public String analyzeMessage(String messageText, String sourceLang, List<String> targetLangs,
+                                  String conversationContext, String glossary) {
+        log.info("Analyzing message from {} to {}", sourceLang, targetLangs);
+        
+        StringBuilder translations = new StringBuilder();
+        for (int i = 0; i < targetLangs.size(); i++) {
+            translations.append(i == 0 ? "" : ",\n")
+                    .append("    \"").append(targetLangs.get(i)).append("\": \"accurate translation into ")
+                    .append(targetLangs.get(i)).append(" here\"");
+        }
+        
+        String userPrompt = String.format("""
+                Analyze this business message and provide a comprehensive response in JSON format.
+                Translate it into every target language; the analysis is done once and shared.
+                
+                Message: "%s"
+                Source Language: %s
+                Target Languages: %s
+                %s
+                %s
+                
+                Respond with this exact JSON structure:
+                {
+                  "translations": {
+                %s
+                  },
+                  "interpretation": {
+                    "businessContext": "explain what this message means in business terms",
+                    "sentiment": "positive/neutral/negative/urgent",
+                    "keyTerms": ["list", "of", "important", "business", "terms"],
+                    "riskLevel": "low/medium/high"
+                  },
+                  "alerts": ["warning 1", "warning 2"],
+                  "suggestedResponses": {
+                    "formal": "formal Chinese response",
+                    "negotiator": "negotiating Chinese response",
+                    "direct": "direct Chinese response"
+                  }
+                }
+                
+                Alerts should include:
+                - Unusual MOQ requirements
+                - Suspicious pricing
+                - Unclear delivery terms
+                - Missing certifications mentions
+                - Pressure tactics or urgency without justification
+                """,
+                messageText,
+                sourceLang,
+                String.join(", ", targetLangs),
+                conversationContext != null ? "Previous context: " + conversationContext : "",
+                glossarySection(glossary),
+                translations
+        );
+        
+        // Each extra translation needs room in the completion, about the message's own length
+        int perTranslation = Math.max(200, 2 * TokenEstimator.estimate(messageText));
+        int maxTokens = Math.min(MAX_COMPLETION_TOKENS + (targetLangs.size() - 1) * perTranslation,
+                MAX_MULTI_TARGET_COMPLETION_TOKENS);
+        return callOpenAi("analyze-message-multi", userPrompt, maxTokens);
+    }
+    
+    /**
+     * Translate a message without analyzing it; used when the analysis of a near-identical
+     * message can be reused.
+     * 
+     * @param messageText The original message
+     * @param sourceLang Source language
+     * @param targetLang Target language
+     * @param glossary Optional user glossary lines for the terms occurring in the message
+     * @return JSON string with the translation only
+     */
+    public String translateMessage(String messageText, String sourceLang, String targetLang, String glossary) {
+        log.info("Translating message from {} to {}", sourceLang, targetLang);
+        
+        String userPrompt = String.format("""
+                Translate this business message accurately. Do not analyze it.
+                
+                Message: "%s"
+                Source Language: %s
+                Target Language: %s
+                %s
+                
+                Respond with this exact JSON structure:
+                {
+                  "translatedMessage": "accurate translation here"
+                }
+                """,
+                messageText,
+                sourceLang,
+                targetLang,
+                glossarySection(glossary)
+        );
+        
+        int maxTokens = Math.min(MAX_COMPLETION_TOKENS, Math.max(200, 2 * TokenEstimator.estimate(messageText)));
+        return callOpenAi("translate-message", userPrompt, maxTokens);
+    }
+    
+    /**
+     * Translate and analyze one chunk of a long document (contract, pro-forma invoice).
+     * 
+     * @param chunkText The passage; chunks are cut at sentence or clause boundaries
+     * @param chunkNumber Position of the passage in the document, from 1
+     * @param sourceLang Source language
+     * @param targetLang Target language
+     * @param documentType Optional document type, e.g. "contract"
+     * @param glossary Optional user glossary lines for the terms occurring in the passage
+     * @return JSON string with translation, passage summary, key terms, alerts and risk level
+     */
+    public String analyzeDocumentChunk(String chunkText, int chunkNumber, String sourceLang, String targetLang,
+                                       String documentType, String glossary) {
+        log.info("Analyzing document chunk {} from {} to {}", chunkNumber, sourceLang, targetLang);
+        
+        String userPrompt = String.format("""
+                Translate and analyze passage %d of a longer business document sent by a Chinese supplier.
+                %s
+                
+                Passage: "%s"
+                Source Language: %s
+                Target Language: %s
+                %s
+                
+                Respond with this exact JSON structure:
+                {
+                  "translatedText": "complete, accurate translation of the passage",
+                  "summary": "one or two sentences on what the passage commits either party to",
+                  "keyTerms": ["prices", "quantities", "dates", "incoterms", "other key terms"],
+                  "alerts": ["warning 1", "warning 2"],
+                  "riskLevel": "low/medium/high"
+                }
+                
+                Alerts should include:
+                - Payment terms unfavourable to the buyer (e.g. full prepayment)
+                - Penalties, liability caps or jurisdiction clauses against the buyer
+                - Vague quality, inspection or acceptance criteria
+                - Unclear delivery terms or price validity
+                - Inconsistent figures (quantities, unit prices, totals)
+                Judge the passage on its own; the document is analyzed passage by passage.
+                """,
+                chunkNumber,
+                documentType != null ? "Document type: " + documentType : "",
+                chunkText,
+                sourceLang,
+                targetLang,
+                glossarySection(glossary)
         );
         
-        return callOpenAi(userPrompt);
+        return callOpenAi("analyze-document-chunk", userPrompt);
     }
     
     /**
@@ -157,13 +340,82 @@ public class OpenAiIntegrationService {
                 responseType
         );
         
-        return callOpenAi(userPrompt);
+        return callOpenAi("generate-responses", userPrompt);
+    }
+    
+    /**
+     * Fold new conversation messages into an existing negotiation summary.
+     * 
+     * @param previousSummary Current summary, or null for the first one
+     * @param newMessages New messages (with interpretations) not yet in the summary
+     * @param maxTokens Upper bound on the summary length
+     * @return JSON string with the updated summary
+     */
+    public String summarizeConversation(String previousSummary, String newMessages, int maxTokens) {
+        log.info("Updating conversation summary");
+        
+        String userPrompt = String.format("""
+                Update the running summary of a negotiation between a buyer and a Chinese supplier.
+                
+                Current summary: %s
+                
+                New messages:
+                %s
+                
+                Respond with this exact JSON structure:
+                {
+                  "summary": "updated summary"
+                }
+                
+                Guidelines:
+                - Keep it under %d tokens, written in Spanish
+                - Keep agreed and open points: MOQ, prices, delivery terms, certifications, payment terms
+                - Keep unresolved risks and alerts; drop greetings and small talk
+                - Newer information replaces outdated figures
+                """,
+                previousSummary != null ? previousSummary : "(none yet)",
+                newMessages,
+                maxTokens
+        );
+        
+        return callOpenAi("summarize-conversation", userPrompt);
+    }
+    
+    /**
+     * Prompt lines with the user's required translations, or nothing without a glossary.
+     */
+    private static String glossarySection(String glossary) {
+        return glossary != null
+                ? "Glossary (always translate these terms exactly as given):\n" + glossary
+                : "";
     }
     
     /**
      * Core method to call OpenAI API with master prompt.
+     * Waits for a fair share of the OpenAI capacity for the current user and priority.
+     * If the request has a deadline, the call is cancelled once it passes.
      */
-    private String callOpenAi(String userPrompt) {
+    private String callOpenAi(String operation, String userPrompt) {
+        return callOpenAi(operation, userPrompt, MAX_COMPLETION_TOKENS);
+    }
+    
+    private String callOpenAi(String operation, String userPrompt, int maxTokens) {
+        long estimatedTokens = TokenEstimator.estimate(MASTER_PROMPT) + TokenEstimator.estimate(userPrompt)
+                + maxTokens;
+        OpenAiCallEvent event = OpenAiCallEvent.start(operation, model, userPrompt.length(), estimatedTokens);
+        long enqueuedAt = System.nanoTime();
+        try {
+            return scheduler.execute(RequestContext.getUserId(), RequestContext.getPriority(), estimatedTokens, () -> {
+                event.dispatched(System.nanoTime() - enqueuedAt);
+                return createChatCompletion(userPrompt, maxTokens, event);
+            });
+        } finally {
+            event.finish();
+        }
+    }
+    
+    private String createChatCompletion(String userPrompt, int maxTokens, OpenAiCallEvent event) {
+        RequestContext.checkDeadline("calling OpenAI");
         try {
             List<ChatMessage> messages = new ArrayList<>();
             messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), MASTER_PROMPT));
@@ -173,11 +425,19 @@ public class OpenAiIntegrationService {
                     .model(model)
                     .messages(messages)
                     .temperature(0.7)
-                    .maxTokens(2000)
+                    .maxTokens(maxTokens)
                     .build();
             
-            String response = openAiService.createChatCompletion(request)
-                    .getChoices()
+            Single<ChatCompletionResult> call = openAiApi.createChatCompletion(request);
+            Duration remaining = RequestContext.getRemaining();
+            if (remaining != null) {
+                // Disposing the call on timeout (or interrupt) cancels the HTTP request
+                call = call.timeout(remaining.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            ChatCompletionResult result = OpenAiService.execute(call);
+            event.completed(result.getUsage() != null ? result.getUsage().getPromptTokens() : 0,
+                    result.getUsage() != null ? result.getUsage().getCompletionTokens() : 0);
+            String response = result.getChoices()
                     .get(0)
                     .getMessage()
                     .getContent();
@@ -186,6 +446,9 @@ public class OpenAiIntegrationService {
             return response;
             
         } catch (Exception e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new DeadlineExceededException("Request deadline exceeded during the OpenAI call; call cancelled");
+            }
             log.error("Error calling OpenAI API", e);
             throw new RuntimeException("Failed to get response from OpenAI: " + e.getMessage(), e);
         }
@@ -249,7 +512,7 @@ public class OpenAiIntegrationService {
                 additionalContext != null ? "Additional context: " + additionalContext : ""
         );
         
-        return callOpenAi(userPrompt);
+        return callOpenAi("extract-provider", userPrompt);
     }
 
 
@@ -0,0 +1,323 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.context.RequestPriority;
+import com.salvacode.orientlink.exception.DeadlineExceededException;
+import com.salvacode.orientlink.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Shares the OpenAI concurrency limit fairly between users and request classes.
+ *
+ * Each (priority class, user) pair is a flow with its own FIFO queue. Free slots are
+ * handed out by deficit round-robin over the active flows: on each visit a flow earns
+ * quantum x class weight credits and may dispatch requests while its credit covers their
+ * estimated token cost. A user pasting a huge chat log therefore only gets their share,
+ * and interactive flows get more than background ones without starving them.
+ *
+ * Interactive requests are also limited per user by a token bucket and a queue-length
+ * cap; both are answered with 429. Job and background work is never rejected: it waits
+ * in its queue instead, and its concurrency is already bounded by the worker pools that
+ * issue it. A multi-call interactive request (e.g. a long document) is admitted once
+ * with {@link #admit(String)} and then runs its calls as jobs.
+ *
+ * Callers block on their own thread until dispatched, so no extra thread pool is involved.
+ * A caller whose request deadline passes while queued gives up its place instead of
+ * taking a slot for an answer nobody waits for.
+ */
+@Component
+public class OpenAiScheduler {
+
+    private final int maxConcurrent;
+    private final long quantum;
+    private final Map<RequestPriority, Integer> weights = new EnumMap<>(RequestPriority.class);
+    private final double ratePerSecond;
+    private final double burst;
+    private final int maxQueuedPerUser;
+
+    private final Object lock = new Object();
+    private final Map<FlowKey, Flow> flows = new HashMap<>();
+    private final ArrayDeque<Flow> activeFlows = new ArrayDeque<>();
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private int available;
+
+    private final Map<RequestPriority, Timer> waitTimers = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Counter> rejections = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Counter> expirations = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, AtomicInteger> queued = new EnumMap<>(RequestPriority.class);
+
+    public OpenAiScheduler(MeterRegistry meterRegistry,
+                           @Value("${orientlink.openai.scheduler.max-concurrent:8}") int maxConcurrent,
+                           @Value("${orientlink.openai.scheduler.quantum-tokens:2000}") long quantum,
+                           @Value("${orientlink.openai.scheduler.weight.interactive:8}") int interactiveWeight,
+                           @Value("${orientlink.openai.scheduler.weight.job:3}") int jobWeight,
+                           @Value("${orientlink.openai.scheduler.weight.background:1}") int backgroundWeight,
+                           @Value("${orientlink.openai.scheduler.user-rate-per-minute:30}") double ratePerMinute,
+                           @Value("${orientlink.openai.scheduler.user-burst:10}") double burst,
+                           @Value("${orientlink.openai.scheduler.max-queued-per-user:20}") int maxQueuedPerUser) {
+        this.maxConcurrent = maxConcurrent;
+        this.available = maxConcurrent;
+        this.quantum = quantum;
+        this.weights.put(RequestPriority.INTERACTIVE, interactiveWeight);
+        this.weights.put(RequestPriority.JOB, jobWeight);
+        this.weights.put(RequestPriority.BACKGROUND, backgroundWeight);
+        this.ratePerSecond = ratePerMinute / 60.0;
+        this.burst = burst;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            waitTimers.put(priority, Timer.builder("orientlink.openai.queue.wait")
+                    .tag("class", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            rejections.put(priority, Counter.builder("orientlink.openai.rejected")
+                    .tag("class", tag)
+                    .register(meterRegistry));
+            expirations.put(priority, Counter.builder("orientlink.openai.expired")
+                    .description("Calls dropped from the queue because their deadline passed")
+                    .tag("class", tag)
+                    .register(meterRegistry));
+            AtomicInteger depth = new AtomicInteger();
+            queued.put(priority, depth);
+            Gauge.builder("orientlink.openai.queue.depth", depth, AtomicInteger::get)
+                    .tag("class", tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("orientlink.openai.in.flight", this, OpenAiScheduler::inFlight)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wait for a fair share of OpenAI capacity, then run the call.
+     * The wait is bounded by the current request's deadline, if it has one.
+     *
+     * @param userId User the call is made for (null counts as one shared "anonymous" user)
+     * @param priority Class of the call
+     * @param estimatedTokens Prompt plus expected completion tokens
+     * @param call The OpenAI call
+     */
+    public <T> T execute(String userId, RequestPriority priority, long estimatedTokens, Supplier<T> call) {
+        Ticket ticket = enqueue(userId != null ? userId : "anonymous", priority, Math.max(estimatedTokens, 1));
+        try {
+            awaitDispatch(ticket);
+            waitTimers.get(priority).record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+            return call.get();
+        } finally {
+            release(ticket);
+        }
+    }
+
+    /**
+     * Charge one interactive request to the user's rate limit without making a call, for
+     * requests whose calls then run as {@link RequestPriority#JOB}.
+     *
+     * @throws RateLimitExceededException If the user is over their rate
+     */
+    public void admit(String userId) {
+        synchronized (lock) {
+            takeToken(userId != null ? userId : "anonymous", RequestPriority.INTERACTIVE);
+        }
+    }
+
+    private Ticket enqueue(String userId, RequestPriority priority, long cost) {
+        synchronized (lock) {
+            FlowKey key = new FlowKey(priority, userId);
+            Flow flow = flows.computeIfAbsent(key, k -> new Flow(quantum * weights.get(priority)));
+
+            if (priority == RequestPriority.INTERACTIVE) {
+                if (flow.queue.size() >= maxQueuedPerUser) {
+                    rejections.get(priority).increment();
+                    throw new RateLimitExceededException("Too many OpenAI requests queued for this user", 5);
+                }
+                takeToken(userId, priority);
+            }
+
+            Ticket ticket = new Ticket(key, priority, cost);
+            flow.queue.addLast(ticket);
+            queued.get(priority).incrementAndGet();
+            if (!flow.active) {
+                flow.active = true;
+                activeFlows.addLast(flow);
+            }
+            dispatch();
+            return ticket;
+        }
+    }
+
+    /**
+     * Take a token from the user's bucket or reject. Must hold the lock.
+     */
+    private void takeToken(String userId, RequestPriority priority) {
+        TokenBucket bucket = buckets.computeIfAbsent(userId, u -> new TokenBucket(burst));
+        double waitSeconds = bucket.tryTake(ratePerSecond, burst);
+        if (waitSeconds > 0) {
+            rejections.get(priority).increment();
+            throw new RateLimitExceededException("OpenAI request rate limit exceeded for this user",
+                    (long) Math.ceil(waitSeconds));
+        }
+    }
+
+    private void awaitDispatch(Ticket ticket) {
+        Duration remaining = RequestContext.getRemaining();
+        try {
+            if (remaining == null) {
+                ticket.granted.get();
+            } else {
+                ticket.granted.get(Math.max(remaining.toNanos(), 0), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            expirations.get(ticket.priority).increment();
+            throw new DeadlineExceededException("Request deadline exceeded while waiting for OpenAI capacity");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for OpenAI capacity", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Give back the slot (or drop the ticket if it never got one) and dispatch the next request.
+     */
+    private void release(Ticket ticket) {
+        synchronized (lock) {
+            if (ticket.granted.isDone()) {
+                available++;
+            } else {
+                Flow flow = flows.get(ticket.key);
+                if (flow != null && flow.queue.remove(ticket)) {
+                    queued.get(ticket.priority).decrementAndGet();
+                }
+                ticket.granted.cancel(false);
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Deficit round-robin over active flows while slots are free. Must hold the lock.
+     */
+    private void dispatch() {
+        while (available > 0 && !activeFlows.isEmpty()) {
+            Flow flow = activeFlows.peekFirst();
+            if (!flow.credited) {
+                flow.deficit += flow.quantum;
+                flow.credited = true;
+            }
+            Ticket head = flow.queue.peekFirst();
+            if (head != null && head.cost <= flow.deficit) {
+                flow.queue.pollFirst();
+                flow.deficit -= head.cost;
+                available--;
+                queued.get(head.priority).decrementAndGet();
+                head.granted.complete(null);
+                if (flow.queue.isEmpty()) {
+                    deactivate(activeFlows.pollFirst());
+                }
+                continue;
+            }
+            // Credit exhausted for this round: move on to the next flow
+            activeFlows.pollFirst();
+            flow.credited = false;
+            if (flow.queue.isEmpty()) {
+                deactivate(flow);
+            } else {
+                activeFlows.addLast(flow);
+            }
+        }
+        if (flows.size() > 10_000) {
+            flows.values().removeIf(flow -> !flow.active);
+            buckets.values().removeIf(TokenBucket::isFull);
+        }
+    }
+
+    private void deactivate(Flow flow) {
+        flow.active = false;
+        flow.credited = false;
+        flow.deficit = 0; // Idle flows do not bank credit
+    }
+
+    private int inFlight() {
+        synchronized (lock) {
+            return maxConcurrent - available;
+        }
+    }
+
+    private record FlowKey(RequestPriority priority, String userId) {
+    }
+
+    private static final class Flow {
+        private final long quantum;
+        private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        private long deficit;
+        private boolean credited;
+        private boolean active;
+
+        Flow(long quantum) {
+            this.quantum = quantum;
+        }
+    }
+
+    private static final class Ticket {
+        private final FlowKey key;
+        private final RequestPriority priority;
+        private final long cost;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Ticket(FlowKey key, RequestPriority priority, long cost) {
+            this.key = key;
+            this.priority = priority;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Per-user request token bucket, refilled lazily.
+     */
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double tokens) {
+            this.tokens = tokens;
+        }
+
+        /**
+         * Take one token; returns 0 on success, else the seconds until one is available.
+         */
+        double tryTake(double ratePerSecond, double capacity) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / 1e9 * ratePerSecond);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (1 - tokens) / ratePerSecond;
+        }
+
+        boolean isFull() {
+            return tokens >= 1 && System.nanoTime() - refilledAt > TimeUnit.MINUTES.toNanos(10);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.entity.PriceStatistics;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.repository.PriceStatisticsRepository;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import com.salvacode.orientlink.util.LogHistogram;
+import com.salvacode.orientlink.util.NgramTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming per-product distributions of unit price (USD) and MOQ, used to flag
+ * outliers locally instead of relying on the LLM's guess.
+ *
+ * Each save records the provider's new values and removes its previous ones, so
+ * re-extractions do not skew the distribution. Nodes accumulate changes as delta
+ * histograms and periodically add them into the shared price_statistics row, then
+ * reload rows changed by other nodes; every node thus converges on the same view.
+ */
+@Service
+@Slf4j
+public class PriceStatisticsService {
+
+    public static final String PRICE_FAR_BELOW_MARKET = "price_far_below_market";
+    public static final String PRICE_FAR_ABOVE_MARKET = "price_far_above_market";
+    public static final String MOQ_FAR_BELOW_MARKET = "moq_far_below_market";
+    public static final String MOQ_FAR_ABOVE_MARKET = "moq_far_above_market";
+
+    private static final int MAX_PRODUCT_KEY_LENGTH = 200;
+    private static final String UNKNOWN_PRODUCT = "unknown"; // What extraction returns for a missing product name
+    private static final String SEED_MARKER_KEY = ""; // Row claiming the one-time seed; never a product key
+    private static final long RELOAD_OVERLAP_SECONDS = 60; // Tolerates clock skew between nodes
+
+    private final PriceStatisticsRepository statisticsRepository;
+    private final ProviderProfileRepository providerRepository;
+    private final CurrencyNormalizer currencyNormalizer;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${orientlink.price-stats.min-samples:20}")
+    private int minSamples;
+
+    @Value("${orientlink.price-stats.low-percentile:0.05}")
+    private double lowPercentile;
+
+    @Value("${orientlink.price-stats.high-percentile:0.95}")
+    private double highPercentile;
+
+    @Value("${orientlink.price-stats.seed-batch-size:5000}")
+    private int seedBatchSize;
+
+    private final Map<String, ProductStats> products = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastReload = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    public PriceStatisticsService(PriceStatisticsRepository statisticsRepository,
+                                  ProviderProfileRepository providerRepository,
+                                  CurrencyNormalizer currencyNormalizer,
+                                  PlatformTransactionManager transactionManager) {
+        this.statisticsRepository = statisticsRepository;
+        this.providerRepository = providerRepository;
+        this.currencyNormalizer = currencyNormalizer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * One provider's contribution to its product's distributions.
+     */
+    public record Sample(String productKey, double priceUsd, double moq) {
+    }
+
+    /**
+     * Where a provider sits in its product's market.
+     *
+     * @param pricePercentile Share of providers cheaper than this one (0..1), null if unknown
+     * @param moqPercentile Share of providers with a lower MOQ (0..1), null if unknown
+     * @param sampleSize Providers in the product's price distribution
+     * @param flags Outlier flags; empty until the product has min-samples providers
+     */
+    public record PriceSignals(Double pricePercentile, Double moqPercentile, long sampleSize, List<String> flags) {
+    }
+
+    /**
+     * Load the shared statistics; seed them from existing providers the first time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (statisticsRepository.count() == 0) {
+            seedFromProviders();
+        }
+        reloadChanged();
+    }
+
+    /**
+     * The provider's contribution, or null when its product is missing or unknown.
+     */
+    public Sample sampleOf(ProviderProfile provider) {
+        String productKey = provider != null ? productKey(provider.getProductName()) : null;
+        if (productKey == null) {
+            return null;
+        }
+        return new Sample(productKey,
+                currencyNormalizer.toUsd(provider.getPricePerUnit(), provider.getCurrency()),
+                provider.getMoq() != null ? provider.getMoq() : Double.NaN);
+    }
+
+    /**
+     * Replace a provider's previous contribution with its current one after a committed save.
+     */
+    public void replace(Sample previous, Sample current) {
+        if (previous != null && previous.equals(current)) {
+            return;
+        }
+        if (previous != null) {
+            statsFor(previous.productKey()).add(previous, -1);
+        }
+        if (current != null) {
+            statsFor(current.productKey()).add(current, 1);
+        }
+    }
+
+    /**
+     * Percentiles and outlier flags for the provider against its product's market.
+     */
+    public PriceSignals signalsFor(ProviderProfile provider) {
+        Sample sample = sampleOf(provider);
+        ProductStats stats = sample != null ? products.get(sample.productKey()) : null;
+        if (stats == null) {
+            return new PriceSignals(null, null, 0, List.of());
+        }
+        return stats.signals(sample);
+    }
+
+    /**
+     * Add pending deltas into the shared rows, then pick up other nodes' changes.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.price-stats.flush-interval:PT1M}",
+            initialDelayString = "${orientlink.price-stats.flush-interval:PT1M}")
+    public void flush() {
+        int flushed = 0;
+        for (Map.Entry<String, ProductStats> entry : products.entrySet()) {
+            ProductStats stats = entry.getValue();
+            Delta delta = stats.takeDelta();
+            if (delta == null) {
+                continue;
+            }
+            try {
+                PriceStatistics stored = transactionTemplate.execute(status -> {
+                    PriceStatistics row = statisticsRepository.findByProductKey(entry.getKey())
+                            .orElseGet(() -> PriceStatistics.builder().productKey(entry.getKey()).build());
+                    LogHistogram price = LogHistogram.fromBytes(row.getPriceHistogram());
+                    LogHistogram moq = LogHistogram.fromBytes(row.getMoqHistogram());
+                    price.merge(delta.price());
+                    moq.merge(delta.moq());
+                    row.setPriceHistogram(price.toBytes());
+                    row.setMoqHistogram(moq.toBytes());
+                    return statisticsRepository.save(row);
+                });
+                stats.setGlobal(LogHistogram.fromBytes(stored.getPriceHistogram()),
+                        LogHistogram.fromBytes(stored.getMoqHistogram()));
+                flushed++;
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                // Another node flushed the same product; keep the delta for the next run
+                stats.restoreDelta(delta);
+            } catch (RuntimeException e) {
+                stats.restoreDelta(delta);
+                log.warn("Failed to flush price statistics for product '{}'", entry.getKey(), e);
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Flushed price statistics for {} products", flushed);
+        }
+        reloadChanged();
+    }
+
+    private void reloadChanged() {
+        LocalDateTime since = lastReload.minusSeconds(RELOAD_OVERLAP_SECONDS);
+        lastReload = LocalDateTime.now();
+        for (PriceStatistics row : statisticsRepository.findByUpdatedAtAfter(since)) {
+            if (SEED_MARKER_KEY.equals(row.getProductKey())) {
+                continue;
+            }
+            statsFor(row.getProductKey()).setGlobal(
+                    LogHistogram.fromBytes(row.getPriceHistogram()),
+                    LogHistogram.fromBytes(row.getMoqHistogram()));
+        }
+    }
+
+    /**
+     * Write every existing provider into the shared rows, once. The marker row is inserted
+     * first in the same transaction, so a node seeding concurrently fails on its unique key
+     * instead of counting every provider a second time.
+     */
+    private void seedFromProviders() {
+        long start = System.currentTimeMillis();
+        Map<String, Delta> seed = new HashMap<>();
+        long lastId = 0L;
+        long seeded = 0;
+        List<ProviderProfileRepository.ProviderMetricsView> batch;
+        do {
+            batch = providerRepository.findMetricsViewsAfter(lastId, PageRequest.of(0, seedBatchSize));
+            for (ProviderProfileRepository.ProviderMetricsView view : batch) {
+                lastId = view.getId();
+                String productKey = productKey(view.getProductName());
+                if (productKey == null) {
+                    continue;
+                }
+                Delta delta = seed.computeIfAbsent(productKey, key -> new Delta(new LogHistogram(), new LogHistogram()));
+                delta.price().add(currencyNormalizer.toUsd(view.getPricePerUnit(), view.getCurrency()), 1);
+                delta.moq().add(view.getMoq() != null ? view.getMoq() : Double.NaN, 1);
+                seeded++;
+            }
+        } while (batch.size() == seedBatchSize);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                statisticsRepository.saveAndFlush(PriceStatistics.builder().productKey(SEED_MARKER_KEY).build());
+                seed.forEach((productKey, delta) -> {
+                    PriceStatistics row = statisticsRepository.findByProductKey(productKey)
+                            .orElseGet(() -> PriceStatistics.builder().productKey(productKey).build());
+                    LogHistogram price = LogHistogram.fromBytes(row.getPriceHistogram());
+                    LogHistogram moq = LogHistogram.fromBytes(row.getMoqHistogram());
+                    price.merge(delta.price());
+                    moq.merge(delta.moq());
+                    row.setPriceHistogram(price.toBytes());
+                    row.setMoqHistogram(moq.toBytes());
+                    statisticsRepository.save(row);
+                });
+            });
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+            if (statisticsRepository.findByProductKey(SEED_MARKER_KEY).isPresent()) {
+                log.info("Price statistics were seeded by another node");
+            } else {
+                log.warn("Failed to seed price statistics; retrying on next startup", e);
+            }
+            return;
+        }
+        log.info("Seeded price statistics from {} providers across {} products in {} ms",
+                seeded, seed.size(), System.currentTimeMillis() - start);
+    }
+
+    private ProductStats statsFor(String productKey) {
+        return products.computeIfAbsent(productKey, key -> new ProductStats());
+    }
+
+    /**
+     * Normalized product name, or null for a blank or "Unknown" one: pooling every
+     * unidentified product into one market would make its percentiles meaningless.
+     */
+    private static String productKey(String productName) {
+        if (productName == null || productName.isBlank()) {
+            return null;
+        }
+        String key = NgramTokenizer.normalize(productName.trim()).replaceAll("\\s+", " ");
+        if (key.equals(UNKNOWN_PRODUCT)) {
+            return null;
+        }
+        return key.length() > MAX_PRODUCT_KEY_LENGTH ? key.substring(0, MAX_PRODUCT_KEY_LENGTH) : key;
+    }
+
+    private record Delta(LogHistogram price, LogHistogram moq) {
+    }
+
+    /**
+     * Shared (last loaded) histograms, unflushed local deltas, and their sum used for queries.
+     */
+    private final class ProductStats {
+        private LogHistogram globalPrice = new LogHistogram();
+        private LogHistogram globalMoq = new LogHistogram();
+        private LogHistogram pendingPrice = new LogHistogram();
+        private LogHistogram pendingMoq = new LogHistogram();
+        private LogHistogram price = new LogHistogram();
+        private LogHistogram moq = new LogHistogram();
+        private boolean dirty;
+
+        synchronized void add(Sample sample, long delta) {
+            pendingPrice.add(sample.priceUsd(), delta);
+            pendingMoq.add(sample.moq(), delta);
+            price.add(sample.priceUsd(), delta);
+            moq.add(sample.moq(), delta);
+            dirty = true;
+        }
+
+        synchronized Delta takeDelta() {
+            if (!dirty) {
+                return null;
+            }
+            Delta delta = new Delta(pendingPrice, pendingMoq);
+            pendingPrice = new LogHistogram();
+            pendingMoq = new LogHistogram();
+            dirty = false;
+            return delta;
+        }
+
+        synchronized void restoreDelta(Delta delta) {
+            pendingPrice.merge(delta.price());
+            pendingMoq.merge(delta.moq());
+            dirty = true;
+        }
+
+        synchronized void setGlobal(LogHistogram newPrice, LogHistogram newMoq) {
+            globalPrice = newPrice;
+            globalMoq = newMoq;
+            price = globalPrice.copy();
+            price.merge(pendingPrice);
+            moq = globalMoq.copy();
+            moq.merge(pendingMoq);
+        }
+
+        synchronized PriceSignals signals(Sample sample) {
+            Double pricePercentile = percentile(price, sample.priceUsd());
+            Double moqPercentile = percentile(moq, sample.moq());
+
+            List<String> flags = new ArrayList<>();
+            if (pricePercentile != null && price.count() >= minSamples) {
+                if (pricePercentile <= lowPercentile) {
+                    flags.add(PRICE_FAR_BELOW_MARKET);
+                } else if (pricePercentile >= highPercentile) {
+                    flags.add(PRICE_FAR_ABOVE_MARKET);
+                }
+            }
+            if (moqPercentile != null && moq.count() >= minSamples) {
+                if (moqPercentile <= lowPercentile) {
+                    flags.add(MOQ_FAR_BELOW_MARKET);
+                } else if (moqPercentile >= highPercentile) {
+                    flags.add(MOQ_FAR_ABOVE_MARKET);
+                }
+            }
+            return new PriceSignals(pricePercentile, moqPercentile, price.count(), flags);
+        }
+
+        private Double percentile(LogHistogram histogram, double value) {
+            double rank = histogram.rank(value);
+            return Double.isNaN(rank) ? null : Math.round(rank * 1000) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.event.ProviderProfileInvalidatedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Cross-node invalidation of provider-derived state using Postgres LISTEN/NOTIFY.
+ *
+ * Each save sends "nodeId:providerId" on the configured channel. Postgres delivers a
+ * NOTIFY only when its transaction commits, so it is sent in a transaction of its own
+ * (callers run after their own commit). A daemon thread holds one pooled connection
+ * listening on the channel and turns notifications from other nodes into
+ * {@link ProviderProfileInvalidatedEvent}s. After a reconnect everything is
+ * invalidated, since notifications may have been lost.
+ */
+@Component
+@Slf4j
+public class ProviderChangeNotifier {
+
+    private static final int POLL_TIMEOUT_MILLIS = 5000;
+    private static final long RECONNECT_BACKOFF_MILLIS = 5000;
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final TransactionTemplate notifyTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${orientlink.cache.notify.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orientlink.cache.notify.channel:provider_profile_changed}")
+    private String channel;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public ProviderChangeNotifier(JdbcTemplate jdbcTemplate,
+                                  DataSource dataSource,
+                                  PlatformTransactionManager transactionManager,
+                                  ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.notifyTemplate = new TransactionTemplate(transactionManager);
+        this.notifyTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * The channel is used as an SQL identifier in LISTEN, so only plain lower-case names are accepted.
+     */
+    @PostConstruct
+    void validateChannel() {
+        if (enabled && !CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalStateException("orientlink.cache.notify.channel must match "
+                    + CHANNEL_NAME.pattern() + ": " + channel);
+        }
+    }
+
+    /**
+     * Notify other nodes that a provider changed.
+     */
+    public void notifyChanged(Long providerId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // The caller's transaction (if any) has already committed; a NOTIFY in it would never be sent
+            notifyTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, nodeId + ":" + providerId));
+        } catch (Exception e) {
+            // Other nodes fall back to TTL expiry
+            log.warn("Failed to publish provider change notification for {}", providerId, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "provider-change-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listenLoop() {
+        boolean firstConnect = true;
+        while (running) {
+            // Outside any transaction, so routed to the primary; held for as long as it stays healthy
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.info("Listening for provider changes on channel '{}'", channel);
+                if (!firstConnect) {
+                    eventPublisher.publishEvent(new ProviderProfileInvalidatedEvent(null));
+                }
+                firstConnect = false;
+                pollNotifications(connection);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Provider change listener disconnected, retrying in {} ms", RECONNECT_BACKOFF_MILLIS, e);
+                try {
+                    Thread.sleep(RECONNECT_BACKOFF_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Block on PGConnection#getNotifications, reached through the pool's proxy by unwrap.
+     */
+    private void pollNotifications(Connection connection) throws Exception {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            if (notifications == null) {
+                continue;
+            }
+            for (PGNotification notification : notifications) {
+                handlePayload(notification.getParameter());
+            }
+        }
+    }
+
+    private void handlePayload(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        try {
+            Long providerId = Long.valueOf(payload.substring(separator + 1));
+            eventPublisher.publishEvent(new ProviderProfileInvalidatedEvent(providerId));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed provider change notification: {}", payload);
+        }
+    }
+}
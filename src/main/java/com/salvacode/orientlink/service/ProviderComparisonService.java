@@ -0,0 +1,201 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.dto.ProviderCompareRequestDTO;
+import com.salvacode.orientlink.dto.ProviderComparisonDTO;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.entity.ProviderRiskAssessment;
+import com.salvacode.orientlink.event.ProviderProfileInvalidatedEvent;
+import com.salvacode.orientlink.event.ProviderProfileSavedEvent;
+import com.salvacode.orientlink.exception.BadRequestException;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks providers for a product by price, MOQ, delivery time, certifications and risk.
+ *
+ * Rankings run against an in-memory {@link ProviderMetricsSnapshot} instead of the
+ * database, so comparing thousands of suppliers costs one pass over primitive arrays.
+ * Prices are normalized to USD on the way in. The snapshot is built on startup and
+ * updated on each provider save, locally and from other nodes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderComparisonService {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private final ProviderProfileRepository providerRepository;
+    private final CurrencyNormalizer currencyNormalizer;
+
+    @Value("${orientlink.compare.rebuild-batch-size:5000}")
+    private int rebuildBatchSize;
+
+    private final Object swapLock = new Object(); // Orders updates against the snapshot swap
+    private volatile ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+    private Map<Long, ProviderProfile> changesDuringRebuild; // Non-null while a rebuild loads; null value = removed
+
+    /**
+     * Rebuild the snapshot from the database once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        ProviderMetricsSnapshot newSnapshot = new ProviderMetricsSnapshot();
+
+        synchronized (swapLock) {
+            changesDuringRebuild = new HashMap<>();
+        }
+        try {
+            long lastId = 0L;
+            List<ProviderProfileRepository.ProviderMetricsView> batch;
+            do {
+                batch = providerRepository.findMetricsViewsAfter(lastId, PageRequest.of(0, rebuildBatchSize));
+                for (ProviderProfileRepository.ProviderMetricsView view : batch) {
+                    newSnapshot.upsert(view.getId(), view.getUserId(), view.getProviderName(), view.getProductName(),
+                            currencyNormalizer.toUsd(view.getPricePerUnit(), view.getCurrency()),
+                            view.getMoq(), view.getDeliveryTimeDays(), view.getCertifications(),
+                            overallRisk(view.getRiskAssessment()));
+                    lastId = view.getId();
+                }
+            } while (batch.size() == rebuildBatchSize);
+
+            synchronized (swapLock) {
+                // The batches may have been read before these changes committed
+                changesDuringRebuild.forEach((providerId, provider) -> {
+                    if (provider != null) {
+                        upsert(newSnapshot, provider);
+                    } else {
+                        newSnapshot.remove(providerId);
+                    }
+                });
+                snapshot = newSnapshot;
+            }
+        } finally {
+            synchronized (swapLock) {
+                changesDuringRebuild = null;
+            }
+        }
+        log.info("Provider comparison snapshot built: {} providers in {} ms",
+                newSnapshot.count(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Keep the snapshot in sync once a provider save has been committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProviderSaved(ProviderProfileSavedEvent event) {
+        update(event.provider());
+    }
+
+    /**
+     * Reload providers changed on another node.
+     */
+    @EventListener
+    public void onProviderInvalidated(ProviderProfileInvalidatedEvent event) {
+        if (event.providerId() == null) {
+            rebuild();
+            return;
+        }
+        providerRepository.findById(event.providerId()).ifPresentOrElse(
+                this::update,
+                () -> remove(event.providerId()));
+    }
+
+    /**
+     * Rank providers matching the request's filters, best first.
+     */
+    public List<ProviderComparisonDTO> compare(ProviderCompareRequestDTO request) {
+        long start = System.nanoTime();
+        ProviderMetricsSnapshot.Filter filter = new ProviderMetricsSnapshot.Filter(
+                request.getUserId(),
+                request.getProduct(),
+                request.getMaxPrice(),
+                request.getMaxMoq(),
+                request.getMaxDeliveryDays(),
+                maxRiskCode(request.getMaxRisk()),
+                request.getCertification());
+        ProviderMetricsSnapshot.Weights weights = new ProviderMetricsSnapshot.Weights(
+                nonNegative(request.getPriceWeight()),
+                nonNegative(request.getMoqWeight()),
+                nonNegative(request.getDeliveryWeight()),
+                nonNegative(request.getCertificationWeight()),
+                nonNegative(request.getRiskWeight()));
+        int limit = Math.min(Math.max(request.getLimit(), 1), MAX_LIMIT);
+
+        List<ProviderComparisonDTO> ranked = snapshot.topK(filter, weights, limit).stream()
+                .map(this::toComparison)
+                .toList();
+        log.debug("Compared providers in {} µs, returning {}", (System.nanoTime() - start) / 1000, ranked.size());
+        return ranked;
+    }
+
+    private void update(ProviderProfile provider) {
+        synchronized (swapLock) {
+            upsert(snapshot, provider);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(provider.getId(), provider);
+            }
+        }
+    }
+
+    private void remove(Long providerId) {
+        synchronized (swapLock) {
+            snapshot.remove(providerId);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(providerId, null);
+            }
+        }
+    }
+
+    private void upsert(ProviderMetricsSnapshot target, ProviderProfile provider) {
+        target.upsert(provider.getId(), provider.getUserId(), provider.getProviderName(), provider.getProductName(),
+                currencyNormalizer.toUsd(provider.getPricePerUnit(), provider.getCurrency()),
+                provider.getMoq(), provider.getDeliveryTimeDays(), provider.getCertifications(),
+                overallRisk(provider.getRiskAssessment()));
+    }
+
+    private ProviderComparisonDTO toComparison(ProviderMetricsSnapshot.Ranked ranked) {
+        return ProviderComparisonDTO.builder()
+                .providerId(ranked.providerId())
+                .providerName(ranked.providerName())
+                .productName(ranked.productName())
+                .score(ranked.score())
+                .priceUsd(Double.isNaN(ranked.priceUsd()) ? null : ranked.priceUsd())
+                .moq(ranked.moq() >= 0 ? ranked.moq() : null)
+                .deliveryTimeDays(ranked.deliveryDays() >= 0 ? ranked.deliveryDays() : null)
+                .certificationCount(ranked.certificationCount())
+                .overallRisk(ProviderMetricsSnapshot.riskName(ranked.risk()))
+                .build();
+    }
+
+    private static Byte maxRiskCode(String maxRisk) {
+        if (maxRisk == null) {
+            return null;
+        }
+        byte code = ProviderMetricsSnapshot.riskCode(maxRisk);
+        if (code == ProviderMetricsSnapshot.RISK_UNKNOWN) {
+            throw new BadRequestException("maxRisk must be one of: low, medium, high");
+        }
+        return code;
+    }
+
+    private static double nonNegative(double weight) {
+        return Double.isNaN(weight) ? 0 : Math.max(weight, 0);
+    }
+
+    private static String overallRisk(ProviderRiskAssessment riskAssessment) {
+        return riskAssessment != null ? riskAssessment.getOverallRisk() : null;
+    }
+}
@@ -0,0 +1,194 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.event.ProviderProfileInvalidatedEvent;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import com.salvacode.orientlink.repository.ConversationSummaryRepository;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import com.salvacode.orientlink.util.AlibabaUrlCanonicalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One-off job that assigns canonical URL keys to existing providers and merges duplicates.
+ *
+ * Providers are grouped by {@link AlibabaUrlCanonicalizer} key. In each group of two or
+ * more, the profile already holding the key survives, or else the most recently updated one.
+ * Duplicates owned by the survivor's user are merged into it: their conversations are moved
+ * onto it, their summaries and price statistics contributions are dropped, and the rows
+ * are deleted. Duplicates owned by other users are left untouched (and unkeyed), so a merge
+ * never takes a provider away from its owner. Each group is merged in its own short transaction, so the job can be
+ * interrupted and re-run safely. Conversations are reassigned first, on every conversation shard,
+ * each in its own transaction; a run interrupted after that leaves them on the survivor already.
+ *
+ * Enable orientlink.provider.dedup.run-on-startup on a single node only.
+ */
+@Service
+@Slf4j
+public class ProviderDeduplicationService {
+
+    private final ProviderProfileRepository providerRepository;
+    private final ConversationHistoryRepository conversationRepository;
+    private final ConversationSummaryRepository summaryRepository;
+    private final ConversationShards conversationShards;
+    private final PriceStatisticsService priceStatistics;
+    private final ProviderChangeNotifier changeNotifier;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${orientlink.provider.dedup.run-on-startup:false}")
+    private boolean runOnStartup;
+
+    @Value("${orientlink.provider.dedup.batch-size:5000}")
+    private int batchSize;
+
+    public ProviderDeduplicationService(ProviderProfileRepository providerRepository,
+                                        ConversationHistoryRepository conversationRepository,
+                                        ConversationSummaryRepository summaryRepository,
+                                        ConversationShards conversationShards,
+                                        PriceStatisticsService priceStatistics,
+                                        ProviderChangeNotifier changeNotifier,
+                                        ApplicationEventPublisher eventPublisher,
+                                        PlatformTransactionManager transactionManager) {
+        this.providerRepository = providerRepository;
+        this.conversationRepository = conversationRepository;
+        this.summaryRepository = summaryRepository;
+        this.conversationShards = conversationShards;
+        this.priceStatistics = priceStatistics;
+        this.changeNotifier = changeNotifier;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Outcome of a deduplication run.
+     */
+    public record Result(int keysAssigned, int groupsMerged, int providersRemoved, int providersKept) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void runOnStartup() {
+        if (runOnStartup) {
+            deduplicate();
+        }
+    }
+
+    /**
+     * Key every provider and merge each group of duplicates into its newest member.
+     */
+    public Result deduplicate() {
+        long start = System.currentTimeMillis();
+
+        // Group by canonical key from a lightweight projection
+        Map<String, List<ProviderProfileRepository.ProviderUrlView>> groups = new HashMap<>();
+        long lastId = 0L;
+        List<ProviderProfileRepository.ProviderUrlView> batch;
+        do {
+            batch = providerRepository.findUrlViewsAfter(lastId, PageRequest.of(0, batchSize));
+            for (ProviderProfileRepository.ProviderUrlView view : batch) {
+                lastId = view.getId();
+                String key = AlibabaUrlCanonicalizer.canonicalKey(view.getAlibabaUrl());
+                if (key != null) {
+                    groups.computeIfAbsent(key, k -> new ArrayList<>()).add(view);
+                }
+            }
+        } while (batch.size() == batchSize);
+
+        int keysAssigned = 0;
+        int groupsMerged = 0;
+        int providersRemoved = 0;
+        int providersKept = 0;
+        for (Map.Entry<String, List<ProviderProfileRepository.ProviderUrlView>> group : groups.entrySet()) {
+            List<ProviderProfileRepository.ProviderUrlView> members = group.getValue();
+            if (members.size() == 1) {
+                ProviderProfileRepository.ProviderUrlView only = members.get(0);
+                if (!group.getKey().equals(only.getCanonicalKey())) {
+                    transactionTemplate.executeWithoutResult(
+                            status -> providerRepository.updateCanonicalKey(only.getId(), group.getKey()));
+                    keysAssigned++;
+                }
+                continue;
+            }
+            int removed = merge(group.getKey(), members);
+            providersRemoved += removed;
+            providersKept += members.size() - 1 - removed;
+            groupsMerged++;
+            keysAssigned++;
+        }
+
+        Result result = new Result(keysAssigned, groupsMerged, providersRemoved, providersKept);
+        log.info("Provider deduplication finished in {} ms: {} keys assigned, {} groups merged, {} providers removed, "
+                        + "{} duplicates of other users kept",
+                System.currentTimeMillis() - start, result.keysAssigned(), result.groupsMerged(),
+                result.providersRemoved(), result.providersKept());
+        return result;
+    }
+
+    /**
+     * Merge one group's duplicates of the same owner into the surviving member.
+     *
+     * @return Number of providers removed
+     */
+    private int merge(String canonicalKey, List<ProviderProfileRepository.ProviderUrlView> members) {
+        // The key is unique, so a member that already holds it must survive
+        ProviderProfileRepository.ProviderUrlView survivor = members.stream()
+                .filter(member -> canonicalKey.equals(member.getCanonicalKey()))
+                .findFirst()
+                .orElseGet(() -> members.stream()
+                        .max(Comparator.comparing(ProviderProfileRepository.ProviderUrlView::getUpdatedAt,
+                                        Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                                .thenComparing(ProviderProfileRepository.ProviderUrlView::getId))
+                        .orElseThrow());
+        List<Long> duplicateIds = members.stream()
+                .filter(member -> !Objects.equals(member.getId(), survivor.getId())
+                        && Objects.equals(member.getUserId(), survivor.getUserId()))
+                .map(ProviderProfileRepository.ProviderUrlView::getId)
+                .toList();
+        if (duplicateIds.isEmpty()) {
+            if (!canonicalKey.equals(survivor.getCanonicalKey())) {
+                transactionTemplate.executeWithoutResult(
+                        status -> providerRepository.updateCanonicalKey(survivor.getId(), canonicalKey));
+            }
+            return 0;
+        }
+
+        int moved = conversationShards.onEveryShard(() -> transactionTemplate.execute(status ->
+                conversationRepository.reassignProvider(duplicateIds, survivor.getId())))
+                .stream().mapToInt(Integer::intValue).sum();
+        List<PriceStatisticsService.Sample> removedSamples = transactionTemplate.execute(status -> {
+            List<PriceStatisticsService.Sample> samples = new ArrayList<>();
+            for (ProviderProfile duplicate : providerRepository.findAllById(duplicateIds)) {
+                samples.add(priceStatistics.sampleOf(duplicate));
+            }
+            summaryRepository.deleteByProviderIdIn(duplicateIds);
+            providerRepository.deleteByIdIn(duplicateIds);
+            providerRepository.updateCanonicalKey(survivor.getId(), canonicalKey);
+            log.info("Merged providers {} into {} ({}), {} conversations reassigned",
+                    duplicateIds, survivor.getId(), canonicalKey, moved);
+            return samples;
+        });
+
+        // Only after commit: drop the removed rows from statistics, caches and indexes on every node
+        removedSamples.forEach(sample -> priceStatistics.replace(sample, null));
+        for (Long id : duplicateIds) {
+            eventPublisher.publishEvent(new ProviderProfileInvalidatedEvent(id));
+            changeNotifier.notifyChanged(id);
+        }
+        return duplicateIds.size();
+    }
+}
@@ -0,0 +1,450 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.util.NgramTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar, primitive-array snapshot of the provider metrics used for ranking.
+ *
+ * Each provider occupies one slot across parallel arrays, so a ranking pass is a tight
+ * loop over contiguous memory with no object dereferences. String columns (user, product,
+ * certifications) are dictionary-encoded: a filter is evaluated once per distinct value,
+ * then checked per row as an int lookup. Slots of removed providers are recycled.
+ * Unknown numeric values are stored as NaN / -1.
+ *
+ * Thread-safe: updates take the write lock, rankings the read lock.
+ */
+public class ProviderMetricsSnapshot {
+
+    public static final byte RISK_LOW = 0;
+    public static final byte RISK_MEDIUM = 1;
+    public static final byte RISK_HIGH = 2;
+    public static final byte RISK_UNKNOWN = 3;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size; // High-water mark of used slots
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private boolean[] live = new boolean[INITIAL_CAPACITY];
+    private double[] priceUsd = new double[INITIAL_CAPACITY];
+    private int[] moq = new int[INITIAL_CAPACITY];
+    private int[] deliveryDays = new int[INITIAL_CAPACITY];
+    private int[] certificationCount = new int[INITIAL_CAPACITY];
+    private byte[] risk = new byte[INITIAL_CAPACITY];
+    private int[] userCodes = new int[INITIAL_CAPACITY];
+    private int[] productCodes = new int[INITIAL_CAPACITY];
+    private int[] certificationCodes = new int[INITIAL_CAPACITY];
+    private String[] providerNames = new String[INITIAL_CAPACITY];
+    private String[] productNames = new String[INITIAL_CAPACITY];
+
+    // Dictionaries only grow; distinct users/products/certification sets are few
+    private final Dictionary users = new Dictionary();
+    private final Dictionary products = new Dictionary(); // Normalized product names
+    private final Dictionary certificationSets = new Dictionary(); // "|ce|iso 9001|"
+
+    /**
+     * Ranking filters; null means "no constraint".
+     */
+    public record Filter(String userId, String product, Double maxPriceUsd, Integer maxMoq,
+                         Integer maxDeliveryDays, Byte maxRisk, String certification) {
+    }
+
+    /**
+     * Relative weight of each metric in the score. Lower price, MOQ, delivery time and
+     * risk are better; more certifications are better.
+     */
+    public record Weights(double price, double moq, double delivery, double certifications, double risk) {
+    }
+
+    /**
+     * One ranked provider with the metrics it was scored on.
+     */
+    public record Ranked(long providerId, double score, String providerName, String productName,
+                         double priceUsd, int moq, int deliveryDays, int certificationCount, byte risk) {
+    }
+
+    /**
+     * Insert or replace a provider's metrics.
+     */
+    public void upsert(long providerId, String userId, String providerName, String productName,
+                       double priceUsdValue, Integer moqValue, Integer deliveryDaysValue,
+                       List<String> certifications, String overallRisk) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotById.get(providerId);
+            int slot = existing != null ? existing : allocateSlot();
+            slotById.put(providerId, slot);
+
+            ids[slot] = providerId;
+            live[slot] = true;
+            priceUsd[slot] = priceUsdValue;
+            moq[slot] = moqValue != null ? moqValue : -1;
+            deliveryDays[slot] = deliveryDaysValue != null ? deliveryDaysValue : -1;
+            certificationCount[slot] = certifications != null ? certifications.size() : 0;
+            certificationCodes[slot] = certificationSets.code(certificationKey(certifications));
+            risk[slot] = riskCode(overallRisk);
+            userCodes[slot] = users.code(userId != null ? userId : "");
+            productCodes[slot] = products.code(productName != null ? NgramTokenizer.normalize(productName) : "");
+            providerNames[slot] = providerName;
+            productNames[slot] = productName;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a provider; its slot is reused by the next insert.
+     */
+    public void remove(long providerId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.remove(providerId);
+            if (slot == null) {
+                return;
+            }
+            live[slot] = false;
+            providerNames[slot] = null;
+            productNames[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of providers in the snapshot.
+     */
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Filter, score and return the best k providers, best first.
+     *
+     * Each metric is min-max normalized over the candidates that passed the filters,
+     * so weights are comparable across units. A missing value scores zero for that metric.
+     */
+    public List<Ranked> topK(Filter filter, Weights weights, int k) {
+        String product = filter.product() != null ? NgramTokenizer.normalize(filter.product()) : null;
+        String certification = filter.certification() != null
+                ? "|" + filter.certification().trim().toLowerCase(Locale.ROOT) + "|"
+                : null;
+        double maxPrice = filter.maxPriceUsd() != null ? filter.maxPriceUsd() : Double.NaN;
+        int maxMoq = filter.maxMoq() != null ? filter.maxMoq() : -1;
+        int maxDelivery = filter.maxDeliveryDays() != null ? filter.maxDeliveryDays() : -1;
+        byte maxRisk = filter.maxRisk() != null ? filter.maxRisk() : -1;
+
+        lock.readLock().lock();
+        try {
+            int userCode = filter.userId() != null ? users.find(filter.userId()) : -1;
+            if (filter.userId() != null && userCode < 0) {
+                return List.of();
+            }
+            boolean[] productMatches = product != null ? products.matching(product) : null;
+            boolean[] certificationMatches = certification != null ? certificationSets.matching(certification) : null;
+
+            // Pass 1: filter and collect per-metric ranges
+            int[] candidates = new int[Math.min(size, 1024)];
+            int candidateCount = 0;
+            double minPrice = Double.MAX_VALUE, maxPriceSeen = -Double.MAX_VALUE;
+            int minMoq = Integer.MAX_VALUE, maxMoqSeen = Integer.MIN_VALUE;
+            int minDelivery = Integer.MAX_VALUE, maxDeliverySeen = Integer.MIN_VALUE;
+            int minCerts = Integer.MAX_VALUE, maxCertsSeen = Integer.MIN_VALUE;
+
+            for (int i = 0; i < size; i++) {
+                if (!live[i]) {
+                    continue;
+                }
+                if (!Double.isNaN(maxPrice) && !(priceUsd[i] <= maxPrice)) {
+                    continue;
+                }
+                if (maxMoq >= 0 && (moq[i] < 0 || moq[i] > maxMoq)) {
+                    continue;
+                }
+                if (maxDelivery >= 0 && (deliveryDays[i] < 0 || deliveryDays[i] > maxDelivery)) {
+                    continue;
+                }
+                if (maxRisk >= 0 && risk[i] > maxRisk) {
+                    continue;
+                }
+                if (userCode >= 0 && userCodes[i] != userCode) {
+                    continue;
+                }
+                if (productMatches != null && !productMatches[productCodes[i]]) {
+                    continue;
+                }
+                if (certificationMatches != null && !certificationMatches[certificationCodes[i]]) {
+                    continue;
+                }
+
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                }
+                candidates[candidateCount++] = i;
+
+                if (!Double.isNaN(priceUsd[i])) {
+                    minPrice = Math.min(minPrice, priceUsd[i]);
+                    maxPriceSeen = Math.max(maxPriceSeen, priceUsd[i]);
+                }
+                if (moq[i] >= 0) {
+                    minMoq = Math.min(minMoq, moq[i]);
+                    maxMoqSeen = Math.max(maxMoqSeen, moq[i]);
+                }
+                if (deliveryDays[i] >= 0) {
+                    minDelivery = Math.min(minDelivery, deliveryDays[i]);
+                    maxDeliverySeen = Math.max(maxDeliverySeen, deliveryDays[i]);
+                }
+                minCerts = Math.min(minCerts, certificationCount[i]);
+                maxCertsSeen = Math.max(maxCertsSeen, certificationCount[i]);
+            }
+
+            // Pass 2: score candidates into a bounded min-heap
+            double weightSum = weights.price() + weights.moq() + weights.delivery()
+                    + weights.certifications() + weights.risk();
+            if (weightSum <= 0) {
+                weightSum = 1;
+            }
+            TopKHeap heap = new TopKHeap(Math.max(k, 1));
+            for (int c = 0; c < candidateCount; c++) {
+                int i = candidates[c];
+                double score = 0;
+                if (!Double.isNaN(priceUsd[i])) {
+                    score += weights.price() * lowerIsBetter(priceUsd[i], minPrice, maxPriceSeen);
+                }
+                if (moq[i] >= 0) {
+                    score += weights.moq() * lowerIsBetter(moq[i], minMoq, maxMoqSeen);
+                }
+                if (deliveryDays[i] >= 0) {
+                    score += weights.delivery() * lowerIsBetter(deliveryDays[i], minDelivery, maxDeliverySeen);
+                }
+                score += weights.certifications() * (1 - lowerIsBetter(certificationCount[i], minCerts, maxCertsSeen));
+                if (risk[i] != RISK_UNKNOWN) {
+                    score += weights.risk() * lowerIsBetter(risk[i], RISK_LOW, RISK_HIGH);
+                }
+                heap.offer(i, score / weightSum);
+            }
+
+            int[] bestSlots = heap.slotsBestFirst();
+            double[] bestScores = heap.scoresBestFirst();
+            List<Ranked> ranked = new ArrayList<>(bestSlots.length);
+            for (int r = 0; r < bestSlots.length; r++) {
+                int i = bestSlots[r];
+                ranked.add(new Ranked(ids[i], bestScores[r], providerNames[i], productNames[i],
+                        priceUsd[i], moq[i], deliveryDays[i], certificationCount[i], risk[i]));
+            }
+            return ranked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Map "low"/"medium"/"high" to a risk code.
+     */
+    public static byte riskCode(String overallRisk) {
+        if (overallRisk == null) {
+            return RISK_UNKNOWN;
+        }
+        return switch (overallRisk.trim().toLowerCase(Locale.ROOT)) {
+            case "low" -> RISK_LOW;
+            case "medium" -> RISK_MEDIUM;
+            case "high" -> RISK_HIGH;
+            default -> RISK_UNKNOWN;
+        };
+    }
+
+    /**
+     * Inverse of {@link #riskCode(String)}.
+     */
+    public static String riskName(byte code) {
+        return switch (code) {
+            case RISK_LOW -> "low";
+            case RISK_MEDIUM -> "medium";
+            case RISK_HIGH -> "high";
+            default -> "unknown";
+        };
+    }
+
+    /**
+     * 1 for the best (minimum) value, 0 for the worst; 1 when all values are equal.
+     */
+    private static double lowerIsBetter(double value, double min, double max) {
+        return max > min ? (max - value) / (max - min) : 1.0;
+    }
+
+    private static String certificationKey(List<String> certifications) {
+        if (certifications == null || certifications.isEmpty()) {
+            return "|";
+        }
+        StringBuilder key = new StringBuilder("|");
+        for (String certification : certifications) {
+            key.append(certification.trim().toLowerCase(Locale.ROOT)).append('|');
+        }
+        return key.toString();
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (size == ids.length) {
+            grow(ids.length * 2);
+        }
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        live = Arrays.copyOf(live, capacity);
+        priceUsd = Arrays.copyOf(priceUsd, capacity);
+        moq = Arrays.copyOf(moq, capacity);
+        deliveryDays = Arrays.copyOf(deliveryDays, capacity);
+        certificationCount = Arrays.copyOf(certificationCount, capacity);
+        risk = Arrays.copyOf(risk, capacity);
+        userCodes = Arrays.copyOf(userCodes, capacity);
+        productCodes = Arrays.copyOf(productCodes, capacity);
+        certificationCodes = Arrays.copyOf(certificationCodes, capacity);
+        providerNames = Arrays.copyOf(providerNames, capacity);
+        productNames = Arrays.copyOf(productNames, capacity);
+    }
+
+    /**
+     * Append-only string dictionary mapping each distinct value to a dense int code.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int find(String value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        /**
+         * For each code, whether its value contains the needle.
+         */
+        boolean[] matching(String needle) {
+            boolean[] matches = new boolean[values.size()];
+            for (int code = 0; code < matches.length; code++) {
+                matches[code] = values.get(code).contains(needle);
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * Fixed-capacity binary min-heap of (slot, score); keeps the k highest scores.
+     */
+    private static final class TopKHeap {
+        private final int[] slots;
+        private final double[] scores;
+        private int count;
+
+        TopKHeap(int capacity) {
+            slots = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void offer(int slot, double score) {
+            if (count < slots.length) {
+                slots[count] = slot;
+                scores[count] = score;
+                siftUp(count++);
+            } else if (score > scores[0]) {
+                slots[0] = slot;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        int[] slotsBestFirst() {
+            sortDescending();
+            return Arrays.copyOf(slots, count);
+        }
+
+        double[] scoresBestFirst() {
+            return Arrays.copyOf(scores, count);
+        }
+
+        /**
+         * Heap-sort in place: repeatedly move the minimum to the end.
+         */
+        private void sortDescending() {
+            int n = count;
+            while (count > 1) {
+                swap(0, --count);
+                siftDown(0);
+            }
+            count = n;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[i] >= scores[parent]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int smallest = i;
+                if (left < count && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < count && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int slot = slots[a];
+            slots[a] = slots[b];
+            slots[b] = slot;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
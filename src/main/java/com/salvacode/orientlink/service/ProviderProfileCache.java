@@ -0,0 +1,166 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.ReadReplicaRoutingDataSource;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.event.ProviderProfileInvalidatedEvent;
+import com.salvacode.orientlink.event.ProviderProfileSavedEvent;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-evicting cache of provider profiles by ID.
+ *
+ * Profiles only change when analyzeProvider re-extracts them, so reads on the analyze
+ * path and GET /provider/{id} can skip the database. Entries are evicted locally after
+ * a save commits, and on other nodes through {@link ProviderChangeNotifier}.
+ *
+ * Cached instances are detached and shared between threads: callers must not modify them.
+ */
+@Component
+@Slf4j
+public class ProviderProfileCache {
+
+    private final ProviderProfileRepository providerRepository;
+    private final ProviderChangeNotifier changeNotifier;
+    private final TransactionTemplate primaryReadTemplate;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final Map<Long, CacheEntry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ProviderProfileCache(ProviderProfileRepository providerRepository,
+                                ProviderChangeNotifier changeNotifier,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${orientlink.cache.provider.max-size:10000}") int maxSize,
+                                @Value("${orientlink.cache.provider.ttl:10m}") Duration ttl) {
+        this.providerRepository = providerRepository;
+        this.changeNotifier = changeNotifier;
+        // Misses are loaded from the primary (see get), so a lagging read replica can never
+        // put a stale profile into the cache for a whole TTL
+        this.primaryReadTemplate = new TransactionTemplate(transactionManager);
+        this.primaryReadTemplate.setReadOnly(true);
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                return size() > ProviderProfileCache.this.maxSize;
+            }
+        };
+
+        FunctionCounter.builder("orientlink.provider.cache.requests", hits, AtomicLong::doubleValue)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("orientlink.provider.cache.requests", misses, AtomicLong::doubleValue)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("orientlink.provider.cache.hit.ratio", this, ProviderProfileCache::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("orientlink.provider.cache.size", this, ProviderProfileCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get a provider by ID, loading it from the database on a miss or expired entry.
+     */
+    public Optional<ProviderProfile> get(Long id) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(id);
+            if (entry != null && entry.expiresAt() - now > 0) {
+                hits.incrementAndGet();
+                return Optional.of(entry.provider());
+            }
+        }
+        misses.incrementAndGet();
+
+        // An invalidation that lands while we read must win over the value we read
+        long invalidationsBeforeLoad = invalidations.get();
+        Optional<ProviderProfile> loaded = ReadReplicaRoutingDataSource.readFromPrimary(
+                () -> primaryReadTemplate.execute(status -> providerRepository.findById(id)));
+        loaded.ifPresent(provider -> {
+            synchronized (entries) {
+                if (invalidations.get() == invalidationsBeforeLoad) {
+                    entries.put(id, new CacheEntry(provider, System.nanoTime() + ttlNanos));
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Drop a single provider from the local cache.
+     */
+    public void evict(Long id) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Drop every cached provider.
+     */
+    public void clear() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Evict locally and tell the other nodes once the save is committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProviderSaved(ProviderProfileSavedEvent event) {
+        Long id = event.provider().getId();
+        evict(id);
+        changeNotifier.notifyChanged(id);
+    }
+
+    /**
+     * Evict entries changed on another node.
+     */
+    @EventListener
+    public void onProviderInvalidated(ProviderProfileInvalidatedEvent event) {
+        if (event.providerId() == null) {
+            clear();
+        } else {
+            evict(event.providerId());
+        }
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record CacheEntry(ProviderProfile provider, long expiresAt) {
+    }
+}
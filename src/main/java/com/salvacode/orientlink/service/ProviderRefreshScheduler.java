@@ -0,0 +1,149 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.context.RequestPriority;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Re-extracts provider profiles before they go stale, during off-peak hours.
+ *
+ * Profiles older than refresh-after (shorter than the freshness TTL) are refreshed ahead
+ * of time, so user-facing analyzeProvider calls are almost always served from the database.
+ * Each profile is claimed in the database first, so several nodes never refresh the same one;
+ * LLM calls run with bounded parallelism and are paced to max-per-minute.
+ */
+@Component
+@Slf4j
+public class ProviderRefreshScheduler {
+
+    private final ProviderService providerService;
+    private final ProviderProfileRepository providerRepository;
+
+    @Value("${orientlink.provider.refresh.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orientlink.provider.refresh.refresh-after:6d}")
+    private Duration refreshAfter;
+
+    @Value("${orientlink.provider.refresh.batch-size:50}")
+    private int batchSize;
+
+    @Value("${orientlink.provider.refresh.parallelism:2}")
+    private int parallelism;
+
+    @Value("${orientlink.provider.refresh.max-per-minute:20}")
+    private int maxPerMinute;
+
+    @Value("${orientlink.provider.refresh.claim-timeout:10m}")
+    private Duration claimTimeout;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ExecutorService workers;
+    private long intervalNanos;
+    private long nextSlotNanos;
+
+    public ProviderRefreshScheduler(ProviderService providerService, ProviderProfileRepository providerRepository) {
+        this.providerService = providerService;
+        this.providerRepository = providerRepository;
+    }
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "provider-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(maxPerMinute, 1);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Refresh one batch of stale profiles. Runs only inside the configured off-peak window.
+     */
+    @Scheduled(cron = "${orientlink.provider.refresh.cron:0 */10 1-5 * * *}",
+            zone = "${orientlink.provider.refresh.zone:UTC}")
+    public void refreshStaleProviders() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return; // Disabled, or the previous batch is still running
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> staleIds = providerRepository.findStaleIds(
+                    now.minus(refreshAfter), now, PageRequest.of(0, batchSize));
+            if (staleIds.isEmpty()) {
+                return;
+            }
+
+            List<Future<?>> tasks = new ArrayList<>();
+            for (Long providerId : staleIds) {
+                if (providerRepository.claimForRefresh(providerId, now, now.plus(claimTimeout)) == 1) {
+                    tasks.add(workers.submit(() -> refreshOne(providerId)));
+                }
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            log.info("Background refresh completed for {} stale provider profiles", tasks.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Background provider refresh failed", e.getCause());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void refreshOne(Long providerId) {
+        try {
+            RequestContext.setPriority(RequestPriority.BACKGROUND);
+            awaitRateSlot();
+            providerService.refreshProvider(providerId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // The claim expires after claim-timeout and the profile is retried in a later run
+            log.warn("Failed to refresh provider {}", providerId, e);
+        } finally {
+            RequestContext.clear();
+        }
+    }
+
+    /**
+     * Space LLM calls evenly so a batch never exceeds max-per-minute.
+     */
+    private void awaitRateSlot() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(nextSlotNanos, now);
+            nextSlotNanos = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
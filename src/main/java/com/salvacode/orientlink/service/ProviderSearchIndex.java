@@ -0,0 +1,261 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.event.ProviderProfileInvalidatedEvent;
+import com.salvacode.orientlink.event.ProviderProfileSavedEvent;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import com.salvacode.orientlink.util.NgramTokenizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory n-gram inverted index over provider names.
+ *
+ * Replaces the LIKE '%x%' full table scan: a query only touches the posting lists of its
+ * own grams, so latency depends on how many providers share those grams rather than on
+ * the table size. Results are ranked by Dice similarity between query and name grams,
+ * newest provider first on ties.
+ *
+ * The index is rebuilt from a lightweight projection on startup and kept current via
+ * {@link ProviderProfileSavedEvent} locally and {@link ProviderProfileInvalidatedEvent}
+ * for changes made on other nodes. Changes arriving while a rebuild loads are applied
+ * again to the new maps when they are swapped in, so none is lost.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderSearchIndex {
+
+    private final ProviderProfileRepository providerRepository;
+
+    @Value("${orientlink.search.min-match-ratio:0.5}")
+    private double minMatchRatio;
+
+    @Value("${orientlink.search.rebuild-batch-size:5000}")
+    private int rebuildBatchSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Set<Long>> postings = new HashMap<>();
+    private Map<Long, IndexedName> documents = new HashMap<>();
+    private Map<Long, PendingChange> changesDuringRebuild; // Non-null while a rebuild loads
+
+    /**
+     * Rebuild the whole index from the database once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<String, Set<Long>> newPostings = new HashMap<>();
+        Map<Long, IndexedName> newDocuments = new HashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long lastId = 0L;
+            List<ProviderProfileRepository.ProviderNameView> batch;
+            do {
+                batch = providerRepository.findNameViewsAfter(lastId, PageRequest.of(0, rebuildBatchSize));
+                for (ProviderProfileRepository.ProviderNameView view : batch) {
+                    addDocument(newPostings, newDocuments, view.getId(), view.getUserId(), view.getProviderName());
+                    lastId = view.getId();
+                }
+            } while (batch.size() == rebuildBatchSize);
+
+            lock.writeLock().lock();
+            try {
+                postings = newPostings;
+                documents = newDocuments;
+                // The batches may have been read before these changes committed
+                changesDuringRebuild.forEach((providerId, change) -> {
+                    removeDocument(providerId);
+                    if (!change.removed()) {
+                        addDocument(postings, documents, providerId, change.userId(), change.providerName());
+                    }
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Provider search index built: {} providers, {} grams in {} ms",
+                newDocuments.size(), newPostings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Keep the index in sync once a provider save has been committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProviderSaved(ProviderProfileSavedEvent event) {
+        ProviderProfile provider = event.provider();
+        index(provider.getId(), provider.getUserId(), provider.getProviderName());
+    }
+
+    /**
+     * Reload providers changed on another node.
+     */
+    @EventListener
+    public void onProviderInvalidated(ProviderProfileInvalidatedEvent event) {
+        if (event.providerId() == null) {
+            rebuild();
+            return;
+        }
+        providerRepository.findById(event.providerId()).ifPresentOrElse(
+                provider -> index(provider.getId(), provider.getUserId(), provider.getProviderName()),
+                () -> remove(event.providerId()));
+    }
+    
+    /**
+     * Add or replace a single provider in the index.
+     */
+    public void index(Long providerId, String userId, String providerName) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(providerId);
+            addDocument(postings, documents, providerId, userId, providerName);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(providerId, new PendingChange(userId, providerName, false));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a provider from the index.
+     */
+    public void remove(Long providerId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(providerId);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(providerId, new PendingChange(null, null, true));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search provider names, optionally scoped to a single user.
+     *
+     * @param query Partial provider name (Latin or CJK)
+     * @param userId Restrict results to this user's providers, or null for all
+     * @param page Zero-based page number
+     * @param size Page size
+     * @return Provider IDs ordered by relevance; empty when the page lies past the last result
+     */
+    public List<Long> search(String query, String userId, int page, int size) {
+        Set<String> queryGrams = NgramTokenizer.queryGrams(query);
+        if (queryGrams.isEmpty()) {
+            return List.of();
+        }
+        int requiredMatches = Math.max(1, (int) Math.ceil(queryGrams.size() * minMatchRatio));
+
+        List<ScoredId> scored = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> hits = new HashMap<>();
+            for (String gram : queryGrams) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    continue;
+                }
+                for (Long id : ids) {
+                    if (userId == null || userId.equals(documents.get(id).userId())) {
+                        hits.merge(id, 1, Integer::sum);
+                    }
+                }
+            }
+
+            hits.forEach((id, matches) -> {
+                if (matches >= requiredMatches) {
+                    int nameGrams = documents.get(id).gramCount();
+                    double score = 2.0 * matches / (queryGrams.size() + nameGrams);
+                    scored.add(new ScoredId(id, score));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        scored.sort((a, b) -> {
+            int byScore = Double.compare(b.score(), a.score());
+            return byScore != 0 ? byScore : Long.compare(b.id(), a.id());
+        });
+
+        long from = (long) page * size; // page * size overflows int for large pages
+        if (page < 0 || size <= 0 || from >= scored.size()) {
+            return List.of();
+        }
+        int to = (int) Math.min(from + size, scored.size());
+        return scored.subList((int) from, to).stream().map(ScoredId::id).toList();
+    }
+
+    private void addDocument(Map<String, Set<Long>> targetPostings, Map<Long, IndexedName> targetDocuments,
+                             Long providerId, String userId, String providerName) {
+        Set<String> grams = NgramTokenizer.indexGrams(providerName);
+        if (grams.isEmpty()) {
+            return;
+        }
+        targetDocuments.put(providerId, new IndexedName(userId, grams));
+        for (String gram : grams) {
+            targetPostings.computeIfAbsent(gram, g -> new HashSet<>()).add(providerId);
+        }
+    }
+
+    private void removeDocument(Long providerId) {
+        IndexedName previous = documents.remove(providerId);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : previous.grams()) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(providerId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private record IndexedName(String userId, Set<String> grams) {
+        int gramCount() {
+            return grams.size();
+        }
+    }
+
+    private record ScoredId(Long id, double score) {
+    }
+
+    /**
+     * Latest change to a provider seen while a rebuild was loading.
+     */
+    private record PendingChange(String userId, String providerName, boolean removed) {
+    }
+}
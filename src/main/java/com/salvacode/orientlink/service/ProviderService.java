@@ -1,17 +1,31 @@
 package com.salvacode.orientlink.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.salvacode.orientlink.context.RequestContext;
 import com.salvacode.orientlink.dto.ProviderResponseDTO;
 import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.entity.ProviderRiskAssessment;
+import com.salvacode.orientlink.event.ProviderProfileSavedEvent;
+import com.salvacode.orientlink.jfr.PipelineStageEvent;
+import com.salvacode.orientlink.repository.CollectionVersion;
 import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import com.salvacode.orientlink.util.AlibabaUrlCanonicalizer;
+import com.salvacode.orientlink.util.HttpCaching;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -25,32 +39,137 @@ public class ProviderService {
     
     private final OpenAiIntegrationService openAiService;
     private final ProviderProfileRepository providerRepository;
+    private final ProviderSearchIndex searchIndex;
+    private final ProviderProfileCache providerCache;
+    private final PriceStatisticsService priceStatistics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${orientlink.provider.freshness-ttl:7d}")
+    private Duration freshnessTtl;
     
     /**
      * Analyze Alibaba URL and extract provider information.
-     * Saves or updates provider profile in database.
+     * Profiles updated within the freshness TTL are served straight from the database;
+     * otherwise the provider is re-extracted and the profile saved or updated.
+     * The LLM call runs outside any transaction so it never holds a pooled connection.
      */
-    @Transactional
     public ProviderResponseDTO analyzeProvider(String alibabaUrl, String userId, String additionalContext) {
         log.info("Analyzing provider from URL: {}", alibabaUrl);
+        RequestContext.checkDeadline("provider analysis");
+        
+        // Check if provider already exists (any URL variant of the same listing)
+        PipelineStageEvent lookup = PipelineStageEvent.start("provider-lookup");
+        Optional<ProviderProfile> existingProvider = findExisting(alibabaUrl);
+        lookup.finish(alibabaUrl.length(), existingProvider.isPresent() ? 1 : 0);
         
-        // Check if provider already exists
-        Optional<ProviderProfile> existingProvider = providerRepository.findByAlibabaUrl(alibabaUrl);
+        // New context from the user always warrants a fresh extraction
+        if (existingProvider.isPresent() && additionalContext == null && isFresh(existingProvider.get())) {
+            log.info("Serving fresh provider profile {} without re-extraction", existingProvider.get().getId());
+            return buildProviderResponse(assignOwner(existingProvider.get(), userId));
+        }
         
         // Call OpenAI for extraction
         String aiResponse = openAiService.extractProviderInfo(alibabaUrl, additionalContext);
+        PipelineStageEvent parse = PipelineStageEvent.start("json-parse");
         JsonNode jsonResponse = openAiService.parseJsonResponse(aiResponse);
+        parse.finish(aiResponse.length(), jsonResponse.size());
+        RequestContext.checkDeadline("saving the provider");
         
-        // Build or update provider profile
-        ProviderProfile provider = existingProvider.orElse(new ProviderProfile());
-        updateProviderFromJson(provider, jsonResponse, alibabaUrl, userId);
-        
-        // Save to database
-        provider = providerRepository.save(provider);
-        log.info("Provider profile saved with ID: {}", provider.getId());
+        PipelineStageEvent persist = PipelineStageEvent.start("persist");
+        ProviderProfile provider;
+        try {
+            provider = saveExtraction(
+                    existingProvider.map(ProviderProfile::getId).orElse(null), jsonResponse, alibabaUrl, userId);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request inserted the same listing first; update that row instead
+            Long winnerId = findExisting(alibabaUrl).map(ProviderProfile::getId).orElseThrow(() -> e);
+            provider = saveExtraction(winnerId, jsonResponse, alibabaUrl, userId);
+        }
+        persist.finish(aiResponse.length(), 1);
         
         // Build response DTO
-        return buildProviderResponse(provider, jsonResponse);
+        return buildProviderResponse(provider);
+    }
+    
+    /**
+     * Re-extract an existing provider in the background (see ProviderRefreshScheduler).
+     */
+    public void refreshProvider(Long providerId) {
+        Optional<ProviderProfile> existing = providerRepository.findById(providerId);
+        if (existing.isEmpty() || existing.get().getAlibabaUrl() == null) {
+            return;
+        }
+        ProviderProfile provider = existing.get();
+        
+        String aiResponse = openAiService.extractProviderInfo(provider.getAlibabaUrl(), null);
+        JsonNode jsonResponse = openAiService.parseJsonResponse(aiResponse);
+        
+        saveExtraction(providerId, jsonResponse, provider.getAlibabaUrl(), provider.getUserId());
+    }
+    
+    /**
+     * Existing profile for the URL, matched on its canonical key, or on the raw URL
+     * for rows the deduplication job has not keyed yet.
+     */
+    private Optional<ProviderProfile> findExisting(String alibabaUrl) {
+        String canonicalKey = AlibabaUrlCanonicalizer.canonicalKey(alibabaUrl);
+        Optional<ProviderProfile> existing = canonicalKey != null
+                ? providerRepository.findByCanonicalKey(canonicalKey)
+                : Optional.empty();
+        return existing.isPresent()
+                ? existing
+                : providerRepository.findFirstByAlibabaUrlOrderByUpdatedAtDesc(alibabaUrl);
+    }
+    
+    /**
+     * Give the profile to the requesting user, as a re-extraction would, without calling the LLM.
+     */
+    private ProviderProfile assignOwner(ProviderProfile provider, String userId) {
+        if (Objects.equals(provider.getUserId(), userId)) {
+            return provider;
+        }
+        ProviderProfile saved = transactionTemplate.execute(status -> {
+            ProviderProfile current = providerRepository.findById(provider.getId()).orElse(provider);
+            current.setUserId(userId);
+            current = providerRepository.save(current);
+            eventPublisher.publishEvent(new ProviderProfileSavedEvent(current));
+            return current;
+        });
+        log.info("Provider profile {} assigned to user {}", saved.getId(), userId);
+        return saved;
+    }
+    
+    /**
+     * Whether the profile was updated within the freshness TTL.
+     */
+    public boolean isFresh(ProviderProfile provider) {
+        return provider.getUpdatedAt() != null
+                && provider.getUpdatedAt().isAfter(LocalDateTime.now().minus(freshnessTtl));
+    }
+    
+    /**
+     * Apply an extraction result to a new or existing (re-read) profile in a short transaction.
+     */
+    private ProviderProfile saveExtraction(Long existingId, JsonNode jsonResponse, String alibabaUrl, String userId) {
+        PriceStatisticsService.Sample[] previousSample = new PriceStatisticsService.Sample[1];
+        ProviderProfile saved = transactionTemplate.execute(status -> {
+            // Build or update provider profile
+            ProviderProfile provider = existingId != null
+                    ? providerRepository.findById(existingId).orElseGet(ProviderProfile::new)
+                    : new ProviderProfile();
+            previousSample[0] = priceStatistics.sampleOf(provider);
+            updateProviderFromJson(provider, jsonResponse, alibabaUrl, userId);
+            provider.setRefreshClaimedUntil(null);
+            
+            // Save to database
+            provider = providerRepository.save(provider);
+            eventPublisher.publishEvent(new ProviderProfileSavedEvent(provider));
+            return provider;
+        });
+        priceStatistics.replace(previousSample[0], priceStatistics.sampleOf(saved));
+        log.info("Provider profile saved with ID: {}", saved.getId());
+        return saved;
     }
     
     /**
@@ -60,6 +179,7 @@ public class ProviderService {
                                         String alibabaUrl, String userId) {
         provider.setUserId(userId);
         provider.setAlibabaUrl(alibabaUrl);
+        provider.setCanonicalKey(AlibabaUrlCanonicalizer.canonicalKey(alibabaUrl));
         provider.setProviderName(json.get("providerName").asText());
         provider.setProductName(json.get("productName").asText());
         
@@ -76,45 +196,50 @@ public class ProviderService {
         
         provider.setCurrency(json.get("currency").asText());
         
-        // Convert certifications array to comma-separated string
-        List<String> certifications = new ArrayList<>();
-        JsonNode certsNode = json.get("certifications");
-        if (certsNode != null && certsNode.isArray()) {
-            certsNode.forEach(node -> certifications.add(node.asText()));
-        }
-        provider.setCertifications(String.join(", ", certifications));
+        provider.setCertifications(extractListFromJson(json.get("certifications")));
         
         provider.setAdditionalInfo(json.get("additionalInfo").asText());
         
         // Extract risk assessment
         JsonNode riskNode = json.get("riskAssessment");
         if (riskNode != null) {
-            provider.setRiskAssessment(riskNode.toString());
+            provider.setRiskAssessment(ProviderRiskAssessment.builder()
+                    .overallRisk(riskNode.has("overallRisk") ? riskNode.get("overallRisk").asText() : null)
+                    .warnings(extractListFromJson(riskNode.get("warnings")))
+                    .recommendation(riskNode.has("recommendation") ? riskNode.get("recommendation").asText() : null)
+                    .build());
         }
     }
     
     /**
-     * Build ProviderResponse DTO from entity and JSON.
+     * Utility to extract list of strings from JSON array node.
      */
-    private ProviderResponseDTO buildProviderResponse(ProviderProfile provider, JsonNode json) {
-        JsonNode riskNode = json.get("riskAssessment");
-        
-        List<String> warnings = new ArrayList<>();
-        if (riskNode != null && riskNode.has("warnings")) {
-            riskNode.get("warnings").forEach(node -> warnings.add(node.asText()));
+    private List<String> extractListFromJson(JsonNode arrayNode) {
+        List<String> list = new ArrayList<>();
+        if (arrayNode != null && arrayNode.isArray()) {
+            arrayNode.forEach(node -> list.add(node.asText()));
         }
+        return list;
+    }
+    
+    /**
+     * Build ProviderResponse DTO from the stored entity.
+     * The LLM's risk assessment is annotated with where price and MOQ sit in the product's market.
+     */
+    private ProviderResponseDTO buildProviderResponse(ProviderProfile provider) {
+        ProviderRiskAssessment stored = provider.getRiskAssessment();
+        PriceStatisticsService.PriceSignals signals = priceStatistics.signalsFor(provider);
         
         ProviderResponseDTO.RiskAssessment riskAssessment = ProviderResponseDTO.RiskAssessment.builder()
-                .overallRisk(riskNode != null ? riskNode.get("overallRisk").asText() : "unknown")
-                .warnings(warnings)
-                .recommendation(riskNode != null ? riskNode.get("recommendation").asText() : "")
+                .overallRisk(stored != null && stored.getOverallRisk() != null ? stored.getOverallRisk() : "unknown")
+                .warnings(stored != null && stored.getWarnings() != null ? stored.getWarnings() : List.of())
+                .recommendation(stored != null && stored.getRecommendation() != null ? stored.getRecommendation() : "")
+                .pricePercentile(signals.pricePercentile())
+                .moqPercentile(signals.moqPercentile())
+                .marketSampleSize(signals.sampleSize())
+                .outlierFlags(signals.flags())
                 .build();
         
-        List<String> certsList = new ArrayList<>();
-        if (provider.getCertifications() != null && !provider.getCertifications().isEmpty()) {
-            certsList = List.of(provider.getCertifications().split(", "));
-        }
-        
         return ProviderResponseDTO.builder()
                 .providerId(provider.getId())
                 .providerName(provider.getProviderName())
@@ -123,7 +248,7 @@ public class ProviderService {
                 .moq(provider.getMoq())
                 .pricePerUnit(provider.getPricePerUnit())
                 .currency(provider.getCurrency())
-                .certifications(certsList)
+                .certifications(provider.getCertifications() != null ? provider.getCertifications() : List.of())
                 .deliveryTimeDays(provider.getDeliveryTimeDays())
                 .additionalInfo(provider.getAdditionalInfo())
                 .riskAssessment(riskAssessment)
@@ -132,23 +257,58 @@ public class ProviderService {
     }
     
     /**
-     * Get all providers for a user.
+     * Get all providers for a user, optionally only those at a given overall risk.
      */
-    public List<ProviderProfile> getUserProviders(String userId) {
+    @Transactional(readOnly = true)
+    public List<ProviderProfile> getUserProviders(String userId, String overallRisk) {
+        if (overallRisk != null) {
+            return providerRepository.findByUserIdAndOverallRisk(userId, overallRisk);
+        }
         return providerRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
     
     /**
-     * Get provider by ID.
+     * ETag of getUserProviders' result, from a count/max aggregate instead of the rows.
+     */
+    @Transactional(readOnly = true)
+    public String getUserProvidersETag(String userId, String overallRisk) {
+        CollectionVersion version = providerRepository.findUserProvidersVersion(userId, overallRisk);
+        return HttpCaching.strongETag("providers", userId, overallRisk,
+                version.getTotal(), version.getLastModified(), version.getChecksum());
+    }
+    
+    /**
+     * ETag of a single provider.
+     */
+    public String getProviderETag(ProviderProfile provider) {
+        return HttpCaching.strongETag("provider", provider.getId(), provider.getUpdatedAt());
+    }
+    
+    /**
+     * Get provider by ID (served from the provider cache when possible).
      */
     public Optional<ProviderProfile> getProviderById(Long id) {
-        return providerRepository.findById(id);
+        return providerCache.get(id);
     }
     
     /**
-     * Search providers by name.
+     * Search providers by name using the n-gram index, ranked by relevance.
+     * 
+     * @param name Partial provider name (Latin or Chinese)
+     * @param userId Optional: restrict results to this user's providers
+     * @param page Zero-based page number
+     * @param size Page size
      */
-    public List<ProviderProfile> searchProvidersByName(String name) {
-        return providerRepository.findByProviderNameContainingIgnoreCaseOrderByCreatedAtDesc(name);
+    @Transactional(readOnly = true)
+    public List<ProviderProfile> searchProvidersByName(String name, String userId, int page, int size) {
+        List<Long> rankedIds = searchIndex.search(name, userId, page, size);
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
+        
+        // findAllById does not keep order, so restore the ranking
+        List<ProviderProfile> providers = new ArrayList<>(providerRepository.findAllById(rankedIds));
+        providers.sort(Comparator.comparingInt(provider -> rankedIds.indexOf(provider.getId())));
+        return providers;
     }
 }
@@ -1,8 +1,10 @@
 package com.salvacode.orientlink.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.salvacode.orientlink.context.RequestContext;
 import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
 import com.salvacode.orientlink.dto.RespondRequestDTO;
+import com.salvacode.orientlink.jfr.PipelineStageEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -26,6 +28,8 @@ public class ResponseGenerationService {
      */
     public AnalyzeResponseDTO.SuggestedResponses generateResponses(RespondRequestDTO request) {
         log.info("Generating {} response(s)", request.getResponseType());
+        RequestContext.setUserId(request.getUserId());
+        RequestContext.checkDeadline("response generation");
         
         String responseType = request.getResponseType() != null ? request.getResponseType() : "all";
         
@@ -37,6 +41,7 @@ public class ResponseGenerationService {
         );
         
         // Parse JSON response
+        PipelineStageEvent parse = PipelineStageEvent.start("json-parse");
         JsonNode jsonResponse = openAiService.parseJsonResponse(aiResponse);
         JsonNode responses = jsonResponse.get("responses");
         
@@ -53,6 +58,7 @@ public class ResponseGenerationService {
         if (responses.has("direct") && !responses.get("direct").isNull()) {
             builder.direct(responses.get("direct").asText());
         }
+        parse.finish(aiResponse.length(), responses.size());
         
         log.info("Response generation completed successfully");
         return builder.build();
@@ -0,0 +1,427 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.context.RequestContext;
+import com.salvacode.orientlink.jfr.PipelineStageEvent;
+import com.salvacode.orientlink.util.HnswIndex;
+import com.salvacode.orientlink.util.NgramTokenizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Semantic cache in front of single-target message analysis: a supplier message that
+ * repeats, or nearly repeats, one the user had analyzed reuses that analysis instead of a
+ * full OpenAI call.
+ *
+ * Messages are compared by their template: the normalized text (case, Unicode width,
+ * whitespace) without opening greetings and closing thanks, with numbers masked.
+ * - An identical normalized text is served from a hash lookup, without an embedding call.
+ * - Otherwise the template is embedded (batched with concurrent requests by
+ *   {@link EmbeddingBatcher}) and looked up in a local {@link HnswIndex} of past analyses.
+ *   A neighbour at or above the similarity threshold is reused when its numbers and its
+ *   negations ("not", "不", "no", ...) are the same as the message's: those decide prices,
+ *   MOQ alerts and risk, so a message that changes them always gets a full analysis. The
+ *   reused analysis is adapted to the message by the caller, with a fresh translation.
+ * Entries are only shared within a partition: same user, languages, client context and
+ * glossary.
+ *
+ * The index is node-local, bounded by max-entries and ttl, and snapshotted to index-path,
+ * so it survives restarts. Failures of the cache never fail the analysis: it falls back
+ * to the full call.
+ */
+@Service
+@Slf4j
+public class SemanticAnalysisCache {
+
+    private static final int FILE_MAGIC = 0x4F4C5343;
+    private static final int FILE_VERSION = 3; // 2: exact matches only, vectors of the full text
+    private static final int MAX_CANDIDATES = 8;
+    private static final Pattern NUMBER = Pattern.compile("\\d+(?:[.,]\\d+)*");
+    private static final String SEPARATORS = "[\\s\\p{P}\\p{S}]*";
+    private static final Pattern GREETING = Pattern.compile("^" + SEPARATORS + "(?:(?:"
+            + "您好|你好|亲爱的|亲(?=[\\s\\p{P}])|哈喽|大家好|早上好|下午好|晚上好"
+            + "|(?:hello|hi|hey|dear|good (?:morning|afternoon|evening)|hola|buenos días|buenas tardes"
+            + "|buenas noches|estimad[oa]s?)\\b"
+            + ")" + SEPARATORS + ")+");
+    private static final Pattern SIGN_OFF = Pattern.compile("(?:" + SEPARATORS + "(?:"
+            + "谢谢|多谢|感谢|祝好|此致敬礼|期待(?:您的)?回复"
+            + "|\\b(?:thanks|thank you|best regards|kind regards|regards|cheers|muchas gracias|gracias"
+            + "|un saludo|saludos|atentamente)"
+            + "))+" + SEPARATORS + "$");
+    private static final Pattern NEGATION = Pattern.compile(
+            "n't|\\b(?:not|no|never|cannot|nunca|sin|ni|tampoco)\\b|[不没無无未别非]");
+
+    private final EmbeddingBatcher embeddingBatcher;
+    private final Map<String, Counter> results = new HashMap<>();
+
+    @Value("${orientlink.semantic-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orientlink.semantic-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    @Value("${orientlink.semantic-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${orientlink.semantic-cache.ttl:30d}")
+    private Duration ttl;
+
+    @Value("${orientlink.semantic-cache.ef-search:64}")
+    private int efSearch;
+
+    @Value("${orientlink.semantic-cache.embedding-wait:2s}")
+    private Duration embeddingWait;
+
+    @Value("${orientlink.semantic-cache.index-path:./data/semantic-cache.bin}")
+    private Path indexPath;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> exact = new ConcurrentHashMap<>(); // Partition + normalized text -> entry
+    private final AtomicLong nextId = new AtomicLong();
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private volatile HnswIndex index;
+    private volatile boolean dirty;
+
+    public SemanticAnalysisCache(EmbeddingBatcher embeddingBatcher, MeterRegistry meterRegistry) {
+        this.embeddingBatcher = embeddingBatcher;
+        for (String result : List.of("hit", "adapted", "miss", "error")) {
+            results.put(result, Counter.builder("orientlink.semantic.cache.requests")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("orientlink.semantic.cache.size", entries, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The analysis of the message: reused from the same or a near-identical message of the
+     * user when possible, otherwise computed by analysis and remembered.
+     *
+     * @param userId Owner of the analysis; entries are never shared between users
+     * @param partitionContext Context that changes the analysis of the same text, e.g. the
+     *                         client's; not context that changes with every message
+     * @param analysis The full analysis call, made on a miss
+     * @param adaptation Turns the cached response of a near-identical message into one for
+     *                   this message (a fresh translation); null if it cannot, which counts
+     *                   as a miss
+     */
+    public String analyze(String userId, String messageText, String sourceLang, String targetLang,
+                          String partitionContext, String glossary, Supplier<String> analysis,
+                          UnaryOperator<String> adaptation) {
+        if (!enabled) {
+            return analysis.get();
+        }
+        String partition = partition(userId, sourceLang, targetLang, partitionContext, glossary);
+        String normalized = normalizedText(messageText);
+        long oldest = System.currentTimeMillis() - ttl.toMillis();
+
+        PipelineStageEvent lookup = PipelineStageEvent.start("semantic-cache");
+        Long exactId = exact.get(partition + '\0' + normalized);
+        Entry repeat = exactId != null ? entries.get(exactId) : null;
+        if (repeat != null && repeat.createdAt() >= oldest) {
+            lookup.finish(messageText.length(), 1);
+            results.get("hit").increment();
+            return repeat.response();
+        }
+
+        String template = template(normalized);
+        float[] vector = embed(template);
+        Entry neighbour = vector != null
+                ? findNeighbour(vector, partition, numbers(normalized), negations(template), oldest)
+                : null;
+        lookup.finish(messageText.length(), neighbour != null ? 1 : 0);
+
+        if (neighbour != null) {
+            String adapted = adaptation.apply(neighbour.response());
+            if (adapted != null) {
+                results.get("adapted").increment();
+                return adapted;
+            }
+        }
+
+        results.get(vector != null ? "miss" : "error").increment();
+        String response = analysis.get();
+        if (vector != null) {
+            store(vector, new Entry(partition, messageText, response, System.currentTimeMillis()));
+        }
+        return response;
+    }
+
+    private float[] embed(String messageText) {
+        Duration wait = embeddingWait;
+        Duration remaining = RequestContext.getRemaining();
+        if (remaining != null && remaining.compareTo(wait) < 0) {
+            wait = remaining;
+        }
+        try {
+            return embeddingBatcher.embed(messageText).get(Math.max(wait.toMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.debug("Embedding failed, skipping the semantic cache: {}", e.toString());
+            return null;
+        }
+    }
+
+    private Entry findNeighbour(float[] vector, String partition, List<String> numbers, List<String> negations,
+                                long oldest) {
+        HnswIndex current = index;
+        if (current == null || current.dimensions() != vector.length) {
+            return null;
+        }
+        for (HnswIndex.Neighbor neighbour : current.search(vector, MAX_CANDIDATES, efSearch)) {
+            if (neighbour.similarity() < similarityThreshold) {
+                break;
+            }
+            Entry entry = entries.get(neighbour.id());
+            if (entry == null || !entry.partition().equals(partition) || entry.createdAt() < oldest) {
+                continue;
+            }
+            String cached = normalizedText(entry.message());
+            if (numbers(cached).equals(numbers) && negations(template(cached)).equals(negations)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void store(float[] vector, Entry entry) {
+        // Skipped while the index is being compacted: the entry would be lost with the old index
+        if (!compactionLock.readLock().tryLock()) {
+            return;
+        }
+        try {
+            if (entries.size() >= maxEntries) {
+                return; // Compaction makes room
+            }
+            HnswIndex current = index;
+            if (current == null) {
+                synchronized (this) {
+                    if (index == null) {
+                        index = new HnswIndex(vector.length, 16, 100);
+                    }
+                    current = index;
+                }
+            }
+            if (current.dimensions() != vector.length) {
+                return;
+            }
+            long id = nextId.getAndIncrement();
+            entries.put(id, entry); // Before the vector, so every searchable node has its entry
+            exact.put(entry.partition() + '\0' + normalizedText(entry.message()), id);
+            current.add(id, vector);
+            dirty = true;
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drop expired entries and, once full, the oldest quarter; then write the snapshot.
+     */
+    @Scheduled(fixedDelayString = "${orientlink.semantic-cache.snapshot-interval:PT5M}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        compact();
+        save();
+    }
+
+    private void compact() {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        long oldest = System.currentTimeMillis() - ttl.toMillis();
+        boolean full = entries.size() >= maxEntries;
+        boolean expired = entries.values().stream().anyMatch(entry -> entry.createdAt() < oldest);
+        if (!full && !expired) {
+            return;
+        }
+
+        compactionLock.writeLock().lock();
+        try {
+            List<Long> kept = entries.entrySet().stream()
+                    .filter(entry -> entry.getValue().createdAt() >= oldest)
+                    .sorted(Comparator.comparingLong(entry -> -entry.getValue().createdAt()))
+                    .limit(full ? maxEntries * 3L / 4 : maxEntries)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            HnswIndex rebuilt = new HnswIndex(current.dimensions(), 16, 100);
+            Set<Long> keep = new HashSet<>(kept);
+            current.forEach((id, vector) -> {
+                if (keep.contains(id)) {
+                    rebuilt.add(id, vector);
+                }
+            });
+            index = rebuilt;
+            entries.keySet().retainAll(keep);
+            exact.values().retainAll(keep);
+            dirty = true;
+            log.info("Compacted semantic cache to {} entries", rebuilt.size());
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        if (!enabled || !Files.exists(indexPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("Ignoring semantic cache snapshot {} in an unknown format", indexPath);
+                return;
+            }
+            String model = in.readUTF();
+            if (!model.equals(embeddingBatcher.model())) {
+                log.info("Ignoring semantic cache snapshot of embedding model {}", model);
+                return;
+            }
+            nextId.set(in.readLong());
+            HnswIndex loaded = in.readBoolean() ? HnswIndex.readFrom(in) : null;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                Entry entry = new Entry(in.readUTF(), readString(in), readString(in), in.readLong());
+                entries.put(id, entry);
+                exact.put(entry.partition() + '\0' + normalizedText(entry.message()), id);
+            }
+            index = loaded;
+            log.info("Loaded semantic cache with {} entries from {}", entries.size(), indexPath);
+        } catch (IOException e) {
+            log.warn("Could not load semantic cache snapshot {}, starting empty: {}", indexPath, e.getMessage());
+            entries.clear();
+            exact.clear();
+            index = null;
+        }
+    }
+
+    @PreDestroy
+    void save() {
+        if (!enabled || !dirty || index == null) {
+            return;
+        }
+        dirty = false;
+        try {
+            Path parent = indexPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "semantic-cache", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(embeddingBatcher.model());
+                out.writeLong(nextId.get());
+                out.writeBoolean(true);
+                // Graph first: entries are added before their vectors, so each node written has its entry
+                index.writeTo(out);
+                List<Map.Entry<Long, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                out.writeInt(snapshot.size());
+                for (Map.Entry<Long, Entry> entry : snapshot) {
+                    out.writeLong(entry.getKey());
+                    out.writeUTF(entry.getValue().partition());
+                    writeString(out, entry.getValue().message());
+                    writeString(out, entry.getValue().response());
+                    out.writeLong(entry.getValue().createdAt());
+                }
+            }
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved semantic cache with {} entries to {}", entries.size(), indexPath);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Could not save semantic cache snapshot {}: {}", indexPath, e.getMessage());
+        }
+    }
+
+    /**
+     * The user and everything besides the message that shapes the analysis; only equal
+     * partitions share results.
+     */
+    private static String partition(String userId, String sourceLang, String targetLang,
+                                    String partitionContext, String glossary) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {userId, sourceLang, targetLang, partitionContext, glossary}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalizedText(String text) {
+        return NgramTokenizer.normalize(text).replaceAll("\\s+", " ").strip();
+    }
+
+    /**
+     * The normalized text without greetings and sign-offs, numbers masked: what is embedded.
+     */
+    private static String template(String normalized) {
+        String body = SIGN_OFF.matcher(GREETING.matcher(normalized).replaceFirst("")).replaceFirst("");
+        return NUMBER.matcher(body.isEmpty() ? normalized : body).replaceAll("#");
+    }
+
+    private static List<String> numbers(String normalized) {
+        return NUMBER.matcher(normalized).results().map(MatchResult::group).toList();
+    }
+
+    private static List<String> negations(String template) {
+        return NEGATION.matcher(template).results().map(MatchResult::group).toList();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record Entry(String partition, String message, String response, long createdAt) {
+    }
+}
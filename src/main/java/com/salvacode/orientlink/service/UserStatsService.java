@@ -0,0 +1,167 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.config.ConversationShardRoutingDataSource;
+import com.salvacode.orientlink.dto.UserStatsDTO;
+import com.salvacode.orientlink.entity.UserStat;
+import com.salvacode.orientlink.repository.UserStatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-user analytics read from precomputed counters.
+ *
+ * The user_stat rows are kept current by database triggers in the same transaction as
+ * every conversation or provider insert, update and delete, bulk statements included
+ * (see db/schema-upgrade.sql). Reading a dashboard therefore costs a few index lookups
+ * however long the user's history is. A rebuild recomputes a user's counters from
+ * their rows, for the initial backfill or after manual data fixes.
+ *
+ * Each database counts only its own rows. With conversation shards, the conversation
+ * counters are read from the user's shard and the provider counters from the regular
+ * database; backfills and rebuilds run on every shard.
+ */
+@Service
+@Slf4j
+public class UserStatsService {
+
+    /**
+     * Dimensions counted from conversation_history; the others come from provider_profile.
+     */
+    private static final Set<String> CONVERSATION_DIMENSIONS =
+            Set.of("conversations", "risk_level", "sentiment", "provider_alerts");
+
+    private final UserStatRepository statRepository;
+    private final ConversationShards conversationShards;
+    private final TransactionTemplate readOnlyTemplate;
+
+    @Value("${orientlink.stats.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    public UserStatsService(UserStatRepository statRepository,
+                            ConversationShards conversationShards,
+                            PlatformTransactionManager transactionManager) {
+        this.statRepository = statRepository;
+        this.conversationShards = conversationShards;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Counters of the user, with activity of the last given number of days.
+     */
+    public UserStatsDTO getStats(String userId, int days) {
+        String fromDay = LocalDate.now().minusDays(days - 1L).toString();
+        int shard = conversationShards.shardOf(userId);
+        List<UserStat> totals = new ArrayList<>(conversationShards.onShard(shard,
+                () -> readOnlyTemplate.execute(status -> statRepository.findTotals(userId))));
+        List<UserStat> dayStats = conversationShards.onShard(shard,
+                () -> readOnlyTemplate.execute(status -> statRepository.findDays(userId, fromDay)));
+        if (shard != ConversationShardRoutingDataSource.HOME) {
+            totals.removeIf(stat -> !CONVERSATION_DIMENSIONS.contains(stat.getDimension()));
+            List<UserStat> providerTotals = conversationShards.onShard(ConversationShardRoutingDataSource.HOME,
+                    () -> readOnlyTemplate.execute(status -> statRepository.findTotals(userId)));
+            providerTotals.stream()
+                    .filter(stat -> !CONVERSATION_DIMENSIONS.contains(stat.getDimension()))
+                    .forEach(totals::add);
+        }
+
+        long conversations = 0;
+        long providers = 0;
+        Map<String, Long> byRiskLevel = new TreeMap<>();
+        Map<String, Long> bySentiment = new TreeMap<>();
+        Map<Long, Long> alertsByProvider = new TreeMap<>();
+        Map<String, Long> providersByRisk = new TreeMap<>();
+        for (UserStat stat : totals) {
+            if (stat.getTotal() == 0) {
+                continue;
+            }
+            switch (stat.getDimension()) {
+                case "conversations" -> conversations = stat.getTotal();
+                case "providers" -> providers = stat.getTotal();
+                case "risk_level" -> byRiskLevel.put(stat.getBucket(), stat.getTotal());
+                case "sentiment" -> bySentiment.put(stat.getBucket(), stat.getTotal());
+                case "provider_alerts" -> alertsByProvider.put(Long.valueOf(stat.getBucket()), stat.getTotal());
+                case "provider_risk" -> providersByRisk.put(stat.getBucket(), stat.getTotal());
+                default -> log.debug("Ignoring unknown stat dimension '{}'", stat.getDimension());
+            }
+        }
+
+        Map<LocalDate, Long> activity = new TreeMap<>();
+        for (UserStat stat : dayStats) {
+            if (stat.getTotal() > 0) {
+                activity.put(LocalDate.parse(stat.getBucket()), stat.getTotal());
+            }
+        }
+
+        return UserStatsDTO.builder()
+                .userId(userId)
+                .conversations(conversations)
+                .providers(providers)
+                .conversationsByRiskLevel(byRiskLevel)
+                .conversationsBySentiment(bySentiment)
+                .alertsByProvider(alertsByProvider)
+                .providersByOverallRisk(providersByRisk)
+                .activityByDay(activity)
+                .build();
+    }
+
+    /**
+     * Backfill the counters of each shard until a complete backfill has been recorded there
+     * (or on demand); safe to run next to live writes. Triggers start counting as soon as they
+     * exist, so the presence of counters says nothing about whether the history was backfilled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfNotBackfilled() {
+        conversationShards.onEveryShard(() -> {
+            if (rebuildOnStartup || !statRepository.isBackfilled()) {
+                rebuildShard();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Recompute every user's counters on every shard.
+     */
+    public void rebuildAll() {
+        conversationShards.onEveryShard(() -> {
+            rebuildShard();
+            return null;
+        });
+    }
+
+    /**
+     * Recompute every user's counters on the current shard, one user per transaction, and
+     * record the backfill once every user succeeded.
+     */
+    private void rebuildShard() {
+        long start = System.currentTimeMillis();
+        List<String> userIds = statRepository.findAllUserIds();
+        int failed = 0;
+        for (String userId : userIds) {
+            try {
+                statRepository.rebuild(userId);
+            } catch (RuntimeException e) {
+                failed++;
+                log.warn("Failed to rebuild stats of user {}", userId, e);
+            }
+        }
+        log.info("Rebuilt stats of {} users ({} failed) in {} ms",
+                userIds.size(), failed, System.currentTimeMillis() - start);
+        if (failed == 0) {
+            statRepository.markBackfilled();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.salvacode.orientlink.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton: finds every occurrence of any of a set of patterns
+ * in one pass over the text, in time linear in the text length plus the matches,
+ * however many patterns there are.
+ *
+ * Matching is case-insensitive (per-character lower case). Patterns that start or end
+ * with a Latin letter or digit only match at word boundaries, so "FOB" does not match
+ * inside "FOBS"; CJK patterns match anywhere. Transitions are stored as sorted per-node
+ * label arrays, which keeps automata of tens of thousands of patterns compact.
+ */
+public final class AhoCorasick {
+
+    /**
+     * Receives matches as [start, end) offsets in the text.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        void onMatch(int patternId, int start, int end);
+    }
+
+    private final int[] offsets;      // Node i's transitions are labels/targets[offsets[i], offsets[i + 1])
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] failure;
+    private final int[] dictionaryLink; // Nearest node on the failure chain that ends a pattern, or -1
+    private final int[] patternAt;      // Pattern ending at the node, or -1
+    private final int[] patternLengths;
+    private final boolean[] checkStart;
+    private final boolean[] checkEnd;
+
+    /**
+     * @param patterns Patterns, identified by their index; blank ones are ignored
+     */
+    public AhoCorasick(List<String> patterns) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> ending = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ending.add(-1);
+
+        patternLengths = new int[patterns.size()];
+        checkStart = new boolean[patterns.size()];
+        checkEnd = new boolean[patterns.size()];
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            if (pattern == null || pattern.isBlank()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(c, next);
+                    children.add(new TreeMap<>());
+                    ending.add(-1);
+                }
+                node = next;
+            }
+            if (ending.get(node) < 0) {
+                ending.set(node, id); // Duplicate patterns: the first one wins
+            }
+            patternLengths[id] = pattern.length();
+            checkStart[id] = isWordChar(pattern.charAt(0));
+            checkEnd[id] = isWordChar(pattern.charAt(pattern.length() - 1));
+        }
+
+        int nodes = children.size();
+        offsets = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++) {
+            offsets[node + 1] = offsets[node] + children.get(node).size();
+        }
+        labels = new char[offsets[nodes]];
+        targets = new int[offsets[nodes]];
+        patternAt = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            int slot = offsets[node];
+            for (var edge : children.get(node).entrySet()) {
+                labels[slot] = edge.getKey();
+                targets[slot] = edge.getValue();
+                slot++;
+            }
+            patternAt[node] = ending.get(node);
+        }
+
+        // Failure and dictionary links, breadth first
+        failure = new int[nodes];
+        dictionaryLink = new int[nodes];
+        Arrays.fill(dictionaryLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int slot = offsets[0]; slot < offsets[1]; slot++) {
+            queue.add(targets[slot]);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int slot = offsets[node]; slot < offsets[node + 1]; slot++) {
+                int child = targets[slot];
+                int fail = failure[node];
+                int next;
+                while ((next = transition(fail, labels[slot])) < 0 && fail != 0) {
+                    fail = failure[fail];
+                }
+                failure[child] = next >= 0 && next != child ? next : 0;
+                dictionaryLink[child] = patternAt[failure[child]] >= 0
+                        ? failure[child] : dictionaryLink[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Report every occurrence of every pattern in the text.
+     */
+    public void match(CharSequence text, MatchListener listener) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transition(node, c)) < 0 && node != 0) {
+                node = failure[node];
+            }
+            node = Math.max(next, 0);
+            for (int out = patternAt[node] >= 0 ? node : dictionaryLink[node]; out >= 0; out = dictionaryLink[out]) {
+                int id = patternAt[out];
+                int end = i + 1;
+                int start = end - patternLengths[id];
+                if ((!checkStart[id] || start == 0 || !isWordChar(text.charAt(start - 1)))
+                        && (!checkEnd[id] || end == text.length() || !isWordChar(text.charAt(end)))) {
+                    listener.onMatch(id, start, end);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of trie nodes, a measure of the automaton's size.
+     */
+    public int size() {
+        return patternAt.length;
+    }
+
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(labels, offsets[node], offsets[node + 1], c);
+        return index >= 0 ? targets[index] : -1;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c < 0x3000 && Character.isLetterOrDigit(c);
+    }
+}
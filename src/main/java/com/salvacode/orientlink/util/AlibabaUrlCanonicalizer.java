@@ -0,0 +1,138 @@
+package com.salvacode.orientlink.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces the many URL forms of the same Alibaba / 1688 / AliExpress listing to one key.
+ *
+ * Product pages become "alibaba:product:{id}" whatever the host (www, m., supplier
+ * subdomain), slug or tracking parameters; supplier shop pages become
+ * "alibaba:supplier:{subdomain}". URLs that match no known pattern fall back to
+ * host (without www./m.) + path, with tracking parameters removed and the rest sorted.
+ * The fallback keeps the path's case: paths are case-sensitive, so two paths differing
+ * only in case may be different listings.
+ */
+public final class AlibabaUrlCanonicalizer {
+
+    public static final int MAX_KEY_LENGTH = 300;
+
+    // .../product-detail/Some-Title_1600123456789.html, .../product/1600123456789/..., .../product/1600123456789.html
+    private static final Pattern ALIBABA_PRODUCT = Pattern.compile(
+            "/(?:product-detail/[^/]*?_|product/|p-detail/[^/]*?_)(\\d{6,})(?:[/._-]|$)");
+    private static final Pattern ALIBABA_OFFER = Pattern.compile("/offer/(\\d{6,})(?:[/._-]|$)");
+    private static final Pattern ALIEXPRESS_ITEM = Pattern.compile("/item/(?:[^/]*/)?(\\d{6,})(?:[/._-]|$)");
+
+    private static final Set<String> NON_SUPPLIER_SUBDOMAINS = Set.of(
+            "www", "m", "en", "detail", "offer", "message", "login", "sale", "sourcing", "s", "show");
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "spm", "scm", "tracelog", "tracelogid", "ecology_token", "s", "abbucket", "src", "from",
+            "fromwhere", "pvid", "algo_pvid", "algo_exp_id", "gclid", "fbclid", "aff_platform",
+            "aff_trace_key", "sk", "mark", "trace", "is_mobile", "bypass", "btn_source");
+
+    private AlibabaUrlCanonicalizer() {
+    }
+
+    /**
+     * Canonical key for the URL; blank input returns null.
+     */
+    public static String canonicalKey(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String trimmed = url.trim();
+        if (!trimmed.contains("://")) {
+            trimmed = "https://" + trimmed;
+        }
+
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return truncate("raw:" + trimmed);
+        }
+
+        String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        String lowerPath = path.toLowerCase(Locale.ROOT);
+
+        if (host.endsWith("alibaba.com")) {
+            Matcher product = ALIBABA_PRODUCT.matcher(lowerPath);
+            if (product.find()) {
+                return "alibaba:product:" + product.group(1);
+            }
+            String supplier = supplierSubdomain(host, "alibaba.com");
+            if (supplier != null) {
+                return "alibaba:supplier:" + supplier;
+            }
+        } else if (host.endsWith("1688.com")) {
+            Matcher offer = ALIBABA_OFFER.matcher(lowerPath);
+            if (offer.find()) {
+                return "1688:offer:" + offer.group(1);
+            }
+            String shop = supplierSubdomain(host, "1688.com");
+            if (shop != null) {
+                return "1688:shop:" + shop;
+            }
+        } else if (host.endsWith("aliexpress.com") || host.endsWith("aliexpress.us")) {
+            Matcher item = ALIEXPRESS_ITEM.matcher(lowerPath);
+            if (item.find()) {
+                return "aliexpress:item:" + item.group(1);
+            }
+        }
+
+        return truncate("url:" + stripHostPrefix(host) + stripTrailingSlash(path) + canonicalQuery(uri));
+    }
+
+    /**
+     * First label of a supplier subdomain such as "acme.en.alibaba.com" or "acme.m.en.alibaba.com".
+     */
+    private static String supplierSubdomain(String host, String domain) {
+        if (host.length() <= domain.length() + 1) {
+            return null;
+        }
+        String label = host.substring(0, host.length() - domain.length() - 1);
+        int dot = label.indexOf('.');
+        String first = dot >= 0 ? label.substring(0, dot) : label;
+        return first.isEmpty() || NON_SUPPLIER_SUBDOMAINS.contains(first) ? null : first;
+    }
+
+    private static String stripHostPrefix(String host) {
+        if (host.startsWith("www.")) {
+            return host.substring(4);
+        }
+        if (host.startsWith("m.")) {
+            return host.substring(2);
+        }
+        return host;
+    }
+
+    private static String stripTrailingSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static String canonicalQuery(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        Set<String> kept = new TreeSet<>();
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = (equals >= 0 ? parameter.substring(0, equals) : parameter).toLowerCase(Locale.ROOT);
+            if (!name.isEmpty() && !TRACKING_PARAMETERS.contains(name) && !name.startsWith("utm_")) {
+                kept.add(parameter);
+            }
+        }
+        return kept.isEmpty() ? "" : "?" + String.join("&", kept);
+    }
+
+    private static String truncate(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+}
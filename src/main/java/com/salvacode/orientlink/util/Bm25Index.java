@@ -0,0 +1,188 @@
+package com.salvacode.orientlink.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory inverted index ranking documents by Okapi BM25 (k1 = 1.2, b = 0.75).
+ *
+ * Documents are added as term lists (see {@link NgramTokenizer#terms}) and identified by
+ * the caller's ID. Postings are parallel int arrays of document slot and term frequency,
+ * so a query only reads the lists of its own terms. Removed documents are skipped but
+ * still count towards document frequencies until the index is rebuilt.
+ */
+public final class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * A ranked document.
+     */
+    public record ScoredDocument(long id, double score) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private long[] ids = new long[16];
+    private int[] lengths = new int[16];
+    private int slots;
+    private int liveDocuments;
+    private long liveLength;
+
+    /**
+     * Add a document, replacing any previous one with the same ID.
+     */
+    public void add(long id, List<String> terms) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (slots == ids.length) {
+                ids = Arrays.copyOf(ids, slots * 2);
+                lengths = Arrays.copyOf(lengths, slots * 2);
+            }
+            int slot = slots++;
+            ids[slot] = id;
+            lengths[slot] = terms.size();
+            live.set(slot);
+            slotsById.put(id, slot);
+            liveDocuments++;
+            liveLength += terms.size();
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new Postings()).add(slot, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return slotsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocuments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The k best-scoring documents accepted by the filter, best first.
+     *
+     * @param query Query terms; repeats are ignored
+     * @param maxQueryTerms Only this many of the rarest query terms are scored, bounding the cost of long queries
+     * @param minScore Documents scoring lower are dropped
+     */
+    public List<ScoredDocument> search(List<String> query, int k, int maxQueryTerms, double minScore,
+                                       LongPredicate filter) {
+        lock.readLock().lock();
+        try {
+            if (liveDocuments == 0) {
+                return List.of();
+            }
+            Set<String> distinct = new LinkedHashSet<>(query);
+            List<Postings> lists = new ArrayList<>();
+            for (String term : distinct) {
+                Postings list = postings.get(term);
+                if (list != null) {
+                    lists.add(list);
+                }
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size)); // Rarest (highest IDF) first
+            if (lists.size() > maxQueryTerms) {
+                lists = lists.subList(0, maxQueryTerms);
+            }
+
+            double averageLength = (double) liveLength / liveDocuments;
+            double[] scores = new double[slots];
+            for (Postings list : lists) {
+                int documentFrequency = Math.min(list.size, liveDocuments); // Removed documents still listed
+                double idf = Math.log(1 + (liveDocuments - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.slots[i];
+                    if (!live.get(slot)) {
+                        continue;
+                    }
+                    int frequency = list.frequencies[i];
+                    double norm = K1 * (1 - B + B * lengths[slot] / averageLength);
+                    scores[slot] += idf * frequency * (K1 + 1) / (frequency + norm);
+                }
+            }
+
+            PriorityQueue<ScoredDocument> best = new PriorityQueue<>(Comparator.comparingDouble(ScoredDocument::score));
+            for (int slot = 0; slot < scores.length; slot++) {
+                double score = scores[slot];
+                if (score > 0 && score >= minScore && (best.size() < k || score > best.peek().score())
+                        && filter.test(ids[slot])) {
+                    best.add(new ScoredDocument(ids[slot], score));
+                    if (best.size() > k) {
+                        best.poll();
+                    }
+                }
+            }
+            List<ScoredDocument> result = new ArrayList<>(best);
+            result.sort(Comparator.comparingDouble(document -> -document.score()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(long id) {
+        Integer slot = slotsById.remove(id);
+        if (slot != null) {
+            live.clear(slot);
+            liveDocuments--;
+            liveLength -= lengths[slot];
+        }
+    }
+
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int slot, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.salvacode.orientlink.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory HNSW (hierarchical navigable small world) graph for approximate nearest
+ * neighbour search by cosine similarity.
+ *
+ * Vectors are normalized on insertion, so similarity is a dot product. Each node is
+ * linked to up to m neighbours per layer (2m on the bottom layer), chosen with the
+ * diversity heuristic of the HNSW paper; searches visit O(log n) nodes. Inserts are
+ * serialized, searches run concurrently. The graph can be written to and read back
+ * from a stream, so it does not have to be rebuilt on restart.
+ */
+public final class HnswIndex {
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * A search result; similarity is the cosine similarity to the query, in [-1, 1].
+     */
+    public record Neighbor(long id, float similarity) {
+    }
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final SplittableRandom random;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids;
+    private float[][] vectors;
+    private int[][][] links; // links[node][layer] = {count, neighbour...}
+    private int size;
+    private int entryPoint = -1;
+    private int maxLayer = -1;
+
+    /**
+     * @param dimensions Vector length
+     * @param m Neighbours per node and layer; 16 suits most embeddings
+     * @param efConstruction Candidate list size while inserting; higher builds a better graph, slower
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        if (dimensions <= 0 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+        this.random = new SplittableRandom(42);
+        this.ids = new long[16];
+        this.vectors = new float[16][];
+        this.links = new int[16][][];
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert a vector under the caller's ID (IDs are not checked for uniqueness).
+     */
+    public void add(long id, float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            if (node == ids.length) {
+                int capacity = node * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                vectors = Arrays.copyOf(vectors, capacity);
+                links = Arrays.copyOf(links, capacity);
+            }
+            int layer = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+            ids[node] = id;
+            vectors[node] = normalized;
+            links[node] = new int[layer + 1][];
+            for (int l = 0; l <= layer; l++) {
+                links[node][l] = new int[maxLinks(l) + 1];
+            }
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLayer = layer;
+                return;
+            }
+            int current = entryPoint;
+            for (int l = maxLayer; l > layer; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            for (int l = Math.min(layer, maxLayer); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(normalized, current, efConstruction, l, new BitSet(size));
+                List<Candidate> neighbours = selectNeighbours(candidates, m);
+                for (Candidate neighbour : neighbours) {
+                    link(node, neighbour.node(), l);
+                    link(neighbour.node(), node, l);
+                }
+                current = candidates.get(0).node();
+            }
+            if (layer > maxLayer) {
+                entryPoint = node;
+                maxLayer = layer;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The k most similar vectors, most similar first.
+     *
+     * @param ef Candidate list size; at least k, higher gives better recall
+     */
+    public List<Neighbor> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = maxLayer; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            List<Candidate> candidates = searchLayer(normalized, current, Math.max(ef, k), 0, new BitSet(size));
+            List<Neighbor> result = new ArrayList<>(Math.min(k, candidates.size()));
+            for (int i = 0; i < k && i < candidates.size(); i++) {
+                result.add(new Neighbor(ids[candidates.get(i).node()], candidates.get(i).similarity()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit every stored (normalized) vector in insertion order.
+     */
+    public void forEach(VectorConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (int node = 0; node < size; node++) {
+                consumer.accept(ids[node], vectors[node]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface VectorConsumer {
+        void accept(long id, float[] vector);
+    }
+
+    /**
+     * Write the graph, so that {@link #readFrom} restores it without re-inserting.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLayer);
+            for (int node = 0; node < size; node++) {
+                out.writeLong(ids[node]);
+                for (float value : vectors[node]) {
+                    out.writeFloat(value);
+                }
+                out.writeInt(links[node].length);
+                for (int[] layerLinks : links[node]) {
+                    out.writeInt(layerLinks[0]);
+                    for (int i = 1; i <= layerLinks[0]; i++) {
+                        out.writeInt(layerLinks[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read a graph written by {@link #writeTo}.
+     */
+    public static HnswIndex readFrom(DataInput in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported HNSW index format");
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+        int size = in.readInt();
+        index.entryPoint = in.readInt();
+        index.maxLayer = in.readInt();
+        index.ids = new long[Math.max(size, 16)];
+        index.vectors = new float[index.ids.length][];
+        index.links = new int[index.ids.length][][];
+        for (int node = 0; node < size; node++) {
+            index.ids[node] = in.readLong();
+            float[] vector = new float[index.dimensions];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = in.readFloat();
+            }
+            index.vectors[node] = vector;
+            int layers = in.readInt();
+            index.links[node] = new int[layers][];
+            for (int l = 0; l < layers; l++) {
+                int[] layerLinks = new int[index.maxLinks(l) + 1];
+                layerLinks[0] = in.readInt();
+                for (int i = 1; i <= layerLinks[0]; i++) {
+                    int neighbour = in.readInt();
+                    if (neighbour < 0 || neighbour >= size) {
+                        throw new IOException("Corrupt HNSW index");
+                    }
+                    layerLinks[i] = neighbour;
+                }
+                index.links[node][l] = layerLinks;
+            }
+        }
+        index.size = size;
+        return index;
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = dot(query, vectors[current]);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] layerLinks = links[current][layer];
+            for (int i = 1; i <= layerLinks[0]; i++) {
+                float similarity = dot(query, vectors[layerLinks[i]]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = layerLinks[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer; returns up to ef nodes, most similar first.
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int layer, BitSet visited) {
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Comparator.comparingDouble(c -> -c.similarity()));
+        PriorityQueue<Candidate> found = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+        Candidate first = new Candidate(start, dot(query, vectors[start]));
+        toVisit.add(first);
+        found.add(first);
+        visited.set(start);
+
+        while (!toVisit.isEmpty()) {
+            Candidate candidate = toVisit.poll();
+            if (candidate.similarity() < found.peek().similarity() && found.size() >= ef) {
+                break;
+            }
+            int[] layerLinks = links[candidate.node()][layer];
+            for (int i = 1; i <= layerLinks[0]; i++) {
+                int neighbour = layerLinks[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = dot(query, vectors[neighbour]);
+                if (found.size() < ef || similarity > found.peek().similarity()) {
+                    Candidate next = new Candidate(neighbour, similarity);
+                    toVisit.add(next);
+                    found.add(next);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(found);
+        result.sort(Comparator.comparingDouble(c -> -c.similarity()));
+        return result;
+    }
+
+    /**
+     * Diversity heuristic: skip a candidate that is closer to an already selected neighbour
+     * than to the new node, so links spread in all directions; fill up with the rest.
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int count) {
+        List<Candidate> selected = new ArrayList<>(count);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= count) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (dot(vectors[candidate.node()], vectors[chosen.node()]) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; selected.size() < count && i < skipped.size(); i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void link(int from, int to, int layer) {
+        int[] layerLinks = links[from][layer];
+        int count = layerLinks[0];
+        if (count < layerLinks.length - 1) {
+            layerLinks[count + 1] = to;
+            layerLinks[0] = count + 1;
+            return;
+        }
+        // Full: keep the best neighbours among the current ones and the new one
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Candidate(layerLinks[i], dot(vectors[from], vectors[layerLinks[i]])));
+        }
+        candidates.add(new Candidate(to, dot(vectors[from], vectors[to])));
+        candidates.sort(Comparator.comparingDouble(c -> -c.similarity()));
+        List<Candidate> kept = selectNeighbours(candidates, count);
+        for (int i = 0; i < kept.size(); i++) {
+            layerLinks[i + 1] = kept.get(i).node();
+        }
+        layerLinks[0] = kept.size();
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record Candidate(int node, float similarity) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.salvacode.orientlink.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Helpers for conditional GETs: strong ETags built from the parts that determine a
+ * response (query parameters plus a version aggregate), so unchanged collections can be
+ * answered with 304 without loading rows, and per-endpoint Cache-Control values.
+ */
+public final class HttpCaching {
+
+    /**
+     * Response types in the order the message converters offer them (see WebConfig).
+     */
+    private static final List<MediaType> PRODUCED = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR,
+            MediaType.valueOf("application/x-jackson-smile"));
+
+    private HttpCaching() {
+    }
+
+    /**
+     * Quoted strong ETag: a 128-bit hash of the parts.
+     */
+    public static String strongETag(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0); // Separator, so ("ab", "c") and ("a", "bc") differ
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The ETag of the representation the client's Accept header selects. JSON, CBOR and
+     * Smile encode the same data in different bytes, so they must not share a strong ETag;
+     * responses carrying it must also send Vary: Accept.
+     */
+    public static String representationETag(String eTag, WebRequest request) {
+        return strongETag(eTag, negotiatedType(request.getHeader(HttpHeaders.ACCEPT)));
+    }
+
+    /**
+     * The response type content negotiation picks for the Accept header: the most preferred
+     * acceptable type, JSON for wildcards, a missing header or an unparsable one.
+     */
+    static MediaType negotiatedType(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> requested;
+        try {
+            requested = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(requested);
+        for (MediaType type : requested) {
+            for (MediaType produced : PRODUCED) {
+                if (type.getQualityValue() > 0 && type.isCompatibleWith(produced)) {
+                    return produced;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Private caching for the given time; zero means the client must revalidate every use.
+     * Responses carry per-user data, so shared caches must not store them.
+     */
+    public static CacheControl cacheControl(Duration maxAge) {
+        if (maxAge.isZero() || maxAge.isNegative()) {
+            return CacheControl.noCache().cachePrivate();
+        }
+        return CacheControl.maxAge(maxAge).cachePrivate().mustRevalidate();
+    }
+}
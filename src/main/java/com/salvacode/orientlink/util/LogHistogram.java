@@ -0,0 +1,220 @@
+package com.salvacode.orientlink.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable histogram of non-negative values with log-spaced buckets (HDR/DDSketch style).
+ *
+ * Every bucket spans a constant relative width, so any quantile or rank is accurate to
+ * within {@link #RELATIVE_ACCURACY} of the true value regardless of scale, and memory
+ * depends only on the spread of values (about 120 buckets per order of magnitude), not
+ * on how many were recorded. Counts may be negative, which lets a histogram hold a delta
+ * (recorded minus removed values) that is later added into another one.
+ *
+ * Not thread-safe.
+ */
+public final class LogHistogram {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_POSITIVE = 1e-9; // Smaller values count as zero
+    private static final byte FORMAT_VERSION = 1;
+
+    private long[] counts = new long[0];
+    private int offset; // Bucket index of counts[0]
+    private long zeroCount;
+    private long totalCount;
+
+    /**
+     * Record one value.
+     */
+    public void record(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Remove one previously recorded value.
+     */
+    public void remove(double value) {
+        add(value, -1);
+    }
+
+    /**
+     * Adjust the count of the value's bucket. NaN and negative values are ignored.
+     */
+    public void add(double value, long delta) {
+        if (Double.isNaN(value) || value < 0 || delta == 0) {
+            return;
+        }
+        totalCount += delta;
+        if (value < MIN_POSITIVE) {
+            zeroCount += delta;
+            return;
+        }
+        int index = bucketIndex(value);
+        ensureCovers(index);
+        counts[index - offset] += delta;
+    }
+
+    /**
+     * Add every count of the other histogram into this one.
+     */
+    public void merge(LogHistogram other) {
+        zeroCount += other.zeroCount;
+        totalCount += other.totalCount;
+        if (other.counts.length == 0) {
+            return;
+        }
+        ensureCovers(other.offset);
+        ensureCovers(other.offset + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.offset + i - offset] += other.counts[i];
+        }
+    }
+
+    /**
+     * Independent copy of this histogram.
+     */
+    public LogHistogram copy() {
+        LogHistogram copy = new LogHistogram();
+        copy.counts = counts.clone();
+        copy.offset = offset;
+        copy.zeroCount = zeroCount;
+        copy.totalCount = totalCount;
+        return copy;
+    }
+
+    /**
+     * Number of values recorded (net of removals).
+     */
+    public long count() {
+        return totalCount;
+    }
+
+    public boolean isEmpty() {
+        return totalCount == 0;
+    }
+
+    /**
+     * Share of recorded values below the given one, counting values in the same
+     * bucket as half (mid-rank). Between 0 and 1; NaN when empty.
+     */
+    public double rank(double value) {
+        if (totalCount <= 0 || Double.isNaN(value)) {
+            return Double.NaN;
+        }
+        if (value < MIN_POSITIVE) {
+            return zeroCount / 2.0 / totalCount;
+        }
+        int index = bucketIndex(value);
+        double below = zeroCount;
+        for (int i = 0; i < counts.length && offset + i < index; i++) {
+            below += counts[i];
+        }
+        int slot = index - offset;
+        if (slot >= 0 && slot < counts.length) {
+            below += counts[slot] / 2.0;
+        }
+        return Math.min(Math.max(below / totalCount, 0.0), 1.0);
+    }
+
+    /**
+     * Approximate value at quantile q (0..1); NaN when empty.
+     */
+    public double quantile(double q) {
+        if (totalCount <= 0) {
+            return Double.NaN;
+        }
+        double target = q * (totalCount - 1);
+        long seen = zeroCount;
+        if (seen > target) {
+            return 0.0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > target) {
+                return bucketValue(offset + i);
+            }
+        }
+        return counts.length > 0 ? bucketValue(offset + counts.length - 1) : 0.0;
+    }
+
+    /**
+     * Compact binary form for persistence; only the populated bucket range is written.
+     */
+    public byte[] toBytes() {
+        int from = 0;
+        int to = counts.length;
+        while (from < to && counts[from] == 0) {
+            from++;
+        }
+        while (to > from && counts[to - 1] == 0) {
+            to--;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 8 + 8 + 4 + 8 * (to - from));
+        buffer.put(FORMAT_VERSION)
+                .putInt(offset + from)
+                .putLong(zeroCount)
+                .putLong(totalCount)
+                .putInt(to - from);
+        for (int i = from; i < to; i++) {
+            buffer.putLong(counts[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Inverse of {@link #toBytes()}; null or empty input gives an empty histogram.
+     */
+    public static LogHistogram fromBytes(byte[] bytes) {
+        LogHistogram histogram = new LogHistogram();
+        if (bytes == null || bytes.length == 0) {
+            return histogram;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported histogram format version: " + version);
+        }
+        histogram.offset = buffer.getInt();
+        histogram.zeroCount = buffer.getLong();
+        histogram.totalCount = buffer.getLong();
+        histogram.counts = new long[buffer.getInt()];
+        for (int i = 0; i < histogram.counts.length; i++) {
+            histogram.counts[i] = buffer.getLong();
+        }
+        return histogram;
+    }
+
+    private static int bucketIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    /**
+     * Representative value of a bucket: within RELATIVE_ACCURACY of every value in it.
+     */
+    private static double bucketValue(int index) {
+        return 2 * Math.pow(GAMMA, index) / (1 + GAMMA);
+    }
+
+    private void ensureCovers(int index) {
+        if (counts.length == 0) {
+            counts = new long[8];
+            offset = index - 4;
+            return;
+        }
+        if (index < offset) {
+            int grow = Math.max(offset - index, counts.length / 2);
+            long[] grown = new long[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            offset -= grow;
+        } else if (index >= offset + counts.length) {
+            int needed = index - offset + 1;
+            counts = Arrays.copyOf(counts, Math.max(needed, counts.length + counts.length / 2));
+        }
+    }
+}
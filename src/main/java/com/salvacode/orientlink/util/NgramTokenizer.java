@@ -0,0 +1,163 @@
+package com.salvacode.orientlink.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into n-grams for fuzzy, script-aware matching.
+ *
+ * - CJK runs (Han, Hiragana, Katakana, Hangul) are split into character bigrams,
+ *   so "深圳" matches inside "深圳市" without any word segmentation.
+ * - Latin/digit words are split into pg_trgm-style padded trigrams.
+ *
+ * Text is NFKC-normalized (full-width to half-width) and lower-cased first.
+ */
+public final class NgramTokenizer {
+
+    private NgramTokenizer() {
+    }
+
+    /**
+     * Grams stored in the index. CJK unigrams are included so single-character
+     * queries still find their documents.
+     */
+    public static Set<String> indexGrams(String text) {
+        return grams(text, true);
+    }
+
+    /**
+     * Grams looked up for a query. Only bigrams are used for CJK runs longer than
+     * one character, which keeps candidate lists short.
+     */
+    public static Set<String> queryGrams(String text) {
+        return grams(text, false);
+    }
+
+    /**
+     * Terms for relevance ranking, in order and with repeats (so term frequencies can be
+     * counted): whole Latin/digit words, and character bigrams of CJK runs (the character
+     * itself for a one-character run).
+     */
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+
+        String normalized = normalize(text);
+        int wordStart = -1;
+        int previousCjk = -1;
+        boolean cjkRunEmitted = false;
+        int i = 0;
+        while (i <= normalized.length()) {
+            int codePoint = i < normalized.length() ? normalized.codePointAt(i) : ' ';
+            boolean cjk = isCjk(codePoint);
+            if (!cjk && previousCjk >= 0 && !cjkRunEmitted) {
+                terms.add(new String(Character.toChars(previousCjk)));
+            }
+            if (cjk) {
+                if (previousCjk >= 0) {
+                    terms.add(new String(Character.toChars(previousCjk)) + new String(Character.toChars(codePoint)));
+                    cjkRunEmitted = true;
+                } else {
+                    cjkRunEmitted = false;
+                }
+            }
+            previousCjk = cjk ? codePoint : -1;
+
+            boolean wordChar = !cjk && Character.isLetterOrDigit(codePoint);
+            if (wordChar && wordStart < 0) {
+                wordStart = i;
+            } else if (!wordChar && wordStart >= 0) {
+                terms.add(normalized.substring(wordStart, i));
+                wordStart = -1;
+            }
+            i += i < normalized.length() ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+
+    /**
+     * Whether the code point belongs to a script written without spaces.
+     */
+    public static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * NFKC + lower-case normalization shared by all tokenizers.
+     */
+    public static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String text, boolean includeCjkUnigrams) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return grams;
+        }
+
+        String normalized = normalize(text);
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjkRun = new StringBuilder();
+
+        int i = 0;
+        while (i < normalized.length()) {
+            int codePoint = normalized.codePointAt(i);
+            if (isCjk(codePoint)) {
+                flushWord(word, grams);
+                cjkRun.appendCodePoint(codePoint);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flushCjkRun(cjkRun, grams, includeCjkUnigrams);
+                word.appendCodePoint(codePoint);
+            } else {
+                flushWord(word, grams);
+                flushCjkRun(cjkRun, grams, includeCjkUnigrams);
+            }
+            i += Character.charCount(codePoint);
+        }
+        flushWord(word, grams);
+        flushCjkRun(cjkRun, grams, includeCjkUnigrams);
+
+        return grams;
+    }
+
+    /**
+     * Padded trigrams, same shape as pg_trgm: "ab" -> "  a", " ab", "ab ".
+     */
+    private static void flushWord(StringBuilder word, Set<String> grams) {
+        if (word.length() == 0) {
+            return;
+        }
+        String padded = "  " + word + " ";
+        int[] codePoints = padded.codePoints().toArray();
+        for (int i = 0; i + 3 <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 3));
+        }
+        word.setLength(0);
+    }
+
+    private static void flushCjkRun(StringBuilder run, Set<String> grams, boolean includeUnigrams) {
+        if (run.length() == 0) {
+            return;
+        }
+        int[] codePoints = run.codePoints().toArray();
+        if (codePoints.length == 1 || includeUnigrams) {
+            for (int i = 0; i < codePoints.length; i++) {
+                grams.add(new String(codePoints, i, 1));
+            }
+        }
+        for (int i = 0; i + 2 <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 2));
+        }
+        run.setLength(0);
+    }
+}
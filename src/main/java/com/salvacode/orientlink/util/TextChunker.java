@@ -0,0 +1,113 @@
+package com.salvacode.orientlink.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits long text into chunks whose estimated token count (as {@link TokenEstimator})
+ * stays within a budget, cutting at the strongest boundary available: paragraph, sentence,
+ * clause, whitespace, and only as a last resort mid-word.
+ *
+ * Chinese punctuation (。！？ for sentences, ；，、： for clauses) counts as a boundary
+ * without following whitespace, so CJK text splits cleanly. Chunks are produced lazily.
+ */
+public final class TextChunker implements Iterator<TextChunker.Chunk> {
+
+    private static final double LATIN_TOKEN_COST = 0.25;
+
+    private final String text;
+    private final double maxTokens;
+    private int position;
+    private int index;
+
+    /**
+     * A chunk and its [start, end) offsets in the original text.
+     */
+    public record Chunk(int index, int start, int end, String text) {
+    }
+
+    public TextChunker(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be positive");
+        }
+        this.text = text;
+        this.maxTokens = maxTokens;
+        this.position = skipWhitespace(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < text.length();
+    }
+
+    @Override
+    public Chunk next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int start = position;
+        int end = findCut(start);
+        position = skipWhitespace(end);
+        return new Chunk(index++, start, end, text.substring(start, end).strip());
+    }
+
+    /**
+     * End (exclusive) of the chunk starting at start.
+     */
+    private int findCut(int start) {
+        int paragraph = -1;
+        int sentence = -1;
+        int clause = -1;
+        int space = -1;
+        double cost = 0;
+
+        int i = start;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            double codePointCost = NgramTokenizer.isCjk(codePoint) ? 1 : LATIN_TOKEN_COST;
+            if (cost + codePointCost > maxTokens && i > start) {
+                // Over budget: prefer the strongest boundary that keeps at least half the chunk
+                int half = start + (i - start) / 2;
+                for (int boundary : new int[] {paragraph, sentence, clause, space}) {
+                    if (boundary > half) {
+                        return boundary;
+                    }
+                }
+                return i;
+            }
+            cost += codePointCost;
+            int next = i + Character.charCount(codePoint);
+
+            if (codePoint == '\n') {
+                if (next < text.length() && (text.charAt(next) == '\n' || text.charAt(next) == '\r')) {
+                    paragraph = next;
+                }
+                sentence = next;
+            } else if (codePoint == '。' || codePoint == '！' || codePoint == '？') {
+                sentence = next;
+            } else if (codePoint == '；' || codePoint == '，' || codePoint == '、' || codePoint == '：') {
+                clause = next;
+            } else if ((codePoint == '.' || codePoint == '!' || codePoint == '?') && followedBySpace(next)) {
+                sentence = next;
+            } else if ((codePoint == ';' || codePoint == ':' || codePoint == ',') && followedBySpace(next)) {
+                clause = next;
+            } else if (Character.isWhitespace(codePoint)) {
+                space = next;
+            }
+            i = next;
+        }
+        return text.length();
+    }
+
+    private boolean followedBySpace(int index) {
+        return index >= text.length() || Character.isWhitespace(text.charAt(index));
+    }
+
+    private int skipWhitespace(int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,59 @@
+package com.salvacode.orientlink.util;
+
+/**
+ * Cheap, tokenizer-free estimate of LLM token counts for budgeting prompts.
+ * CJK characters count as one token each, other text as one token per four characters.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_LATIN_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimated number of tokens in the text.
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (NgramTokenizer.isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + CHARS_PER_LATIN_TOKEN - 1) / CHARS_PER_LATIN_TOKEN;
+    }
+
+    /**
+     * Cut the text so that its estimate stays within the budget.
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || estimate(text) <= maxTokens) {
+            return text;
+        }
+        int cjk = 0;
+        int other = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int codePoint = text.codePointAt(end);
+            if (NgramTokenizer.isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            if (cjk + (other + CHARS_PER_LATIN_TOKEN - 1) / CHARS_PER_LATIN_TOKEN > maxTokens) {
+                break;
+            }
+            end += Character.charCount(codePoint);
+        }
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,47 @@
+-- conversation_history: hash-partitioned by user_id, so single-user queries touch one
+-- partition and inserts spread over partitions (and tablespaces, if assigned).
+--
+-- Manual, one-off migration; it is deliberately not part of schema-upgrade.sql, which runs
+-- on every startup. It takes an ACCESS EXCLUSIVE lock on conversation_history while every
+-- row is copied, so analyses cannot be saved or read until it commits. Run it in a
+-- maintenance window with all application instances stopped:
+--
+--     psql -v ON_ERROR_STOP=1 -f partition-conversation-history.sql
+--
+-- Indexes and triggers that schema-upgrade.sql maintains are recreated on the new table at
+-- the next application start. Does nothing if the table is already partitioned.
+-- With conversation shards, run it on each shard's database.
+DO $$
+DECLARE
+    partition_count CONSTANT int := 8;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'conversation_history'::regclass) = 'r' THEN
+        LOCK TABLE conversation_history IN ACCESS EXCLUSIVE MODE;
+        ALTER TABLE conversation_history RENAME TO conversation_history_unpartitioned;
+
+        CREATE TABLE conversation_history
+            (LIKE conversation_history_unpartitioned INCLUDING DEFAULTS INCLUDING STORAGE INCLUDING COMPRESSION)
+            PARTITION BY HASH (user_id);
+        FOR i IN 0 .. partition_count - 1 LOOP
+            EXECUTE format('CREATE TABLE conversation_history_p%s PARTITION OF conversation_history '
+                           'FOR VALUES WITH (MODULUS %s, REMAINDER %s)', i, partition_count, i);
+        END LOOP;
+
+        -- Unique keys of a partitioned table must include the partition key; IDs stay
+        -- unique through the sequence, which continues after the highest existing ID
+        CREATE SEQUENCE conversation_history_row_id_seq OWNED BY conversation_history.id;
+        PERFORM setval('conversation_history_row_id_seq',
+                       (SELECT COALESCE(max(id), 0) + 1 FROM conversation_history_unpartitioned), false);
+        ALTER TABLE conversation_history ALTER COLUMN id SET DEFAULT nextval('conversation_history_row_id_seq');
+        ALTER TABLE conversation_history ADD PRIMARY KEY (id, user_id);
+
+        INSERT INTO conversation_history SELECT * FROM conversation_history_unpartitioned;
+        DROP TABLE conversation_history_unpartitioned;
+
+        -- No foreign key to provider_profile: with conversation shards the providers are
+        -- on another server (see schema-upgrade.sql)
+        CREATE INDEX idx_conversation_history_user_risk ON conversation_history (user_id, risk_level);
+        CREATE INDEX idx_conversation_history_user_sentiment ON conversation_history (user_id, sentiment);
+        CREATE INDEX idx_conversation_history_analysis_group ON conversation_history (analysis_group_id);
+    END IF;
+END $$;
@@ -0,0 +1,344 @@
+-- ==============================================================================
+-- Idempotent schema upgrades that Hibernate's ddl-auto=update cannot express:
+-- column type changes, expression indexes and storage options.
+--
+-- Runs after Hibernate on every startup (spring.sql.init, deferred).
+-- With ddl-auto=validate, apply this script manually before deploying.
+-- Statements use a custom separator (spring.sql.init.separator) so PL/pgSQL
+-- bodies can contain ';'.
+-- ==============================================================================
+
+CREATE OR REPLACE FUNCTION orientlink_try_jsonb(value text) RETURNS jsonb AS $$
+BEGIN
+    RETURN value::jsonb;
+EXCEPTION WHEN others THEN
+    RETURN NULL; -- Truncated payloads from the old varchar columns
+END;
+$$ LANGUAGE plpgsql IMMUTABLE
+@@
+
+-- conversation_history: raw completion kept apart, compressed by TOAST with lz4.
+-- Only altered while not lz4 yet, so startups do not take an exclusive lock on the table.
+DO $$
+BEGIN
+    IF current_setting('server_version_num')::int >= 140000 THEN
+        IF (SELECT attcompression FROM pg_attribute
+            WHERE attrelid = 'conversation_history'::regclass AND attname = 'raw_completion'
+              AND NOT attisdropped) IS DISTINCT FROM 'l' THEN
+            ALTER TABLE conversation_history ALTER COLUMN raw_completion SET COMPRESSION lz4;
+        END IF;
+    END IF;
+END $$
+@@
+
+-- conversation_history: "; "-joined alerts -> text[], raw JSON string -> jsonb responses
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_name = 'conversation_history' AND column_name = 'alerts') = 'character varying' THEN
+        ALTER TABLE conversation_history
+            ALTER COLUMN alerts TYPE text[] USING string_to_array(NULLIF(alerts, ''), '; ');
+    END IF;
+
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_name = 'conversation_history' AND column_name = 'suggested_responses') = 'character varying' THEN
+        UPDATE conversation_history
+            SET raw_completion = suggested_responses
+            WHERE raw_completion IS NULL;
+        ALTER TABLE conversation_history
+            ALTER COLUMN suggested_responses TYPE jsonb
+            USING orientlink_try_jsonb(suggested_responses) -> 'suggestedResponses';
+        UPDATE conversation_history
+            SET risk_level = orientlink_try_jsonb(raw_completion) #>> '{interpretation,riskLevel}',
+                sentiment = orientlink_try_jsonb(raw_completion) #>> '{interpretation,sentiment}'
+            WHERE raw_completion IS NOT NULL;
+    END IF;
+END $$
+@@
+
+-- provider_profile: ", "-joined certifications -> text[], JSON string -> jsonb
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_name = 'provider_profile' AND column_name = 'certifications') = 'character varying' THEN
+        ALTER TABLE provider_profile
+            ALTER COLUMN certifications TYPE text[] USING string_to_array(NULLIF(certifications, ''), ', ');
+    END IF;
+
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_name = 'provider_profile' AND column_name = 'risk_assessment') = 'character varying' THEN
+        ALTER TABLE provider_profile
+            ALTER COLUMN risk_assessment TYPE jsonb USING orientlink_try_jsonb(risk_assessment);
+    END IF;
+END $$
+@@
+
+-- Server-side filtering on JSON/array content. The alert filter is a substring match, which
+-- a GIN index on the array cannot serve; a trigram index on the joined alerts can.
+CREATE EXTENSION IF NOT EXISTS pg_trgm
+@@
+
+-- array_to_string is only STABLE, so it cannot appear in an index expression itself
+CREATE OR REPLACE FUNCTION orientlink_alerts_text(alerts text[]) RETURNS text AS $$
+    SELECT array_to_string(alerts, E'\n')
+$$ LANGUAGE sql IMMUTABLE
+@@
+
+DROP INDEX IF EXISTS idx_conversation_history_alerts
+@@
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_alerts_trgm
+    ON conversation_history USING gin (orientlink_alerts_text(alerts) gin_trgm_ops)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_provider_profile_user_overall_risk
+    ON provider_profile (user_id, (risk_assessment ->> 'overallRisk'))
+@@
+
+-- Change feed: every insert/update of a tracked row records the writing transaction's ID
+-- (change_xid) and the next change_feed_seq number, every delete leaves a change_tombstone.
+-- The feed is ordered by transaction ID (see ChangeTombstoneRepository.findChanges).
+-- Triggers also catch bulk JPQL/native statements.
+CREATE SEQUENCE IF NOT EXISTS change_feed_seq
+@@
+
+CREATE OR REPLACE FUNCTION orientlink_track_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO change_tombstone (seq, entity_type, entity_id, user_id, changed_at, change_xid)
+        VALUES (nextval('change_feed_seq'), TG_ARGV[0], OLD.id, OLD.user_id, clock_timestamp(),
+                pg_current_xact_id());
+        RETURN OLD;
+    END IF;
+    IF TG_OP = 'UPDATE' THEN
+        -- Bookkeeping that clients never see (feed columns, refresh claims) is not a change
+        IF to_jsonb(NEW) - ARRAY['change_seq', 'changed_at', 'change_xid', 'refresh_claimed_until']
+                = to_jsonb(OLD) - ARRAY['change_seq', 'changed_at', 'change_xid', 'refresh_claimed_until'] THEN
+            RETURN NEW;
+        END IF;
+        -- The previous owner's clients must drop the row
+        IF NEW.user_id IS DISTINCT FROM OLD.user_id THEN
+            INSERT INTO change_tombstone (seq, entity_type, entity_id, user_id, changed_at, change_xid)
+            VALUES (nextval('change_feed_seq'), TG_ARGV[0], OLD.id, OLD.user_id, clock_timestamp(),
+                    pg_current_xact_id());
+        END IF;
+    END IF;
+    NEW.change_xid := pg_current_xact_id();
+    NEW.change_seq := nextval('change_feed_seq');
+    NEW.changed_at := clock_timestamp();
+    RETURN NEW;
+END $$ LANGUAGE plpgsql
+@@
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'conversation_history' AND column_name = 'change_seq') THEN
+        ALTER TABLE conversation_history ADD COLUMN change_seq bigint, ADD COLUMN changed_at timestamp;
+        UPDATE conversation_history SET change_seq = nextval('change_feed_seq'), changed_at = localtimestamp;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'provider_profile' AND column_name = 'change_seq') THEN
+        ALTER TABLE provider_profile ADD COLUMN change_seq bigint, ADD COLUMN changed_at timestamp;
+        UPDATE provider_profile SET change_seq = nextval('change_feed_seq'), changed_at = localtimestamp;
+    END IF;
+END $$
+@@
+
+-- Rows written before transaction IDs were recorded count as one settled transaction; the
+-- triggers leave these updates alone, as only feed columns change
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'conversation_history' AND column_name = 'change_xid') THEN
+        ALTER TABLE conversation_history ADD COLUMN change_xid xid8;
+        UPDATE conversation_history SET change_xid = '1'::xid8;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'provider_profile' AND column_name = 'change_xid') THEN
+        ALTER TABLE provider_profile ADD COLUMN change_xid xid8;
+        UPDATE provider_profile SET change_xid = '1'::xid8;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'change_tombstone' AND column_name = 'change_xid') THEN
+        ALTER TABLE change_tombstone ADD COLUMN change_xid xid8;
+        UPDATE change_tombstone SET change_xid = '1'::xid8;
+    END IF;
+END $$
+@@
+
+CREATE OR REPLACE TRIGGER trg_conversation_history_change
+    BEFORE INSERT OR UPDATE ON conversation_history
+    FOR EACH ROW EXECUTE FUNCTION orientlink_track_change('conversation')
+@@
+
+CREATE OR REPLACE TRIGGER trg_conversation_history_delete
+    AFTER DELETE ON conversation_history
+    FOR EACH ROW EXECUTE FUNCTION orientlink_track_change('conversation')
+@@
+
+CREATE OR REPLACE TRIGGER trg_provider_profile_change
+    BEFORE INSERT OR UPDATE ON provider_profile
+    FOR EACH ROW EXECUTE FUNCTION orientlink_track_change('provider')
+@@
+
+CREATE OR REPLACE TRIGGER trg_provider_profile_delete
+    AFTER DELETE ON provider_profile
+    FOR EACH ROW EXECUTE FUNCTION orientlink_track_change('provider')
+@@
+
+DROP INDEX IF EXISTS idx_conversation_history_user_change_seq
+@@
+
+DROP INDEX IF EXISTS idx_provider_profile_user_change_seq
+@@
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_user_change_xid
+    ON conversation_history (user_id, change_xid)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_provider_profile_user_change_xid
+    ON provider_profile (user_id, change_xid)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_change_tombstone_user_change_xid
+    ON change_tombstone (user_id, change_xid)
+@@
+
+-- Per-user analytics counters (user_stat), kept current by triggers in the writing transaction.
+-- Writers take a shared advisory lock on the user, a rebuild an exclusive one.
+-- A multi-language analysis is one conversation: of its rows (same analysis_group_id) only
+-- the first, the one that keeps the raw completion, is counted.
+CREATE OR REPLACE FUNCTION orientlink_add_user_stat(p_user text, p_dimension text, p_bucket text, p_delta bigint)
+RETURNS void AS $$
+    INSERT INTO user_stat (user_id, dimension, bucket, total)
+    VALUES (p_user, p_dimension, p_bucket, p_delta)
+    ON CONFLICT (user_id, dimension, bucket) DO UPDATE SET total = user_stat.total + EXCLUDED.total
+$$ LANGUAGE sql
+@@
+
+CREATE OR REPLACE FUNCTION orientlink_add_conversation_stats(p_user text, p_risk text, p_sentiment text,
+    p_at timestamp, p_provider bigint, p_alerts int, p_sign int) RETURNS void AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock_shared(4901, hashtext(p_user));
+    PERFORM orientlink_add_user_stat(p_user, 'conversations', '', p_sign);
+    PERFORM orientlink_add_user_stat(p_user, 'risk_level', COALESCE(p_risk, 'unknown'), p_sign);
+    PERFORM orientlink_add_user_stat(p_user, 'sentiment', COALESCE(p_sentiment, 'unknown'), p_sign);
+    PERFORM orientlink_add_user_stat(p_user, 'day', to_char(p_at, 'YYYY-MM-DD'), p_sign);
+    IF p_provider IS NOT NULL AND p_alerts > 0 THEN
+        PERFORM orientlink_add_user_stat(p_user, 'provider_alerts', p_provider::text, p_sign * p_alerts);
+    END IF;
+END $$ LANGUAGE plpgsql
+@@
+
+CREATE OR REPLACE FUNCTION orientlink_track_conversation_stats() RETURNS trigger AS $$
+DECLARE
+    old_counted boolean := TG_OP <> 'INSERT'
+        AND (OLD.analysis_group_id IS NULL OR OLD.raw_completion IS NOT NULL);
+    new_counted boolean := TG_OP <> 'DELETE'
+        AND (NEW.analysis_group_id IS NULL OR NEW.raw_completion IS NOT NULL);
+BEGIN
+    IF TG_OP = 'UPDATE' AND old_counted = new_counted
+        AND (OLD.user_id, OLD.risk_level, OLD.sentiment, OLD.timestamp::date, OLD.provider_id, OLD.alerts)
+            IS NOT DISTINCT FROM
+            (NEW.user_id, NEW.risk_level, NEW.sentiment, NEW.timestamp::date, NEW.provider_id, NEW.alerts) THEN
+        RETURN NULL;
+    END IF;
+    IF old_counted THEN
+        PERFORM orientlink_add_conversation_stats(OLD.user_id, OLD.risk_level, OLD.sentiment, OLD.timestamp,
+            OLD.provider_id, COALESCE(cardinality(OLD.alerts), 0), -1);
+    END IF;
+    IF new_counted THEN
+        PERFORM orientlink_add_conversation_stats(NEW.user_id, NEW.risk_level, NEW.sentiment, NEW.timestamp,
+            NEW.provider_id, COALESCE(cardinality(NEW.alerts), 0), 1);
+    END IF;
+    RETURN NULL;
+END $$ LANGUAGE plpgsql
+@@
+
+CREATE OR REPLACE FUNCTION orientlink_track_provider_stats() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'UPDATE'
+        AND (OLD.user_id, OLD.risk_assessment ->> 'overallRisk')
+            IS NOT DISTINCT FROM (NEW.user_id, NEW.risk_assessment ->> 'overallRisk') THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM pg_advisory_xact_lock_shared(4901, hashtext(OLD.user_id));
+        PERFORM orientlink_add_user_stat(OLD.user_id, 'providers', '', -1);
+        PERFORM orientlink_add_user_stat(OLD.user_id, 'provider_risk',
+            COALESCE(OLD.risk_assessment ->> 'overallRisk', 'unknown'), -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM pg_advisory_xact_lock_shared(4901, hashtext(NEW.user_id));
+        PERFORM orientlink_add_user_stat(NEW.user_id, 'providers', '', 1);
+        PERFORM orientlink_add_user_stat(NEW.user_id, 'provider_risk',
+            COALESCE(NEW.risk_assessment ->> 'overallRisk', 'unknown'), 1);
+    END IF;
+    RETURN NULL;
+END $$ LANGUAGE plpgsql
+@@
+
+CREATE OR REPLACE FUNCTION orientlink_rebuild_user_stats(p_user text) RETURNS int AS $$
+DECLARE
+    written int;
+BEGIN
+    PERFORM pg_advisory_xact_lock(4901, hashtext(p_user));
+    DELETE FROM user_stat WHERE user_id = p_user;
+    INSERT INTO user_stat (user_id, dimension, bucket, total)
+    WITH counted AS (
+        SELECT risk_level, sentiment, timestamp, provider_id, alerts FROM conversation_history
+        WHERE user_id = p_user AND (analysis_group_id IS NULL OR raw_completion IS NOT NULL)
+    )
+    SELECT p_user, dimension, bucket, sum(total) FROM (
+        SELECT 'conversations' AS dimension, '' AS bucket, 1 AS total FROM counted
+        UNION ALL
+        SELECT 'risk_level', COALESCE(risk_level, 'unknown'), 1 FROM counted
+        UNION ALL
+        SELECT 'sentiment', COALESCE(sentiment, 'unknown'), 1 FROM counted
+        UNION ALL
+        SELECT 'day', to_char(c.timestamp, 'YYYY-MM-DD'), 1 FROM counted c
+        UNION ALL
+        SELECT 'provider_alerts', provider_id::text, cardinality(alerts) FROM counted
+            WHERE provider_id IS NOT NULL AND cardinality(alerts) > 0
+        UNION ALL
+        SELECT 'providers', '', 1 FROM provider_profile WHERE user_id = p_user
+        UNION ALL
+        SELECT 'provider_risk', COALESCE(risk_assessment ->> 'overallRisk', 'unknown'), 1
+            FROM provider_profile WHERE user_id = p_user
+    ) counters
+    GROUP BY dimension, bucket;
+    GET DIAGNOSTICS written = ROW_COUNT;
+    RETURN written;
+END $$ LANGUAGE plpgsql
+@@
+
+CREATE OR REPLACE TRIGGER trg_conversation_history_stats
+    AFTER INSERT OR UPDATE OR DELETE ON conversation_history
+    FOR EACH ROW EXECUTE FUNCTION orientlink_track_conversation_stats()
+@@
+
+CREATE OR REPLACE TRIGGER trg_provider_profile_stats
+    AFTER INSERT OR UPDATE OR DELETE ON provider_profile
+    FOR EACH ROW EXECUTE FUNCTION orientlink_track_provider_stats()
+@@
+
+-- price_statistics: providers whose product is "Unknown" are no longer pooled into one market
+DELETE FROM price_statistics WHERE product_key = 'unknown'
+@@
+
+-- conversation_history: no foreign key to provider_profile; with conversation shards the
+-- rows of most users live on another server than the providers (see ConversationShards)
+DO $$
+DECLARE
+    constraint_name name;
+BEGIN
+    FOR constraint_name IN
+        SELECT conname FROM pg_constraint
+        WHERE conrelid = 'conversation_history'::regclass AND contype = 'f'
+          AND confrelid = 'provider_profile'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE conversation_history DROP CONSTRAINT %I', constraint_name);
+    END LOOP;
+END $$
+@@
@@ -0,0 +1,121 @@
+package com.salvacode.orientlink.config;
+
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import com.salvacode.orientlink.service.ConversationResharder;
+import com.salvacode.orientlink.service.ConversationShards;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against two local Postgres instances on different ports: the regular DB_* one as
+ * shard 0 and SHARD_DB_URL as shard 1. Checks which server each user's work lands on, that
+ * scatter-gather reaches both, and that a move carries a user's conversations across.
+ */
+@SpringBootTest(properties = {
+		"orientlink.datasource.conversation-shards.enabled=true",
+		"orientlink.datasource.conversation-shards.shards[0].url=${SHARD_DB_URL}",
+		"orientlink.datasource.conversation-shards.assignment-cache-ttl=100ms"
+})
+@EnabledIfEnvironmentVariable(named = "SHARD_DB_URL", matches = ".+")
+class ConversationShardingIntegrationTests {
+
+	@Autowired
+	private ConversationShards shards;
+
+	@Autowired
+	private ConversationResharder resharder;
+
+	@Autowired
+	private ConversationHistoryRepository conversationRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void writesOfUsersOnDifferentShardsGoToDifferentServers() {
+		String first = userOnShard(0);
+		String second = userOnShard(1);
+
+		String firstPort = shards.writeForUser(first, this::serverPort);
+		String secondPort = shards.writeForUser(second, this::serverPort);
+
+		assertThat(firstPort).isNotEqualTo(secondPort);
+		assertThat(shards.onUserShard(first, this::serverPort)).isEqualTo(firstPort);
+		assertThat(shards.onUserShard(second, this::serverPort)).isEqualTo(secondPort);
+	}
+
+	@Test
+	void scatterGatherReachesEveryShardInOrder() {
+		List<String> ports = shards.onEveryShard(this::serverPort);
+
+		assertThat(shards.count()).isEqualTo(2);
+		assertThat(ports).hasSize(2).doesNotHaveDuplicates();
+		assertThat(ports.get(1)).isEqualTo(shards.onShard(1, this::serverPort));
+	}
+
+	@Test
+	void movedConversationsAreReadFromTheTargetShard() {
+		String userId = userOnShard(0);
+		for (int i = 0; i < 3; i++) {
+			shards.writeForUser(userId, () -> conversationRepository.save(conversation(userId)));
+		}
+		List<Long> ids = shards.onUserShard(userId, () -> conversationRepository
+				.findByUserIdOrderByTimestampDesc(userId).stream().map(ConversationHistory::getId).toList());
+
+		ConversationResharder.MoveResult result = resharder.move(userId, 1);
+
+		assertThat(result.copied()).isEqualTo(3);
+		assertThat(result.deleted()).isEqualTo(3);
+		assertThat(shards.shardOf(userId)).isEqualTo(1);
+		assertThat(shards.onUserShard(userId, () -> conversationRepository
+				.findByUserIdOrderByTimestampDesc(userId).stream().map(ConversationHistory::getId).toList()))
+				.containsExactlyElementsOf(ids);
+		assertThat(shards.onShard(0, () -> conversationRepository.findByUserIdOrderByTimestampDesc(userId)))
+				.isEmpty();
+
+		// New rows on the target get IDs of its own, above the copied ones
+		ConversationHistory added = shards.writeForUser(userId,
+				() -> conversationRepository.save(conversation(userId)));
+		assertThat(added.getId()).isGreaterThan(ids.get(0));
+		assertThat(Math.floorMod(added.getId(), ConversationShardInitializer.MAX_SHARDS)).isEqualTo(1);
+	}
+
+	private String serverPort() {
+		return jdbcTemplate.queryForObject("SELECT current_setting('port')", String.class);
+	}
+
+	/**
+	 * A new user ID that hash placement puts on the given shard.
+	 */
+	private String userOnShard(int shard) {
+		while (true) {
+			String userId = "shard-test-" + UUID.randomUUID();
+			if (shards.shardOf(userId) == shard) {
+				return userId;
+			}
+		}
+	}
+
+	private static ConversationHistory conversation(String userId) {
+		return ConversationHistory.builder()
+				.userId(userId)
+				.originalMessage("最低起订量是多少?")
+				.translatedMessage("¿Cuál es el pedido mínimo?")
+				.sourceLanguage("zh")
+				.targetLanguage("es")
+				.riskLevel("low")
+				.sentiment("neutral")
+				.alerts(List.of())
+				.messageType("provider_to_user")
+				.build();
+	}
+}
@@ -0,0 +1,82 @@
+package com.salvacode.orientlink.config;
+
+import com.salvacode.orientlink.context.RequestContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against two local Postgres instances on different ports: the regular DB_* one as
+ * primary and REPLICA_DB_URL as replica. Replication is not required; the test only
+ * checks which server each kind of transaction lands on.
+ */
+@SpringBootTest(properties = {
+		"orientlink.datasource.read-replicas.enabled=true",
+		"orientlink.datasource.read-replicas.replicas[0].url=${REPLICA_DB_URL}",
+		"orientlink.datasource.read-replicas.lag-check-interval=100ms",
+		"orientlink.datasource.read-replicas.stickiness=30s"
+})
+@EnabledIfEnvironmentVariable(named = "REPLICA_DB_URL", matches = ".+")
+class ReadReplicaRoutingIntegrationTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void clearContext() {
+		RequestContext.clear();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToReplicaAndWritesToPrimary() throws InterruptedException {
+		String primaryPort = serverPort(false);
+		String readPort = awaitReplicaRead(primaryPort);
+
+		assertThat(readPort).isNotEqualTo(primaryPort);
+		assertThat(serverPort(false)).isEqualTo(primaryPort);
+	}
+
+	@Test
+	void readsStayOnPrimaryAfterTheUsersOwnWrite() throws InterruptedException {
+		String primaryPort = serverPort(false);
+		awaitReplicaRead(primaryPort);
+
+		RequestContext.setUserId("sticky-user");
+		serverPort(false); // committed write transaction for this user
+
+		assertThat(serverPort(true)).isEqualTo(primaryPort);
+
+		RequestContext.setUserId("other-user");
+		assertThat(serverPort(true)).isNotEqualTo(primaryPort);
+	}
+
+	private String serverPort(boolean readOnly) {
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setReadOnly(readOnly);
+		return template.execute(status ->
+				jdbcTemplate.queryForObject("SELECT current_setting('port')", String.class));
+	}
+
+	/**
+	 * The replica only becomes eligible after its first lag check.
+	 */
+	private String awaitReplicaRead(String primaryPort) throws InterruptedException {
+		String port = serverPort(true);
+		for (int i = 0; i < 50 && port.equals(primaryPort); i++) {
+			Thread.sleep(100);
+			port = serverPort(true);
+		}
+		return port;
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.dto.AnalysisJobDTO;
+import com.salvacode.orientlink.dto.AnalyzeRequestDTO;
+import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Runs against the local Postgres configured by the DB_* variables. The analysis itself is
+ * stubbed; the test covers the job queue (claim, retry with backoff) and the event stream.
+ */
+@SpringBootTest(properties = {
+		"orientlink.jobs.poll-interval=PT0.1S",
+		"orientlink.jobs.retry-backoff=100ms",
+		"orientlink.jobs.sse-push-interval=PT0.1S"
+})
+@AutoConfigureMockMvc
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+class AnalysisJobIntegrationTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AnalysisJobService jobService;
+
+	@MockBean
+	private AnalysisService analysisService;
+
+	@Test
+	void failedAttemptIsRetriedAndTheResultStored() throws InterruptedException {
+		when(analysisService.analyzeMessage(any()))
+				.thenThrow(new IllegalStateException("LLM unavailable"))
+				.thenReturn(response("hola"));
+
+		AnalysisJobDTO job = jobService.submit(request("job-retry-user"));
+		AnalysisJobDTO finished = awaitTerminal(job.getJobId());
+
+		assertThat(finished.getStatus()).isEqualTo("SUCCEEDED");
+		assertThat(finished.getAttempts()).isEqualTo(2);
+		assertThat(finished.getResult().getTranslatedMessage()).isEqualTo("hola");
+		assertThat(finished.getError()).isNull();
+	}
+
+	@Test
+	void everySubscriberReceivesTheFinalStatus() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(analysisService.analyzeMessage(any())).thenAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return response("hola");
+		});
+
+		AnalysisJobDTO job = jobService.submit(request("job-sse-user"));
+		MvcResult first = mockMvc.perform(get("/api/v1/analyze/jobs/{id}/events", job.getJobId()))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult second = mockMvc.perform(get("/api/v1/analyze/jobs/{id}/events", job.getJobId()))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		assertThat(jobService.subscriberCount(job.getJobId())).isEqualTo(2);
+
+		release.countDown();
+		awaitTerminal(job.getJobId());
+
+		for (MvcResult result : List.of(first, second)) {
+			assertThat(awaitEvent(result, "\"status\":\"SUCCEEDED\"")).contains("event:status");
+		}
+	}
+
+	private AnalysisJobDTO awaitTerminal(UUID jobId) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			AnalysisJobDTO job = jobService.getJob(jobId).orElseThrow();
+			if (job.getStatus().equals("SUCCEEDED") || job.getStatus().equals("FAILED")) {
+				return job;
+			}
+			Thread.sleep(100);
+		}
+		throw new AssertionError("Job " + jobId + " did not finish");
+	}
+
+	private static String awaitEvent(MvcResult result, String expected) throws Exception {
+		String content = result.getResponse().getContentAsString();
+		for (int i = 0; i < 50 && !content.contains(expected); i++) {
+			Thread.sleep(100);
+			content = result.getResponse().getContentAsString();
+		}
+		assertThat(content).contains(expected);
+		return content;
+	}
+
+	private static AnalyzeRequestDTO request(String userId) {
+		return AnalyzeRequestDTO.builder()
+				.messageText("最低起订量是多少?")
+				.userId(userId)
+				.build();
+	}
+
+	private static AnalyzeResponseDTO response(String translation) {
+		return AnalyzeResponseDTO.builder()
+				.originalMessage("最低起订量是多少?")
+				.translatedMessage(translation)
+				.timestamp(LocalDateTime.now())
+				.build();
+	}
+
+}
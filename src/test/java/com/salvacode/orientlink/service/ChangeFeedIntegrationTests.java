@@ -0,0 +1,114 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.dto.ChangeFeedDTO;
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the local Postgres configured by the DB_* variables, where the triggers record
+ * the writing transaction of each change. Tombstones are kept for no time at all, so a purge
+ * covers everything deleted before it.
+ */
+@SpringBootTest(properties = {
+		"orientlink.changes.tombstone-retention=0s",
+		"orientlink.changes.cleanup-interval=PT24H"
+})
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+class ChangeFeedIntegrationTests {
+
+	@Autowired
+	private ChangeFeedService changeFeedService;
+
+	@Autowired
+	private ConversationHistoryRepository conversationRepository;
+
+	@Test
+	void pageNeverEndsInsideATransaction() {
+		String userId = newUser();
+		ConversationHistory single = conversationRepository.save(conversation(userId));
+		// saveAll writes all three in one transaction
+		List<Long> batch = conversationRepository.saveAll(List.of(conversation(userId), conversation(userId),
+				conversation(userId))).stream().map(ConversationHistory::getId).toList();
+
+		ChangeFeedDTO first = changeFeedService.getChanges(userId, "0", 2);
+		assertThat(first.getConversations()).extracting(ConversationHistory::getId).containsExactly(single.getId());
+		assertThat(first.isHasMore()).isTrue();
+
+		// Larger than a page, so returned whole
+		ChangeFeedDTO second = changeFeedService.getChanges(userId, first.getNextToken(), 2);
+		assertThat(second.getConversations()).extracting(ConversationHistory::getId)
+				.containsExactlyElementsOf(batch);
+
+		ChangeFeedDTO third = changeFeedService.getChanges(userId, second.getNextToken(), 2);
+		assertThat(third.getConversations()).isEmpty();
+		assertThat(third.isHasMore()).isFalse();
+		assertThat(third.getNextToken()).isEqualTo(second.getNextToken());
+	}
+
+	@Test
+	void deleteIsReportedAsATombstone() {
+		String userId = newUser();
+		ConversationHistory kept = conversationRepository.save(conversation(userId));
+		ConversationHistory removed = conversationRepository.save(conversation(userId));
+		String token = changeFeedService.getChanges(userId, "0", 100).getNextToken();
+
+		conversationRepository.deleteById(removed.getId());
+		ChangeFeedDTO changes = changeFeedService.getChanges(userId, token, 100);
+
+		assertThat(changes.isResyncRequired()).isFalse();
+		assertThat(changes.getConversations()).isEmpty();
+		assertThat(changes.getDeleted()).singleElement().satisfies(deletion -> {
+			assertThat(deletion.getType()).isEqualTo("conversation");
+			assertThat(deletion.getId()).isEqualTo(removed.getId());
+		});
+		assertThat(changeFeedService.getChanges(userId, "0", 100).getConversations())
+				.extracting(ConversationHistory::getId).containsExactly(kept.getId());
+	}
+
+	@Test
+	void tokenOlderThanPurgedTombstonesAsksForAResync() throws InterruptedException {
+		String userId = newUser();
+		ConversationHistory removed = conversationRepository.save(conversation(userId));
+		String token = changeFeedService.getChanges(userId, "0", 100).getNextToken();
+		conversationRepository.deleteById(removed.getId());
+
+		Thread.sleep(50); // The tombstone must be strictly older than the purge cutoff
+		changeFeedService.purgeTombstones();
+		ChangeFeedDTO changes = changeFeedService.getChanges(userId, token, 100);
+
+		assertThat(changes.isResyncRequired()).isTrue();
+		assertThat(changes.getNextToken()).isEqualTo("0");
+		assertThat(changes.getDeleted()).isEmpty();
+
+		ChangeFeedDTO fromScratch = changeFeedService.getChanges(userId, "0", 100);
+		assertThat(fromScratch.isResyncRequired()).isFalse();
+		assertThat(fromScratch.getConversations()).isEmpty();
+	}
+
+	private static String newUser() {
+		return "feed-test-" + UUID.randomUUID();
+	}
+
+	private static ConversationHistory conversation(String userId) {
+		return ConversationHistory.builder()
+				.userId(userId)
+				.originalMessage("最低起订量是多少?")
+				.translatedMessage("¿Cuál es el pedido mínimo?")
+				.sourceLanguage("zh")
+				.targetLanguage("es")
+				.riskLevel("low")
+				.sentiment("neutral")
+				.alerts(List.of())
+				.messageType("provider_to_user")
+				.build();
+	}
+}
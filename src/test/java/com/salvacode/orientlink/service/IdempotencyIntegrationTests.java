@@ -0,0 +1,92 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.exception.IdempotencyKeyException;
+import com.salvacode.orientlink.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs against the local Postgres configured by the DB_* variables; covers replays, a key
+ * reused with another body, and taking over a key whose owner's lease ran out.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+class IdempotencyIntegrationTests {
+
+	@Autowired
+	private IdempotencyService idempotencyService;
+
+	@Autowired
+	private IdempotencyRecordRepository recordRepository;
+
+	@Test
+	void retryReplaysTheStoredResponseWithoutRunningAgain() {
+		String key = UUID.randomUUID().toString();
+		AtomicInteger runs = new AtomicInteger();
+
+		IdempotencyService.Outcome<String> first = idempotencyService.execute("test", "replay-user", key,
+				Map.of("message", "hola"), String.class, () -> "response " + runs.incrementAndGet());
+		IdempotencyService.Outcome<String> retry = idempotencyService.execute("test", "replay-user", key,
+				Map.of("message", "hola"), String.class, () -> "response " + runs.incrementAndGet());
+
+		assertThat(first.replayed()).isFalse();
+		assertThat(retry.replayed()).isTrue();
+		assertThat(retry.value()).isEqualTo("response 1");
+		assertThat(runs).hasValue(1);
+	}
+
+	@Test
+	void keyReusedWithAnotherBodyIsAConflict() {
+		String key = UUID.randomUUID().toString();
+		idempotencyService.execute("test", "conflict-user", key, Map.of("message", "hola"), String.class,
+				() -> "first");
+
+		assertThatThrownBy(() -> idempotencyService.execute("test", "conflict-user", key,
+				Map.of("message", "adiós"), String.class, () -> "second"))
+				.isInstanceOf(IdempotencyKeyException.class)
+				.extracting(e -> ((IdempotencyKeyException) e).getStatus())
+				.isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	@Test
+	void keyOfAnOwnerWhoseLeaseRanOutIsTakenOver() {
+		String key = UUID.randomUUID().toString();
+		LocalDateTime now = LocalDateTime.now();
+		// An owner that died mid-request: still in progress, lease expired a minute ago
+		recordRepository.tryInsert(IdempotencyService.recordKey("test", "takeover-user", key), "stale-hash",
+				now.minusMinutes(1), now.minusMinutes(5), now.plusHours(1));
+
+		IdempotencyService.Outcome<String> outcome = idempotencyService.execute("test", "takeover-user", key,
+				Map.of("message", "hola"), String.class, () -> "taken over");
+
+		assertThat(outcome.replayed()).isFalse();
+		assertThat(outcome.value()).isEqualTo("taken over");
+		assertThat(idempotencyService.execute("test", "takeover-user", key, Map.of("message", "hola"),
+				String.class, () -> "again").value()).isEqualTo("taken over");
+	}
+
+	@Test
+	void longUserIdsAndKeysFitTheRecord() {
+		String userId = "u".repeat(1000);
+		String key = "k".repeat(200);
+
+		IdempotencyService.Outcome<String> outcome = idempotencyService.execute("test", userId, key,
+				Map.of("message", "hola"), String.class, () -> "stored");
+
+		assertThat(outcome.value()).isEqualTo("stored");
+		assertThat(IdempotencyService.recordKey("test", userId, key)).hasSize(64);
+		assertThat(IdempotencyService.recordKey("a:b", "c", key))
+				.isNotEqualTo(IdempotencyService.recordKey("a", "b:c", key));
+	}
+}
@@ -0,0 +1,177 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.context.RequestPriority;
+import com.salvacode.orientlink.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenAiSchedulerTest {
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void deficitRoundRobinInterleavesUsersInsteadOfServingFifo() throws InterruptedException {
+		// One slot; interactive quantum is 2000 x 8 = 16000 credits per round
+		OpenAiScheduler scheduler = scheduler(1, 1_000_000, 1000, 100);
+		List<String> order = new ArrayList<>();
+		CountDownLatch blocker = occupySlot(scheduler);
+
+		List<Thread> waiting = new ArrayList<>();
+		waiting.add(enqueue(scheduler, "heavy", RequestPriority.INTERACTIVE, 10_000, "heavy-1", order));
+		waiting.add(enqueue(scheduler, "heavy", RequestPriority.INTERACTIVE, 10_000, "heavy-2", order));
+		waiting.add(enqueue(scheduler, "heavy", RequestPriority.INTERACTIVE, 10_000, "heavy-3", order));
+		waiting.add(enqueue(scheduler, "light", RequestPriority.INTERACTIVE, 10_000, "light-1", order));
+		blocker.countDown();
+		join(waiting);
+
+		assertThat(order).containsExactly("heavy-1", "light-1", "heavy-2", "heavy-3");
+	}
+
+	@Test
+	void classWeightsSetEachFlowsShareOfARound() throws InterruptedException {
+		// Interactive earns 8 calls of 2000 per round, background 1
+		OpenAiScheduler scheduler = scheduler(1, 1_000_000, 1000, 100);
+		List<String> order = new ArrayList<>();
+		CountDownLatch blocker = occupySlot(scheduler);
+
+		List<Thread> waiting = new ArrayList<>();
+		for (int i = 1; i <= 9; i++) {
+			waiting.add(enqueue(scheduler, "user", RequestPriority.INTERACTIVE, 2000, "i" + i, order));
+		}
+		waiting.add(enqueue(scheduler, "user", RequestPriority.BACKGROUND, 2000, "b1", order));
+		waiting.add(enqueue(scheduler, "user", RequestPriority.BACKGROUND, 2000, "b2", order));
+		blocker.countDown();
+		join(waiting);
+
+		assertThat(order).containsExactly("i1", "i2", "i3", "i4", "i5", "i6", "i7", "i8", "b1", "i9", "b2");
+	}
+
+	@Test
+	void tokenBucketRejectsInteractiveCallsPastTheBurst() {
+		OpenAiScheduler scheduler = scheduler(4, 0.6, 2, 100); // One token per 100 s
+
+		assertThat(call(scheduler, "user", RequestPriority.INTERACTIVE)).isEqualTo("ok");
+		assertThat(call(scheduler, "user", RequestPriority.INTERACTIVE)).isEqualTo("ok");
+		assertThatThrownBy(() -> call(scheduler, "user", RequestPriority.INTERACTIVE))
+				.isInstanceOfSatisfying(RateLimitExceededException.class,
+						e -> assertThat(e.getRetryAfterSeconds()).isBetween(99L, 100L));
+		assertThat(call(scheduler, "other-user", RequestPriority.INTERACTIVE)).isEqualTo("ok");
+	}
+
+	@Test
+	void jobAndBackgroundCallsNeitherRejectedNorCharged() {
+		OpenAiScheduler scheduler = scheduler(4, 0.6, 1, 100);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(call(scheduler, "user", RequestPriority.JOB)).isEqualTo("ok");
+			assertThat(call(scheduler, "user", RequestPriority.BACKGROUND)).isEqualTo("ok");
+		}
+		assertThat(call(scheduler, "user", RequestPriority.INTERACTIVE)).isEqualTo("ok");
+		assertThatThrownBy(() -> call(scheduler, "user", RequestPriority.INTERACTIVE))
+				.isInstanceOf(RateLimitExceededException.class);
+	}
+
+	@Test
+	void admitChargesTheUsersBucketOnce() {
+		OpenAiScheduler scheduler = scheduler(4, 0.6, 2, 100);
+
+		scheduler.admit("user");
+		assertThat(call(scheduler, "user", RequestPriority.INTERACTIVE)).isEqualTo("ok");
+		assertThatThrownBy(() -> scheduler.admit("user")).isInstanceOf(RateLimitExceededException.class);
+	}
+
+	@Test
+	void interactiveQueueIsCappedPerUser() throws InterruptedException {
+		OpenAiScheduler scheduler = scheduler(1, 1_000_000, 1000, 2);
+		List<String> order = new ArrayList<>();
+		CountDownLatch blocker = occupySlot(scheduler);
+
+		List<Thread> waiting = new ArrayList<>();
+		waiting.add(enqueue(scheduler, "user", RequestPriority.INTERACTIVE, 100, "q1", order));
+		waiting.add(enqueue(scheduler, "user", RequestPriority.INTERACTIVE, 100, "q2", order));
+		assertThatThrownBy(() -> call(scheduler, "user", RequestPriority.INTERACTIVE))
+				.isInstanceOf(RateLimitExceededException.class);
+		waiting.add(enqueue(scheduler, "user", RequestPriority.JOB, 100, "job", order));
+		blocker.countDown();
+		join(waiting);
+
+		assertThat(order).containsExactlyInAnyOrder("q1", "q2", "job");
+	}
+
+	private OpenAiScheduler scheduler(int maxConcurrent, double ratePerMinute, double burst, int maxQueuedPerUser) {
+		return new OpenAiScheduler(meterRegistry, maxConcurrent, 2000, 8, 3, 1, ratePerMinute, burst, maxQueuedPerUser);
+	}
+
+	private static String call(OpenAiScheduler scheduler, String userId, RequestPriority priority) {
+		return scheduler.execute(userId, priority, 100, () -> "ok");
+	}
+
+	/**
+	 * Take the only slot with a background call until the returned latch is released.
+	 */
+	private CountDownLatch occupySlot(OpenAiScheduler scheduler) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch blocker = new CountDownLatch(1);
+		Thread holder = new Thread(() -> scheduler.execute("holder", RequestPriority.BACKGROUND, 1, () -> {
+			started.countDown();
+			await(blocker);
+			return null;
+		}));
+		holder.start();
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		return blocker;
+	}
+
+	/**
+	 * Queue a call on a new thread and wait until it is queued, so queue order is deterministic.
+	 */
+	private Thread enqueue(OpenAiScheduler scheduler, String userId, RequestPriority priority, long cost,
+						   String name, List<String> order) throws InterruptedException {
+		double before = queueDepth(priority);
+		Thread thread = new Thread(() -> scheduler.execute(userId, priority, cost, () -> {
+			synchronized (order) {
+				order.add(name);
+			}
+			return null;
+		}));
+		thread.start();
+		for (int i = 0; i < 500 && queueDepth(priority) == before; i++) {
+			Thread.sleep(1);
+		}
+		assertThat(queueDepth(priority)).isEqualTo(before + 1);
+		return thread;
+	}
+
+	private double queueDepth(RequestPriority priority) {
+		return meterRegistry.get("orientlink.openai.queue.depth")
+				.tag("class", priority.name().toLowerCase(Locale.ROOT))
+				.gauge()
+				.value();
+	}
+
+	private static void join(List<Thread> threads) throws InterruptedException {
+		for (Thread thread : threads) {
+			thread.join(5000);
+			assertThat(thread.isAlive()).isFalse();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
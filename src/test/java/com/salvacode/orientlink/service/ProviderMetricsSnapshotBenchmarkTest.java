@@ -0,0 +1,77 @@
+package com.salvacode.orientlink.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * topK latency on a synthetic 500k-provider snapshot: 200 users, 5000 products, a handful of
+ * certification sets. Not part of the regular run: enable with -Dbenchmark=true (e.g.
+ * mvn test -Dgroups=benchmark -Dbenchmark=true). Reports the load time, then median and p99
+ * per filter shape after a warmup, in milliseconds.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProviderMetricsSnapshotBenchmarkTest {
+
+	private static final int PROVIDERS = 500_000;
+	private static final int USERS = 200;
+	private static final int PRODUCTS = 5_000;
+	private static final List<List<String>> CERTIFICATIONS = List.of(List.of(), List.of("CE"),
+			List.of("ISO 9001"), List.of("CE", "ISO 9001"), List.of("CE", "RoHS", "ISO 9001"));
+	private static final String[] RISKS = {"low", "medium", "high", null};
+
+	private static final int WARMUP_RUNS = 20;
+	private static final int RUNS = 100;
+
+	private static final ProviderMetricsSnapshot.Weights WEIGHTS =
+			new ProviderMetricsSnapshot.Weights(3, 1, 1, 0.5, 2);
+
+	@Test
+	void topKOnHalfAMillionProviders() {
+		Random random = new Random(42);
+		ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+		long loadStart = System.nanoTime();
+		for (long id = 1; id <= PROVIDERS; id++) {
+			snapshot.upsert(id, "user-" + random.nextInt(USERS), "Provider " + id,
+					"Product " + random.nextInt(PRODUCTS),
+					random.nextInt(10) == 0 ? Double.NaN : 0.5 + random.nextDouble() * 100,
+					random.nextInt(10) == 0 ? null : 1 + random.nextInt(10_000),
+					random.nextInt(10) == 0 ? null : 3 + random.nextInt(60),
+					CERTIFICATIONS.get(random.nextInt(CERTIFICATIONS.size())),
+					RISKS[random.nextInt(RISKS.length)]);
+		}
+		double loadMillis = (System.nanoTime() - loadStart) / 1e6;
+		assertThat(snapshot.count()).isEqualTo(PROVIDERS);
+
+		System.out.printf("%n%d providers loaded in %.0f ms%n%-24s %10s %10s%n",
+				PROVIDERS, loadMillis, "filter", "p50 ms", "p99 ms");
+		report(snapshot, "none", new ProviderMetricsSnapshot.Filter(null, null, null, null, null, null, null));
+		report(snapshot, "user", new ProviderMetricsSnapshot.Filter("user-7", null, null, null, null, null, null));
+		report(snapshot, "price + moq + risk", new ProviderMetricsSnapshot.Filter(null, null, 40.0, 5_000, null,
+				ProviderMetricsSnapshot.RISK_MEDIUM, null));
+		report(snapshot, "product + certification", new ProviderMetricsSnapshot.Filter(null, "product 42",
+				null, null, null, null, "ISO 9001"));
+	}
+
+	private static void report(ProviderMetricsSnapshot snapshot, String name, ProviderMetricsSnapshot.Filter filter) {
+		for (int run = 0; run < WARMUP_RUNS; run++) {
+			assertThat(snapshot.topK(filter, WEIGHTS, 20)).isNotEmpty();
+		}
+		double[] millis = new double[RUNS];
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			List<ProviderMetricsSnapshot.Ranked> ranked = snapshot.topK(filter, WEIGHTS, 20);
+			millis[run] = (System.nanoTime() - start) / 1e6;
+			assertThat(ranked).isNotEmpty();
+		}
+		Arrays.sort(millis);
+		System.out.printf("%-24s %10.2f %10.2f%n", name, millis[RUNS / 2], millis[RUNS * 99 / 100]);
+	}
+}
@@ -0,0 +1,113 @@
+package com.salvacode.orientlink.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ProviderMetricsSnapshotTest {
+
+	private static final ProviderMetricsSnapshot.Filter NO_FILTER =
+			new ProviderMetricsSnapshot.Filter(null, null, null, null, null, null, null);
+
+	@Test
+	void scoresAreMinMaxNormalizedAndWeighted() {
+		ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+		snapshot.upsert(1L, "u1", "Cheap", "LED lamp", 10.0, 100, 10, List.of(), "high");
+		snapshot.upsert(2L, "u1", "Dear", "LED lamp", 30.0, 100, 10, List.of(), "low");
+		snapshot.upsert(3L, "u1", "Middle", "LED lamp", 20.0, 100, 10, List.of(), "medium");
+
+		List<ProviderMetricsSnapshot.Ranked> ranked = snapshot.topK(NO_FILTER,
+				new ProviderMetricsSnapshot.Weights(3, 0, 0, 0, 1), 10);
+
+		assertThat(ranked).extracting(ProviderMetricsSnapshot.Ranked::providerId).containsExactly(1L, 3L, 2L);
+		assertThat(ranked.get(0).score()).isCloseTo(0.75, within(1e-9));
+		assertThat(ranked.get(1).score()).isCloseTo(0.5, within(1e-9));
+		assertThat(ranked.get(2).score()).isCloseTo(0.25, within(1e-9));
+	}
+
+	@Test
+	void missingMetricsScoreZeroAndMoreCertificationsRankHigher() {
+		ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+		snapshot.upsert(1L, "u1", "None", "Cable", Double.NaN, null, null, List.of(), null);
+		snapshot.upsert(2L, "u1", "Two", "Cable", Double.NaN, null, null, List.of("CE", "ISO 9001"), null);
+		snapshot.upsert(3L, "u1", "One", "Cable", Double.NaN, null, null, List.of("CE"), null);
+
+		List<ProviderMetricsSnapshot.Ranked> ranked = snapshot.topK(NO_FILTER,
+				new ProviderMetricsSnapshot.Weights(1, 1, 1, 1, 1), 10);
+
+		assertThat(ranked).extracting(ProviderMetricsSnapshot.Ranked::providerId).containsExactly(2L, 3L, 1L);
+		assertThat(ranked.get(0).score()).isCloseTo(0.2, within(1e-9));
+		assertThat(ranked.get(2).score()).isZero();
+		assertThat(ranked.get(2).moq()).isEqualTo(-1);
+		assertThat(ranked.get(2).risk()).isEqualTo(ProviderMetricsSnapshot.RISK_UNKNOWN);
+	}
+
+	@Test
+	void filtersApplyBeforeNormalization() {
+		ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+		snapshot.upsert(1L, "u1", "A", "Steel Bolts", 5.0, 500, 20, List.of("ISO 9001"), "low");
+		snapshot.upsert(2L, "u1", "B", "steel bolts M8", 8.0, 5000, 30, List.of("ISO 9001", "CE"), "medium");
+		snapshot.upsert(3L, "u1", "C", "Steel bolts", 50.0, 100, 5, List.of("ISO 9001"), "low");
+		snapshot.upsert(4L, "u2", "D", "Steel bolts", 1.0, 100, 5, List.of("ISO 9001"), "low");
+		snapshot.upsert(5L, "u1", "E", "Copper wire", 2.0, 100, 5, List.of("ISO 9001"), "low");
+		snapshot.upsert(6L, "u1", "F", "Steel bolts", 6.0, 100, 5, List.of("CE"), "high");
+
+		ProviderMetricsSnapshot.Filter filter = new ProviderMetricsSnapshot.Filter(
+				"u1", "STEEL BOLTS", 10.0, 5000, 30, ProviderMetricsSnapshot.RISK_MEDIUM, "iso 9001");
+		List<ProviderMetricsSnapshot.Ranked> ranked = snapshot.topK(filter,
+				new ProviderMetricsSnapshot.Weights(1, 0, 0, 0, 0), 10);
+
+		// Only A and B pass, so the cheaper one gets the full price score even though D is cheaper
+		assertThat(ranked).extracting(ProviderMetricsSnapshot.Ranked::providerId).containsExactly(1L, 2L);
+		assertThat(ranked.get(0).score()).isCloseTo(1.0, within(1e-9));
+		assertThat(ranked.get(1).score()).isZero();
+		assertThat(snapshot.topK(new ProviderMetricsSnapshot.Filter("nobody", null, null, null, null, null, null),
+				new ProviderMetricsSnapshot.Weights(1, 0, 0, 0, 0), 10)).isEmpty();
+	}
+
+	@Test
+	void topKKeepsOnlyTheBestInOrder() {
+		ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+		for (long id = 1; id <= 2000; id++) {
+			snapshot.upsert(id, "u1", "P" + id, "Widget", id, null, null, List.of(), null);
+		}
+
+		List<ProviderMetricsSnapshot.Ranked> ranked = snapshot.topK(NO_FILTER,
+				new ProviderMetricsSnapshot.Weights(1, 0, 0, 0, 0), 3);
+
+		assertThat(ranked).extracting(ProviderMetricsSnapshot.Ranked::providerId).containsExactly(1L, 2L, 3L);
+		assertThat(ranked).extracting(ProviderMetricsSnapshot.Ranked::score).isSortedAccordingTo((a, b) -> Double.compare(b, a));
+	}
+
+	@Test
+	void upsertReplacesAndRemovedSlotsAreReused() {
+		ProviderMetricsSnapshot snapshot = new ProviderMetricsSnapshot();
+		snapshot.upsert(1L, "u1", "Old name", "Widget", 10.0, null, null, List.of(), null);
+		snapshot.upsert(1L, "u1", "New name", "Widget", 12.0, null, null, List.of(), null);
+		snapshot.upsert(2L, "u1", "Other", "Widget", 20.0, null, null, List.of(), null);
+		assertThat(snapshot.count()).isEqualTo(2);
+
+		snapshot.remove(2L);
+		snapshot.remove(2L);
+		snapshot.upsert(3L, "u1", "Third", "Widget", 30.0, null, null, List.of(), null);
+
+		List<ProviderMetricsSnapshot.Ranked> ranked = snapshot.topK(NO_FILTER,
+				new ProviderMetricsSnapshot.Weights(1, 0, 0, 0, 0), 10);
+		assertThat(snapshot.count()).isEqualTo(2);
+		assertThat(ranked).extracting(ProviderMetricsSnapshot.Ranked::providerId).containsExactly(1L, 3L);
+		assertThat(ranked.get(0).providerName()).isEqualTo("New name");
+		assertThat(ranked.get(0).priceUsd()).isEqualTo(12.0);
+	}
+
+	@Test
+	void riskCodesRoundTrip() {
+		assertThat(ProviderMetricsSnapshot.riskCode(" High ")).isEqualTo(ProviderMetricsSnapshot.RISK_HIGH);
+		assertThat(ProviderMetricsSnapshot.riskCode("severe")).isEqualTo(ProviderMetricsSnapshot.RISK_UNKNOWN);
+		assertThat(ProviderMetricsSnapshot.riskName(ProviderMetricsSnapshot.riskCode("medium"))).isEqualTo("medium");
+		assertThat(ProviderMetricsSnapshot.riskName(ProviderMetricsSnapshot.RISK_UNKNOWN)).isEqualTo("unknown");
+	}
+
+}
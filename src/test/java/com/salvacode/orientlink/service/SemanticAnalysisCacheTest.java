@@ -0,0 +1,153 @@
+package com.salvacode.orientlink.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs on the offline hashing embeddings, so similarities come from shared n-grams.
+ */
+class SemanticAnalysisCacheTest {
+
+	private static final String MESSAGE = "您好，我们的最小起订量是500件，单价12.5美元，可以定制logo。谢谢";
+
+	private final AtomicInteger analyses = new AtomicInteger();
+	private final List<String> adapted = new ArrayList<>();
+	private final Path indexPath;
+	private final SemanticAnalysisCache cache;
+
+	SemanticAnalysisCacheTest() throws IOException {
+		indexPath = Files.createTempDirectory("semantic-cache").resolve("cache.bin");
+		cache = cache(indexPath);
+	}
+
+	@Test
+	void exactRepeatIsServedWithoutAnAnalysis() {
+		String first = analyze("user", MESSAGE);
+		String second = analyze("user", "  您好，我们的最小起订量是500件，单价12.5美元，可以定制LOGO。谢谢 ");
+
+		assertThat(second).isEqualTo(first);
+		assertThat(analyses.get()).isEqualTo(1);
+		assertThat(adapted).isEmpty();
+	}
+
+	@Test
+	void greetingAndSignOffVariantReusesTheAnalysisWithAFreshTranslation() {
+		String first = analyze("user", MESSAGE);
+		String second = analyze("user", "亲，我们的最小起订量是500件，单价12.5美元，可以定制logo。期待您的回复");
+
+		assertThat(analyses.get()).isEqualTo(1);
+		assertThat(adapted).containsExactly(first);
+		assertThat(second).isEqualTo("adapted:" + first);
+	}
+
+	@Test
+	void slightlyRewordedMessageReusesTheAnalysis() {
+		analyze("user", "Hello, our MOQ is 500 pieces and the unit price is 12.5 USD, custom logo is possible.");
+		analyze("user", "Hi, our MOQ is 500 pieces and the unit price is 12.5 USD, a custom logo is possible!");
+
+		assertThat(analyses.get()).isEqualTo(1);
+		assertThat(adapted).hasSize(1);
+	}
+
+	@Test
+	void changedNumberIsAnalyzedAgain() {
+		analyze("user", MESSAGE);
+		analyze("user", "您好，我们的最小起订量是1000件，单价12.5美元，可以定制logo。谢谢");
+		analyze("user", "您好，我们的最小起订量是500件，单价15美元，可以定制logo。谢谢");
+
+		assertThat(analyses.get()).isEqualTo(3);
+		assertThat(adapted).isEmpty();
+	}
+
+	@Test
+	void addedNegationIsAnalyzedAgain() {
+		analyze("user", MESSAGE);
+		analyze("user", "您好，我们的最小起订量是500件，单价12.5美元，不可以定制logo。谢谢");
+		analyze("user", "Hello, custom logo is possible for 500 pieces.");
+		analyze("user", "Hello, custom logo is not possible for 500 pieces.");
+
+		assertThat(analyses.get()).isEqualTo(4);
+		assertThat(adapted).isEmpty();
+	}
+
+	@Test
+	void unrelatedMessageIsAnalyzed() {
+		analyze("user", MESSAGE);
+		analyze("user", "样品7天内发货，运费由买家承担。");
+		analyze("user", "您好，我们的最小起订量是500件，单价12.5美元，可以定制包装。谢谢"); // Below the threshold
+
+		assertThat(analyses.get()).isEqualTo(3);
+		assertThat(adapted).isEmpty();
+	}
+
+	@Test
+	void analysesAreNeverSharedBetweenUsers() {
+		analyze("user", MESSAGE);
+		analyze("other-user", MESSAGE);
+		analyze("other-user", "亲，我们的最小起订量是500件，单价12.5美元，可以定制logo。");
+
+		assertThat(analyses.get()).isEqualTo(2);
+	}
+
+	@Test
+	void failedAdaptationFallsBackToTheFullAnalysis() {
+		analyze("user", MESSAGE);
+		cache.analyze("user", "亲，我们的最小起订量是500件，单价12.5美元，可以定制logo。", "zh", "es", null, null,
+				this::analysis, cached -> null);
+
+		assertThat(analyses.get()).isEqualTo(2);
+	}
+
+	@Test
+	void snapshotSurvivesARestart() {
+		String first = analyze("user", MESSAGE);
+		cache.save();
+
+		SemanticAnalysisCache restarted = cache(indexPath);
+		String second = restarted.analyze("user", MESSAGE, "zh", "es", null, null, this::analysis, cached -> null);
+
+		assertThat(second).isEqualTo(first);
+		assertThat(analyses.get()).isEqualTo(1);
+	}
+
+	private String analyze(String userId, String message) {
+		return cache.analyze(userId, message, "zh", "es", null, null, this::analysis, cached -> {
+			adapted.add(cached);
+			return "adapted:" + cached;
+		});
+	}
+
+	private String analysis() {
+		return "{\"analysis\":" + analyses.incrementAndGet() + "}";
+	}
+
+	private static SemanticAnalysisCache cache(Path indexPath) {
+		EmbeddingBatcher batcher = new EmbeddingBatcher(new HashingEmbeddingProvider(512));
+		ReflectionTestUtils.setField(batcher, "batchSize", 64);
+		ReflectionTestUtils.setField(batcher, "maxDelay", Duration.ofMillis(1));
+		batcher.start();
+
+		SemanticAnalysisCache cache = new SemanticAnalysisCache(batcher, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "similarityThreshold", 0.9);
+		ReflectionTestUtils.setField(cache, "maxEntries", 1000);
+		ReflectionTestUtils.setField(cache, "ttl", Duration.ofDays(30));
+		ReflectionTestUtils.setField(cache, "efSearch", 64);
+		ReflectionTestUtils.setField(cache, "embeddingWait", Duration.ofSeconds(5));
+		ReflectionTestUtils.setField(cache, "indexPath", indexPath);
+		cache.load();
+		return cache;
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.salvacode.orientlink.service;
+
+import com.salvacode.orientlink.dto.UserStatsDTO;
+import com.salvacode.orientlink.entity.ConversationHistory;
+import com.salvacode.orientlink.entity.ProviderProfile;
+import com.salvacode.orientlink.entity.ProviderRiskAssessment;
+import com.salvacode.orientlink.repository.ConversationHistoryRepository;
+import com.salvacode.orientlink.repository.ProviderProfileRepository;
+import com.salvacode.orientlink.repository.UserStatRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the local Postgres configured by the DB_* variables, where triggers keep the
+ * counters. Checks them after inserts, updates and deletes, and against a rebuild.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+class UserStatsIntegrationTests {
+
+	@Autowired
+	private UserStatsService userStatsService;
+
+	@Autowired
+	private UserStatRepository statRepository;
+
+	@Autowired
+	private ConversationHistoryRepository conversationRepository;
+
+	@Autowired
+	private ProviderProfileRepository providerRepository;
+
+	@Test
+	void multiLanguageAnalysisCountsOnce() {
+		String userId = newUser();
+		ProviderProfile provider = providerRepository.save(provider(userId, "high"));
+		saveAnalysisInThreeLanguages(userId, provider.getId());
+		conversationRepository.save(conversation(userId, "low", "neutral"));
+
+		UserStatsDTO stats = userStatsService.getStats(userId, 7);
+
+		assertThat(stats.getConversations()).isEqualTo(2);
+		assertThat(stats.getConversationsByRiskLevel()).isEqualTo(Map.of("high", 1L, "low", 1L));
+		assertThat(stats.getConversationsBySentiment()).isEqualTo(Map.of("urgent", 1L, "neutral", 1L));
+		assertThat(stats.getAlertsByProvider()).isEqualTo(Map.of(provider.getId(), 2L));
+		assertThat(stats.getActivityByDay()).isEqualTo(Map.of(LocalDate.now(), 2L));
+		assertThat(stats.getProviders()).isEqualTo(1);
+		assertThat(stats.getProvidersByOverallRisk()).isEqualTo(Map.of("high", 1L));
+	}
+
+	@Test
+	void countersFollowUpdatesAndDeletes() {
+		String userId = newUser();
+		ConversationHistory changed = conversationRepository.save(conversation(userId, "low", "neutral"));
+		ConversationHistory removed = conversationRepository.save(conversation(userId, "low", "neutral"));
+		ProviderProfile provider = providerRepository.save(provider(userId, "low"));
+
+		changed.setRiskLevel("high");
+		changed.setSentiment("negative");
+		conversationRepository.save(changed);
+		conversationRepository.deleteById(removed.getId());
+		provider.setRiskAssessment(ProviderRiskAssessment.builder().overallRisk("medium").build());
+		providerRepository.save(provider);
+
+		UserStatsDTO stats = userStatsService.getStats(userId, 7);
+
+		assertThat(stats.getConversations()).isEqualTo(1);
+		assertThat(stats.getConversationsByRiskLevel()).isEqualTo(Map.of("high", 1L));
+		assertThat(stats.getConversationsBySentiment()).isEqualTo(Map.of("negative", 1L));
+		assertThat(stats.getActivityByDay()).isEqualTo(Map.of(LocalDate.now(), 1L));
+		assertThat(stats.getProviders()).isEqualTo(1);
+		assertThat(stats.getProvidersByOverallRisk()).isEqualTo(Map.of("medium", 1L));
+
+		providerRepository.deleteById(provider.getId());
+		assertThat(userStatsService.getStats(userId, 7).getProviders()).isZero();
+	}
+
+	@Test
+	void rebuildMatchesTheTriggerMaintainedCounters() {
+		String userId = newUser();
+		ProviderProfile provider = providerRepository.save(provider(userId, "medium"));
+		saveAnalysisInThreeLanguages(userId, provider.getId());
+		ConversationHistory changed = conversationRepository.save(conversation(userId, "low", "positive"));
+		ConversationHistory removed = conversationRepository.save(conversation(userId, "medium", "neutral"));
+		changed.setRiskLevel("medium");
+		changed.setAlerts(List.of("Price below market"));
+		changed.setProviderId(provider.getId());
+		conversationRepository.save(changed);
+		conversationRepository.deleteById(removed.getId());
+		UserStatsDTO maintained = userStatsService.getStats(userId, 7);
+
+		statRepository.rebuild(userId);
+
+		assertThat(userStatsService.getStats(userId, 7)).usingRecursiveComparison().isEqualTo(maintained);
+		assertThat(maintained.getConversations()).isEqualTo(2);
+		assertThat(maintained.getAlertsByProvider()).isEqualTo(Map.of(provider.getId(), 3L));
+	}
+
+	/**
+	 * One analysis stored once per target language; only the first row keeps the raw completion.
+	 */
+	private void saveAnalysisInThreeLanguages(String userId, Long providerId) {
+		String groupId = UUID.randomUUID().toString();
+		List<ConversationHistory> rows = List.of("es", "en", "pt").stream().map(language -> {
+			ConversationHistory row = conversation(userId, "high", "urgent");
+			row.setTargetLanguage(language);
+			row.setAnalysisGroupId(groupId);
+			row.setProviderId(providerId);
+			row.setAlerts(List.of("MOQ above 10,000 units", "Payment 100% upfront"));
+			return row;
+		}).toList();
+		rows.get(0).setRawCompletion("{}");
+		conversationRepository.saveAll(rows);
+	}
+
+	private static String newUser() {
+		return "stats-test-" + UUID.randomUUID();
+	}
+
+	private static ConversationHistory conversation(String userId, String riskLevel, String sentiment) {
+		return ConversationHistory.builder()
+				.userId(userId)
+				.originalMessage("最低起订量是多少?")
+				.translatedMessage("¿Cuál es el pedido mínimo?")
+				.sourceLanguage("zh")
+				.targetLanguage("es")
+				.riskLevel(riskLevel)
+				.sentiment(sentiment)
+				.alerts(List.of())
+				.messageType("provider_to_user")
+				.build();
+	}
+
+	private static ProviderProfile provider(String userId, String overallRisk) {
+		return ProviderProfile.builder()
+				.userId(userId)
+				.providerName("Shenzhen Test Electronics")
+				.productName("LED lamp")
+				.riskAssessment(ProviderRiskAssessment.builder().overallRisk(overallRisk).build())
+				.build();
+	}
+}
@@ -0,0 +1,48 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickTest {
+
+	@Test
+	void findsOverlappingPatternsInOnePass() {
+		assertThat(matches(List.of("stainless", "stainless steel", "steel"), "stainless steel"))
+				.containsExactly("stainless@0", "stainless steel@0", "steel@10");
+		assertThat(matches(List.of("不锈", "锈钢", "不锈钢管"), "不锈钢板"))
+				.containsExactly("不锈@0", "锈钢@1");
+	}
+
+	@Test
+	void latinPatternsMatchCaseInsensitivelyAtWordBoundaries() {
+		assertThat(matches(List.of("FOB", "stainless steel"), "Price fob Ningbo, Stainless Steel 304; FOBS excluded"))
+				.containsExactly("FOB@6", "stainless steel@18");
+	}
+
+	@Test
+	void cjkPatternsMatchInsideRunningText() {
+		assertThat(matches(List.of("不锈钢", "离岸价", "MOQ"), "本产品为不锈钢材质，离岸价含包装，MOQ为500件"))
+				.containsExactly("不锈钢@4", "离岸价@10", "MOQ@17");
+	}
+
+	@Test
+	void scalesToManyPatterns() {
+		List<String> patterns = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			patterns.add("sku-" + i);
+		}
+		assertThat(matches(patterns, "Order sku-19999 and sku-42, not sku-420000"))
+				.containsExactly("sku-19999@6", "sku-42@20");
+	}
+
+	private static List<String> matches(List<String> patterns, String text) {
+		AhoCorasick automaton = new AhoCorasick(patterns);
+		List<String> found = new ArrayList<>();
+		automaton.match(text, (id, start, end) -> found.add(patterns.get(id) + "@" + start));
+		return found;
+	}
+}
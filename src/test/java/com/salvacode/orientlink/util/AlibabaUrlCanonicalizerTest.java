@@ -0,0 +1,37 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlibabaUrlCanonicalizerTest {
+
+	@Test
+	void productUrlVariantsShareOneKey() {
+		String key = "alibaba:product:1600123456789";
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey(
+				"https://www.alibaba.com/product-detail/LED-Lamp-E27_1600123456789.html?spm=a2700.7724857&s=p"))
+				.isEqualTo(key);
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey("https://m.alibaba.com/product/1600123456789/LED-Lamp.html"))
+				.isEqualTo(key);
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey("acme.en.alibaba.com/product/1600123456789-0/LED_Lamp.html"))
+				.isEqualTo(key);
+	}
+
+	@Test
+	void shopPagesMapToSupplier() {
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey("https://acme.en.alibaba.com/company_profile.html?spm=x"))
+				.isEqualTo("alibaba:supplier:acme");
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey("https://acme.m.en.alibaba.com/"))
+				.isEqualTo("alibaba:supplier:acme");
+	}
+
+	@Test
+	void unknownUrlsDropTrackingParametersAndSortTheRest() {
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey("https://www.example.com/Shop/?b=2&utm_source=x&a=1"))
+				.isEqualTo("url:example.com/Shop?a=1&b=2");
+		assertThat(AlibabaUrlCanonicalizer.canonicalKey("https://example.com/Shop"))
+				.isNotEqualTo(AlibabaUrlCanonicalizer.canonicalKey("https://example.com/shop"));
+	}
+
+}
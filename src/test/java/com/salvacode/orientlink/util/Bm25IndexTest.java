@@ -0,0 +1,58 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Bm25IndexTest {
+
+	@Test
+	void ranksRareTermMatchesFirst() {
+		Bm25Index index = index(
+				"Price per unit is 3.5 USD, MOQ 500 pieces",
+				"不锈钢保温杯，MOQ 1000个，交货期30天",
+				"Please confirm the price and the delivery date",
+				"不锈钢材质可以提供SGS认证");
+
+		List<Long> ranked = ids(index.search(NgramTokenizer.terms("不锈钢 SGS认证"), 3, 32, 0, id -> true));
+
+		assertThat(ranked).containsExactly(3L, 1L);
+	}
+
+	@Test
+	void filterAndRemovalExcludeDocuments() {
+		Bm25Index index = index(
+				"MOQ 500 pieces",
+				"MOQ 1000 pieces",
+				"MOQ 2000 pieces");
+		index.remove(0);
+
+		List<Long> ranked = ids(index.search(NgramTokenizer.terms("MOQ pieces"), 10, 32, 0, id -> id != 2));
+
+		assertThat(ranked).containsExactly(1L);
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	@Test
+	void replacesDocumentWithSameId() {
+		Bm25Index index = index("sample fee refundable");
+		index.add(0, NgramTokenizer.terms("free samples"));
+
+		assertThat(index.search(NgramTokenizer.terms("refundable"), 10, 32, 0, id -> true)).isEmpty();
+		assertThat(ids(index.search(NgramTokenizer.terms("free"), 10, 32, 0, id -> true))).containsExactly(0L);
+	}
+
+	private static Bm25Index index(String... documents) {
+		Bm25Index index = new Bm25Index();
+		for (int i = 0; i < documents.length; i++) {
+			index.add(i, NgramTokenizer.terms(documents[i]));
+		}
+		return index;
+	}
+
+	private static List<Long> ids(List<Bm25Index.ScoredDocument> documents) {
+		return documents.stream().map(Bm25Index.ScoredDocument::id).toList();
+	}
+}
@@ -0,0 +1,97 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HnswIndexTest {
+
+	private static final int DIMENSIONS = 32;
+
+	@Test
+	void findsExactMatchFirst() {
+		float[][] vectors = randomVectors(500, 1);
+		HnswIndex index = build(vectors);
+
+		List<HnswIndex.Neighbor> result = index.search(vectors[123], 3, 32);
+
+		assertThat(result.get(0).id()).isEqualTo(123);
+		assertThat(result.get(0).similarity()).isCloseTo(1f, within(1e-5f));
+	}
+
+	@Test
+	void recallAgainstBruteForce() {
+		float[][] vectors = randomVectors(3000, 2);
+		HnswIndex index = build(vectors);
+		float[][] queries = randomVectors(100, 3);
+
+		int hits = 0;
+		for (float[] query : queries) {
+			List<Long> exact = IntStream.range(0, vectors.length).boxed()
+					.sorted(Comparator.comparingDouble(i -> -cosine(query, vectors[i])))
+					.limit(10)
+					.map(Integer::longValue)
+					.toList();
+			List<Long> approximate = index.search(query, 10, 64).stream().map(HnswIndex.Neighbor::id).toList();
+			hits += (int) approximate.stream().filter(exact::contains).count();
+		}
+
+		assertThat(hits / 1000.0).isGreaterThan(0.9);
+	}
+
+	@Test
+	void restoresWrittenGraph() throws IOException {
+		float[][] vectors = randomVectors(1000, 4);
+		HnswIndex index = build(vectors);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		index.writeTo(new DataOutputStream(bytes));
+
+		HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertThat(restored.size()).isEqualTo(1000);
+		float[] query = randomVectors(1, 5)[0];
+		assertThat(restored.search(query, 10, 64)).isEqualTo(index.search(query, 10, 64));
+	}
+
+	private static HnswIndex build(float[][] vectors) {
+		HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100);
+		for (int i = 0; i < vectors.length; i++) {
+			index.add(i, vectors[i]);
+		}
+		return index;
+	}
+
+	private static float[][] randomVectors(int count, long seed) {
+		Random random = new Random(seed);
+		float[][] vectors = new float[count][DIMENSIONS];
+		for (float[] vector : vectors) {
+			for (int i = 0; i < DIMENSIONS; i++) {
+				vector[i] = (float) random.nextGaussian();
+			}
+		}
+		return vectors;
+	}
+
+	private static double cosine(float[] a, float[] b) {
+		double dot = 0;
+		double normA = 0;
+		double normB = 0;
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i] * b[i];
+			normA += a[i] * a[i];
+			normB += b[i] * b[i];
+		}
+		return dot / Math.sqrt(normA * normB);
+	}
+}
@@ -0,0 +1,38 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LogHistogramTest {
+
+	@Test
+	void quantilesStayWithinRelativeAccuracy() {
+		LogHistogram histogram = new LogHistogram();
+		for (int i = 1; i <= 10_000; i++) {
+			histogram.record(i * 0.01);
+		}
+		assertThat(histogram.quantile(0.5)).isCloseTo(50.0, within(50.0 * 0.02));
+		assertThat(histogram.quantile(0.99)).isCloseTo(99.0, within(99.0 * 0.02));
+		assertThat(histogram.rank(10.0)).isCloseTo(0.1, within(0.01));
+	}
+
+	@Test
+	void deltaMergeAndRoundTripPreserveCounts() {
+		LogHistogram global = new LogHistogram();
+		global.record(1.0);
+		global.record(2.0);
+
+		LogHistogram delta = new LogHistogram();
+		delta.remove(2.0);
+		delta.record(2000.0);
+		global.merge(delta);
+
+		LogHistogram restored = LogHistogram.fromBytes(global.toBytes());
+		assertThat(restored.count()).isEqualTo(2);
+		assertThat(restored.rank(1.5)).isCloseTo(0.5, within(0.01));
+		assertThat(restored.quantile(1.0)).isCloseTo(2000.0, within(2000.0 * 0.02));
+	}
+
+}
@@ -0,0 +1,33 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NgramTokenizerTest {
+
+	@Test
+	void cjkQueryGramsAreContainedInLongerName() {
+		assertThat(NgramTokenizer.indexGrams("深圳市电子有限公司"))
+				.containsAll(NgramTokenizer.queryGrams("深圳"));
+	}
+
+	@Test
+	void singleCjkCharacterIsSearchable() {
+		assertThat(NgramTokenizer.queryGrams("深")).containsExactly("深");
+		assertThat(NgramTokenizer.indexGrams("深圳")).contains("深");
+	}
+
+	@Test
+	void latinWordsUseCaseInsensitiveTrigrams() {
+		assertThat(NgramTokenizer.indexGrams("ＳＨＥＮＺＨＥＮ Tech"))
+				.containsAll(NgramTokenizer.queryGrams("shenzhen"));
+	}
+
+	@Test
+	void termsAreWordsAndCjkBigramsWithRepeats() {
+		assertThat(NgramTokenizer.terms("MOQ 500件，不锈钢 MOQ; 钢"))
+				.containsExactly("moq", "500", "件", "不锈", "锈钢", "moq", "钢");
+	}
+
+}
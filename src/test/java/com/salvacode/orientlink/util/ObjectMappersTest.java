@@ -0,0 +1,110 @@
+package com.salvacode.orientlink.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
+import com.salvacode.orientlink.dto.ProviderResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectMappersTest {
+
+	private static final ObjectMapper JSON = ObjectMappers.json();
+
+	private static final Map<String, ObjectMapper> FORMATS = new LinkedHashMap<>();
+
+	static {
+		FORMATS.put("json", JSON);
+		FORMATS.put("cbor", ObjectMappers.cbor());
+		FORMATS.put("smile", ObjectMappers.smile());
+	}
+
+	@Test
+	void everyFormatDecodesToTheSameValues() throws Exception {
+		AnalyzeResponseDTO analysis = analysis();
+		List<ProviderResponseDTO> providers = providers(20);
+		for (ObjectMapper mapper : FORMATS.values()) {
+			AnalyzeResponseDTO decodedAnalysis = mapper.readValue(mapper.writeValueAsBytes(analysis),
+					AnalyzeResponseDTO.class);
+			List<ProviderResponseDTO> decodedProviders = mapper.readValue(mapper.writeValueAsBytes(providers),
+					new TypeReference<List<ProviderResponseDTO>>() {
+					});
+
+			assertThat(JSON.valueToTree(decodedAnalysis)).isEqualTo(JSON.valueToTree(analysis));
+			assertThat(JSON.valueToTree(decodedProviders)).isEqualTo(JSON.valueToTree(providers));
+		}
+	}
+
+	@Test
+	void binaryFormatsAreSmallerThanJson() throws Exception {
+		AnalyzeResponseDTO analysis = analysis();
+		List<ProviderResponseDTO> providers = providers(200);
+		Map<String, Integer> analysisSizes = new LinkedHashMap<>();
+		Map<String, Integer> providerSizes = new LinkedHashMap<>();
+		for (Map.Entry<String, ObjectMapper> format : FORMATS.entrySet()) {
+			analysisSizes.put(format.getKey(), format.getValue().writeValueAsBytes(analysis).length);
+			providerSizes.put(format.getKey(), format.getValue().writeValueAsBytes(providers).length);
+		}
+
+		assertThat(analysisSizes.get("cbor")).isLessThan(analysisSizes.get("json"));
+		assertThat(analysisSizes.get("smile")).isLessThan(analysisSizes.get("json"));
+		assertThat(providerSizes.get("cbor")).isLessThan(providerSizes.get("json"));
+		assertThat(providerSizes.get("smile")).isLessThan(providerSizes.get("cbor"));
+	}
+
+	static AnalyzeResponseDTO analysis() {
+		return AnalyzeResponseDTO.builder()
+				.originalMessage("您好，我们的最小起订量是500件，单价12.5美元，交货期30天，需要预付30%定金。")
+				.translatedMessage("Hola, nuestro pedido mínimo es de 500 unidades, precio unitario 12,5 USD, "
+						+ "entrega en 30 días, se requiere un depósito del 30%.")
+				.sourceLanguage("zh")
+				.targetLanguage("es")
+				.interpretation(AnalyzeResponseDTO.InterpretationData.builder()
+						.businessContext("El proveedor fija condiciones estándar; el depósito del 30% es habitual.")
+						.sentiment("neutral")
+						.keyTerms(List.of("MOQ", "价格", "交货期", "定金"))
+						.riskLevel("low")
+						.build())
+				.alerts(List.of("MOQ de 500 unidades", "Depósito del 30% por adelantado"))
+				.suggestedResponses(AnalyzeResponseDTO.SuggestedResponses.builder()
+						.formal("感谢您的报价。请问500件以上是否有阶梯价格？")
+						.negotiator("如果我们首单下1000件，单价能否降到11美元？")
+						.direct("请确认交货期和付款方式。")
+						.build())
+				.timestamp(LocalDateTime.of(2026, 10, 18, 9, 30))
+				.conversationId(42L)
+				.build();
+	}
+
+	static List<ProviderResponseDTO> providers(int count) {
+		List<ProviderResponseDTO> providers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			providers.add(ProviderResponseDTO.builder()
+					.providerId((long) i)
+					.providerName("义乌市第" + i + "五金制品有限公司")
+					.alibabaUrl("https://yiwu" + i + ".en.alibaba.com/product/" + (1_600_000_000L + i) + ".html")
+					.productName("不锈钢保温杯 500ml")
+					.moq(100 * (i % 10 + 1))
+					.pricePerUnit(2.5 + i * 0.01)
+					.currency("USD")
+					.certifications(List.of("ISO9001", "FDA", "LFGB"))
+					.deliveryTimeDays(15 + i % 20)
+					.additionalInfo("支持定制logo，样品7天内发货。")
+					.riskAssessment(ProviderResponseDTO.RiskAssessment.builder()
+							.overallRisk(i % 3 == 0 ? "medium" : "low")
+							.warnings(List.of("成立时间不足两年"))
+							.recommendation("Solicitar muestras antes del pedido.")
+							.build())
+					.analyzedAt(LocalDateTime.of(2026, 10, 18, 9, 30).plusMinutes(i))
+					.build());
+		}
+		return providers;
+	}
+}
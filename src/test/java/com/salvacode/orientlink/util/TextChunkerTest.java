@@ -0,0 +1,65 @@
+package com.salvacode.orientlink.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextChunkerTest {
+
+	@Test
+	void splitsLatinTextAtSentenceBoundaries() {
+		String sentence = "The buyer pays 30% deposit before production starts. ";
+		List<TextChunker.Chunk> chunks = chunk(sentence.repeat(40), 100);
+
+		assertThat(chunks).hasSizeGreaterThan(1);
+		for (TextChunker.Chunk chunk : chunks) {
+			assertThat(TokenEstimator.estimate(chunk.text())).isLessThanOrEqualTo(100);
+			assertThat(chunk.text()).endsWith("starts.");
+		}
+	}
+
+	@Test
+	void splitsChineseTextWithoutSpaces() {
+		String sentence = "买方应在生产开始前支付百分之三十的定金。";
+		List<TextChunker.Chunk> chunks = chunk(sentence.repeat(20), 50);
+
+		assertThat(chunks).hasSizeGreaterThan(1);
+		for (TextChunker.Chunk chunk : chunks) {
+			assertThat(chunk.text().length()).isLessThanOrEqualTo(50);
+			assertThat(chunk.text()).endsWith("。");
+		}
+	}
+
+	@Test
+	void offsetsCoverTheWholeText() {
+		String text = "第一条：价格以美元计，付款方式为电汇。Delivery within 30 days, FOB Shenzhen. "
+				+ "No boundary here at all just words ".repeat(10);
+		List<TextChunker.Chunk> chunks = chunk(text, 20);
+
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < chunks.size(); i++) {
+			TextChunker.Chunk chunk = chunks.get(i);
+			assertThat(chunk.index()).isEqualTo(i);
+			assertThat(text.substring(chunk.start(), chunk.end()).strip()).isEqualTo(chunk.text());
+			joined.append(chunk.text());
+		}
+		assertThat(joined.toString().replaceAll("\\s", "")).isEqualTo(text.replaceAll("\\s", ""));
+	}
+
+	@Test
+	void cutsMidWordOnlyWithoutAnyBoundary() {
+		List<TextChunker.Chunk> chunks = chunk("x".repeat(100), 10);
+
+		assertThat(chunks).hasSize(3);
+		assertThat(chunks.get(0).text()).hasSize(40);
+	}
+
+	private static List<TextChunker.Chunk> chunk(String text, int maxTokens) {
+		List<TextChunker.Chunk> chunks = new ArrayList<>();
+		new TextChunker(text, maxTokens).forEachRemaining(chunks::add);
+		return chunks;
+	}
+}
@@ -0,0 +1,97 @@
+package com.salvacode.orientlink.util;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salvacode.orientlink.dto.AnalyzeResponseDTO;
+import com.salvacode.orientlink.dto.ProviderResponseDTO;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Write and read time and encoded size of JSON, CBOR and Smile on typical response lists.
+ * Not part of the regular run: enable with -Dbenchmark=true (e.g. mvn test -Dgroups=benchmark
+ * -Dbenchmark=true). Each case is warmed up, then timed over several rounds; the median round
+ * is reported, in microseconds per list.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WireFormatBenchmarkTest {
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 15;
+	private static final int OPERATIONS_PER_ROUND = 200;
+
+	private static final Map<String, ObjectMapper> FORMATS = new LinkedHashMap<>();
+
+	static {
+		FORMATS.put("json", ObjectMappers.json());
+		FORMATS.put("cbor", ObjectMappers.cbor());
+		FORMATS.put("smile", ObjectMappers.smile());
+	}
+
+	private long sink; // Keeps the measured work observable
+
+	@Test
+	void analysisList() throws Exception {
+		List<AnalyzeResponseDTO> analyses = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			AnalyzeResponseDTO analysis = ObjectMappersTest.analysis();
+			analysis.setConversationId((long) i);
+			analyses.add(analysis);
+		}
+		report("50 x AnalyzeResponseDTO", analyses, AnalyzeResponseDTO.class);
+	}
+
+	@Test
+	void providerList() throws Exception {
+		report("200 x ProviderResponseDTO", ObjectMappersTest.providers(200), ProviderResponseDTO.class);
+	}
+
+	private void report(String payload, List<?> values, Class<?> elementType) throws Exception {
+		System.out.printf("%n%s%n%-6s %10s %12s %12s%n", payload, "format", "bytes", "write us", "read us");
+		for (Map.Entry<String, ObjectMapper> format : FORMATS.entrySet()) {
+			ObjectMapper mapper = format.getValue();
+			JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, elementType);
+			byte[] encoded = mapper.writeValueAsBytes(values);
+
+			double writeMicros = medianMicros(() -> sink += mapper.writeValueAsBytes(values).length);
+			double readMicros = medianMicros(() -> sink += mapper.<List<?>>readValue(encoded, listType).size());
+
+			System.out.printf("%-6s %10d %12.1f %12.1f%n", format.getKey(), encoded.length, writeMicros, readMicros);
+			assertThat(mapper.<List<?>>readValue(encoded, listType)).hasSameSizeAs(values);
+		}
+		assertThat(sink).isPositive();
+	}
+
+	private static double medianMicros(Operation operation) throws Exception {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			for (int i = 0; i < OPERATIONS_PER_ROUND; i++) {
+				operation.run();
+			}
+		}
+		double[] rounds = new double[ROUNDS];
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < OPERATIONS_PER_ROUND; i++) {
+				operation.run();
+			}
+			rounds[round] = (System.nanoTime() - start) / 1_000.0 / OPERATIONS_PER_ROUND;
+		}
+		Arrays.sort(rounds);
+		return rounds[ROUNDS / 2];
+	}
+
+	@FunctionalInterface
+	private interface Operation {
+		void run() throws Exception;
+	}
+}